@@ -0,0 +1,54 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import pl.polsl.pl.java.serial.terminal.model.SerialTransport;
+
+/**
+ * Transport without any device behind it - it only keeps the receiver,
+ * so benchmarks can feed it directly, and counts the written bytes.
+ *
+ * @author Michał Lytek
+ */
+public class BenchmarkTransport implements SerialTransport {
+
+    /** Receiver set by the controler when opening */
+    private Receiver receiver;
+    /** Number of bytes written since opening */
+    private long writtenBytes;
+
+    @Override
+    public void open(Receiver receiver) {
+        this.receiver = receiver;
+        this.writtenBytes = 0;
+    }
+
+    @Override
+    public void close() {
+        this.receiver = null;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        writtenBytes += length;
+    }
+
+    @Override
+    public String getName() {
+        return "benchmark";
+    }
+
+    /**
+     * Getter to the receiver of this transport.
+     * @return the receiver, null if the transport isn't open
+     */
+    public Receiver getReceiver() {
+        return this.receiver;
+    }
+
+    /**
+     * Getter to the number of bytes written since opening.
+     * @return the written bytes count
+     */
+    public long getWrittenBytes() {
+        return this.writtenBytes;
+    }
+}
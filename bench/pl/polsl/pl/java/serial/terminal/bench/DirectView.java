@@ -0,0 +1,83 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+import pl.polsl.pl.java.serial.terminal.view.TerminalView;
+
+/**
+ * View which runs view tasks at once on the calling thread and passes
+ * received text to the blackhole, so the whole controler path is measured
+ * without the cost of any real user interface.
+ *
+ * @author Michał Lytek
+ */
+public class DirectView implements TerminalView {
+
+    /** Sink of received text */
+    private final Blackhole blackhole;
+
+    /**
+     * Creates the view consuming the text with given blackhole.
+     *
+     * @param blackhole the JMH blackhole
+     */
+    public DirectView(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void insertReceivedText(String receivedLine, boolean insertInNewLine) {
+        blackhole.consume(receivedLine);
+    }
+
+    @Override
+    public void showDroppedFrames(long droppedFrames) {
+        blackhole.consume(droppedFrames);
+    }
+
+    @Override
+    public void showConnectionParameters() {
+    }
+
+    @Override
+    public void showConnectionTestResults(boolean isSuccesful, int pingResult) {
+    }
+
+    @Override
+    public void showFileSendProgress(long sentBytes, long totalBytes, long elapsedTime) {
+    }
+
+    @Override
+    public void showFileSendFinished(boolean isComplete) {
+    }
+
+    @Override
+    public void showCaptureStatus(String fileName, long writtenBytes, long backlog, long droppedBytes) {
+    }
+
+    @Override
+    public void showLatencyStatus(long medianRoundTrip, long p99RoundTrip, long p999RoundTrip, long maxRoundTrip, double lossRate, long jitter) {
+    }
+
+    @Override
+    public void showTrafficStatistics(double receivedBytesPerSecond, double sentBytesPerSecond, double framesPerSecond, double averageChunkSize, long framingErrors, long droppedFrames) {
+    }
+
+    @Override
+    public void showTriggerMatch(Trigger trigger, String line) {
+    }
+
+    @Override
+    public void showScriptProgress(int stepNumber, int lineNumber, String command) {
+    }
+
+    @Override
+    public void showScriptFinished(boolean isSuccesful, String report) {
+    }
+
+    @Override
+    public void runOnViewThread(Runnable task) {
+        task.run();
+    }
+}
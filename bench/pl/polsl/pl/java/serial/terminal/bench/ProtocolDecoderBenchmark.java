@@ -0,0 +1,171 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import pl.polsl.pl.java.serial.terminal.model.DecodedMessage;
+import pl.polsl.pl.java.serial.terminal.model.DecoderPipeline;
+import pl.polsl.pl.java.serial.terminal.model.ModbusCrc;
+import pl.polsl.pl.java.serial.terminal.model.ModbusRtuDecoder;
+import pl.polsl.pl.java.serial.terminal.model.NmeaDecoder;
+import pl.polsl.pl.java.serial.terminal.model.ProtocolDecoder;
+
+/**
+ * Decoding of Modbus RTU and NMEA 0183 frames from received chunks.
+ * The stream of {@link #FRAMES} frames is cut into chunks of given size, so frames
+ * split between chunks go through the pending buffer of {@link DecoderPipeline}.
+ * Results are per frame; at 921600 baud a Modbus response with 10 registers
+ * comes every 270 us and a GGA sentence every 750 us at most, so decoding must stay far below that.
+ * With {@code -prof gc} the gc.alloc.rate.norm should be 0.
+ *
+ * @author Michał Lytek
+ */
+@State(Scope.Thread)
+public class ProtocolDecoderBenchmark {
+
+    /** Number of frames in the synthetic stream */
+    private static final int FRAMES = 1024;
+
+    /** Decoded protocol */
+    @Param({"Modbus RTU", "NMEA 0183"})
+    public String protocol;
+
+    /** Size of a single read from the port */
+    @Param({"16", "4096"})
+    public int chunkSize;
+
+    /** The stream cut into chunks */
+    private byte[][] chunks;
+    private DecoderPipeline pipeline;
+    private ProtocolDecoder decoder;
+    private byte[] stream;
+    private final DecodedMessage message = new DecodedMessage();
+    private final FieldReader reader = new FieldReader();
+
+    @Setup
+    public void setup() {
+        this.stream = createStream(protocol);
+        this.chunks = new byte[(stream.length + chunkSize - 1) / chunkSize][];
+        for (int i = 0; i < chunks.length; i++) {
+            int offset = i * chunkSize;
+            chunks[i] = new byte[Math.min(chunkSize, stream.length - offset)];
+            System.arraycopy(stream, offset, chunks[i], 0, chunks[i].length);
+        }
+        this.decoder = protocol.equals("NMEA 0183") ? new NmeaDecoder() : new ModbusRtuDecoder();
+        this.pipeline = new DecoderPipeline(protocol.equals("NMEA 0183") ? new NmeaDecoder() : new ModbusRtuDecoder());
+    }
+
+    /**
+     * Whole pipeline as used by the listener - decoding, counting and logging for the view.
+     *
+     * @return the number of messages, so the work isn't eliminated
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(FRAMES)
+    public long decodeChunks() {
+        for (byte[] chunk : chunks) {
+            pipeline.bytesReceived(chunk, 0, chunk.length);
+        }
+        return pipeline.getMessageCount();
+    }
+
+    /**
+     * Decoder alone over the whole stream, every field read as a number.
+     *
+     * @return the sum of fields, so the work isn't eliminated
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(FRAMES)
+    public double decodeAndReadFields() {
+        reader.sum = 0;
+        int offset = 0;
+        while (offset < stream.length) {
+            offset += decoder.decode(stream, offset, stream.length - offset, message, reader);
+        }
+        return reader.sum;
+    }
+
+    /**
+     * Sink reading every field, like a consumer of typed values would.
+     */
+    private static class FieldReader implements ProtocolDecoder.Sink {
+
+        private double sum;
+
+        @Override
+        public void messageDecoded(DecodedMessage message) {
+            for (int field = 0; field < message.getFieldCount(); field++) {
+                sum += message.getDouble(field);
+            }
+        }
+
+        @Override
+        public void bytesSkipped(int count) {
+        }
+    }
+
+    private static byte[] createStream(String protocol) {
+        Random random = new Random(42);
+        byte[][] frames = new byte[FRAMES][];
+        int length = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            if (protocol.equals("NMEA 0183")) {
+                frames[i] = i % 2 == 0
+                        ? nmea("GPGGA,1235" + (10 + i % 50) + ",4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,")
+                        : nmea("GPRMC,1235" + (10 + i % 50) + ",A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W");
+            } else if (i % 2 == 0) {
+                frames[i] = modbus(new byte[] {1, 3, 0, (byte) random.nextInt(200), 0, 10});
+            } else {
+                byte[] response = new byte[23];
+                response[0] = 1;
+                response[1] = 3;
+                response[2] = 20;
+                for (int j = 3; j < response.length; j++) {
+                    response[j] = (byte) random.nextInt(256);
+                }
+                frames[i] = modbus(response);
+            }
+            length += frames[i].length;
+        }
+        byte[] stream = new byte[length];
+        int offset = 0;
+        for (byte[] frame : frames) {
+            System.arraycopy(frame, 0, stream, offset, frame.length);
+            offset += frame.length;
+        }
+        return stream;
+    }
+
+    private static byte[] modbus(byte[] content) {
+        byte[] frame = new byte[content.length + 2];
+        System.arraycopy(content, 0, frame, 0, content.length);
+        int crc = ModbusCrc.update(ModbusCrc.INITIAL, content, 0, content.length);
+        frame[content.length] = (byte) crc;
+        frame[content.length + 1] = (byte) (crc >>> 8);
+        return frame;
+    }
+
+    private static byte[] nmea(String sentence) {
+        int checksum = 0;
+        for (int i = 0; i < sentence.length(); i++) {
+            checksum ^= sentence.charAt(i);
+        }
+        return String.format("$%s*%02X\r\n", sentence, checksum).getBytes(StandardCharsets.US_ASCII);
+    }
+}
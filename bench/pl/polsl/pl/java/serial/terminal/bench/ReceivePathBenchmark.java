@@ -0,0 +1,150 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.model.SerialTransport;
+
+/**
+ * Receive and framing path - bytes handed to the listener by the transport,
+ * matched against terminators, queued and drained by the controler.
+ * The stream of {@link #STREAM_SIZE} bytes is cut into chunks of given size,
+ * like the reads from serial port, with lines of given length between terminators.
+ * <p>
+ * {@link #receiveStream()} reports the throughput per received byte,
+ * so with {@code -prof gc} the gc.alloc.rate.norm is the allocation per byte.
+ * {@link #receiveChunk()} samples the latency percentiles of a single read.
+ * <p>
+ * The default parameters are the smallest and largest reads, dense and typical lines,
+ * text and hex mode, with statistics on and off, for CR-LF terminator - 16 combinations.
+ * The stream has no other terminator, so alternatives only add the cost of matching
+ * and are left out of the defaults. Other values are given with JMH -p option,
+ * eg. {@code -p displayMode=2 -p terminator=Brak}.
+ *
+ * @author Michał Lytek
+ */
+@State(Scope.Thread)
+public class ReceivePathBenchmark {
+
+    /** Number of bytes in the synthetic stream */
+    private static final int STREAM_SIZE = 64 * 1024;
+
+    /** Size of a single read from the port */
+    @Param({"16", "4096"})
+    public int chunkSize;
+
+    /** Number of bytes between terminators - the terminator density */
+    @Param({"8", "80"})
+    public int lineLength;
+
+    /** Terminator setting as given in configuration dialog */
+    @Param({"CR-LF"})
+    public String terminator;
+
+    /** Display mode - 0 text, 1 hex, 2 hex dump, the hex ones must keep up with binary traffic */
+    @Param({"0", "1"})
+    public int displayMode;
+
+    /** True to collect traffic counters, compare with false to see their overhead */
+    @Param({"true", "false"})
+    public boolean statistics;
+
+    /** The synthetic received stream */
+    private byte[] stream;
+    /** The stream cut into chunks */
+    private byte[][] chunks;
+    /** Index of the next chunk fed by {@link #receiveChunk()} */
+    private int nextChunk;
+
+    private Controler controler;
+    private SerialTransport.Receiver receiver;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.stream = createStream(STREAM_SIZE, lineLength);
+        this.chunks = new byte[(STREAM_SIZE + chunkSize - 1) / chunkSize][];
+        for (int i = 0; i < chunks.length; i++) {
+            int offset = i * chunkSize;
+            chunks[i] = new byte[Math.min(chunkSize, STREAM_SIZE - offset)];
+            System.arraycopy(stream, offset, chunks[i], 0, chunks[i].length);
+        }
+        this.nextChunk = 0;
+
+        BenchmarkTransport transport = new BenchmarkTransport();
+        this.controler = new Controler(new DirectView(blackhole));
+        controler.setupSerialPort("benchmark", 115200, 8, 0, 1, 0, terminator, 1, "US-ASCII", false);
+        controler.setDisplayMode(displayMode);
+        controler.setCollectStatistics(statistics);
+        controler.connectToPort(transport);
+        this.receiver = transport.getReceiver();
+    }
+
+    @TearDown
+    public void tearDown() {
+        controler.disconnectFromPort();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(STREAM_SIZE)
+    public void receiveStream() {
+        for (byte[] chunk : chunks) {
+            receiver.bytesReceived(chunk, chunk.length);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void receiveChunk() {
+        byte[] chunk = chunks[nextChunk];
+        nextChunk = (nextChunk + 1) % chunks.length;
+        receiver.bytesReceived(chunk, chunk.length);
+    }
+
+    /**
+     * Creates printable stream with CR-LF after every line of given length.
+     * The bytes are random, but the same for every run.
+     *
+     * @param size the stream size
+     * @param lineLength the number of printable bytes in every line
+     *
+     * @return the stream bytes
+     */
+    private static byte[] createStream(int size, int lineLength) {
+        byte[] printable = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789 ,.:=-"
+                .getBytes(StandardCharsets.US_ASCII);
+        Random random = new Random(42);
+        byte[] bytes = new byte[size];
+        int column = 0;
+        for (int i = 0; i < size; i++) {
+            if (column == lineLength) {
+                bytes[i] = '\r';
+                column++;
+            } else if (column > lineLength) {
+                bytes[i] = '\n';
+                column = 0;
+            } else {
+                bytes[i] = printable[random.nextInt(printable.length)];
+                column++;
+            }
+        }
+        return bytes;
+    }
+}
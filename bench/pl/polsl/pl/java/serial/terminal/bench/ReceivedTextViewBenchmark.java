@@ -0,0 +1,85 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import pl.polsl.pl.java.serial.terminal.model.CaptureStore;
+import pl.polsl.pl.java.serial.terminal.view.CaptureListModel;
+
+/**
+ * The path behind {@code MainWindow.insertReceivedText} - received lines
+ * stored in the capture and published to the list model once per frame,
+ * like the flush timer does. Measured without the window, so it runs
+ * also on machines without display.
+ * Results are per received line.
+ *
+ * @author Michał Lytek
+ */
+@State(Scope.Thread)
+public class ReceivedTextViewBenchmark {
+
+    /** Number of lines inserted between two model publishings */
+    private static final int LINES_PER_FRAME = 1000;
+
+    /** Number of characters in every line */
+    @Param({"16", "120"})
+    public int lineLength;
+
+    /** Scrollback lines limit */
+    @Param({"1000", "1000000"})
+    public int scrollbackLines;
+
+    /** The inserted line */
+    private String line;
+
+    private CaptureStore store;
+    private CaptureListModel model;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder(lineLength);
+        for (int i = 0; i < lineLength; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        this.line = builder.toString();
+    }
+
+    /**
+     * Starts every iteration with a new empty capture, so the mapped files
+     * of one store don't grow through the whole run.
+     */
+    @Setup(Level.Iteration)
+    public void newCapture() throws IOException {
+        this.store = CaptureStore.createTemporary();
+        this.model = new CaptureListModel(store, scrollbackLines, Long.MAX_VALUE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeCapture() throws IOException {
+        store.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(LINES_PER_FRAME)
+    public boolean insertReceivedLines() {
+        for (int i = 0; i < LINES_PER_FRAME; i++) {
+            model.append(line, true);
+        }
+        return model.publishChanges();
+    }
+}
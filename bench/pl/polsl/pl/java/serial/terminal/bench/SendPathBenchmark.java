@@ -0,0 +1,74 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.model.SendProgress;
+
+/**
+ * Send path - large multi-line text pasted to the sending pane
+ * and passed to {@link Controler#sendText(String)}.
+ * The transport only counts the bytes, so the encoding and splitting are measured.
+ * Divide gc.alloc.rate.norm from {@code -prof gc} by the payload size
+ * to get the allocation per sent byte.
+ *
+ * @author Michał Lytek
+ */
+@State(Scope.Thread)
+public class SendPathBenchmark {
+
+    /** Number of lines in the payload */
+    @Param({"100", "50000"})
+    public int lines;
+
+    /** Number of characters in every line */
+    @Param({"16", "120"})
+    public int lineLength;
+
+    /** The text to send */
+    private String payload;
+
+    private Controler controler;
+    private BenchmarkTransport transport;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        String separator = System.getProperty("line.separator");
+        StringBuilder builder = new StringBuilder(lines * (lineLength + separator.length()));
+        for (int line = 0; line < lines; line++) {
+            for (int i = 0; i < lineLength; i++) {
+                builder.append((char) ('0' + (line + i) % 10));
+            }
+            builder.append(separator);
+        }
+        this.payload = builder.toString();
+
+        this.transport = new BenchmarkTransport();
+        this.controler = new Controler(new DirectView(blackhole));
+        controler.setupSerialPort("benchmark", 115200, 8, 0, 1, 0, "CR-LF", 0, "US-ASCII", false);
+        controler.connectToPort(transport);
+    }
+
+    @TearDown
+    public void tearDown() {
+        controler.disconnectFromPort();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SendProgress sendText() {
+        return controler.sendText(payload).join();
+    }
+}
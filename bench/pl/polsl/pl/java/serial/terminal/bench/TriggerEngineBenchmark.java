@@ -0,0 +1,77 @@
+package pl.polsl.pl.java.serial.terminal.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+import pl.polsl.pl.java.serial.terminal.model.TriggerEngine;
+
+/**
+ * Matching of received lines against the triggers, called by
+ * {@code Controler.receivedNewLine} for every line.
+ * Literal patterns share one automaton, so the time per line
+ * should stay flat as the number of patterns grows.
+ * Results are per received line.
+ *
+ * @author Michał Lytek
+ */
+@State(Scope.Thread)
+public class TriggerEngineBenchmark {
+
+    /** Number of different lines matched in one invocation */
+    private static final int LINES = 64;
+
+    /** Number of literal patterns */
+    @Param({"1", "16", "256"})
+    public int literals;
+
+    /** Number of regular expressions */
+    @Param({"0", "4"})
+    public int expressions;
+
+    private TriggerEngine engine;
+    private String[] lines;
+
+    @Setup
+    public void setup() {
+        List<Trigger> triggers = new ArrayList<>();
+        for (int i = 0; i < literals; i++) {
+            triggers.add(new Trigger("FAULT " + Integer.toHexString(i * 7919), false, 0, Trigger.ACTION_NONE));
+        }
+        for (int i = 0; i < expressions; i++) {
+            triggers.add(new Trigger("ERR 0x" + i + "[0-9A-F]{2}", true, 0, Trigger.ACTION_NONE));
+        }
+        this.engine = new TriggerEngine(triggers);
+
+        // mostly ordinary telemetry, every 16th line with a fault
+        this.lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = i % 16 == 0
+                    ? "t=" + i + " FAULT " + Integer.toHexString(i * 7919) + " at sensor " + i
+                    : "t=" + i + " temp=23." + i + " hum=45." + i + " press=1013." + i + " ok";
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(LINES)
+    public int matchLines() {
+        int matched = 0;
+        for (String line : lines) {
+            matched += engine.match(line);
+        }
+        return matched;
+    }
+}
@@ -1,16 +1,69 @@
 package pl.polsl.pl.java.serial.terminal.main;
 
+import java.io.File;
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import jssc.SerialPort;
-import jssc.SerialPortException;
 import jssc.SerialPortList;
 
+import pl.polsl.pl.java.serial.terminal.model.CaptureWriter;
+import pl.polsl.pl.java.serial.terminal.model.CommandScheduler;
 import pl.polsl.pl.java.serial.terminal.model.CustomSerialPortEventListener;
+import pl.polsl.pl.java.serial.terminal.model.DecoderPipeline;
+import pl.polsl.pl.java.serial.terminal.model.DleStuffer;
+import pl.polsl.pl.java.serial.terminal.model.ExpectScript;
+import pl.polsl.pl.java.serial.terminal.model.FileSender;
+import pl.polsl.pl.java.serial.terminal.model.FileTransfer;
+import pl.polsl.pl.java.serial.terminal.model.HashedWheelTimer;
+import pl.polsl.pl.java.serial.terminal.model.JsscSerialTransport;
+import pl.polsl.pl.java.serial.terminal.model.LatencyMonitor;
+import pl.polsl.pl.java.serial.terminal.model.LoopbackTransport;
+import pl.polsl.pl.java.serial.terminal.model.OverflowPolicy;
+import pl.polsl.pl.java.serial.terminal.model.ProtocolDecoder;
+import pl.polsl.pl.java.serial.terminal.model.PtyTransport;
+import pl.polsl.pl.java.serial.terminal.model.ReceiveQueue;
+import pl.polsl.pl.java.serial.terminal.model.ReceivedFrame;
+import pl.polsl.pl.java.serial.terminal.model.RecordingTransport;
+import pl.polsl.pl.java.serial.terminal.model.ReplayTransport;
+import pl.polsl.pl.java.serial.terminal.model.ScriptRunner;
+import pl.polsl.pl.java.serial.terminal.model.SendProgress;
+import pl.polsl.pl.java.serial.terminal.model.SerialTransport;
+import pl.polsl.pl.java.serial.terminal.model.TelemetryStore;
+import pl.polsl.pl.java.serial.terminal.model.TrafficRecorder;
+import pl.polsl.pl.java.serial.terminal.model.TrafficStatistics;
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+import pl.polsl.pl.java.serial.terminal.model.TriggerEngine;
+import pl.polsl.pl.java.serial.terminal.model.XmodemSender;
+import pl.polsl.pl.java.serial.terminal.model.ZmodemSender;
 import pl.polsl.pl.java.serial.terminal.view.MainWindow;
+import pl.polsl.pl.java.serial.terminal.view.TerminalView;
 
 /**
  * The most important class in the app, controls all logic.
@@ -21,24 +74,140 @@ import pl.polsl.pl.java.serial.terminal.view.MainWindow;
  */
 public class Controler {
 
-    /** Instance of GUI class */
-    private MainWindow view;
-    /** Instance of serial port */
-    private SerialPort serialPort;
+    /** Port name prefix selecting pseudo-terminal transport, eg. pty:/dev/pts/3 */
+    private static final String PTY_PORT_PREFIX = "pty:";
+    /** Port name prefix selecting replay of binary capture file, eg. replay:field.scap */
+    private static final String REPLAY_PORT_PREFIX = "replay:";
+    /** Port name selecting in-memory echo transport */
+    private static final String LOOPBACK_PORT_NAME = "loopback";
+    /** Link test request sequence - DLE ENQ */
+    private static final byte[] LINK_TEST_REQUEST = {DleStuffer.DLE, 0x05};
+    /** Time to wait for the link test response in ms */
+    private static final long LINK_TEST_TIMEOUT = 5000;
+    /** Interval of latency statistics reports in ms */
+    private static final long LATENCY_REPORT_INTERVAL = 1000;
+    /** Interval of traffic statistics reports in ms */
+    private static final long STATISTICS_REPORT_INTERVAL = 1000;
+    /** Name of traffic statistics MBean without the port key */
+    private static final String STATISTICS_MBEAN_NAME = "pl.polsl.pl.java.serial.terminal:type=TrafficStatistics";
+
+    /** Capacity of the queue between serial port thread and GUI thread */
+    private static final int RECEIVE_QUEUE_CAPACITY = 4096;
+    /** Maximum number of frames passed to GUI in one event dispatch thread task */
+    private static final int RECEIVE_DRAIN_BATCH = 512;
+    /** Maximum number of bytes written to the port at once when sending text */
+    private static final int SEND_BATCH_SIZE = 64 * 1024;
+    /** Interval of capture status reports in ms */
+    private static final long CAPTURE_REPORT_INTERVAL = 500;
+    /** Number of background threads shared by all connections */
+    private static final int SCHEDULER_THREADS = 2;
+    /** Time after which the idle sending thread of the port ends, in s */
+    private static final long SENDER_KEEP_ALIVE = 5;
+
+    /** Number of created background threads, for their names */
+    private static final AtomicInteger schedulerThreadCount = new AtomicInteger();
+    /** Number of created sending threads, for their names */
+    private static final AtomicInteger senderThreadCount = new AtomicInteger();
+    /** Background threads for timed tasks of all connections, so an idle port costs no thread */
+    private static final ScheduledExecutorService sharedScheduler = createScheduler();
+    /** Timer thread of periodic commands of all connections, 1 ms precision */
+    private static final HashedWheelTimer sharedCommandTimer = new HashedWheelTimer("command-timer", 1, TimeUnit.MILLISECONDS, 512);
+
+    /** Instance of GUI class or console in headless mode */
+    private TerminalView view;
+    /** Instance of connection to the device, wrapped for traffic recording */
+    private RecordingTransport transport;
+    /** Receiver of the bytes from connected transport */
+    private CustomSerialPortEventListener receiveListener;
+    
+    /** Received frames waiting to be shown in GUI, replaced on every connection */
+    private volatile ReceiveQueue<ReceivedFrame> receiveQueue;
+    /** True if the queue draining task is already scheduled on event dispatch thread */
+    private final AtomicBoolean receiveDrainScheduled = new AtomicBoolean();
+    
+    /** Sending thread of this port, texts are written in order of sending, it ends when the port is idle */
+    private final ThreadPoolExecutor sender = createSender();
+    /** Reusable buffer collecting encoded lines into batches, used only by the sending thread */
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(SEND_BATCH_SIZE);
+    /** Writer doubling every DLE of batches in the link test mode, used only by the sending thread */
+    private final DleStuffer dleStuffer = new DleStuffer();
+    /** Reusable encoder of sent text in the connection charset, unmappable chars are sent as '?' */
+    private CharsetEncoder sendEncoder = createEncoder(StandardCharsets.US_ASCII);
+    
+    /** Background threads for timed tasks, eg. paced file sending, shared with other connections */
+    private final ScheduledExecutorService scheduler = sharedScheduler;
+    /** Manager of all opened ports, this one included */
+    private final SessionManager sessionManager;
+    /** True if connected to the port */
+    private volatile boolean connected;
+    /** File being sent, null if there's none */
+    private volatile FileTransfer fileTransfer;
+    
+    /** Writer of received data to file, null if capture is off */
+    private CaptureWriter captureWriter;
+    /** True if only framed lines are captured */
+    private boolean captureLines;
+    /** Periodic task reporting capture status to the view */
+    private ScheduledFuture<?> captureReport;
+    /** True if the capture and recording are stopped when the app exits */
+    private boolean shutdownHookAdded;
+    /** Recorder of the traffic to binary capture file, null if recording is off */
+    private TrafficRecorder trafficRecorder;
+    
+    /** True if traffic counters are collected on next connections */
+    private boolean collectStatistics = true;
+    /** Traffic counters of the connection, null if they aren't collected */
+    private volatile TrafficStatistics trafficStatistics;
+    /** Name of the registered statistics MBean, null if it isn't registered */
+    private ObjectName statisticsName;
+    /** Periodic task reporting traffic statistics to the view */
+    private ScheduledFuture<?> statisticsReport;
+    
+    /** Matcher of received lines against triggers, null if there are no triggers */
+    private volatile TriggerEngine triggerEngine;
+    /** Runner of automation script, null if there's none running */
+    private final AtomicReference<ScriptRunner> scriptRunner = new AtomicReference<>();
+    /** Periodic and cron commands, sent while connected */
+    private final CommandScheduler commandScheduler = new CommandScheduler(this, sharedCommandTimer);
+    /** Numbers parsed from received lines for the plot, null until the plot is shown first */
+    private TelemetryStore telemetryStore;
+    /** True if received lines are parsed into the telemetry store */
+    private boolean telemetryEnabled;
+    /** Decoder of the protocol in received bytes, null if decoding is off */
+    private DecoderPipeline decoderPipeline;
+    
+    /** How the received bytes are shown - text, hex or hex dump */
+    private volatile int displayMode = CustomSerialPortEventListener.DISPLAY_TEXT;
+    
+    /* Replay settings - speed multiplier (0 for as fast as possible) and start time in capture */
+    private int replaySpeed = 1,
+            replayStartSeconds;
     
+    /** True if the link test request was sent and the response hasn't come yet */
+    private final AtomicBoolean linkTestPending = new AtomicBoolean();
+    /** Statistics of continuous link test, null if it's off */
+    private volatile LatencyMonitor latencyMonitor;
+    /* Periodic tasks of continuous link test - sending probes and reporting statistics */
+    private ScheduledFuture<?> latencyProbes,
+            latencyReport;
     /** Ping start time */
-    private long start_time;
+    private volatile long start_time;
     /** Ping duration time */
     private int pingResult;
     
     /* All variables stores connection parameters */
     private String terminatorToShow,
             terminatorToInsert;
+    private String[] terminatorsToMatch;
+    private byte[] terminatorBytes;
     private int baudRate,
             signBits,
             stopBits,
             parity,
             flowControlMask;
+    private OverflowPolicy overflowPolicy;
+    private Charset charset;
+    private boolean linkTest;
     private String signFormat;
     private String serialPortName;
 
@@ -46,6 +215,7 @@ public class Controler {
      * Creates the controler, initates the GUI and ping test fields.
      */
     public Controler() {
+        this.sessionManager = new SessionManager(this);
         this.view = new MainWindow(this);
         
         // prevent field be a nullpointer
@@ -53,6 +223,69 @@ public class Controler {
         this.pingResult = -1;
     }
     
+    /**
+     * Creates the controler working with given user interface,
+     * eg. the console in headless mode.
+     * 
+     * @param view the user interface to inform about received data
+     */
+    public Controler(TerminalView view) {
+        this.sessionManager = new SessionManager(this);
+        this.view = view;
+        
+        // prevent field be a nullpointer
+        this.start_time = System.nanoTime();
+        this.pingResult = -1;
+    }
+    
+    /**
+     * Creates the controler of next port opened in the session manager.
+     * 
+     * @param sessionManager the manager of all opened ports
+     * @param viewFactory the creator of user interface of this port
+     */
+    Controler(SessionManager sessionManager, Function<Controler, TerminalView> viewFactory) {
+        this.sessionManager = sessionManager;
+        this.view = viewFactory.apply(this);
+        
+        // prevent field be a nullpointer
+        this.start_time = System.nanoTime();
+        this.pingResult = -1;
+    }
+    
+    /**
+     * Create the scheduler shared by all connections.
+     * Cancelled reports are removed at once, so closed ports don't leave tasks behind.
+     * 
+     * @return the new scheduler with daemon threads
+     */
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, (task) -> {
+            Thread thread = new Thread(task, "controler-scheduler-" + schedulerThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+    
+    /**
+     * Create the sending thread of the port, so slow writes
+     * never hold the GUI, the receive thread or the timers shared with other ports.
+     * 
+     * @return the new single thread executor, its daemon thread ends when idle
+     */
+    private static ThreadPoolExecutor createSender() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, SENDER_KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), (task) -> {
+            Thread thread = new Thread(task, "controler-sender-" + senderThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
     /**
      * Setting up a serial port connection parameters
      * - just store received values in configuration fields.
@@ -64,9 +297,15 @@ public class Controler {
      * @param stopBits the bumber of stop bits - 1 or 2
      * @param flowControl the flow control setting - index of combobox
      * @param terminator the terminator setting or apporopiate terminator
+     * @param receiveOverflow the receive queue overflow policy - index of combobox
+     * @param charsetName the name of charset of sent and received text, eg. UTF-8 or windows-1250
+     * @param linkTest true to use DLE ENQ / DLE ACK link test, false to treat all received bytes as data
+     * 
+     * @throws IllegalArgumentException if the custom terminator has an empty alternative
      */
-    public void setupSerialPort(String portName, int portSpeed, int signBits, int parityControl, int stopBits, int flowControl, String terminator) {
+    public void setupSerialPort(String portName, int portSpeed, int signBits, int parityControl, int stopBits, int flowControl, String terminator, int receiveOverflow, String charsetName, boolean linkTest) {
         this.serialPortName = portName;
+        this.linkTest = linkTest;
         this.baudRate = portSpeed;
         this.signBits = signBits;
         this.stopBits = stopBits;
@@ -107,46 +346,315 @@ public class Controler {
                 this.flowControlMask = SerialPort.FLOWCONTROL_NONE;
         }
 
+        // parse receive queue overflow setting
+        switch (receiveOverflow) {
+            case 1:
+                this.overflowPolicy = OverflowPolicy.DROP_OLDEST;
+                break;
+            case 2:
+                this.overflowPolicy = OverflowPolicy.DROP_NEWEST;
+                break;
+            default:
+                this.overflowPolicy = OverflowPolicy.BLOCK;
+        }
+
+        // unknown charset falls back to ASCII, like before the setting existed
+        try {
+            this.charset = Charset.forName(charsetName);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex);
+            this.charset = StandardCharsets.US_ASCII;
+        }
+        this.sendEncoder = createEncoder(charset);
+
         // parse terminator settings to appropriate format
         switch (terminator) {
             case "Brak":
-                this.terminatorToInsert = "";
+                this.terminatorsToMatch = new String[0];
                 break;
             case "CR":
-                this.terminatorToInsert = "\r";
+                this.terminatorsToMatch = new String[] {"\r"};
                 break;
             case "LF":
-                this.terminatorToInsert = "\n";
+                this.terminatorsToMatch = new String[] {"\n"};
                 break;
             case "CR-LF":
-                this.terminatorToInsert = "\r\n";
+                this.terminatorsToMatch = new String[] {"\r\n"};
                 break;
             default:
-                this.terminatorToInsert = terminator;
+                // invalid setting must not silently turn framing off
+                this.terminatorsToMatch = parseCustomTerminators(terminator);
                 break;
         }
+        // the first alternative is used when sending
+        this.terminatorToInsert = terminatorsToMatch.length > 0 ? terminatorsToMatch[0] : "";
+        this.terminatorBytes = terminatorToInsert.getBytes(charset);
 
         view.showConnectionParameters();
     }
     
+    /**
+     * Create the encoder of sent text, unmappable chars are replaced.
+     * 
+     * @param charset the charset of sent text
+     * 
+     * @return the new encoder
+     */
+    private static CharsetEncoder createEncoder(Charset charset) {
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    
+    /**
+     * Parse custom terminator setting to the list of alternative terminators.
+     * Alternatives are separated by '|' and the escape sequences
+     * \r, \n, \t, \| and \\ are supported, eg. "\r\n|\n|;;END;;".
+     * A literal '|' must be written as \|, so an empty alternative,
+     * eg. in "|" or "#|" set before alternatives existed, is an error.
+     * 
+     * @param terminator the custom terminator setting
+     * 
+     * @return the array of non-empty terminators
+     * 
+     * @throws IllegalArgumentException if an alternative is empty
+     */
+    public static String[] parseCustomTerminators(String terminator) {
+        List<String> terminators = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < terminator.length(); i++) {
+            char character = terminator.charAt(i);
+            if (character == '\\' && i + 1 < terminator.length()) {
+                char escaped = terminator.charAt(++i);
+                switch (escaped) {
+                    case 'r':
+                        current.append('\r');
+                        break;
+                    case 'n':
+                        current.append('\n');
+                        break;
+                    case 't':
+                        current.append('\t');
+                        break;
+                    default:
+                        current.append(escaped);
+                        break;
+                }
+            } else if (character == '|') {
+                addCustomTerminator(terminators, current, terminator);
+            } else {
+                current.append(character);
+            }
+        }
+        addCustomTerminator(terminators, current, terminator);
+        return terminators.toArray(new String[terminators.size()]);
+    }
+    
+    /**
+     * Add the parsed alternative to the list and start the next one.
+     * 
+     * @param terminators the list of parsed alternatives
+     * @param current the parsed alternative, cleared
+     * @param terminator the custom terminator setting, for the error message
+     * 
+     * @throws IllegalArgumentException if the alternative is empty
+     */
+    private static void addCustomTerminator(List<String> terminators, StringBuilder current, String terminator) {
+        if (current.length() == 0) {
+            throw new IllegalArgumentException("Pusty terminator w \"" + terminator + "\" - znak | zapisz jako \\|");
+        }
+        terminators.add(current.toString());
+        current.setLength(0);
+    }
+    
     /**
      * Perform connection to the port using earlier defined parameters.
+     * The port name "loopback" and names prefixed with "pty:" or "replay:"
+     * select the transports which don't need serial port hardware.
      * 
      * @return true if connected succesfuly, false if error occured
      */
     public boolean connectToPort() {
+        SerialTransport newTransport;
+        if (serialPortName.equals(LOOPBACK_PORT_NAME)) {
+            newTransport = new LoopbackTransport();
+        } else if (serialPortName.startsWith(REPLAY_PORT_PREFIX)) {
+            newTransport = new ReplayTransport(new File(serialPortName.substring(REPLAY_PORT_PREFIX.length())),
+                    replaySpeed, replayStartSeconds);
+        } else if (serialPortName.startsWith(PTY_PORT_PREFIX)) {
+            newTransport = new PtyTransport(serialPortName.substring(PTY_PORT_PREFIX.length()));
+        } else {
+            newTransport = new JsscSerialTransport(serialPortName, baudRate, signBits, stopBits, parity, flowControlMask);
+        }
+        return connectToPort(newTransport);
+    }
+    
+    /**
+     * Perform connection using given transport, eg. in-memory one in tests.
+     * 
+     * @param newTransport the not opened transport
+     * 
+     * @return true if connected succesfuly, false if error occured
+     */
+    public boolean connectToPort(SerialTransport newTransport) {
         try {
-            this.serialPort = new SerialPort(this.serialPortName);
-            this.serialPort.openPort();
-            this.serialPort.setParams(this.baudRate, this.signBits, this.stopBits, this.parity);
-            this.serialPort.setFlowControlMode(this.flowControlMask);
-            this.serialPort.addEventListener(new CustomSerialPortEventListener(serialPort, terminatorToInsert, this));
-        } catch (SerialPortException ex) {
+            this.receiveQueue = new ReceiveQueue<>(RECEIVE_QUEUE_CAPACITY, this.overflowPolicy);
+            TrafficStatistics statistics = collectStatistics ? new TrafficStatistics(receiveQueue) : null;
+            this.trafficStatistics = statistics;
+            RecordingTransport recordingTransport = new RecordingTransport(newTransport);
+            recordingTransport.setRecorder(trafficRecorder);
+            recordingTransport.setStatistics(statistics);
+            CustomSerialPortEventListener listener = new CustomSerialPortEventListener(recordingTransport, terminatorsToMatch, charset, linkTest, this);
+            listener.setCapture(captureWriter, captureLines);
+            listener.setDisplayMode(displayMode);
+            listener.setStatistics(statistics);
+            synchronized (this) {
+                listener.setTelemetry(telemetryEnabled ? telemetryStore : null);
+                listener.setDecoder(decoderPipeline);
+            }
+            recordingTransport.open(listener);
+            this.receiveListener = listener;
+            this.transport = recordingTransport;
+            this.connected = true;
+        } catch (IOException ex) {
             System.err.println(ex);
+            this.trafficStatistics = null;
             return false;
         }
+        startStatistics(newTransport.getName());
+        commandScheduler.start();
         return true;
     }
+    
+    /**
+     * Start parsing numbers of received lines for the plot, across connections until it's stopped.
+     * Samples collected before are kept.
+     * 
+     * @return the store of parsed numbers
+     */
+    public synchronized TelemetryStore startTelemetry() {
+        if (telemetryStore == null) {
+            this.telemetryStore = new TelemetryStore();
+        }
+        this.telemetryEnabled = true;
+        if (receiveListener != null) {
+            receiveListener.setTelemetry(telemetryStore);
+        }
+        return this.telemetryStore;
+    }
+    
+    /**
+     * Stop parsing numbers of received lines, eg. when the plot is hidden, so it costs nothing.
+     */
+    public synchronized void stopTelemetry() {
+        this.telemetryEnabled = false;
+        if (receiveListener != null) {
+            receiveListener.setTelemetry(null);
+        }
+    }
+    
+    /**
+     * Start decoding the protocol in received bytes, across connections until it's stopped.
+     * Replaces the previous decoder, its messages are dropped.
+     * 
+     * @param decoder the decoder, eg. one of {@link DecoderPipeline#loadDecoders}
+     * 
+     * @return the pipeline with decoded messages and counters
+     */
+    public synchronized DecoderPipeline startDecoding(ProtocolDecoder decoder) {
+        this.decoderPipeline = new DecoderPipeline(decoder);
+        if (receiveListener != null) {
+            receiveListener.setDecoder(decoderPipeline);
+        }
+        return this.decoderPipeline;
+    }
+    
+    /**
+     * Stop decoding the protocol in received bytes.
+     */
+    public synchronized void stopDecoding() {
+        this.decoderPipeline = null;
+        if (receiveListener != null) {
+            receiveListener.setDecoder(null);
+        }
+    }
+    
+    /**
+     * Collect traffic counters on next connections or not,
+     * eg. to measure their overhead in benchmarks. They are collected by default.
+     * 
+     * @param collect true to count the traffic and report it to the view and JMX
+     */
+    public void setCollectStatistics(boolean collect) {
+        this.collectStatistics = collect;
+    }
+    
+    /**
+     * Register the counters of new connection in platform MBean server
+     * and start reporting them to the view.
+     * The next sessions with the same port name, eg. loopback, get the copy number in the key.
+     * 
+     * @param portName the name of connected transport, the MBean key
+     */
+    private synchronized void startStatistics(String portName) {
+        TrafficStatistics statistics = this.trafficStatistics;
+        if (statistics == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(STATISTICS_MBEAN_NAME + ",port=" + ObjectName.quote(portName));
+            for (int copy = 2; server.isRegistered(name); copy++) {
+                name = new ObjectName(STATISTICS_MBEAN_NAME + ",port=" + ObjectName.quote(portName) + ",copy=" + copy);
+            }
+            server.registerMBean(statistics, name);
+            this.statisticsName = name;
+        } catch (JMException ex) {
+            // the panel works without JMX
+            System.err.println(ex);
+        }
+        statistics.sample(System.nanoTime());
+        this.statisticsReport = scheduler.scheduleAtFixedRate(() -> reportStatistics(statistics),
+                STATISTICS_REPORT_INTERVAL, STATISTICS_REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stop reporting the counters of closed connection and unregister their MBean.
+     */
+    private synchronized void stopStatistics() {
+        if (statisticsReport != null) {
+            statisticsReport.cancel(false);
+            this.statisticsReport = null;
+        }
+        if (statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (JMException ex) {
+                System.err.println(ex);
+            }
+            this.statisticsName = null;
+        }
+    }
+    
+    /**
+     * Compute the traffic rates and pass them to the view, run on the scheduler.
+     * 
+     * @param statistics the counters of the connection
+     */
+    private void reportStatistics(TrafficStatistics statistics) {
+        if (!statistics.sample(System.nanoTime())) {
+            // idle port doesn't wake up the view
+            return;
+        }
+        double receivedBytesPerSecond = statistics.getReceivedBytesPerSecond();
+        double sentBytesPerSecond = statistics.getSentBytesPerSecond();
+        double framesPerSecond = statistics.getReceivedFramesPerSecond();
+        double averageChunkSize = statistics.getAverageChunkSize();
+        long framingErrors = statistics.getFramingErrors();
+        long droppedFrames = statistics.getDroppedFrames();
+        view.runOnViewThread(() -> view.showTrafficStatistics(receivedBytesPerSecond, sentBytesPerSecond,
+                framesPerSecond, averageChunkSize, framingErrors, droppedFrames));
+    }
 
     /**
      * Disconnect from an earlier connected port.
@@ -154,89 +662,782 @@ public class Controler {
      * @return true if disconected, false if error occured
      */
     public boolean disconnectFromPort() {
+        commandScheduler.stop();
+        cancelFileSend();
+        stopScript();
+        stopLatencyMonitor();
+        stopStatistics();
+        this.connected = false;
         try {
-            this.serialPort.closePort();
-        } catch (SerialPortException ex) {
+            this.transport.close();
+        } catch (IOException ex) {
             System.err.println(ex);
             return false;
         }
         return true;
     }
     
+    /**
+     * Check if connected to the port or replay.
+     * @return true if connected and not disconnected yet
+     */
+    public boolean isConnected() {
+        return this.connected;
+    }
+    
+    /**
+     * Getter to the manager of all opened ports.
+     * @return the session manager
+     */
+    public SessionManager getSessionManager() {
+        return this.sessionManager;
+    }
+    
+    /**
+     * Getter to the periodic and cron commands of this port.
+     * @return the command scheduler, commands are sent while connected
+     */
+    public CommandScheduler getCommandScheduler() {
+        return this.commandScheduler;
+    }
+    
+    /**
+     * Set the triggers matched against received lines, replacing the previous ones.
+     * Match counters start from zero.
+     * 
+     * @param triggers the triggers, the lower index the higher priority, empty to stop matching
+     * 
+     * @return true if set, false if a regular expression is invalid
+     */
+    public boolean setTriggers(List<Trigger> triggers) {
+        try {
+            this.triggerEngine = triggers.isEmpty() ? null : new TriggerEngine(triggers);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Getter to the numbers of received lines matching the triggers.
+     * @return the count of every trigger, in triggers order, empty if there are no triggers
+     */
+    public long[] getTriggerMatchCounts() {
+        TriggerEngine engine = this.triggerEngine;
+        return engine != null ? engine.getMatchCounts() : new long[0];
+    }
+    
+    /**
+     * Start the automation script on the connected port.
+     * Only one script runs at once. It isn't synchronized with sending,
+     * the script sends from receive and scheduler threads.
+     * 
+     * @param script the compiled script
+     * 
+     * @return true if started, false if not connected or a script is already running
+     */
+    public boolean runScript(ExpectScript script) {
+        CustomSerialPortEventListener listener = this.receiveListener;
+        if (!connected || listener == null) {
+            return false;
+        }
+        ScriptRunner runner = new ScriptRunner(script, this, scheduler);
+        if (!scriptRunner.compareAndSet(null, runner)) {
+            return false;
+        }
+        listener.setReportPendingFrame(true);
+        runner.start();
+        return true;
+    }
+    
+    /**
+     * Stop the running script, if there's one.
+     */
+    public void stopScript() {
+        ScriptRunner runner = scriptRunner.get();
+        if (runner != null) {
+            runner.cancel();
+        }
+    }
+    
+    /**
+     * Check if the automation script is running.
+     * @return true if a script is running
+     */
+    public boolean isRunningScript() {
+        return scriptRunner.get() != null;
+    }
+    
+    /**
+     * Wraps model request - pass the step reached by the script to GUI.
+     * 
+     * @param stepNumber the number of run steps, this one included
+     * @param lineNumber the script line of the step
+     * @param command the script line text
+     */
+    public void scriptProgress(int stepNumber, int lineNumber, String command) {
+        view.runOnViewThread(() -> view.showScriptProgress(stepNumber, lineNumber, command));
+    }
+    
+    /**
+     * Wraps model request - forget the ended script and pass its report to GUI.
+     * 
+     * @param runner the runner of ended script
+     * @param isSuccesful true if the script reached its end, false if it failed or was stopped
+     * @param report the latency of every expect step and the summary
+     */
+    public void scriptFinished(ScriptRunner runner, boolean isSuccesful, String report) {
+        // the report is passed first, so it's on its way when the script isn't running anymore
+        view.runOnViewThread(() -> view.showScriptFinished(isSuccesful, report));
+        if (scriptRunner.compareAndSet(runner, null)) {
+            CustomSerialPortEventListener listener = this.receiveListener;
+            if (listener != null) {
+                listener.setReportPendingFrame(false);
+            }
+        }
+    }
+    
     /**
      * Perform ping test of serial connection.
-     * Send ENQ sign, set start time and wait 5s timeout for receive ACK.
+     * Send DLE ENQ sequence, set start time and wait 5s timeout for receive DLE ACK.
+     * Does nothing if the link test is off, the previous test hasn't ended
+     * or continuous test is running.
      */
     public void testConnection() {
+        if (!linkTest || latencyMonitor != null || !linkTestPending.compareAndSet(false, true)) {
+            return;
+        }
+        // the response may come before write returns
+        this.start_time = System.nanoTime();
+        this.pingResult = -1;
         try {
-//            this.sendText("*PING");
-            serialPort.writeByte((byte) 5); //ENQ
-            this.start_time = System.nanoTime();
-            this.pingResult = -1;
-            Timer timeoutTimer = new Timer();
-            timeoutTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    if (Controler.this.pingResult == -1) {
-                        view.showConnectionTestResults(false, 0);
-                    }
-                }
-            }, 5000);
-        } catch (SerialPortException ex) {
+            transport.write(LINK_TEST_REQUEST, 0, LINK_TEST_REQUEST.length);
+        } catch (IOException ex) {
             System.err.println(ex);
+            linkTestPending.set(false);
+            return;
         }
+        scheduler.schedule(() -> {
+            if (linkTestPending.compareAndSet(true, false)) {
+                view.runOnViewThread(() -> view.showConnectionTestResults(false, 0));
+            }
+        }, LINK_TEST_TIMEOUT, TimeUnit.MILLISECONDS);
     }
     
     /**
      * Handle receiving ping response request.
      * Calculate time difference and send it to GUI.
+     * Responses which weren't requested, eg. after timeout, are ignored.
      */
     public void receivedPingResponse() {
         long end_time = System.nanoTime();
+        LatencyMonitor monitor = this.latencyMonitor;
+        if (monitor != null && monitor.responseReceived(end_time)) {
+            return;
+        }
+        if (!linkTestPending.compareAndSet(true, false)) {
+            return;
+        }
         Double difference = (end_time - start_time)/1e6;
-        this.pingResult = difference.intValue();
-        view.showConnectionTestResults(true, pingResult);
+        int result = difference.intValue();
+        this.pingResult = result;
+        view.runOnViewThread(() -> view.showConnectionTestResults(true, result));
+    }
+    
+    /**
+     * Start continuous link test - probes sent at given rate on the scheduler,
+     * round trip times collected in histogram and statistics reported to the view every second.
+     * 
+     * @param probesPerSecond the number of probes sent every second
+     * 
+     * @return true if started, false if the link test is off, it's already running or not connected
+     */
+    public synchronized boolean startLatencyMonitor(int probesPerSecond) {
+        if (!linkTest || transport == null || latencyMonitor != null || probesPerSecond <= 0) {
+            return false;
+        }
+        LatencyMonitor monitor = new LatencyMonitor();
+        this.latencyMonitor = monitor;
+        long probeInterval = TimeUnit.SECONDS.toNanos(1) / probesPerSecond;
+        this.latencyProbes = scheduler.scheduleAtFixedRate(() -> sendLatencyProbe(monitor),
+                0, probeInterval, TimeUnit.NANOSECONDS);
+        this.latencyReport = scheduler.scheduleAtFixedRate(() -> reportLatency(monitor),
+                LATENCY_REPORT_INTERVAL, LATENCY_REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+        return true;
     }
     
     /**
-     * Split received text to lines and send each one by serial interface,
+     * Stop continuous link test, the last statistics are reported.
+     */
+    public synchronized void stopLatencyMonitor() {
+        LatencyMonitor monitor = this.latencyMonitor;
+        if (monitor == null) {
+            return;
+        }
+        latencyProbes.cancel(false);
+        latencyReport.cancel(false);
+        this.latencyMonitor = null;
+        reportLatency(monitor);
+    }
+    
+    /**
+     * Check if continuous link test is running.
+     * @return true if probes are being sent
+     */
+    public boolean isMonitoringLatency() {
+        return latencyMonitor != null;
+    }
+    
+    /**
+     * Send the next link test probe, run on the scheduler.
+     * 
+     * @param monitor the statistics of running test
+     */
+    private void sendLatencyProbe(LatencyMonitor monitor) {
+        // the response may come before write returns
+        monitor.probeSent(System.nanoTime());
+        try {
+            transport.write(LINK_TEST_REQUEST, 0, LINK_TEST_REQUEST.length);
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+    
+    /**
+     * Pass the link test statistics to the view.
+     * 
+     * @param monitor the statistics of running test
+     */
+    private void reportLatency(LatencyMonitor monitor) {
+        long median = monitor.getRoundTripAtPercentile(50);
+        long p99 = monitor.getRoundTripAtPercentile(99);
+        long p999 = monitor.getRoundTripAtPercentile(99.9);
+        long max = monitor.getMaxRoundTrip();
+        double lossRate = monitor.getLossRate();
+        long jitter = monitor.getJitter();
+        view.runOnViewThread(() -> view.showLatencyStatus(median, p99, p999, max, lossRate, jitter));
+    }
+    
+    /**
+     * Check if the link test is used on this connection.
+     * @return true if the link test sequences are sent and answered
+     */
+    public boolean isLinkTestEnabled() {
+        return this.linkTest;
+    }
+    
+    /**
+     * Split received text to lines and send them by serial interface,
      * adding terminator to the end of all command.
+     * The text is written on the sending thread of the port, after the texts sent before,
+     * so the caller never waits for the port, eg. a large paste at low baudrate.
+     * With link test on, every DLE byte of the text and terminator is sent as DLE DLE.
      * 
      * @param text string to send through serial connection
      * 
-     * @return true if was sended ok, false if an error occured
+     * @return the progress completed when the text is written - how many bytes and lines were written
+     * and from which index the sending may be resumed if an error occured
      */
-    public boolean sendText(String text) {
-        String[] commandLines = text.split(System.getProperty("line.separator"));
-        for (String command : commandLines) {
-            String textToSend = command + terminatorToInsert;
-            try {
-                byte[] sendedChars = textToSend.getBytes(StandardCharsets.US_ASCII);
-                serialPort.writeBytes(sendedChars);
-            } catch (SerialPortException ex) {
-                System.err.println(ex);
-                return false;
+    public CompletableFuture<SendProgress> sendText(String text) {
+        // the connection settings at the time of sending
+        RecordingTransport target = this.transport;
+        CharsetEncoder encoder = this.sendEncoder;
+        byte[] terminator = this.terminatorBytes;
+        boolean stuffDle = this.linkTest;
+        return CompletableFuture.supplyAsync(() -> writeText(text, target, encoder, terminator, stuffDle), sender);
+    }
+    
+    /**
+     * Write the text lines with terminators, run on the sending thread.
+     * Lines are encoded into reusable buffer and written in large batches,
+     * so even very long text needs only a few writes. Batches end on line
+     * boundary, unless a single line doesn't fit in the buffer.
+     * The buffer is on the heap, because the transport takes arrays;
+     * a direct buffer would cost one more copy.
+     * 
+     * @param text string to send through serial connection
+     * @param target the transport to write to
+     * @param sendEncoder the encoder of the connection charset
+     * @param terminatorBytes the encoded terminator
+     * @param stuffDle true to send every DLE byte twice, so it isn't taken as link test sequence
+     * 
+     * @return the progress - how many bytes and lines were written
+     * and from which index the sending may be resumed if an error occured
+     */
+    private SendProgress writeText(String text, SerialTransport target, CharsetEncoder sendEncoder, byte[] terminatorBytes,
+            boolean stuffDle) {
+        if (target == null) {
+            return new SendProgress(0, 0, 0, false);
+        }
+        String separator = System.getProperty("line.separator");
+        // trailing empty lines aren't sent, like after splitting the text
+        int textEnd = text.length();
+        while (textEnd > 0 && text.startsWith(separator, textEnd - separator.length())) {
+            textEnd -= separator.length();
+        }
+        
+        CharBuffer chars = CharBuffer.wrap(text);
+        ByteBuffer buffer = this.sendBuffer;
+        buffer.clear();
+        long bytesWritten = 0;
+        int linesEncoded = 0, linesWritten = 0;
+        int encodedLength = 0, sentLength = 0;
+        try {
+            int lineStart = 0;
+            do {
+                int lineEnd = text.indexOf(separator, lineStart);
+                if (lineEnd < 0 || lineEnd > textEnd) {
+                    lineEnd = textEnd;
+                }
+                
+                // encode the line, writing the batch each time the buffer is full
+                int lineOffset = buffer.position();
+                chars.limit(lineEnd);
+                chars.position(lineStart);
+                sendEncoder.reset();
+                while (sendEncoder.encode(chars, buffer, true).isOverflow()) {
+                    bytesWritten += writeSendBuffer(target, lineOffset, stuffDle);
+                    linesWritten = linesEncoded;
+                    // a line longer than the buffer is written in parts, so it's resumed from the written part
+                    sentLength = lineOffset > 0 ? encodedLength : chars.position();
+                    lineOffset = 0;
+                }
+                // the terminator isn't split, so resuming after the line sends the whole terminator
+                while (buffer.remaining() < terminatorBytes.length) {
+                    bytesWritten += writeSendBuffer(target, lineOffset, stuffDle);
+                    linesWritten = linesEncoded;
+                    sentLength = lineOffset > 0 ? encodedLength : lineEnd;
+                    lineOffset = 0;
+                }
+                buffer.put(terminatorBytes);
+                
+                linesEncoded++;
+                lineStart = lineEnd + separator.length();
+                encodedLength = Math.min(lineStart, text.length());
+            } while (lineStart < textEnd);
+            
+            bytesWritten += writeSendBuffer(target, buffer.position(), stuffDle);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return new SendProgress(bytesWritten, linesWritten, sentLength, false);
+        }
+        return new SendProgress(bytesWritten, linesEncoded, text.length(), true);
+    }
+    
+    /**
+     * Write the complete lines collected in the buffer to the port
+     * and move the started line to the beginning of the buffer.
+     * If there's no complete line, the whole buffer is written.
+     * 
+     * @param target the transport to write to
+     * @param lineOffset the buffer position where the started line begins
+     * @param stuffDle true to send every DLE byte twice
+     * 
+     * @return the number of written bytes of text, without added DLEs
+     * 
+     * @throws IOException if the port write failed
+     */
+    private int writeSendBuffer(SerialTransport target, int lineOffset, boolean stuffDle) throws IOException {
+        int length = lineOffset > 0 ? lineOffset : sendBuffer.position();
+        if (length > 0) {
+            if (stuffDle) {
+                dleStuffer.write(target, sendBuffer.array(), 0, length);
+            } else {
+                target.write(sendBuffer.array(), 0, length);
             }
+            sendBuffer.flip();
+            sendBuffer.position(length);
+            sendBuffer.compact();
+        }
+        return length;
+    }
+    
+    /**
+     * Start sending the file to the port in background.
+     * Only one file may be sent at once. Transfer protocols take over
+     * received bytes until the end of transfer, plain sending uses the pacing settings
+     * and doubles every DLE in the link test mode, like sent text.
+     * 
+     * @param file the file to send
+     * @param protocol the transfer protocol - index of combobox:
+     * none, XMODEM, XMODEM-1K, YMODEM or ZMODEM
+     * @param byteDelay the delay after every byte in ms, 0 for none
+     * @param lineDelay the delay after every line in ms, 0 for none
+     * @param bytesPerSecond the throughput target in bytes per second, 0 for the line rate of serial port
+     * or no limit for other transports
+     * 
+     * @return true if sending has started, false if an error occured
+     */
+    public synchronized boolean sendFile(File file, int protocol, int byteDelay, int lineDelay, int bytesPerSecond) {
+        if (fileTransfer != null) {
+            return false;
+        }
+        FileTransfer transfer;
+        switch (protocol) {
+            case 1:
+                transfer = new XmodemSender(transport, this, file, false, false);
+                break;
+            case 2:
+                transfer = new XmodemSender(transport, this, file, true, false);
+                break;
+            case 3:
+                transfer = new XmodemSender(transport, this, file, true, true);
+                break;
+            case 4:
+                transfer = new ZmodemSender(transport, this, file);
+                break;
+            default:
+                transfer = new FileSender(transport, this, scheduler, file, byteDelay, lineDelay, bytesPerSecond,
+                        getLineBytesPerSecond(), linkTest);
+                break;
+        }
+        this.fileTransfer = transfer;
+        receiveListener.redirect(transfer.getReceiver());
+        try {
+            transfer.start();
+        } catch (IOException ex) {
+            System.err.println(ex);
+            receiveListener.redirect(null);
+            this.fileTransfer = null;
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Compute the number of chars the port sends in a second with current settings:
+     * start bit, data bits, parity bit and stop bits for every char.
+     * Only a serial port has a line rate, loopback, pseudo-terminal and replay
+     * transports take the bytes as fast as they're written.
+     *
+     * @return the line rate in bytes per second, 0 if the transport has no line rate
+     */
+    private int getLineBytesPerSecond() {
+        if (transport == null || !(transport.getTransport() instanceof JsscSerialTransport)) {
+            return 0;
+        }
+        int bitsPerChar = 1 + signBits + (parity == SerialPort.PARITY_NONE ? 0 : 1) + stopBits;
+        return baudRate / bitsPerChar;
+    }
+
+    /**
+     * Stop sending the file, if there's any.
+     * The view is informed when the sender stops.
+     */
+    public void cancelFileSend() {
+        FileTransfer transfer = this.fileTransfer;
+        if (transfer != null) {
+            transfer.cancel();
+        }
+    }
+    
+    /**
+     * Check if a file is being sent.
+     * @return true if file sending is in progress
+     */
+    public boolean isSendingFile() {
+        return this.fileTransfer != null;
+    }
+    
+    /**
+     * Wraps model request - pass file sending progress to the view.
+     * 
+     * @param sentBytes the number of sent bytes
+     * @param totalBytes the file size
+     * @param elapsedTime the time since the start of sending in ns
+     */
+    public void fileSendProgress(long sentBytes, long totalBytes, long elapsedTime) {
+        view.runOnViewThread(() -> view.showFileSendProgress(sentBytes, totalBytes, elapsedTime));
+    }
+    
+    /**
+     * Wraps model request - inform the view about the end of file sending.
+     * 
+     * @param complete true if the whole file was sent
+     */
+    public void fileSendFinished(boolean complete) {
+        receiveListener.redirect(null);
+        this.fileTransfer = null;
+        view.runOnViewThread(() -> view.showFileSendFinished(complete));
+    }
+    
+    /**
+     * Start writing received data to the file in background.
+     * Capture works across connections until it's stopped.
+     * 
+     * @param file the capture file, next files get a time stamp in name
+     * @param content the captured data - index of combobox: raw bytes or framed lines
+     * @param compress true to compress the files with gzip
+     * @param maxFileMegabytes the file size after which a new file is started, 0 for no limit
+     * @param maxFileMinutes the file age after which a new file is started, 0 for no limit
+     * 
+     * @return true if capture has started, false if an error occured
+     */
+    public synchronized boolean startCapture(File file, int content, boolean compress, int maxFileMegabytes, int maxFileMinutes) {
+        if (captureWriter != null) {
+            return false;
+        }
+        try {
+            this.captureWriter = new CaptureWriter(file, compress, maxFileMegabytes * 1024L * 1024L, maxFileMinutes);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return false;
+        }
+        this.captureLines = content == 1;
+        if (receiveListener != null) {
+            receiveListener.setCapture(captureWriter, captureLines);
+        }
+        addShutdownHook();
+        CaptureWriter writer = this.captureWriter;
+        this.captureReport = scheduler.scheduleAtFixedRate(() -> reportCaptureStatus(writer),
+                CAPTURE_REPORT_INTERVAL, CAPTURE_REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+        return true;
+    }
+    
+    /**
+     * Stop the capture, writing the rest of received data to the file.
+     */
+    public synchronized void stopCapture() {
+        if (captureWriter == null) {
+            return;
+        }
+        if (receiveListener != null) {
+            receiveListener.setCapture(null, false);
+        }
+        captureReport.cancel(false);
+        try {
+            captureWriter.close();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+        reportCaptureStatus(captureWriter);
+        this.captureWriter = null;
+    }
+    
+    /**
+     * Check if received data is captured to file.
+     * @return true if capture is on
+     */
+    public synchronized boolean isCapturing() {
+        return this.captureWriter != null;
+    }
+    
+    /**
+     * Start recording the traffic in both directions to binary capture file,
+     * with time stamp of every chunk. Recording works across connections until it's stopped.
+     * 
+     * @param file the capture file, the index is written next to it
+     * 
+     * @return true if recording has started, false if an error occured
+     */
+    public synchronized boolean startRecording(File file) {
+        if (trafficRecorder != null) {
+            return false;
+        }
+        try {
+            this.trafficRecorder = new TrafficRecorder(file);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return false;
         }
+        if (transport != null) {
+            transport.setRecorder(trafficRecorder);
+        }
+        addShutdownHook();
         return true;
     }
     
     /**
-     * Wraps model request - call GUI method to show text in the field.
+     * Stop recording the traffic and write the capture index.
+     */
+    public synchronized void stopRecording() {
+        if (trafficRecorder == null) {
+            return;
+        }
+        if (transport != null) {
+            transport.setRecorder(null);
+        }
+        try {
+            trafficRecorder.close();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+        this.trafficRecorder = null;
+    }
+    
+    /**
+     * Check if the traffic is recorded.
+     * @return true if recording is on
+     */
+    public synchronized boolean isRecording() {
+        return this.trafficRecorder != null;
+    }
+    
+    /**
+     * Changes how the received bytes are shown, also while connected.
+     * 
+     * @param mode the index of mode - 0 text, 1 hex, 2 hex dump with ASCII column
+     */
+    public void setDisplayMode(int mode) {
+        this.displayMode = mode;
+        CustomSerialPortEventListener listener = this.receiveListener;
+        if (listener != null) {
+            listener.setDisplayMode(mode);
+        }
+    }
+    
+    /**
+     * Setting up the replay of capture file selected with "replay:" port name prefix.
+     * 
+     * @param speed the speed multiplier - 1 for original timing, 0 for as fast as possible
+     * @param startSeconds the time in capture to start from in seconds
+     */
+    public void setupReplay(int speed, int startSeconds) {
+        this.replaySpeed = speed;
+        this.replayStartSeconds = startSeconds;
+    }
+    
+    /**
+     * Perform connection to the capture file replay instead of the port.
+     * 
+     * @param file the binary capture file
+     * @param speed the speed multiplier - 1 for original timing, 0 for as fast as possible
+     * @param startSeconds the time in capture to start from in seconds
+     * 
+     * @return true if the replay has started, false if an error occured
+     */
+    public boolean connectToReplay(File file, int speed, int startSeconds) {
+        return connectToPort(new ReplayTransport(file, speed, startSeconds));
+    }
+    
+    /**
+     * Check if the capture file is being replayed.
+     * @return true if connected to replay which hasn't ended yet
+     */
+    public boolean isReplaying() {
+        RecordingTransport currentTransport = this.transport;
+        return currentTransport != null && currentTransport.getTransport() instanceof ReplayTransport
+                && !((ReplayTransport) currentTransport.getTransport()).isFinished();
+    }
+    
+    /**
+     * Make sure the capture files are completed when the app exits,
+     * the rest of backlog, gzip trailer and capture index must reach the disk.
+     */
+    private void addShutdownHook() {
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                stopCapture();
+                stopRecording();
+            }, "capture-shutdown"));
+            this.shutdownHookAdded = true;
+        }
+    }
+    
+    /**
+     * Pass the capture counters to the view.
+     * 
+     * @param writer the capture writer
+     */
+    private void reportCaptureStatus(CaptureWriter writer) {
+        long writtenBytes = writer.getWrittenBytes();
+        long backlog = writer.getBacklog();
+        long droppedBytes = writer.getDroppedBytes();
+        String fileName = writer.getCurrentFile().getName();
+        view.runOnViewThread(() -> view.showCaptureStatus(fileName, writtenBytes, backlog, droppedBytes));
+    }
+    
+    /**
+     * Wraps model request - queue the text to be showed in the field.
      * 
      * @param chars string to be showed in single line
      */
     public void receivedNewChars(String chars) {
-        view.insertReceivedText(chars, false);
+        ScriptRunner runner = scriptRunner.get();
+        if (runner != null) {
+            runner.charsReceived(chars);
+        }
+        queueReceivedFrame(new ReceivedFrame(chars, false));
+    }
+    
+    /**
+     * Wraps model request - pass the frame being received to the running script,
+     * eg. a prompt which doesn't end with terminator. It isn't shown in the field.
+     * 
+     * @param frame the text of the frame received so far
+     */
+    public void receivedPendingFrame(String frame) {
+        ScriptRunner runner = scriptRunner.get();
+        if (runner != null) {
+            runner.pendingFrameReceived(frame);
+        }
     }
     
     /**
-     * Wraps model request - call GUI method to show text in the field.
+     * Wraps model request - match the line against triggers
+     * and queue it to be showed in the field.
      * 
      * @param line string to be showed in new line
      */
     public void receivedNewLine(String line) {
-        view.insertReceivedText(line, true);
+        ScriptRunner runner = scriptRunner.get();
+        if (runner != null) {
+            runner.lineReceived(line);
+        }
+        TriggerEngine engine = this.triggerEngine;
+        int matched = engine != null ? engine.match(line) : -1;
+        queueReceivedFrame(new ReceivedFrame(line, true, matched >= 0 ? engine.getTrigger(matched) : null));
+    }
+    
+    /**
+     * Put received frame to the queue and make sure the GUI thread will take it.
+     * Called only from serial port thread, never waits for GUI
+     * unless the blocking overflow policy is set.
+     * 
+     * @param frame the received frame
+     */
+    private void queueReceivedFrame(ReceivedFrame frame) {
+        receiveQueue.offer(frame);
+        scheduleReceiveDrain();
+    }
+    
+    /**
+     * Schedule the queue draining task on view thread if it isn't scheduled yet.
+     */
+    private void scheduleReceiveDrain() {
+        if (!receiveDrainScheduled.get() && receiveDrainScheduled.compareAndSet(false, true)) {
+            view.runOnViewThread(this::drainReceivedFrames);
+        }
+    }
+    
+    /**
+     * Pass the batch of queued frames to GUI, run on view thread.
+     * Reschedules itself when there's more frames, to not freeze the GUI.
+     */
+    private void drainReceivedFrames() {
+        ReceiveQueue<ReceivedFrame> queue = this.receiveQueue;
+        int shownFrames = 0;
+        for (; shownFrames < RECEIVE_DRAIN_BATCH; shownFrames++) {
+            ReceivedFrame frame = queue.poll();
+            if (frame == null) {
+                break;
+            }
+            view.insertReceivedText(frame.getText(), frame.isNewLine());
+            if (frame.getTrigger() != null) {
+                view.showTriggerMatch(frame.getTrigger(), frame.getText());
+            }
+        }
+        TrafficStatistics statistics = this.trafficStatistics;
+        if (statistics != null) {
+            statistics.framesShown(shownFrames);
+        }
+        view.showDroppedFrames(queue.getDroppedCount());
+        
+        receiveDrainScheduled.set(false);
+        if (!queue.isEmpty()) {
+            scheduleReceiveDrain();
+        }
     }
     
     
@@ -300,5 +1501,13 @@ public class Controler {
     public String getConnectedPortTerminator() {
         return this.terminatorToShow;
     }
+    
+    /**
+     * Getter to connected port charset.
+     * @return the name of charset of sent and received text
+     */
+    public String getConnectedPortCharset() {
+        return this.charset.name();
+    }
 
 }
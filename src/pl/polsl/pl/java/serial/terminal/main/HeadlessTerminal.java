@@ -0,0 +1,456 @@
+package pl.polsl.pl.java.serial.terminal.main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import pl.polsl.pl.java.serial.terminal.model.CommandScheduler;
+import pl.polsl.pl.java.serial.terminal.model.CronExpression;
+import pl.polsl.pl.java.serial.terminal.model.ExpectScript;
+import pl.polsl.pl.java.serial.terminal.model.SendProgress;
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+import pl.polsl.pl.java.serial.terminal.view.ConsoleView;
+
+/**
+ * Headless mode of the terminal, which doesn't load AWT or Swing.
+ * Connection parameters are taken from command line, received frames
+ * are written to stdout or file and lines read from stdin are sent to the port.
+ * Lines starting with '!' are local commands: !ping, !send FILE, !script FILE and !quit.
+ * The port name replay:FILE replays received bytes from binary capture file.
+ * Lines matching triggers are reported on stderr.
+ * Periodic and cron commands are sent while connected, their jitter report is written to stderr at exit.
+ * 
+ * @author Michał Lytek
+ */
+public class HeadlessTerminal {
+
+    /** Command line usage help */
+    private static final String USAGE = "Użycie: --port NAZWA [--baud 9600] [--data 8] [--stop 1]\n"
+            + "    [--parity none|even|odd] [--flow none|rtscts|xonxoff]\n"
+            + "    [--terminator Brak|CR|LF|CR-LF|własny] [--overflow block|drop-oldest|drop-newest]\n"
+            + "    [--output PLIK] [--protocol none|xmodem|xmodem-1k|ymodem|zmodem]\n"
+            + "    [--byte-delay MS] [--line-delay MS] [--rate B/S]\n"
+            + "    [--capture PLIK] [--capture-content raw|lines] [--capture-compress none|gzip]\n"
+            + "    [--capture-size MB] [--capture-time MIN] [--record PLIK]\n"
+            + "    [--replay-speed N, 0 - maksymalna] [--replay-from S] [--display text|hex|dump]\n"
+            + "    [--charset US-ASCII|UTF-8|windows-1250|...] [--link-test off|on]\n"
+            + "    [--latency-monitor SONDY/S, wymaga --link-test on]\n"
+            + "    [--trigger TEKST]... [--trigger-regex WYRAŻENIE]... [--trigger-beep off|on]\n"
+            + "    [--script PLIK, kod wyjścia 1 gdy skrypt się nie powiedzie]\n"
+            + "    [--every \"MS TEKST\"]... [--cron \"S M G D M DT TEKST\"]...\n"
+            + "    [--duration S, czas pracy po końcu wejścia]";
+
+    /* All variables stores connection parameters, defaults as in configuration dialog */
+    private String portName;
+    private int baudRate = 9600,
+            signBits = 8,
+            stopBits = 1,
+            parity = 0,
+            flowControl = 0,
+            overflow = 0;
+    private String terminator = "LF";
+    private String charset = "US-ASCII";
+    private boolean linkTest;
+    /** Rate of continuous link test probes, zero means off */
+    private int latencyProbesPerSecond;
+    private String outputPath;
+    /* File sending protocol and pacing, zero means no limit */
+    private int protocol,
+            byteDelay,
+            lineDelay,
+            bytesPerSecond;
+    /* Capture of received data, new files started after size or time limit, zero means no limit */
+    private String capturePath;
+    private int captureContent,
+            captureCompress,
+            captureSize,
+            captureTime;
+    /* Binary recording of the traffic and replay settings */
+    private String recordPath;
+    private int replaySpeed = 1,
+            replayStartSeconds;
+    /** How the received bytes are shown - text, hex or hex dump */
+    private int displayMode;
+    /** Patterns reported when found in received lines, in priority order */
+    private final List<Trigger> triggers = new ArrayList<>();
+    /** True if matching lines should ring the terminal bell */
+    private boolean triggerBeep;
+    /** Automation script started after connecting, null if there's none */
+    private String scriptPath;
+    /* Periodic commands as period in ms and text, cron commands as expression and text */
+    private final List<String[]> periodicCommands = new ArrayList<>(),
+            cronCommands = new ArrayList<>();
+    /** Time from connecting, after which the end of input ends the work, in seconds */
+    private int duration;
+
+    /**
+     * Parses the arguments, connects to the port and serves stdin until EOF or !quit.
+     * 
+     * @param args the command line arguments
+     * 
+     * @return the process exit code
+     */
+    public static int run(String[] args) {
+        HeadlessTerminal terminal = new HeadlessTerminal();
+        try {
+            terminal.parseArguments(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        return terminal.serve();
+    }
+
+    /**
+     * Parses command line options into connection parameters.
+     * 
+     * @param args the command line arguments
+     * 
+     * @throws IllegalArgumentException if an option is unknown or has wrong value
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-h") || option.equals("--help")) {
+                throw new IllegalArgumentException("Tryb bez interfejsu graficznego.");
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Brak wartości opcji " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--port":
+                    this.portName = value;
+                    break;
+                case "--baud":
+                    this.baudRate = parseNumber(option, value);
+                    break;
+                case "--data":
+                    this.signBits = parseNumber(option, value);
+                    break;
+                case "--stop":
+                    this.stopBits = parseNumber(option, value);
+                    break;
+                case "--parity":
+                    this.parity = parseChoice(option, value, "none", "even", "odd");
+                    break;
+                case "--flow":
+                    this.flowControl = parseChoice(option, value, "none", "rtscts", "xonxoff");
+                    break;
+                case "--overflow":
+                    this.overflow = parseChoice(option, value, "block", "drop-oldest", "drop-newest");
+                    break;
+                case "--terminator":
+                    if (!Arrays.asList("Brak", "CR", "LF", "CR-LF").contains(value)) {
+                        // checked now, so an invalid terminator is reported with usage
+                        Controler.parseCustomTerminators(value);
+                    }
+                    this.terminator = value;
+                    break;
+                case "--charset":
+                    this.charset = parseCharset(option, value);
+                    break;
+                case "--link-test":
+                    this.linkTest = parseChoice(option, value, "off", "on") == 1;
+                    break;
+                case "--latency-monitor":
+                    this.latencyProbesPerSecond = parseNumber(option, value);
+                    break;
+                case "--output":
+                    this.outputPath = value;
+                    break;
+                case "--protocol":
+                    this.protocol = parseChoice(option, value, "none", "xmodem", "xmodem-1k", "ymodem", "zmodem");
+                    break;
+                case "--byte-delay":
+                    this.byteDelay = parseNumber(option, value);
+                    break;
+                case "--line-delay":
+                    this.lineDelay = parseNumber(option, value);
+                    break;
+                case "--rate":
+                    this.bytesPerSecond = parseNumber(option, value);
+                    break;
+                case "--capture":
+                    this.capturePath = value;
+                    break;
+                case "--capture-content":
+                    this.captureContent = parseChoice(option, value, "raw", "lines");
+                    break;
+                case "--capture-compress":
+                    this.captureCompress = parseChoice(option, value, "none", "gzip");
+                    break;
+                case "--capture-size":
+                    this.captureSize = parseNumber(option, value);
+                    break;
+                case "--capture-time":
+                    this.captureTime = parseNumber(option, value);
+                    break;
+                case "--record":
+                    this.recordPath = value;
+                    break;
+                case "--replay-speed":
+                    this.replaySpeed = parseNumber(option, value);
+                    break;
+                case "--replay-from":
+                    this.replayStartSeconds = parseNumber(option, value);
+                    break;
+                case "--display":
+                    this.displayMode = parseChoice(option, value, "text", "hex", "dump");
+                    break;
+                case "--trigger":
+                    this.triggers.add(new Trigger(value, false, 0, Trigger.ACTION_NONE));
+                    break;
+                case "--trigger-regex":
+                    this.triggers.add(new Trigger(value, true, 0, Trigger.ACTION_NONE));
+                    break;
+                case "--trigger-beep":
+                    this.triggerBeep = parseChoice(option, value, "off", "on") == 1;
+                    break;
+                case "--script":
+                    this.scriptPath = value;
+                    break;
+                case "--every": {
+                    String[] parts = value.trim().split("\\s+", 2);
+                    if (parts.length < 2 || parseNumber(option, parts[0]) <= 0) {
+                        throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+                    }
+                    this.periodicCommands.add(parts);
+                    break;
+                }
+                case "--cron": {
+                    String[] parts = value.trim().split("\\s+", 7);
+                    if (parts.length < 7) {
+                        throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+                    }
+                    String expression = String.join(" ", Arrays.copyOf(parts, 6));
+                    // checked now, so an invalid expression is reported with usage
+                    new CronExpression(expression);
+                    this.cronCommands.add(new String[] {expression, parts[6]});
+                    break;
+                }
+                case "--duration":
+                    this.duration = parseNumber(option, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Nieznana opcja " + option);
+            }
+        }
+        if (portName == null) {
+            throw new IllegalArgumentException("Nie podano portu.");
+        }
+        if (triggerBeep) {
+            for (int i = 0; i < triggers.size(); i++) {
+                Trigger trigger = triggers.get(i);
+                triggers.set(i, new Trigger(trigger.getPattern(), trigger.isRegex(), trigger.getColor(), Trigger.ACTION_BEEP));
+            }
+        }
+    }
+
+    /**
+     * Connects to the port and sends stdin lines until EOF or !quit.
+     * 
+     * @return the process exit code
+     */
+    private int serve() {
+        PrintStream output = System.out;
+        if (outputPath != null) {
+            try {
+                output = new PrintStream(new FileOutputStream(outputPath, true), false, "UTF-8");
+            } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+                System.err.println(ex);
+                return 1;
+            }
+        }
+
+        ConsoleView view = new ConsoleView(output);
+        Controler controler = new Controler(view);
+        view.setControler(controler);
+        controler.setupSerialPort(portName, baudRate, signBits, parity, stopBits, flowControl, terminator, overflow, charset, linkTest);
+        if (capturePath != null && !controler.startCapture(new File(capturePath), captureContent,
+                captureCompress == 1, captureSize, captureTime)) {
+            System.err.println("Nie można utworzyć pliku " + capturePath + "!");
+            return 1;
+        }
+        if (recordPath != null && !controler.startRecording(new File(recordPath))) {
+            System.err.println("Nie można utworzyć pliku " + recordPath + "!");
+            return 1;
+        }
+        controler.setupReplay(replaySpeed, replayStartSeconds);
+        controler.setDisplayMode(displayMode);
+        if (!controler.setTriggers(triggers)) {
+            System.err.println("Niepoprawne wyrażenie regularne wyzwalacza!");
+            return 2;
+        }
+        CommandScheduler commands = controler.getCommandScheduler();
+        for (String[] command : periodicCommands) {
+            commands.addPeriodic(command[1], Integer.parseInt(command[0]));
+        }
+        for (String[] command : cronCommands) {
+            commands.addCron(command[1], command[0]);
+        }
+        long connectTime = System.nanoTime();
+        if (!controler.connectToPort()) {
+            System.err.println("Nie można połączyć się z portem " + portName + "!");
+            return 1;
+        }
+        if (latencyProbesPerSecond > 0 && !controler.startLatencyMonitor(latencyProbesPerSecond)) {
+            System.err.println("Nie można uruchomić monitora opóźnienia, użyj opcji --link-test on.");
+        }
+        if (scriptPath != null && !runScript(controler, scriptPath)) {
+            controler.disconnectFromPort();
+            return 1;
+        }
+
+        boolean quit = false;
+        // lines are sent in background in order, the last one tells when all are written
+        CompletableFuture<SendProgress> lastSend = CompletableFuture.completedFuture(null);
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(System.in))) {
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (line.equals("!quit")) {
+                    quit = true;
+                    break;
+                } else if (line.equals("!ping")) {
+                    if (controler.isLinkTestEnabled()) {
+                        controler.testConnection();
+                    } else {
+                        System.err.println("Test łącza jest wyłączony, użyj opcji --link-test on.");
+                    }
+                } else if (line.startsWith("!script ")) {
+                    runScript(controler, line.substring("!script ".length()).trim());
+                } else if (line.startsWith("!send ")) {
+                    File file = new File(line.substring("!send ".length()).trim());
+                    if (!controler.sendFile(file, protocol, byteDelay, lineDelay, bytesPerSecond)) {
+                        System.err.println("Nie można wysłać pliku " + file + "!");
+                    }
+                } else {
+                    lastSend = controler.sendText(line).thenApply((progress) -> {
+                        if (!progress.isComplete()) {
+                            System.err.println("Nie można wysłać wiadomości!");
+                        }
+                        return progress;
+                    });
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+
+        // at the end of input let the sent lines and the file being sent go out, the script and the replay end
+        // and the periodic commands work for the given time
+        if (!quit) {
+            lastSend.join();
+        }
+        try {
+            while (!quit && (controler.isSendingFile() || controler.isRunningScript() || controler.isReplaying()
+                    || System.nanoTime() - connectTime < TimeUnit.SECONDS.toNanos(duration))) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        controler.disconnectFromPort();
+        controler.stopCapture();
+        controler.stopRecording();
+        if (!commands.getCommands().isEmpty()) {
+            System.err.print(commands.getReport());
+        }
+        view.awaitOutput();
+        output.flush();
+        return view.isScriptFailed() ? 1 : 0;
+    }
+
+    /**
+     * Compiles the script file and starts it.
+     * 
+     * @param controler the connected controler
+     * @param path the script file path
+     * 
+     * @return true if started, false if the script can't be read, is invalid or another one is running
+     */
+    private static boolean runScript(Controler controler, String path) {
+        try {
+            ExpectScript script = new ExpectScript(new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8));
+            if (controler.runScript(script)) {
+                return true;
+            }
+            System.err.println("Skrypt już działa!");
+        } catch (IOException ex) {
+            System.err.println("Nie można odczytać skryptu " + path + "!");
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Parses numeric option value.
+     * 
+     * @param option the option name
+     * @param value the option value
+     * 
+     * @return the parsed number
+     */
+    private static int parseNumber(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+        }
+    }
+
+    /**
+     * Checks if the charset option value is supported.
+     * 
+     * @param option the option name
+     * @param value the option value
+     * 
+     * @return the charset name
+     */
+    private static String parseCharset(String option, String value) {
+        try {
+            if (Charset.isSupported(value)) {
+                return value;
+            }
+        } catch (IllegalArgumentException ex) {
+            // illegal name, reported below
+        }
+        throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+    }
+
+    /**
+     * Parses option value to the index of allowed choice, like combobox index in GUI.
+     * 
+     * @param option the option name
+     * @param value the option value
+     * @param choices the allowed values
+     * 
+     * @return the index of choice
+     */
+    private static int parseChoice(String option, String value, String... choices) {
+        for (int i = 0; i < choices.length; i++) {
+            if (choices[i].equalsIgnoreCase(value)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Niepoprawna wartość opcji " + option + ": " + value);
+    }
+}
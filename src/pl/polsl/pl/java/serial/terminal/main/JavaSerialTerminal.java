@@ -9,10 +9,15 @@ public class JavaSerialTerminal {
 
     /**
      * Starts the controler to work.
+     * With command line arguments it runs in headless mode without GUI.
      * 
-     * @param args the command line arguments are ignored
+     * @param args the command line arguments, see {@link HeadlessTerminal}
      */
     public static void main(String[] args) {
-        new Controler();
+        if (args.length > 0) {
+            System.exit(HeadlessTerminal.run(args));
+        } else {
+            new Controler();
+        }
     }
 }
@@ -0,0 +1,118 @@
+package pl.polsl.pl.java.serial.terminal.main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+import pl.polsl.pl.java.serial.terminal.model.TriggerEngine;
+import pl.polsl.pl.java.serial.terminal.view.TerminalView;
+
+/**
+ * Manager of all ports opened in the app at once.
+ * Every port has its own controler with configuration, listener, buffers and view,
+ * while timed tasks of all ports run on one small shared thread pool,
+ * so an idle port costs only its buffers.
+ * Triggers are common for all ports.
+ *
+ * @author Michał Lytek
+ */
+public class SessionManager {
+
+    /** Controlers of all opened ports, the first one is the main window */
+    private final List<Controler> sessions = new CopyOnWriteArrayList<>();
+    /** Triggers set for all ports */
+    private List<Trigger> triggers = Collections.emptyList();
+
+    /**
+     * Creates the manager with the first port.
+     *
+     * @param mainSession the controler of the main window
+     */
+    SessionManager(Controler mainSession) {
+        sessions.add(mainSession);
+    }
+
+    /**
+     * Opens the next port session, it's not connected yet.
+     *
+     * @param viewFactory the creator of user interface of the port, eg. a tab
+     *
+     * @return the controler of the new session
+     */
+    public synchronized Controler openSession(Function<Controler, TerminalView> viewFactory) {
+        Controler session = new Controler(this, viewFactory);
+        session.setTriggers(triggers);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Disconnects the session and forgets it.
+     *
+     * @param session the controler of the session
+     *
+     * @return true if closed, false if disconnecting failed
+     */
+    public synchronized boolean closeSession(Controler session) {
+        if (session.isConnected() && !session.disconnectFromPort()) {
+            return false;
+        }
+        sessions.remove(session);
+        return true;
+    }
+
+    /**
+     * Getter to all sessions.
+     * @return the controlers of opened ports, the main window first
+     */
+    public List<Controler> getSessions() {
+        return Collections.unmodifiableList(sessions);
+    }
+
+    /**
+     * Sets the triggers of all ports. Nothing changes if any expression is invalid.
+     *
+     * @param triggers the triggers, the lower index the higher priority
+     *
+     * @return true if set, false if a regular expression is invalid
+     */
+    public synchronized boolean setTriggers(List<Trigger> triggers) {
+        try {
+            new TriggerEngine(triggers);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex);
+            return false;
+        }
+        this.triggers = new ArrayList<>(triggers);
+        for (Controler session : sessions) {
+            session.setTriggers(this.triggers);
+        }
+        return true;
+    }
+
+    /**
+     * Getter to the triggers of all ports.
+     * @return the triggers, the lower index the higher priority
+     */
+    public synchronized List<Trigger> getTriggers() {
+        return Collections.unmodifiableList(triggers);
+    }
+
+    /**
+     * Getter to the numbers of matching lines summed over all ports.
+     * @return the count of every trigger, in triggers order
+     */
+    public long[] getTriggerMatchCounts() {
+        long[] counts = new long[getTriggers().size()];
+        for (Controler session : sessions) {
+            long[] sessionCounts = session.getTriggerMatchCounts();
+            for (int i = 0; i < Math.min(counts.length, sessionCounts.length); i++) {
+                counts[i] += sessionCounts[i];
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,289 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.Arrays;
+
+/**
+ * Sequential reader of binary capture file written by {@link TrafficRecorder}.
+ * Seeking by time uses binary search in the sparse index and then
+ * skips at most one index interval of records. When the index file is missing,
+ * eg. after the app crashed, the index is rebuilt by scanning record headers.
+ *
+ * @author Michał Lytek
+ */
+public class CaptureReader implements Closeable {
+
+    /** Size of the read buffer */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Size of single index entry - time stamp and offset */
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    /** Channel reading the capture file */
+    private final FileChannel channel;
+    /** Buffer with the part of file being read */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /** File offset of the first byte in the buffer */
+    private long bufferOffset;
+    /** Start time of recording as epoch ms */
+    private final long startTimeMillis;
+
+    /* Index entries - record time stamps and offsets */
+    private long[] indexTimes;
+    private long[] indexOffsets;
+
+    /* Current record */
+    private long time;
+    private byte direction;
+    private int length;
+    private byte[] data = new byte[4096];
+
+    /**
+     * Opens the capture file and loads or rebuilds its index.
+     *
+     * @param file the capture file
+     *
+     * @throws IOException if the file can't be read or isn't a capture file
+     */
+    public CaptureReader(File file) throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+        try {
+            buffer.flip();
+            ensure(TrafficRecorder.FILE_HEADER_SIZE);
+            if (buffer.getInt() != TrafficRecorder.MAGIC || buffer.getShort() != TrafficRecorder.VERSION) {
+                throw new IOException("Not a capture file: " + file);
+            }
+            buffer.getShort();
+            this.startTimeMillis = buffer.getLong();
+
+            File indexFile = new File(file.getPath() + TrafficRecorder.INDEX_SUFFIX);
+            if (indexFile.isFile()) {
+                loadIndex(indexFile);
+            } else {
+                buildIndex();
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return true if the record was read, false at the end of file
+     *
+     * @throws IOException if the file can't be read
+     */
+    public boolean next() throws IOException {
+        if (!ensure(TrafficRecorder.RECORD_HEADER_SIZE)) {
+            return false;
+        }
+        this.time = buffer.getLong();
+        this.direction = buffer.get();
+        this.length = buffer.getInt();
+        if (data.length < length) {
+            this.data = new byte[Math.max(length, data.length * 2)];
+        }
+        int copied = 0;
+        while (copied < length) {
+            if (!buffer.hasRemaining() && !fill()) {
+                // record cut off by crash, treat as end of file
+                return false;
+            }
+            int count = Math.min(buffer.remaining(), length - copied);
+            buffer.get(data, copied, count);
+            copied += count;
+        }
+        return true;
+    }
+
+    /**
+     * Moves to the first record with time stamp not earlier than given.
+     *
+     * @param targetTime the time since the start of recording in ns
+     *
+     * @throws IOException if the file can't be read
+     */
+    public void seek(long targetTime) throws IOException {
+        int entry = Arrays.binarySearch(indexTimes, targetTime);
+        if (entry < 0) {
+            // the last indexed record before the target
+            entry = -entry - 2;
+        }
+        position(entry >= 0 ? indexOffsets[entry] : TrafficRecorder.FILE_HEADER_SIZE);
+        while (true) {
+            long recordOffset = bufferOffset + buffer.position();
+            if (!ensure(TrafficRecorder.RECORD_HEADER_SIZE)) {
+                return;
+            }
+            long recordTime = buffer.getLong(buffer.position());
+            int recordLength = buffer.getInt(buffer.position() + 9);
+            if (recordTime >= targetTime) {
+                return;
+            }
+            position(recordOffset + TrafficRecorder.RECORD_HEADER_SIZE + recordLength);
+        }
+    }
+
+    /**
+     * Getter to the start time of recording.
+     * @return the start time as epoch ms
+     */
+    public long getStartTimeMillis() {
+        return this.startTimeMillis;
+    }
+
+    /**
+     * Getter to the current record time stamp.
+     * @return the time since the start of recording in ns
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * Getter to the current record direction.
+     * @return {@link TrafficRecorder#RX} or {@link TrafficRecorder#TX}
+     */
+    public byte getDirection() {
+        return this.direction;
+    }
+
+    /**
+     * Getter to the current record length.
+     * @return the number of valid bytes in {@link #getData()}
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter to the current record bytes, the array is reused for next records.
+     * @return the array with record bytes
+     */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Loads the index written by the recorder.
+     *
+     * @param indexFile the index file
+     *
+     * @throws IOException if the index can't be read
+     */
+    private void loadIndex(File indexFile) throws IOException {
+        int entries = (int) (indexFile.length() / INDEX_ENTRY_SIZE);
+        this.indexTimes = new long[entries];
+        this.indexOffsets = new long[entries];
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            for (int i = 0; i < entries; i++) {
+                indexTimes[i] = input.readLong();
+                indexOffsets[i] = input.readLong();
+            }
+        } catch (EOFException ex) {
+            buildIndex();
+        }
+    }
+
+    /**
+     * Builds the index by reading every record header,
+     * with the same spacing of entries as the recorder uses.
+     *
+     * @throws IOException if the file can't be read
+     */
+    private void buildIndex() throws IOException {
+        long[] times = new long[1024];
+        long[] offsets = new long[1024];
+        int entries = 0;
+        long nextIndexOffset = 0;
+        position(TrafficRecorder.FILE_HEADER_SIZE);
+        while (true) {
+            long recordOffset = bufferOffset + buffer.position();
+            if (!ensure(TrafficRecorder.RECORD_HEADER_SIZE)) {
+                break;
+            }
+            if (recordOffset >= nextIndexOffset) {
+                if (entries == times.length) {
+                    times = Arrays.copyOf(times, entries * 2);
+                    offsets = Arrays.copyOf(offsets, entries * 2);
+                }
+                times[entries] = buffer.getLong(buffer.position());
+                offsets[entries] = recordOffset;
+                entries++;
+                nextIndexOffset = recordOffset + TrafficRecorder.INDEX_INTERVAL;
+            }
+            position(recordOffset + TrafficRecorder.RECORD_HEADER_SIZE + buffer.getInt(buffer.position() + 9));
+        }
+        this.indexTimes = Arrays.copyOf(times, entries);
+        this.indexOffsets = Arrays.copyOf(offsets, entries);
+        position(TrafficRecorder.FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Moves the reading position, reusing the buffer content if possible.
+     *
+     * @param offset the file offset
+     */
+    private void position(long offset) {
+        if (offset >= bufferOffset && offset <= bufferOffset + buffer.limit()) {
+            buffer.position((int) (offset - bufferOffset));
+        } else {
+            this.bufferOffset = offset;
+            buffer.clear().flip();
+        }
+    }
+
+    /**
+     * Makes sure the buffer has at least given number of bytes.
+     *
+     * @param count the needed number of bytes
+     *
+     * @return true if the bytes are available, false at the end of file
+     *
+     * @throws IOException if the file can't be read
+     */
+    private boolean ensure(int count) throws IOException {
+        while (buffer.remaining() < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads more bytes from the file, keeping the not consumed ones.
+     *
+     * @return false at the end of file
+     *
+     * @throws IOException if the file can't be read
+     */
+    private boolean fill() throws IOException {
+        bufferOffset += buffer.position();
+        buffer.compact();
+        int count = channel.read(buffer, bufferOffset + buffer.position());
+        buffer.flip();
+        return count > 0;
+    }
+}
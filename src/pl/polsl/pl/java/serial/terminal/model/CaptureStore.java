@@ -0,0 +1,437 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Append-only store of received lines kept in memory-mapped files.
+ * Line bytes are written to the data file and the start offset of every line
+ * to the index file, so any line can be read in constant time
+ * and the heap usage doesn't depend on the capture size.
+ * Every line has its receive time and is indexed by {@link NgramIndex} as it's stored,
+ * so finding text or time doesn't scan all lines. The store can be saved
+ * as a text file with its index next to it, and loaded again without indexing it anew.
+ * There's no bound on the store size: every received line is kept until the store is closed,
+ * whatever the scrollback limit of the list showing it, so each port uses the disk
+ * in proportion to its traffic for the whole session.
+ *
+ * @author Michał Lytek
+ */
+public class CaptureStore implements Closeable {
+
+    /** Line separator written between lines in the data file */
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+    /** Size of single index entry */
+    private static final int INDEX_ENTRY_SIZE = 8;
+    /** Size of single time entry */
+    private static final int TIME_ENTRY_SIZE = 8;
+    /** First value of saved index file, "SERIDX01" with format version */
+    private static final long SAVED_INDEX_MAGIC = 0x5345524944583031L;
+    /** Extension added to the saved data file name to get its index file */
+    public static final String SAVED_INDEX_EXTENSION = ".idx";
+    /** Size of buffer for copying saved data */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /** Mapped data file */
+    private final MappedFile data;
+    /** Mapped index file */
+    private final MappedFile index;
+    /** Mapped file with receive time of every line in ms since the epoch */
+    private final MappedFile times;
+    /** Trigram index of lines */
+    private final NgramIndex ngrams;
+
+    /** Number of bytes written to the data file */
+    private long dataLength;
+    /** Number of stored lines */
+    private long lineCount;
+    /** Buffer reused for reading lines */
+    private byte[] readBuffer = new byte[256];
+
+    /**
+     * Creates the store in given files, the previous content is ignored.
+     *
+     * @param dataPath the data file
+     * @param indexPath the index file
+     * @param timesPath the file of line times
+     * @param ngramsPath the file of trigram index
+     *
+     * @throws IOException if the files can't be opened
+     */
+    public CaptureStore(File dataPath, File indexPath, File timesPath, File ngramsPath) throws IOException {
+        this.data = new MappedFile(dataPath);
+        this.index = new MappedFile(indexPath);
+        this.times = new MappedFile(timesPath);
+        this.ngrams = new NgramIndex(ngramsPath);
+    }
+
+    /**
+     * Creates the store in temporary files, deleted when the app exits.
+     * The data, index, times and n-gram files grow with every received line
+     * and aren't trimmed, also after the store is closed, eg. with its port tab,
+     * their space is given back only at exit.
+     *
+     * @return the new store
+     *
+     * @throws IOException if the files can't be created
+     */
+    public static CaptureStore createTemporary() throws IOException {
+        File dataPath = File.createTempFile("serial-capture", ".log");
+        File indexPath = File.createTempFile("serial-capture", ".idx");
+        File timesPath = File.createTempFile("serial-capture", ".time");
+        File ngramsPath = File.createTempFile("serial-capture", ".ngram");
+        dataPath.deleteOnExit();
+        indexPath.deleteOnExit();
+        timesPath.deleteOnExit();
+        ngramsPath.deleteOnExit();
+        return new CaptureStore(dataPath, indexPath, timesPath, ngramsPath);
+    }
+
+    /**
+     * Loads the saved text file into new temporary store.
+     * If the index file saved with it matches the data, lines and index are copied as they are;
+     * otherwise, eg. for a log file from elsewhere, the lines are read and indexed
+     * with the file modification time.
+     *
+     * @param dataPath the saved text file
+     *
+     * @return the new store with the file lines
+     *
+     * @throws IOException if the files can't be read or the store created
+     */
+    public static CaptureStore load(File dataPath) throws IOException {
+        CaptureStore store = createTemporary();
+        File indexPath = new File(dataPath.getPath() + SAVED_INDEX_EXTENSION);
+        if (indexPath.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexPath), COPY_BUFFER_SIZE))) {
+                if (input.readLong() == SAVED_INDEX_MAGIC) {
+                    long lineCount = input.readLong();
+                    long dataLength = input.readLong();
+                    if (dataLength == dataPath.length()) {
+                        store.loadSaved(input, dataPath, lineCount, dataLength);
+                        return store;
+                    }
+                }
+            }
+        }
+        long time = dataPath.lastModified();
+        try (BufferedReader reader = Files.newBufferedReader(dataPath.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                store.appendLine(line, time);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Stores the text as a new line.
+     *
+     * @param text the line content
+     *
+     * @throws IOException if the files can't be written
+     */
+    public void appendLine(String text) throws IOException {
+        appendLine(text, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores the text as a new line received at given time.
+     *
+     * @param text the line content
+     * @param time the receive time in ms since the epoch
+     *
+     * @throws IOException if the files can't be written
+     */
+    private void appendLine(String text, long time) throws IOException {
+        if (lineCount > 0) {
+            appendBytes(LINE_SEPARATOR);
+        }
+        index.putLong(lineCount * INDEX_ENTRY_SIZE, dataLength);
+        times.putLong(lineCount * TIME_ENTRY_SIZE, time);
+        ngrams.add(lineCount, text, true);
+        lineCount++;
+        appendBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the text to the last line, creates the first line if there's none.
+     *
+     * @param text the text to append
+     *
+     * @throws IOException if the files can't be written
+     */
+    public void appendToLastLine(String text) throws IOException {
+        if (lineCount == 0) {
+            appendLine(text);
+        } else {
+            ngrams.add(lineCount - 1, text, false);
+            appendBytes(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Getter to the number of stored lines.
+     * @return the lines count
+     */
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Getter to the number of stored bytes.
+     * @return the data length
+     */
+    public long getDataLength() {
+        return this.dataLength;
+    }
+
+    /**
+     * Getter to the data file offset where the line starts.
+     *
+     * @param line the line number
+     *
+     * @return the line start offset
+     *
+     * @throws IOException if the index can't be read
+     */
+    public long getLineOffset(long line) throws IOException {
+        return index.getLong(line * INDEX_ENTRY_SIZE);
+    }
+
+    /**
+     * Reads the line content.
+     *
+     * @param line the line number
+     *
+     * @return the decoded line
+     *
+     * @throws IOException if the files can't be read
+     */
+    public String getLine(long line) throws IOException {
+        long start = getLineOffset(line);
+        long end = line + 1 < lineCount ? getLineOffset(line + 1) - 1 : dataLength;
+        int length = (int) (end - start);
+        if (readBuffer.length < length) {
+            readBuffer = new byte[Math.max(length, readBuffer.length << 1)];
+        }
+        data.get(start, readBuffer, 0, length);
+        return new String(readBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the stored bytes of the lines from given one to the last one, in one read.
+     *
+     * @param fromLine the number of the first copied line
+     *
+     * @return the UTF-8 bytes of the lines separated by line feeds, with line feed after the last one
+     *
+     * @throws IOException if the data file can't be read
+     */
+    public byte[] copyLines(long fromLine) throws IOException {
+        if (fromLine >= lineCount) {
+            return new byte[0];
+        }
+        long start = getLineOffset(fromLine);
+        byte[] bytes = new byte[(int) (dataLength - start) + LINE_SEPARATOR.length];
+        data.get(start, bytes, 0, bytes.length - LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, bytes, bytes.length - LINE_SEPARATOR.length, LINE_SEPARATOR.length);
+        return bytes;
+    }
+
+    /**
+     * Getter to the time when the line was received.
+     *
+     * @param line the line number
+     *
+     * @return the time in ms since the epoch
+     *
+     * @throws IOException if the times file can't be read
+     */
+    public long getLineTime(long line) throws IOException {
+        return times.getLong(line * TIME_ENTRY_SIZE);
+    }
+
+    /**
+     * Finds the first line received at or after the time, by binary search over line times.
+     *
+     * @param time the time in ms since the epoch
+     *
+     * @return the line number, the line count if all lines are older
+     *
+     * @throws IOException if the times file can't be read
+     */
+    public long findLineAtTime(long time) throws IOException {
+        long low = 0, high = lineCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getLineTime(middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the next line containing the text, ignoring case.
+     * Blocks of lines which surely don't contain the text are skipped by the trigram index,
+     * only the lines of the other blocks are read. Text shorter than 3 chars is checked in every line.
+     *
+     * @param text the searched text, not empty
+     * @param fromLine the line where the search starts, it's checked too
+     * @param forward true to search towards newer lines, false towards older ones
+     *
+     * @return the number of matching line, -1 if there's none
+     *
+     * @throws IOException if the files can't be read
+     */
+    public long find(String text, long fromLine, boolean forward) throws IOException {
+        int[] bits = NgramIndex.queryBits(text);
+        long step = forward ? 1 : -1;
+        long line = forward ? Math.max(0, fromLine) : Math.min(lineCount - 1, fromLine);
+        while (line >= 0 && line < lineCount) {
+            long block = line / NgramIndex.BLOCK_LINES;
+            if (!ngrams.mayContain(block, bits)) {
+                line = forward ? (block + 1) * NgramIndex.BLOCK_LINES : block * NgramIndex.BLOCK_LINES - 1;
+                continue;
+            }
+            long blockEnd = forward ? Math.min(lineCount, (block + 1) * NgramIndex.BLOCK_LINES) : block * NgramIndex.BLOCK_LINES - 1;
+            for (; line != blockEnd; line += step) {
+                if (containsIgnoreCase(getLine(line), text)) {
+                    return line;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Saves the lines as a text file and the index to the file with {@link #SAVED_INDEX_EXTENSION} added,
+     * so the file can be loaded by {@link #load} without indexing it again.
+     *
+     * @param dataPath the text file to create
+     *
+     * @throws IOException if the files can't be written
+     */
+    public void save(File dataPath) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (OutputStream output = new FileOutputStream(dataPath)) {
+            for (long position = 0; position < dataLength; position += buffer.length) {
+                int length = (int) Math.min(buffer.length, dataLength - position);
+                data.get(position, buffer, 0, length);
+                output.write(buffer, 0, length);
+            }
+        }
+        File indexPath = new File(dataPath.getPath() + SAVED_INDEX_EXTENSION);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath), COPY_BUFFER_SIZE))) {
+            output.writeLong(SAVED_INDEX_MAGIC);
+            output.writeLong(lineCount);
+            output.writeLong(dataLength);
+            for (long line = 0; line < lineCount; line++) {
+                output.writeLong(getLineOffset(line));
+            }
+            for (long line = 0; line < lineCount; line++) {
+                output.writeLong(getLineTime(line));
+            }
+            ngrams.save(output, (lineCount + NgramIndex.BLOCK_LINES - 1) / NgramIndex.BLOCK_LINES);
+        }
+    }
+
+    /**
+     * Closes the store files.
+     *
+     * @throws IOException if the files can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        data.close();
+        index.close();
+        times.close();
+        ngrams.close();
+    }
+
+    /**
+     * Copies the saved data file and the rest of saved index into the empty store.
+     *
+     * @param input the saved index, read up to the line offsets
+     * @param dataPath the saved text file
+     * @param savedLineCount the number of saved lines
+     * @param savedDataLength the saved data length
+     *
+     * @throws IOException if the files can't be read or written
+     */
+    private void loadSaved(DataInputStream input, File dataPath, long savedLineCount, long savedDataLength) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream dataInput = new FileInputStream(dataPath)) {
+            int length;
+            while (dataLength < savedDataLength && (length = dataInput.read(buffer)) > 0) {
+                appendBytes(buffer, length);
+            }
+        }
+        for (long line = 0; line < savedLineCount; line++) {
+            index.putLong(line * INDEX_ENTRY_SIZE, input.readLong());
+        }
+        for (long line = 0; line < savedLineCount; line++) {
+            times.putLong(line * TIME_ENTRY_SIZE, input.readLong());
+        }
+        this.lineCount = savedLineCount;
+        long blockCount = (savedLineCount + NgramIndex.BLOCK_LINES - 1) / NgramIndex.BLOCK_LINES;
+        ngrams.load(input, blockCount, savedLineCount - 1, savedLineCount > 0 ? getLine(savedLineCount - 1) : "");
+    }
+
+    /**
+     * Check if the line contains the text, ignoring case.
+     *
+     * @param line the line content
+     * @param text the searched text
+     *
+     * @return true if found
+     */
+    private static boolean containsIgnoreCase(String line, String text) {
+        for (int start = 0; start <= line.length() - text.length(); start++) {
+            if (line.regionMatches(true, start, text, 0, text.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes bytes at the end of the data file.
+     *
+     * @param bytes the bytes to write
+     *
+     * @throws IOException if the file can't be written
+     */
+    private void appendBytes(byte[] bytes) throws IOException {
+        appendBytes(bytes, bytes.length);
+    }
+
+    /**
+     * Writes the first bytes of array at the end of the data file.
+     *
+     * @param bytes the bytes to write
+     * @param length the number of bytes to write
+     *
+     * @throws IOException if the file can't be written
+     */
+    private void appendBytes(byte[] bytes, int length) throws IOException {
+        data.put(dataLength, bytes, 0, length);
+        dataLength += length;
+    }
+}
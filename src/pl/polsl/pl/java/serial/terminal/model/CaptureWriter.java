@@ -0,0 +1,294 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.text.SimpleDateFormat;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Background writer of received data to capture files.
+ * The receive thread only copies bytes into a lock-free ring buffer
+ * and never waits - when the ring is full the bytes are dropped and counted.
+ * The writer thread takes whole ring segments at once and writes them
+ * through a large buffer, optionally compressed with gzip.
+ * Capture files are rotated when they reach the size or age limit.
+ *
+ * @author Michał Lytek
+ */
+public class CaptureWriter implements Closeable {
+
+    /** Size of the ring buffer between receive thread and writer thread */
+    private static final int RING_SIZE = 4 * 1024 * 1024;
+    /** Mask to convert byte sequence number to ring index */
+    private static final int RING_MASK = RING_SIZE - 1;
+    /** Size of the output stream buffer */
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+    /** Writer pause when there's nothing to write */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Time stamp added to rotated file names */
+    private static final String FILE_TIME_FORMAT = "yyyyMMdd-HHmmss";
+
+    /** Ring buffer with bytes waiting for writing */
+    private final byte[] ring = new byte[RING_SIZE];
+    /** Number of bytes taken from the ring, moved only by writer thread */
+    private final AtomicLong head = new AtomicLong();
+    /** Number of bytes put into the ring, moved only by receive thread */
+    private final AtomicLong tail = new AtomicLong();
+    /** Number of bytes dropped due to full ring */
+    private final AtomicLong droppedBytes = new AtomicLong();
+    /** Number of bytes written to the capture files */
+    private final AtomicLong writtenBytes = new AtomicLong();
+
+    /** Capture file chosen by the user, rotated files are named after it */
+    private final File baseFile;
+    /** True if files are compressed with gzip */
+    private final boolean compress;
+    /** Size of single file after which a new file is started, 0 for no limit */
+    private final long maxFileSize;
+    /** Time after which a new file is started in ns, 0 for no limit */
+    private final long maxFileAge;
+
+    /** Thread writing the files */
+    private final Thread writerThread;
+    /** Set when the capture should be finished */
+    private volatile boolean closed;
+
+    /* Current file state, used only by writer thread */
+    private OutputStream output;
+    private volatile File currentFile;
+    private long currentFileSize;
+    private long currentFileStart;
+    private int fileNumber;
+
+    /**
+     * Creates the first capture file and starts the writer thread.
+     *
+     * @param baseFile the capture file, rotated files get a time stamp in name
+     * @param compress true to compress the files with gzip
+     * @param maxFileSize the size of file in bytes after which a new file is started, 0 for no limit
+     * @param maxFileMinutes the age of file in minutes after which a new file is started, 0 for no limit
+     *
+     * @throws IOException if the file can't be created
+     */
+    public CaptureWriter(File baseFile, boolean compress, long maxFileSize, int maxFileMinutes) throws IOException {
+        this.baseFile = baseFile;
+        this.compress = compress;
+        this.maxFileSize = Math.max(0, maxFileSize);
+        this.maxFileAge = TimeUnit.MINUTES.toNanos(Math.max(0, maxFileMinutes));
+        openNextFile();
+
+        this.writerThread = new Thread(this::writeLoop, "capture-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Puts the bytes to the ring buffer, called only from receive thread.
+     * It never waits - if there's no space, the bytes are dropped.
+     *
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     *
+     * @return true if the bytes were queued, false if they were dropped
+     */
+    public boolean write(byte[] data, int offset, int length) {
+        long currentTail = tail.get();
+        if (closed || RING_SIZE - (currentTail - head.get()) < length) {
+            droppedBytes.addAndGet(length);
+            return false;
+        }
+        copyToRing(currentTail, data, offset, length);
+        tail.lazySet(currentTail + length);
+        return true;
+    }
+
+    /**
+     * Puts the bytes followed by the separator to the ring buffer, called only from receive thread.
+     * Both are queued or dropped together, so a line is never captured without its separator.
+     *
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param separator the bytes put after the data
+     *
+     * @return true if the bytes were queued, false if they were dropped
+     */
+    public boolean write(byte[] data, int offset, int length, byte[] separator) {
+        long currentTail = tail.get();
+        int totalLength = length + separator.length;
+        if (closed || RING_SIZE - (currentTail - head.get()) < totalLength) {
+            droppedBytes.addAndGet(totalLength);
+            return false;
+        }
+        copyToRing(currentTail, data, offset, length);
+        copyToRing(currentTail + length, separator, 0, separator.length);
+        tail.lazySet(currentTail + totalLength);
+        return true;
+    }
+
+    /**
+     * Copies the bytes to the ring, wrapping at its end.
+     *
+     * @param position the byte sequence number of the first byte
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     */
+    private void copyToRing(long position, byte[] data, int offset, int length) {
+        int index = (int) position & RING_MASK;
+        int firstPart = Math.min(length, RING_SIZE - index);
+        System.arraycopy(data, offset, ring, index, firstPart);
+        System.arraycopy(data, offset + firstPart, ring, 0, length - firstPart);
+    }
+
+    /**
+     * Getter to the number of bytes waiting for writing.
+     * @return the backlog size in bytes
+     */
+    public long getBacklog() {
+        return tail.get() - head.get();
+    }
+
+    /**
+     * Getter to the number of bytes dropped because the writer didn't keep up.
+     * @return the dropped bytes count
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /**
+     * Getter to the number of bytes written to all capture files, before compression.
+     * @return the written bytes count
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    /**
+     * Getter to the file being written now.
+     * @return the current capture file
+     */
+    public File getCurrentFile() {
+        return this.currentFile;
+    }
+
+    /**
+     * Writes the rest of backlog, closes the file and stops the writer thread.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer thread loop - writes ring segments until the capture is closed
+     * and the backlog is empty.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                boolean wasClosed = closed;
+                long currentHead = head.get();
+                long available = tail.get() - currentHead;
+                if (available == 0) {
+                    if (wasClosed) {
+                        break;
+                    }
+                    output.flush();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                // a new file is started only when there's data for it
+                rotateIfNeeded();
+                // the segment up to the end of ring, the rest is taken in next loop
+                int index = (int) currentHead & RING_MASK;
+                int length = (int) Math.min(available, RING_SIZE - index);
+                if (maxFileSize > 0) {
+                    length = (int) Math.min(length, Math.max(1, maxFileSize - currentFileSize));
+                }
+                output.write(ring, index, length);
+                currentFileSize += length;
+                writtenBytes.addAndGet(length);
+                head.lazySet(currentHead + length);
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+            this.closed = true;
+            // nothing more will be written, so count the backlog as dropped
+            long currentTail = tail.get();
+            droppedBytes.addAndGet(currentTail - head.get());
+            head.set(currentTail);
+        } finally {
+            try {
+                output.close();
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+    }
+
+    /**
+     * Starts the next file when the current one is too big or too old.
+     *
+     * @throws IOException if the new file can't be created
+     */
+    private void rotateIfNeeded() throws IOException {
+        boolean tooBig = maxFileSize > 0 && currentFileSize >= maxFileSize;
+        boolean tooOld = maxFileAge > 0 && System.nanoTime() - currentFileStart >= maxFileAge;
+        if ((tooBig || tooOld) && currentFileSize > 0) {
+            output.close();
+            openNextFile();
+        }
+    }
+
+    /**
+     * Opens the next capture file. The first one has the chosen name,
+     * the next ones get the time stamp and number before the extension.
+     *
+     * @throws IOException if the file can't be created
+     */
+    private void openNextFile() throws IOException {
+        File file = baseFile;
+        if (fileNumber > 0) {
+            String name = baseFile.getName();
+            int dot = name.lastIndexOf('.');
+            String stem = dot > 0 ? name.substring(0, dot) : name;
+            String extension = dot > 0 ? name.substring(dot) : "";
+            String stamp = new SimpleDateFormat(FILE_TIME_FORMAT).format(new Date());
+            file = new File(baseFile.getParentFile(), stem + "-" + stamp + "-" + fileNumber + extension);
+        }
+        if (compress) {
+            file = new File(file.getPath() + ".gz");
+        }
+        fileNumber++;
+
+        OutputStream stream = new FileOutputStream(file);
+        if (compress) {
+            stream = new GZIPOutputStream(stream, OUTPUT_BUFFER_SIZE);
+        }
+        this.output = new BufferedOutputStream(stream, OUTPUT_BUFFER_SIZE);
+        this.currentFile = file;
+        this.currentFileSize = 0;
+        this.currentFileStart = System.nanoTime();
+    }
+}
@@ -0,0 +1,188 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+
+/**
+ * Periodic and cron commands of one connection.
+ * All commands of all connections run on one {@link HashedWheelTimer} thread,
+ * so hundreds of them cost no more threads than one. The timer thread only queues commands
+ * to the sending thread of the port through {@link Controler#sendText}, so they get
+ * the connection terminator and charset, and a slow port never delays commands of other ports.
+ * Commands are kept when disconnected and start again on the next connection.
+ * Delays of queueing after the deadlines of all commands are collected in one histogram.
+ *
+ * @author Michał Lytek
+ */
+public class CommandScheduler {
+
+    /** Instance of controler which sends the commands */
+    private final Controler controler;
+    /** Timer thread shared with other connections */
+    private final HashedWheelTimer timer;
+    /** Defined commands, iterated by reports while the view adds and removes them */
+    private final List<PeriodicCommand> commands = new CopyOnWriteArrayList<>();
+    /** Delays of queueing after deadlines, guarded by itself, as it's recorded under the command lock */
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    /** True if the commands are being sent */
+    private boolean running;
+
+    /**
+     * Creates the scheduler without commands, it doesn't send until started.
+     *
+     * @param controler the controler sending the commands
+     * @param timer the timer thread shared with other connections
+     */
+    public CommandScheduler(Controler controler, HashedWheelTimer timer) {
+        this.controler = controler;
+        this.timer = timer;
+    }
+
+    /**
+     * Adds the command sent at fixed period, it starts at once if connected.
+     *
+     * @param text the sent text
+     * @param periodMillis the period in ms, at least 1
+     *
+     * @return the added command
+     */
+    public PeriodicCommand addPeriodic(String text, int periodMillis) {
+        return add(new PeriodicCommand(this, text, periodMillis));
+    }
+
+    /**
+     * Adds the command sent at cron schedule, it starts at once if connected.
+     *
+     * @param text the sent text
+     * @param expression the cron expression, with or without seconds
+     *
+     * @return the added command
+     *
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public PeriodicCommand addCron(String text, String expression) {
+        return add(new PeriodicCommand(this, text, new CronExpression(expression)));
+    }
+
+    /**
+     * Adds the command and starts it if the scheduler is running.
+     *
+     * @param command the new command
+     *
+     * @return the command
+     */
+    private synchronized PeriodicCommand add(PeriodicCommand command) {
+        commands.add(command);
+        if (running) {
+            command.start();
+        }
+        return command;
+    }
+
+    /**
+     * Stops and removes the command.
+     *
+     * @param command the removed command
+     */
+    public void remove(PeriodicCommand command) {
+        commands.remove(command);
+        command.stop();
+    }
+
+    /**
+     * Getter to the commands.
+     * @return the copy of commands list, in adding order
+     */
+    public List<PeriodicCommand> getCommands() {
+        return new ArrayList<>(commands);
+    }
+
+    /**
+     * Starts sending all commands, eg. after connecting. Jitter statistics start from zero.
+     */
+    public synchronized void start() {
+        this.running = true;
+        synchronized (jitter) {
+            jitter.reset();
+        }
+        for (PeriodicCommand command : commands) {
+            command.start();
+        }
+    }
+
+    /**
+     * Stops sending all commands, eg. before disconnecting.
+     */
+    public synchronized void stop() {
+        this.running = false;
+        for (PeriodicCommand command : commands) {
+            command.stop();
+        }
+    }
+
+    /**
+     * Getter to the delay of sends after deadline, below which the given percent of sends are.
+     *
+     * @param percentile the percentile, eg. 99
+     *
+     * @return the delay in ns
+     */
+    public long getJitterAtPercentile(double percentile) {
+        synchronized (jitter) {
+            return jitter.getValueAtPercentile(percentile);
+        }
+    }
+
+    /**
+     * Getter to the report of all commands, eg. printed when the console exits.
+     * @return the lines with statistics of every command and the jitter percentiles of all
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (PeriodicCommand command : commands) {
+            report.append(String.format("%s [%s]: wysłano %d, pominięto %d, błędów %d, opóźnienie śr. %.3f ms, maks. %.3f ms%n",
+                    command.getText(), command.getSchedule(), command.getSentCount(), command.getMissedCount(),
+                    command.getFailedCount(), command.getAverageJitter() / 1e6, command.getMaxJitter() / 1e6));
+        }
+        synchronized (jitter) {
+            report.append(String.format("Opóźnienie wysyłania: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, maks. %.3f ms, wysłań %d%n",
+                    jitter.getValueAtPercentile(50) / 1e6, jitter.getValueAtPercentile(99) / 1e6,
+                    jitter.getValueAtPercentile(99.9) / 1e6, jitter.getMaxValue() / 1e6, jitter.getTotalCount()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Getter to the timer running the commands.
+     * @return the shared timer
+     */
+    HashedWheelTimer getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * Records the delay of send after its deadline.
+     *
+     * @param delay the delay in ns
+     */
+    void recordJitter(long delay) {
+        synchronized (jitter) {
+            jitter.record(delay);
+        }
+    }
+
+    /**
+     * Queues the command text to the sending thread of the port.
+     *
+     * @param text the command text
+     *
+     * @return the progress completed when the text is written
+     */
+    CompletableFuture<SendProgress> send(String text) {
+        return controler.sendText(text);
+    }
+}
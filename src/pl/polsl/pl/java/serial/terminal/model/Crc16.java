@@ -0,0 +1,61 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Table-driven CRC-16/XMODEM (polynomial 0x1021, initial value 0),
+ * used by XMODEM, YMODEM and ZMODEM. Every byte costs a single table lookup.
+ * The CRC over data followed by its own CRC (high byte first) is 0.
+ *
+ * @author Michał Lytek
+ */
+public class Crc16 {
+
+    /** CRC polynomial */
+    private static final int POLYNOMIAL = 0x1021;
+    /** CRC of every byte value */
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int value = 0; value < TABLE.length; value++) {
+            int crc = value << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[value] = crc & 0xFFFF;
+        }
+    }
+
+    /**
+     * Utility class - no instances.
+     */
+    private Crc16() {
+    }
+
+    /**
+     * Updates the CRC with a single byte.
+     *
+     * @param crc the CRC of previous bytes, 0 at start
+     * @param value the next byte
+     *
+     * @return the updated CRC
+     */
+    public static int update(int crc, int value) {
+        return ((crc << 8) ^ TABLE[((crc >>> 8) ^ value) & 0xFF]) & 0xFFFF;
+    }
+
+    /**
+     * Updates the CRC with a range of bytes.
+     *
+     * @param crc the CRC of previous bytes, 0 at start
+     * @param data the array with next bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     *
+     * @return the updated CRC
+     */
+    public static int update(int crc, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
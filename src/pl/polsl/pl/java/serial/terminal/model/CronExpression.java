@@ -0,0 +1,200 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Calendar schedule in cron syntax with seconds: {@code second minute hour day month weekday},
+ * eg. {@code 0 *&#47;5 * * * 1-5} - every 5 minutes on working days.
+ * A field is {@code *}, a number, a range {@code 1-5}, a step {@code *&#47;10} or {@code 10-40/10},
+ * or a list of them separated by commas. Weekday 0 or 7 is Sunday.
+ * With five fields the seconds are 0, like in classic cron.
+ * Fields are kept as bit masks of allowed values.
+ *
+ * @author Michał Lytek
+ */
+public class CronExpression {
+
+    /** Maximum number of years searched for the next time, eg. for 30 February */
+    private static final int MAX_YEARS = 5;
+
+    /* Allowed values of every field */
+    private final long seconds,
+            minutes,
+            hours,
+            days,
+            months,
+            weekdays;
+    /** True if the day field isn't *, then either day or weekday may match, like in cron */
+    private final boolean dayRestricted;
+    /** True if the weekday field isn't * */
+    private final boolean weekdayRestricted;
+    /** The expression text */
+    private final String expression;
+
+    /**
+     * Parses the expression.
+     *
+     * @param expression five or six fields separated by spaces
+     *
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public CronExpression(String expression) {
+        this.expression = expression.trim();
+        String[] fields = this.expression.split("\\s+");
+        if (fields.length == 5) {
+            String[] withSeconds = new String[6];
+            withSeconds[0] = "0";
+            System.arraycopy(fields, 0, withSeconds, 1, 5);
+            fields = withSeconds;
+        }
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Wyrażenie cron musi mieć 5 lub 6 pól: " + expression);
+        }
+        this.seconds = parseField(fields[0], 0, 59);
+        this.minutes = parseField(fields[1], 0, 59);
+        this.hours = parseField(fields[2], 0, 23);
+        this.days = parseField(fields[3], 1, 31);
+        this.months = parseField(fields[4], 1, 12);
+        long weekdayMask = parseField(fields[5], 0, 7);
+        // Sunday is both 0 and 7
+        if ((weekdayMask & (1L << 7)) != 0) {
+            weekdayMask |= 1L;
+        }
+        this.weekdays = weekdayMask;
+        this.dayRestricted = !fields[3].equals("*");
+        this.weekdayRestricted = !fields[5].equals("*");
+    }
+
+    /**
+     * Finds the first time of the schedule after the given one.
+     *
+     * @param after the time in ms since the epoch
+     *
+     * @return the next time in ms since the epoch, -1 if there's none in next years
+     */
+    public long next(long after) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(after), zone)
+                .truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        int lastYear = time.getYear() + MAX_YEARS;
+        while (time.getYear() <= lastYear) {
+            if (!isSet(months, time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!matchesDay(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!isSet(hours, time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!isSet(minutes, time.getMinute())) {
+                time = time.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            } else if (!isSet(seconds, time.getSecond())) {
+                time = time.plusSeconds(1);
+            } else {
+                return ZonedDateTime.of(time, zone).toInstant().toEpochMilli();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check if the day matches day of month and weekday fields.
+     *
+     * @param time the checked time
+     *
+     * @return true if the schedule runs on that day
+     */
+    private boolean matchesDay(LocalDateTime time) {
+        boolean day = isSet(days, time.getDayOfMonth());
+        // DayOfWeek is 1 for Monday to 7 for Sunday, cron has Sunday as 0
+        boolean weekday = isSet(weekdays, time.getDayOfWeek().getValue() % 7);
+        if (dayRestricted && weekdayRestricted) {
+            return day || weekday;
+        }
+        return day && weekday;
+    }
+
+    /**
+     * Check if the value is allowed by the mask.
+     *
+     * @param mask the field mask
+     * @param value the value
+     *
+     * @return true if the bit of value is set
+     */
+    private static boolean isSet(long mask, int value) {
+        return (mask & (1L << value)) != 0;
+    }
+
+    /**
+     * Parses one field into the mask of allowed values.
+     *
+     * @param field the field text
+     * @param min the minimum value
+     * @param max the maximum value
+     *
+     * @return the mask with bits of allowed values
+     */
+    private static long parseField(String field, int min, int max) {
+        long mask = 0;
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseValue(part.substring(slash + 1), 1, max, field);
+                part = part.substring(0, slash);
+            }
+            int from, to;
+            if (part.equals("*")) {
+                from = min;
+                to = max;
+            } else {
+                int dash = part.indexOf('-');
+                if (dash >= 0) {
+                    from = parseValue(part.substring(0, dash), min, max, field);
+                    to = parseValue(part.substring(dash + 1), min, max, field);
+                } else {
+                    from = parseValue(part, min, max, field);
+                    // a step without range, eg. 5/15, runs to the maximum
+                    to = slash >= 0 ? max : from;
+                }
+                if (from > to) {
+                    throw new IllegalArgumentException("Niepoprawny zakres w polu cron: " + field);
+                }
+            }
+            for (int value = from; value <= to; value += step) {
+                mask |= 1L << value;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Parses one number of a field.
+     *
+     * @param value the number text
+     * @param min the minimum value
+     * @param max the maximum value
+     * @param field the field text, for the error message
+     *
+     * @return the number
+     */
+    private static int parseValue(String value, int min, int max, String field) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Niepoprawna wartość w polu cron: " + field);
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+}
@@ -1,147 +1,351 @@
 package pl.polsl.pl.java.serial.terminal.model;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.Charset;
 
 import jssc.SerialPort;
-import jssc.SerialPortEvent;
-import jssc.SerialPortEventListener;
-import jssc.SerialPortException;
 
 import pl.polsl.pl.java.serial.terminal.main.Controler;
 
 /**
- * Custom implementation of SerialPortEventListener, handle low level logic.
+ * Custom receiver of transport bytes, handle low level logic.
  * It handle receiving of all chars and decide when to put char in buffer
  * or show the buffer content on the screen.
  * 
- * @see SerialPortEventListener
+ * @see SerialTransport.Receiver
  * @author Michał Lytek
  */
-public class CustomSerialPortEventListener implements SerialPortEventListener {
+public class CustomSerialPortEventListener implements SerialTransport.Receiver {
     
-    /** Instance of connected SerialPort to read from */
-    private SerialPort serialPort;
-    /** Termination string (need to detect end of statement) */
-    private String terminatorToInsert;
+    /** Display mode showing received bytes as text */
+    public static final int DISPLAY_TEXT = 0;
+    /** Display mode showing every frame as hex values, terminator included */
+    public static final int DISPLAY_HEX = 1;
+    /** Display mode showing the stream as hex dump rows with ASCII column */
+    public static final int DISPLAY_DUMP = 2;
+    
+    /* Link test control bytes - DLE starts a sequence, ENQ after it is the request, ACK the response */
+    private static final byte DLE = 0x10,
+            ENQ = 0x05,
+            ACK = 0x06;
+    /** Link test response sequence - DLE ACK */
+    private static final byte[] LINK_TEST_RESPONSE = {DLE, ACK};
+    /** Separator written after every line in the capture */
+    private static final byte[] CAPTURE_LINE_SEPARATOR = {'\n'};
+    
+    /** Instance of connected transport to answer ping requests */
+    private SerialTransport transport;
+    /** Matcher of all alternative termination strings (need to detect end of statement) */
+    private TerminatorMatcher terminatorMatcher;
+    /** True if there's no terminator and chars are shown as they come */
+    private boolean noTerminator;
+    /** True if link test sequences are answered and removed from received data, DLE DLE is a data DLE */
+    private boolean linkTest;
+    /** True if the last received byte was DLE starting a sequence */
+    private boolean pendingDle;
+    /** Received data without link test sequences and DLE stuffing, reused for every chunk */
+    private byte[] unstuffedChars = new byte[0];
     /** Instance of Controler class */
     private Controler controler;
+    /** Counters of the connection, null if they aren't collected */
+    private TrafficStatistics statistics;
+    
+    /** Received characters buffer, reused for every frame */
+    private FrameBuffer frameBuffer;
+    /** Decoder of received bytes in the connection charset */
+    private TextDecoder textDecoder;
+    /** Charset of received text, for the frames being received */
+    private Charset charset;
+    /** True if the frame being received is reported after every chunk, eg. for automation script */
+    private volatile boolean reportPendingFrame;
+    
+    /** Receiver which takes all bytes during file transfer, null if there's none */
+    private volatile SerialTransport.Receiver redirection;
+    /** True if the last chunk was redirected */
+    private boolean wasRedirected;
+    
+    /** Writer of the capture file, null if capture is off */
+    private volatile CaptureWriter capture;
+    /** True if only framed lines are captured, false for all raw bytes */
+    private volatile boolean captureLines;
+    /** Store of numeric values of received lines, null if the plot is off */
+    private volatile TelemetryStore telemetry;
+    /** Decoder of the protocol in received bytes, null if decoding is off */
+    private volatile DecoderPipeline decoder;
     
-    /** Received characters buffer */
-    private List<Byte> byteBufferList;
-    /** Last received char */
-    private byte lastCharacter = 0;
+    /** Current display mode */
+    private volatile int displayMode = DISPLAY_TEXT;
+    /** Formatter of bytes in hex modes */
+    private final HexFormatter hexFormatter = new HexFormatter();
+    /** Stream offset of the next dumped byte */
+    private long dumpAddress;
+    /** Display mode used for the last chunk, to notice the change */
+    private int currentDisplayMode = DISPLAY_TEXT;
 
     /**
      * The only one constructor for this custom event listener.
-     * The parameters are needed to read value from serial port,
+     * The parameters are needed to answer ping requests,
      * decide when termination char(s) received
      * and be able to show chars on the screen.
      * 
-     * @param serialPort the instance of connected SerialPort from controler
-     * @param terminator the termination string
+     * @param transport the instance of connected transport from controler
+     * @param terminators the alternative termination strings, empty when there's no terminator
+     * @param charset the charset of received text and terminators
+     * @param linkTest true to answer DLE ENQ link test requests, report DLE ACK responses
+     * and take DLE DLE as a data DLE, false to treat all received bytes as data
      * @param controler the instance of MVC controler to inform about received chars
      */
-    public CustomSerialPortEventListener(SerialPort serialPort, String terminator, Controler controler) {
-        this.serialPort = serialPort;
-        this.terminatorToInsert = terminator;
+    public CustomSerialPortEventListener(SerialTransport transport, String[] terminators, Charset charset, boolean linkTest, Controler controler) {
+        this.transport = transport;
         this.controler = controler;
         
-        this.byteBufferList = new ArrayList<>();
+        byte[][] terminatorsBytes = new byte[terminators.length][];
+        for (int i = 0; i < terminators.length; i++) {
+            terminatorsBytes[i] = terminators[i].getBytes(charset);
+        }
+        this.terminatorMatcher = new TerminatorMatcher(terminatorsBytes);
+        this.noTerminator = terminators.length == 0;
+        this.linkTest = linkTest;
+        
+        this.frameBuffer = new FrameBuffer();
+        this.textDecoder = new TextDecoder(charset);
+        this.charset = charset;
+    }
+
+    /**
+     * Passes all received bytes to given receiver instead of framing them,
+     * eg. to file transfer protocol, until it's called again with null.
+     * The frame started before redirection is dropped.
+     * 
+     * @param receiver the receiver taking over the bytes, null to hand the receive path back
+     */
+    public void redirect(SerialTransport.Receiver receiver) {
+        this.redirection = receiver;
     }
 
     /**
-     * Overrided method, lauched on every serial port event.
-     * It read chars from serial port to the buffer and looks for the terminator char.
+     * Sets the writer which gets the received data, eg. when the user starts capture.
+     * 
+     * @param capture the capture writer, null to stop capturing
+     * @param captureLines true to capture framed lines without terminators, false for raw bytes
+     */
+    public void setCapture(CaptureWriter capture, boolean captureLines) {
+        this.captureLines = captureLines;
+        this.capture = capture;
+    }
+
+    /**
+     * Sets the store which gets numbers parsed from framed lines, eg. when the user shows the plot.
+     * 
+     * @param telemetry the telemetry store, null to stop parsing
+     */
+    public void setTelemetry(TelemetryStore telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Sets the decoder which gets all received bytes, eg. when the user selects a protocol.
+     * 
+     * @param decoder the decoder pipeline, null to stop decoding
+     */
+    public void setDecoder(DecoderPipeline decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Sets the counters of received bytes, frames and line errors,
+     * must be called before the transport is opened.
+     * 
+     * @param statistics the counters, null to not count
+     */
+    public void setStatistics(TrafficStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Sets if the frame being received is passed to the controler after every chunk,
+     * so a prompt without terminator can be noticed. It costs decoding the frame for every chunk.
+     * 
+     * @param report true to report the frame being received
+     */
+    public void setReportPendingFrame(boolean report) {
+        this.reportPendingFrame = report;
+    }
+
+    /**
+     * Sets how the received bytes are shown, can be changed while connected.
+     * The frame being received is dropped, so it isn't shown half in old mode.
+     * 
+     * @param displayMode {@link #DISPLAY_TEXT}, {@link #DISPLAY_HEX} or {@link #DISPLAY_DUMP}
+     */
+    public void setDisplayMode(int displayMode) {
+        this.displayMode = displayMode;
+    }
+
+    /**
+     * Overrided method, lauched for every chunk received from transport.
+     * It puts chars to the buffer and looks for the terminator and link test sequences.
      * Then it shows the buffer content in GUI.
-     * NOTICE: when there's no termination char, it shows chars in GUI one by one!
+     * NOTICE: when there's no termination char, it shows every chunk at once!
      * 
-     * @param serialPortEvent 
+     * @param receivedChars the received bytes
+     * @param length the number of valid bytes in the array
      */
     @Override
-    public void serialEvent(SerialPortEvent serialPortEvent) {
-        // if data is available
-        if (serialPortEvent.isRXCHAR()) {
-            try {
-                byte[] receivedChars = serialPort.readBytes();
-                if (receivedChars != null) {
-                    // at first look for ping request
-                    for (byte character : receivedChars) {
-                            if (character == 6) { //ACK
-                                controler.receivedPingResponse();
-                                return;
-                            } else if (character == 5) { //ENQ
-                                serialPort.writeByte((byte) 6); //ACK
-                                return;
-                            }
+    public void bytesReceived(byte[] receivedChars, int length) {
+        if (statistics != null) {
+            statistics.chunkReceived(length);
+        }
+        CaptureWriter captureWriter = this.capture;
+        boolean isRawCapture = captureWriter != null && (!captureLines || noTerminator);
+        TelemetryStore telemetryStore = this.telemetry;
+        if (isRawCapture) {
+            captureWriter.write(receivedChars, 0, length);
+        }
+        SerialTransport.Receiver receiver = this.redirection;
+        if (receiver != null) {
+            receiver.bytesReceived(receivedChars, length);
+            wasRedirected = true;
+            return;
+        } else if (wasRedirected) {
+            frameBuffer.clear();
+            terminatorMatcher.reset();
+            textDecoder.reset();
+            pendingDle = false;
+            wasRedirected = false;
+        }
+        // the dump shows all bytes, the link test is only answered
+        byte[] rawChars = receivedChars;
+        int rawLength = length;
+        if (linkTest) {
+            length = unstuffLinkTest(receivedChars, length);
+            receivedChars = unstuffedChars;
+        }
+        DecoderPipeline decoderPipeline = this.decoder;
+        if (decoderPipeline != null) {
+            decoderPipeline.bytesReceived(receivedChars, 0, length);
+        }
+        int mode = this.displayMode;
+        if (mode != currentDisplayMode) {
+            frameBuffer.clear();
+            terminatorMatcher.reset();
+            textDecoder.reset();
+            currentDisplayMode = mode;
+        }
+        if (mode == DISPLAY_DUMP) {
+            dumpReceivedBytes(rawChars, rawLength);
+        } else if (noTerminator) {
+            controler.receivedNewChars(mode == DISPLAY_HEX
+                    ? hexFormatter.formatHex(receivedChars, 0, length)
+                    : textDecoder.decode(receivedChars, 0, length, false));
+        } else {
+            // copy whole runs of chars between terminators at once
+            int runStart = 0;
+            for (int i = 0; i < length; i++) {
+                int terminatorLength = terminatorMatcher.next(receivedChars[i]);
+                if (terminatorLength > 0) {
+                    frameBuffer.append(receivedChars, runStart, i + 1 - runStart);
+                    runStart = i + 1;
+                    // the terminator could start in previous chunk
+                    int frameLength = frameBuffer.length() - terminatorLength;
+                    if (captureWriter != null && !isRawCapture) {
+                        captureWriter.write(frameBuffer.array(), 0, frameLength, CAPTURE_LINE_SEPARATOR);
                     }
-                    if (terminatorToInsert.equalsIgnoreCase("")) {
-                        controler.receivedNewChars(new String(receivedChars));
+                    if (telemetryStore != null) {
+                        telemetryStore.frameReceived(frameBuffer.array(), 0, frameLength, System.nanoTime());
+                    }
+                    
+                    String receivedText;
+                    if (mode == DISPLAY_HEX) {
+                        // show the terminator too, its bytes matter when debugging binary protocols
+                        receivedText = hexFormatter.formatHex(frameBuffer.array(), 0, frameBuffer.length());
                     } else {
-                        for (byte character : receivedChars) {
-                            if (isTheSingleTerminationChar(character) || isTheSecondTerminationChar(character)) {
-                                if (isTheSecondTerminationChar(character)) {
-                                    // remove the first sign of terminator
-                                    byteBufferList.remove(byteBufferList.size() - 1);
-                                }
-                                
-                                // convert char list to array
-                                byte[] array = new byte[byteBufferList.size()];
-                                int i = 0;
-                                for (Byte current : byteBufferList) {
-                                    array[i++] = current;
-                                }
-                                byteBufferList.clear();
-                                String receivedText = new String(array, StandardCharsets.US_ASCII);
-                                controler.receivedNewLine(receivedText);
-//                                switch (receivedText) {
-//                                    case "*PING":
-//                                        serialPort.writeByte((byte) 5); //ENQ
-////                                        controler.sendText("*PONG");
-//                                        break;
-//                                    case "*PONG":
-//                                        controler.receivedPingResponse();
-//                                        break;
-//                                    default:
-//                                        controler.receivedNewLine(receivedText);
-//                                        break;
-//                                }
-                                
-                            } else {
-                                byteBufferList.add(character);
-                            }
-                            lastCharacter = character;
-                        }
+                        receivedText = textDecoder.decode(frameBuffer.array(), 0, frameLength, true);
+                    }
+                    frameBuffer.clear();
+                    controler.receivedNewLine(receivedText);
+                    if (statistics != null) {
+                        statistics.frameReceived();
                     }
                 }
-            } catch (SerialPortException ex) {
-                System.err.println(ex);
+            }
+            frameBuffer.append(receivedChars, runStart, length - runStart);
+            if (reportPendingFrame && mode == DISPLAY_TEXT && frameBuffer.length() > 0) {
+                // decoded apart from the text decoder, which keeps the state of the frame
+                controler.receivedPendingFrame(new String(frameBuffer.array(), 0, frameBuffer.length(), charset));
             }
         }
     }
-    
+
     /**
-     * Checks if the char is the second char of the 2-sign terminator
-     * and the previous char was the first char of the terminator.
-     * 
-     * @param character the examined char
+     * Overrided method, counts the framing, parity and overrun errors reported by the port.
      * 
-     * @return true if it is termination char, false if not
+     * @param errors the mask of jssc error flags
      */
-    private boolean isTheSecondTerminationChar(byte character) {
-        return (terminatorToInsert.length() == 2 && lastCharacter == terminatorToInsert.getBytes()[0] && character == terminatorToInsert.getBytes()[1]);
+    @Override
+    public void lineErrorOccured(int errors) {
+        if (statistics != null && (errors & (SerialPort.ERROR_FRAME | SerialPort.ERROR_PARITY | SerialPort.ERROR_OVERRUN)) != 0) {
+            statistics.framingError();
+        }
     }
-    
+
     /**
-     * Checks if the char is the termination char of single sign terminator.
+     * Removes DLE stuffing and link test sequences from the chunk, answering the requests
+     * and reporting the responses to controler. DLE DLE is a single data DLE,
+     * DLE followed by other byte isn't a sequence and both bytes are kept.
+     * DLE at the end of chunk waits for the next byte.
      * 
-     * @param character the examined char
+     * @param receivedChars the received bytes
+     * @param length the number of valid bytes in the array
      * 
-     * @return true if it is termination char, false if not
+     * @return the number of data bytes put to {@link #unstuffedChars}
      */
-    private boolean isTheSingleTerminationChar(byte character) {
-        return (terminatorToInsert.length() == 1 && character == terminatorToInsert.getBytes()[0]);
+    private int unstuffLinkTest(byte[] receivedChars, int length) {
+        if (unstuffedChars.length < length + 1) {
+            unstuffedChars = new byte[Math.max(length + 1, unstuffedChars.length << 1)];
+        }
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = receivedChars[i];
+            if (pendingDle) {
+                pendingDle = false;
+                if (b == ENQ) {
+                    try {
+                        transport.write(LINK_TEST_RESPONSE, 0, LINK_TEST_RESPONSE.length);
+                    } catch (IOException ex) {
+                        System.err.println(ex);
+                    }
+                    continue;
+                } else if (b == ACK) {
+                    controler.receivedPingResponse();
+                    continue;
+                } else if (b != DLE) {
+                    unstuffedChars[count++] = DLE;
+                }
+                unstuffedChars[count++] = b;
+            } else if (b == DLE) {
+                pendingDle = true;
+            } else {
+                unstuffedChars[count++] = b;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Shows the chunk as hex dump rows, terminators are ignored.
+     * The last row of the chunk is shown even if it isn't full,
+     * so slow traffic doesn't wait for the rest of the row.
+     * 
+     * @param receivedChars the received bytes
+     * @param length the number of valid bytes in the array
+     */
+    private void dumpReceivedBytes(byte[] receivedChars, int length) {
+        for (int offset = 0; offset < length; offset += HexFormatter.BYTES_PER_ROW) {
+            int rowLength = Math.min(HexFormatter.BYTES_PER_ROW, length - offset);
+            controler.receivedNewLine(hexFormatter.formatDumpRow(dumpAddress, receivedChars, offset, rowLength));
+            dumpAddress += rowLength;
+        }
     }
 }
@@ -0,0 +1,348 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message decoded by a {@link ProtocolDecoder}, eg. Modbus response or NMEA sentence.
+ * The message is reused for every frame: fields are numbers or slices of the frame bytes,
+ * which may be the receive buffer itself, so filling it allocates nothing.
+ * Text of fields is made only on request, eg. for the table in the view.
+ *
+ * @author Michał Lytek
+ */
+public final class DecodedMessage {
+
+    /** Maximum number of fields, next ones are ignored */
+    public static final int MAX_FIELDS = 128;
+    /** Field kind - number */
+    public static final int FIELD_NUMBER = 0;
+    /** Field kind - ASCII text slice of the frame */
+    public static final int FIELD_TEXT = 1;
+    /** Field kind - binary slice of the frame */
+    public static final int FIELD_BYTES = 2;
+    /** Hexadecimal digits */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** Bytes with the frame */
+    private byte[] data;
+    /* Frame slice in the data */
+    private int offset,
+            length;
+    /** Protocol name */
+    private String protocol;
+    /** Message type, eg. "Odczyt rejestrów - odpowiedź" or "GPGGA" */
+    private String type;
+    /** True if the checksum or CRC is correct */
+    private boolean valid;
+    /** Names of fields, the last one is repeated for next fields, null for unnamed */
+    private String[] fieldNames;
+    /** Time of receiving in ms since the epoch, set when the message is logged */
+    private long time;
+
+    /** Number of fields */
+    private int fieldCount;
+    /** Kinds of fields */
+    private final byte[] kinds = new byte[MAX_FIELDS];
+    /** Values of number fields */
+    private final long[] numbers = new long[MAX_FIELDS];
+    /* Slices of text and bytes fields in the data */
+    private final int[] starts = new int[MAX_FIELDS],
+            lengths = new int[MAX_FIELDS];
+
+    /**
+     * Starts the message of the frame, removing previous fields.
+     *
+     * @param protocol the protocol name
+     * @param type the message type, preferably a constant
+     * @param fieldNames the names of fields, a constant array, null for unnamed fields
+     * @param data the bytes with the frame
+     * @param offset the index of the first byte of the frame
+     * @param length the frame length
+     * @param valid true if the checksum or CRC is correct
+     */
+    public void start(String protocol, String type, String[] fieldNames, byte[] data, int offset, int length, boolean valid) {
+        this.protocol = protocol;
+        this.type = type;
+        this.fieldNames = fieldNames;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.valid = valid;
+        this.fieldCount = 0;
+    }
+
+    /**
+     * Adds the number field.
+     *
+     * @param value the value
+     */
+    public void addNumber(long value) {
+        if (fieldCount < MAX_FIELDS) {
+            kinds[fieldCount] = FIELD_NUMBER;
+            numbers[fieldCount++] = value;
+        }
+    }
+
+    /**
+     * Adds the text field, a slice of the data.
+     *
+     * @param start the index of the first char in the data
+     * @param length the number of chars
+     */
+    public void addText(int start, int length) {
+        addSlice(FIELD_TEXT, start, length);
+    }
+
+    /**
+     * Adds the binary field, a slice of the data.
+     *
+     * @param start the index of the first byte in the data
+     * @param length the number of bytes
+     */
+    public void addBytes(int start, int length) {
+        addSlice(FIELD_BYTES, start, length);
+    }
+
+    private void addSlice(int kind, int start, int length) {
+        if (fieldCount < MAX_FIELDS) {
+            kinds[fieldCount] = (byte) kind;
+            starts[fieldCount] = start;
+            lengths[fieldCount++] = length;
+        }
+    }
+
+    /**
+     * Getter to the protocol name.
+     * @return the name of the decoder protocol
+     */
+    public String getProtocol() {
+        return this.protocol;
+    }
+
+    /**
+     * Getter to the message type.
+     * @return the type, eg. "Zapis rejestru - żądanie" or "GPRMC"
+     */
+    public String getType() {
+        return this.type;
+    }
+
+    /**
+     * Check if the checksum is correct.
+     * @return true if the checksum or CRC is correct
+     */
+    public boolean isValid() {
+        return this.valid;
+    }
+
+    /**
+     * Getter to the time of receiving.
+     * @return the time in ms since the epoch, 0 if the message isn't logged
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * Getter to the frame length.
+     * @return the number of frame bytes
+     */
+    public int getFrameLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter to the number of fields.
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * Getter to the field name.
+     *
+     * @param field the field index
+     *
+     * @return the name, "Pole n" for unnamed fields
+     */
+    public String getFieldName(int field) {
+        if (fieldNames == null || fieldNames.length == 0) {
+            return "Pole " + (field + 1);
+        }
+        return fieldNames[Math.min(field, fieldNames.length - 1)];
+    }
+
+    /**
+     * Getter to the field kind.
+     *
+     * @param field the field index
+     *
+     * @return one of FIELD constants
+     */
+    public int getFieldKind(int field) {
+        return kinds[field];
+    }
+
+    /**
+     * Getter to the field as integer, parsed without allocation from a text field.
+     *
+     * @param field the field index
+     *
+     * @return the number, the integer part of a text number, bytes as big-endian number
+     * or 0 if the text isn't a number
+     */
+    public long getLong(int field) {
+        if (kinds[field] == FIELD_NUMBER) {
+            return numbers[field];
+        }
+        int position = starts[field], end = position + lengths[field];
+        long value = 0;
+        if (kinds[field] == FIELD_BYTES) {
+            for (; position < end; position++) {
+                value = (value << 8) | (data[position] & 0xFF);
+            }
+            return value;
+        }
+        boolean negative = position < end && data[position] == '-';
+        if (negative) {
+            position++;
+        }
+        for (; position < end && data[position] >= '0' && data[position] <= '9'; position++) {
+            value = value * 10 + (data[position] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Getter to the field as decimal number, parsed without allocation from a text field.
+     *
+     * @param field the field index
+     *
+     * @return the number, NaN if the text field is empty or isn't a number
+     */
+    public double getDouble(int field) {
+        if (kinds[field] != FIELD_TEXT) {
+            return getLong(field);
+        }
+        int position = starts[field], end = position + lengths[field];
+        boolean negative = position < end && data[position] == '-';
+        if (negative) {
+            position++;
+        }
+        long mantissa = 0;
+        long divisor = 1;
+        boolean anyDigit = false, fraction = false;
+        for (; position < end; position++) {
+            byte b = data[position];
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (mantissa < Long.MAX_VALUE / 100) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) {
+                        divisor *= 10;
+                    }
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!anyDigit) {
+            return Double.NaN;
+        }
+        double value = (double) mantissa / divisor;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Getter to the field as text, allocated, eg. for the view.
+     *
+     * @param field the field index
+     *
+     * @return the number in decimal, the text or bytes in hex
+     */
+    public String getText(int field) {
+        switch (kinds[field]) {
+            case FIELD_NUMBER:
+                return Long.toString(numbers[field]);
+            case FIELD_TEXT:
+                return new String(data, starts[field], lengths[field], StandardCharsets.ISO_8859_1);
+            default:
+                return toHex(data, starts[field], lengths[field]);
+        }
+    }
+
+    /**
+     * Getter to all fields as text, eg. for the table in the view.
+     * @return the fields like "Adres=1, Funkcja=3"
+     */
+    public String getFieldsText() {
+        StringBuilder text = new StringBuilder();
+        for (int field = 0; field < fieldCount; field++) {
+            if (field > 0) {
+                text.append(", ");
+            }
+            text.append(getFieldName(field)).append('=').append(getText(field));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Getter to the frame bytes in hex.
+     * @return the bytes separated by spaces
+     */
+    public String getFrameHex() {
+        return toHex(data, offset, length);
+    }
+
+    /**
+     * Copies the other message with its frame bytes, eg. to keep it in the log.
+     * The frame buffer of this message is reused if it's large enough.
+     *
+     * @param other the copied message
+     * @param time the time of receiving in ms since the epoch
+     */
+    void copyFrom(DecodedMessage other, long time) {
+        if (data == null || data.length < other.length) {
+            this.data = new byte[Math.max(64, other.length)];
+        }
+        System.arraycopy(other.data, other.offset, data, 0, other.length);
+        this.offset = 0;
+        this.length = other.length;
+        this.protocol = other.protocol;
+        this.type = other.type;
+        this.fieldNames = other.fieldNames;
+        this.valid = other.valid;
+        this.time = time;
+        this.fieldCount = other.fieldCount;
+        for (int field = 0; field < fieldCount; field++) {
+            kinds[field] = other.kinds[field];
+            numbers[field] = other.numbers[field];
+            // slices are moved with the frame, to its new place
+            starts[field] = other.starts[field] - other.offset;
+            lengths[field] = other.lengths[field];
+        }
+    }
+
+    /**
+     * Formats the bytes in hex.
+     *
+     * @param bytes the bytes
+     * @param start the first byte
+     * @param count the number of bytes
+     *
+     * @return the bytes separated by spaces
+     */
+    private static String toHex(byte[] bytes, int start, int count) {
+        StringBuilder text = new StringBuilder(count * 3);
+        for (int i = start; i < start + count; i++) {
+            if (i > start) {
+                text.append(' ');
+            }
+            text.append(HEX_DIGITS[(bytes[i] >> 4) & 0xF]).append(HEX_DIGITS[bytes[i] & 0xF]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.function.Consumer;
+
+/**
+ * Feeds received chunks to the selected {@link ProtocolDecoder} and keeps the last decoded messages.
+ * Frames inside a chunk are decoded straight from the receive buffer; only a frame split between chunks
+ * is copied, with at most one frame of the next chunk, and decoding returns to the receive buffer after it.
+ * Decoding runs on the receiving thread, the view reads the messages log and the counters.
+ *
+ * @author Michał Lytek
+ */
+public class DecoderPipeline implements ProtocolDecoder.Sink {
+
+    /** Number of last messages kept for the view */
+    public static final int LOG_SIZE = 256;
+
+    /** The decoder */
+    private final ProtocolDecoder decoder;
+    /** Message filled by the decoder, reused */
+    private final DecodedMessage message = new DecodedMessage();
+    /** Bytes of the frame split between chunks, with the start of the next chunk */
+    private final byte[] pending;
+    /** Number of bytes in pending */
+    private int pendingLength;
+    /** Time of receiving the current chunk in ms since the epoch */
+    private long chunkTime;
+
+    /** Copies of last messages, in a ring, guarded by this */
+    private final DecodedMessage[] log = new DecodedMessage[LOG_SIZE];
+    /** Number of messages ever logged, guarded by this */
+    private long loggedCount;
+
+    /* Statistics - decoded messages, messages with wrong checksum and skipped bytes */
+    private volatile long messageCount,
+            invalidCount,
+            skippedBytes;
+
+    /**
+     * Creates the pipeline of the decoder.
+     *
+     * @param decoder the decoder, not used by other pipeline
+     */
+    public DecoderPipeline(ProtocolDecoder decoder) {
+        this.decoder = decoder;
+        this.pending = new byte[2 * decoder.getMaxFrameLength()];
+        for (int i = 0; i < log.length; i++) {
+            log[i] = new DecodedMessage();
+        }
+    }
+
+    /**
+     * Loads all decoders from the class path, eg. for the list in the view.
+     * A decoder which can't be created is reported and left out.
+     *
+     * @return new instances of built-in decoders and the ones of other jars
+     */
+    public static List<ProtocolDecoder> loadDecoders() {
+        List<ProtocolDecoder> decoders = new ArrayList<>();
+        try {
+            for (ProtocolDecoder decoder : ServiceLoader.load(ProtocolDecoder.class)) {
+                decoders.add(decoder);
+            }
+        } catch (ServiceConfigurationError ex) {
+            System.err.println(ex);
+        }
+        return decoders;
+    }
+
+    /**
+     * Decodes the received chunk, called on the receiving thread.
+     *
+     * @param data the receive buffer
+     * @param offset the index of the first received byte
+     * @param length the number of received bytes
+     */
+    public void bytesReceived(byte[] data, int offset, int length) {
+        this.chunkTime = System.currentTimeMillis();
+        int end = offset + length;
+        while (pendingLength > 0 && offset < end) {
+            // complete the split frame with the start of this chunk, the frame surely fits
+            int pendingBefore = pendingLength;
+            int appended = Math.min(end - offset, pending.length - pendingLength);
+            System.arraycopy(data, offset, pending, pendingLength, appended);
+            pendingLength += appended;
+            int consumed = decodeFrom(pending, 0, pendingLength, pendingBefore);
+            if (consumed >= pendingBefore) {
+                // the rest is decoded from the chunk itself
+                offset += consumed - pendingBefore;
+                this.pendingLength = 0;
+            } else {
+                System.arraycopy(pending, consumed, pending, 0, pendingLength - consumed);
+                pendingLength -= consumed;
+                offset += appended;
+                if (pendingLength == pending.length) {
+                    // the decoder doesn't keep its maximum frame length
+                    bytesSkipped(pendingLength);
+                    this.pendingLength = 0;
+                }
+            }
+        }
+        if (offset < end) {
+            int consumed = decodeFrom(data, offset, end - offset, end - offset);
+            int rest = end - offset - consumed;
+            System.arraycopy(data, offset + consumed, pending, 0, rest);
+            this.pendingLength = rest;
+        }
+    }
+
+    /**
+     * Decodes frames starting before the limit.
+     *
+     * @param data the bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param limit the number of bytes after which no frame is started
+     *
+     * @return the number of consumed bytes
+     */
+    private int decodeFrom(byte[] data, int offset, int length, int limit) {
+        int consumed = 0;
+        while (consumed < limit) {
+            int frameLength = decoder.decode(data, offset + consumed, length - consumed, message, this);
+            if (frameLength == 0) {
+                break;
+            }
+            consumed += frameLength;
+        }
+        return consumed;
+    }
+
+    /**
+     * Counts the message and copies it to the log.
+     *
+     * @param message the decoded message
+     */
+    @Override
+    public void messageDecoded(DecodedMessage message) {
+        this.messageCount = messageCount + 1;
+        if (!message.isValid()) {
+            this.invalidCount = invalidCount + 1;
+        }
+        synchronized (this) {
+            log[(int) (loggedCount % LOG_SIZE)].copyFrom(message, chunkTime);
+            loggedCount++;
+        }
+    }
+
+    /**
+     * Counts the skipped bytes.
+     *
+     * @param count the number of bytes
+     */
+    @Override
+    public void bytesSkipped(int count) {
+        this.skippedBytes = skippedBytes + count;
+    }
+
+    /**
+     * Passes the messages logged after the given number, at most {@link #LOG_SIZE} last ones.
+     * The action runs under the log lock, so it should only copy what it needs.
+     *
+     * @param from the number of messages seen before, 0 for all
+     * @param action the receiver of messages, oldest first
+     *
+     * @return the number of messages logged so far, to pass as from next time
+     */
+    public synchronized long forEachSince(long from, Consumer<DecodedMessage> action) {
+        for (long sequence = Math.max(from, loggedCount - LOG_SIZE); sequence < loggedCount; sequence++) {
+            action.accept(log[(int) (sequence % LOG_SIZE)]);
+        }
+        return this.loggedCount;
+    }
+
+    /**
+     * Getter to the decoder.
+     * @return the decoder of the pipeline
+     */
+    public ProtocolDecoder getDecoder() {
+        return this.decoder;
+    }
+
+    /**
+     * Getter to the number of decoded messages.
+     * @return the number of messages, the invalid ones too
+     */
+    public long getMessageCount() {
+        return this.messageCount;
+    }
+
+    /**
+     * Getter to the number of messages with wrong checksum.
+     * @return the number of invalid messages
+     */
+    public long getInvalidCount() {
+        return this.invalidCount;
+    }
+
+    /**
+     * Getter to the number of skipped bytes.
+     * @return the number of bytes outside of frames
+     */
+    public long getSkippedBytes() {
+        return this.skippedBytes;
+    }
+}
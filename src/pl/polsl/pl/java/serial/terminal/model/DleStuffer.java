@@ -0,0 +1,46 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+
+/**
+ * Writer of sent data in the link test mode - every DLE byte is doubled,
+ * so the receiver takes it as data, not as the start of DLE ENQ or DLE ACK sequence.
+ * The stuffed bytes are collected in a reusable array, so one instance
+ * must be used by one thread only.
+ *
+ * @author Michał Lytek
+ */
+public class DleStuffer {
+
+    /** Byte starting link test sequences */
+    public static final byte DLE = 0x10;
+
+    /** Stuffed bytes of the last write, grown for bigger writes */
+    private byte[] stuffed = new byte[0];
+
+    /**
+     * Writes the bytes with every DLE doubled in a single transport write.
+     *
+     * @param target the transport to write to
+     * @param data the bytes to write
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     *
+     * @throws IOException if the port write failed
+     */
+    public void write(SerialTransport target, byte[] data, int offset, int length) throws IOException {
+        if (stuffed.length < 2 * length) {
+            stuffed = Arrays.copyOf(stuffed, 2 * length);
+        }
+        int stuffedLength = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] == DLE) {
+                stuffed[stuffedLength++] = DLE;
+            }
+            stuffed[stuffedLength++] = data[i];
+        }
+        target.write(stuffed, 0, stuffedLength);
+    }
+}
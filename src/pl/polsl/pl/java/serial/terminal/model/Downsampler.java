@@ -0,0 +1,158 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.Arrays;
+
+/**
+ * Reduction of plotted samples to what fits in the plot width.
+ * Both methods read samples straight from ring buffers of {@link TelemetryStore},
+ * addressed by sequence numbers masked with the ring size, and write into arrays of the caller,
+ * so repainting allocates nothing, whatever the number of samples.
+ * Min/max keeps the extremes of every pixel column, so no spike disappears;
+ * LTTB (largest triangle three buckets) picks the samples which keep the shape of a line.
+ *
+ * @author Michał Lytek
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Finds the first sample not earlier than the time.
+     *
+     * @param times the ring of sample times, rising
+     * @param mask the ring size minus one
+     * @param from the sequence number of the oldest sample
+     * @param to the sequence number after the newest sample
+     * @param time the searched time
+     *
+     * @return the sequence number of the sample, to if all are earlier
+     */
+    public static long findTime(long[] times, int mask, long from, long to, long time) {
+        long low = from, high = to;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (times[(int) middle & mask] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes the minimum and maximum of samples in every column of the time range.
+     * Columns without samples get NaN.
+     *
+     * @param times the ring of sample times, rising
+     * @param values the ring of sample values
+     * @param mask the ring size minus one
+     * @param from the sequence number of the first sample in the range
+     * @param to the sequence number after the last sample in the range
+     * @param startTime the time of the left edge of the first column
+     * @param endTime the time of the right edge of the last column
+     * @param columns the number of columns
+     * @param mins the minimums, at least columns long
+     * @param maxs the maximums, at least columns long
+     */
+    public static void minMax(long[] times, double[] values, int mask, long from, long to,
+            long startTime, long endTime, int columns, double[] mins, double[] maxs) {
+        Arrays.fill(mins, 0, columns, Double.NaN);
+        Arrays.fill(maxs, 0, columns, Double.NaN);
+        long span = Math.max(1, endTime - startTime);
+        for (long sequence = from; sequence < to; sequence++) {
+            int index = (int) sequence & mask;
+            long offset = times[index] - startTime;
+            if (offset < 0 || offset >= span) {
+                continue;
+            }
+            int column = (int) (offset * columns / span);
+            double value = values[index];
+            if (!(mins[column] <= value)) {
+                mins[column] = value;
+            }
+            if (!(maxs[column] >= value)) {
+                maxs[column] = value;
+            }
+        }
+    }
+
+    /**
+     * Selects the samples which keep the shape of the line, by largest triangle three buckets.
+     * The first and the last sample are always selected.
+     *
+     * @param times the ring of sample times, rising
+     * @param values the ring of sample values
+     * @param mask the ring size minus one
+     * @param from the sequence number of the first sample
+     * @param to the sequence number after the last sample
+     * @param points the maximum number of selected samples, at least 3
+     * @param selectedTimes the times of selected samples, at least points long
+     * @param selectedValues the values of selected samples, at least points long
+     *
+     * @return the number of selected samples
+     */
+    public static int lttb(long[] times, double[] values, int mask, long from, long to,
+            int points, long[] selectedTimes, double[] selectedValues) {
+        long count = to - from;
+        if (count <= points) {
+            for (int i = 0; i < count; i++) {
+                int index = (int) (from + i) & mask;
+                selectedTimes[i] = times[index];
+                selectedValues[i] = values[index];
+            }
+            return (int) count;
+        }
+        // times relative to the first sample, so the areas don't lose precision
+        long origin = times[(int) from & mask];
+        double bucketSize = (double) (count - 2) / (points - 2);
+        int selected = 0;
+        long previous = from;
+        selectedTimes[selected] = origin;
+        selectedValues[selected++] = values[(int) from & mask];
+        for (int bucket = 0; bucket < points - 2; bucket++) {
+            long bucketStart = from + 1 + (long) (bucket * bucketSize);
+            long bucketEnd = from + 1 + (long) ((bucket + 1) * bucketSize);
+            // the average of the next bucket is the third vertex of the triangles
+            long nextStart = bucketEnd;
+            long nextEnd = Math.min(to, from + 1 + (long) ((bucket + 2) * bucketSize));
+            if (bucket == points - 3) {
+                nextStart = to - 1;
+                nextEnd = to;
+            }
+            double averageTime = 0, averageValue = 0;
+            for (long sequence = nextStart; sequence < nextEnd; sequence++) {
+                int index = (int) sequence & mask;
+                averageTime += times[index] - origin;
+                averageValue += values[index];
+            }
+            long nextCount = Math.max(1, nextEnd - nextStart);
+            averageTime /= nextCount;
+            averageValue /= nextCount;
+
+            int previousIndex = (int) previous & mask;
+            double previousTime = times[previousIndex] - origin;
+            double previousValue = values[previousIndex];
+            double maxArea = -1;
+            long chosen = bucketStart;
+            for (long sequence = bucketStart; sequence < bucketEnd; sequence++) {
+                int index = (int) sequence & mask;
+                double area = Math.abs((previousTime - averageTime) * (values[index] - previousValue)
+                        - (previousTime - (times[index] - origin)) * (averageValue - previousValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = sequence;
+                }
+            }
+            int chosenIndex = (int) chosen & mask;
+            selectedTimes[selected] = times[chosenIndex];
+            selectedValues[selected++] = values[chosenIndex];
+            previous = chosen;
+        }
+        int lastIndex = (int) (to - 1) & mask;
+        selectedTimes[selected] = times[lastIndex];
+        selectedValues[selected++] = values[lastIndex];
+        return selected;
+    }
+}
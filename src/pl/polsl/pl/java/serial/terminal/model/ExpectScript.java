@@ -0,0 +1,274 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Automation script compiled into a state machine, eg. to drive a bootloader.
+ * One command in a line, empty lines and lines starting with # are skipped:
+ * <pre>
+ * timeout 5000            timeout of the next expects in ms, 0 - wait forever
+ * timeout 5000 retry      the next expects jump to label retry on timeout instead of failing
+ * expect login:           wait for the text in received data
+ * expect /U-Boot \d+/     wait for the regular expression
+ * expect # =&gt; shell || Password: =&gt; pass
+ *                         wait for any alternative and jump to its label, without label go on
+ * send root               send the line with terminator
+ * sleep 100               wait in ms
+ * label shell             jump target
+ * goto shell              jump
+ * fail message            stop with error
+ * end                     stop with success
+ * </pre>
+ * All alternatives of an expect are compiled into one {@link TriggerEngine},
+ * so waiting costs a single pass over received text however many alternatives there are,
+ * until the text matches any of them.
+ *
+ * @author Michał Lytek
+ */
+public class ExpectScript {
+
+    /** Step waiting for received text */
+    static final int EXPECT = 0;
+    /** Step sending a line */
+    static final int SEND = 1;
+    /** Step waiting for time */
+    static final int SLEEP = 2;
+    /** Step jumping to a label */
+    static final int GOTO = 3;
+    /** Step ending the script with error */
+    static final int FAIL = 4;
+    /** Step ending the script with success */
+    static final int END = 5;
+
+    /** Timeout of expects if the script doesn't set it, in ms */
+    private static final int DEFAULT_TIMEOUT = 10000;
+    /** Separator of expect alternatives */
+    private static final String ALTERNATIVES_SEPARATOR = " || ";
+    /** Separator of alternative and its label */
+    private static final String LABEL_SEPARATOR = " => ";
+
+    /**
+     * Single compiled step of the script.
+     */
+    static final class Step {
+        /** Kind of step - one of step constants */
+        final int kind;
+        /** Number of script line, from 1 */
+        final int lineNumber;
+        /** Script line, shown in progress and report */
+        final String command;
+        /** Sent text or fail message */
+        final String text;
+        /** Timeout of expect or sleep time in ms */
+        final int time;
+        /** Matcher of expect alternatives */
+        TriggerEngine engine;
+        /** Next step of every expect alternative, goto target in the first element */
+        int[] targets;
+        /** Next step on expect timeout, -1 to fail */
+        int timeoutTarget = -1;
+
+        Step(int kind, int lineNumber, String command, String text, int time) {
+            this.kind = kind;
+            this.lineNumber = lineNumber;
+            this.command = command;
+            this.text = text;
+            this.time = time;
+        }
+    }
+
+    /** Compiled steps, the script starts with the first one */
+    private final Step[] steps;
+
+    /**
+     * Compiles the script.
+     *
+     * @param source the script text
+     *
+     * @throws IllegalArgumentException if a command, label or regular expression is invalid,
+     * the message gives the line number
+     */
+    public ExpectScript(String source) {
+        List<Step> stepList = new ArrayList<>();
+        Map<String, Integer> labels = new HashMap<>();
+        // labels of every step, resolved when all labels are known
+        List<String[]> stepLabels = new ArrayList<>();
+        List<String> timeoutLabels = new ArrayList<>();
+
+        int timeout = DEFAULT_TIMEOUT;
+        String timeoutLabel = null;
+        String[] lines = source.split("\r\n|\r|\n");
+        for (int i = 0; i < lines.length; i++) {
+            int lineNumber = i + 1;
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String command = space < 0 ? line : line.substring(0, space);
+            String argument = space < 0 ? "" : line.substring(space + 1).trim();
+            switch (command) {
+                case "timeout": {
+                    String[] parts = argument.split("\\s+");
+                    timeout = parseTime(parts[0], lineNumber);
+                    timeoutLabel = parts.length > 1 ? parts[1] : null;
+                    break;
+                }
+                case "label":
+                    requireArgument(argument, lineNumber);
+                    if (labels.put(argument, stepList.size()) != null) {
+                        throw new IllegalArgumentException("Powtórzona etykieta " + argument + " w linii " + lineNumber);
+                    }
+                    break;
+                case "expect": {
+                    requireArgument(argument, lineNumber);
+                    String[] alternatives = argument.split(Pattern.quote(ALTERNATIVES_SEPARATOR));
+                    List<Trigger> triggers = new ArrayList<>();
+                    String[] targets = new String[alternatives.length];
+                    for (int a = 0; a < alternatives.length; a++) {
+                        String pattern = alternatives[a].trim();
+                        int labelStart = pattern.lastIndexOf(LABEL_SEPARATOR);
+                        if (labelStart >= 0) {
+                            targets[a] = pattern.substring(labelStart + LABEL_SEPARATOR.length()).trim();
+                            pattern = pattern.substring(0, labelStart).trim();
+                        }
+                        boolean regex = pattern.length() >= 2 && pattern.startsWith("/") && pattern.endsWith("/");
+                        if (regex) {
+                            pattern = pattern.substring(1, pattern.length() - 1);
+                        }
+                        requireArgument(pattern, lineNumber);
+                        triggers.add(new Trigger(pattern, regex, 0, Trigger.ACTION_NONE));
+                    }
+                    Step step = new Step(EXPECT, lineNumber, line, null, timeout);
+                    try {
+                        step.engine = new TriggerEngine(triggers);
+                    } catch (IllegalArgumentException ex) {
+                        throw new IllegalArgumentException("Niepoprawne wyrażenie regularne w linii " + lineNumber + ": " + ex.getMessage());
+                    }
+                    stepList.add(step);
+                    stepLabels.add(targets);
+                    timeoutLabels.add(timeoutLabel);
+                    break;
+                }
+                case "send":
+                    addStep(stepList, stepLabels, timeoutLabels, new Step(SEND, lineNumber, line, argument, 0), null);
+                    break;
+                case "sleep":
+                    addStep(stepList, stepLabels, timeoutLabels, new Step(SLEEP, lineNumber, line, null, parseTime(argument, lineNumber)), null);
+                    break;
+                case "goto":
+                    requireArgument(argument, lineNumber);
+                    addStep(stepList, stepLabels, timeoutLabels, new Step(GOTO, lineNumber, line, null, 0), argument);
+                    break;
+                case "fail":
+                    addStep(stepList, stepLabels, timeoutLabels, new Step(FAIL, lineNumber, line, argument, 0), null);
+                    break;
+                case "end":
+                    addStep(stepList, stepLabels, timeoutLabels, new Step(END, lineNumber, line, null, 0), null);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Nieznane polecenie " + command + " w linii " + lineNumber);
+            }
+        }
+
+        // jumps resolved to step indexes, the step after the last one ends the script
+        this.steps = stepList.toArray(new Step[stepList.size()]);
+        for (int s = 0; s < steps.length; s++) {
+            String[] targets = stepLabels.get(s);
+            steps[s].targets = new int[targets.length];
+            for (int t = 0; t < targets.length; t++) {
+                steps[s].targets[t] = targets[t] == null ? s + 1 : resolve(labels, targets[t], steps[s].lineNumber);
+            }
+            if (timeoutLabels.get(s) != null) {
+                steps[s].timeoutTarget = resolve(labels, timeoutLabels.get(s), steps[s].lineNumber);
+            }
+        }
+    }
+
+    /**
+     * Getter to the number of steps.
+     * @return the number of compiled steps, labels and timeouts excluded
+     */
+    public int getStepCount() {
+        return steps.length;
+    }
+
+    /**
+     * Getter to the compiled step.
+     *
+     * @param index the step index
+     *
+     * @return the step, null for the index after the last step
+     */
+    Step getStep(int index) {
+        return index < steps.length ? steps[index] : null;
+    }
+
+    /**
+     * Adds the step which isn't an expect.
+     *
+     * @param stepList the compiled steps
+     * @param stepLabels the labels of every step
+     * @param timeoutLabels the timeout labels of every step
+     * @param step the new step
+     * @param target the goto label, null for other steps
+     */
+    private static void addStep(List<Step> stepList, List<String[]> stepLabels, List<String> timeoutLabels, Step step, String target) {
+        stepList.add(step);
+        stepLabels.add(new String[] {target});
+        timeoutLabels.add(null);
+    }
+
+    /**
+     * Finds the step of the label.
+     *
+     * @param labels the steps of all labels
+     * @param label the label name
+     * @param lineNumber the line using the label, for the error message
+     *
+     * @return the step index
+     */
+    private static int resolve(Map<String, Integer> labels, String label, int lineNumber) {
+        Integer step = labels.get(label);
+        if (step == null) {
+            throw new IllegalArgumentException("Nieznana etykieta " + label + " w linii " + lineNumber);
+        }
+        return step;
+    }
+
+    /**
+     * Parses the time in ms.
+     *
+     * @param value the time text
+     * @param lineNumber the line number, for the error message
+     *
+     * @return the time, not negative
+     */
+    private static int parseTime(String value, int lineNumber) {
+        try {
+            int time = Integer.parseInt(value);
+            if (time >= 0) {
+                return time;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Niepoprawny czas " + value + " w linii " + lineNumber);
+    }
+
+    /**
+     * Checks if the command has its argument.
+     *
+     * @param argument the argument text
+     * @param lineNumber the line number, for the error message
+     */
+    private static void requireArgument(String argument, int lineNumber) {
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException("Brak argumentu polecenia w linii " + lineNumber);
+        }
+    }
+}
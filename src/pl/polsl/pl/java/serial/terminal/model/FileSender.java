@@ -0,0 +1,215 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+
+/**
+ * Streams a file to the serial port through fixed-size buffer,
+ * so the file is never loaded whole into memory.
+ * Every step writes a piece of the buffer and schedules the next one
+ * on the scheduler thread, keeping the configured inter-byte and inter-line delays
+ * and the throughput target - slow devices without flow control aren't overrun.
+ * The throughput never exceeds the line rate of a serial port, so every write takes about
+ * 1/{@value #RATE_STEPS_PER_SECOND} s and doesn't hold the scheduler shared with other tasks;
+ * transports without line rate get whole buffers with no pause.
+ *
+ * @author Michał Lytek
+ */
+public class FileSender implements FileTransfer, Runnable {
+
+    /** Size of the buffer for file content */
+    private static final int BUFFER_SIZE = 4096;
+    /** Number of writes per second when only throughput is limited */
+    private static final int RATE_STEPS_PER_SECOND = 100;
+    /** Minimum time between progress reports in nanoseconds */
+    private static final long PROGRESS_INTERVAL = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /** Instance of connection to the device */
+    private final SerialTransport transport;
+    /** Instance of controler which is informed about progress */
+    private final Controler controler;
+    /** Thread running the sending steps */
+    private final ScheduledExecutorService scheduler;
+
+    /** Sent file */
+    private final File file;
+    /** Channel reading the file */
+    private FileChannel channel;
+    /** Buffer with the part of file being sent */
+    private final ByteBuffer buffer;
+    /** Writer doubling every DLE in the link test mode, null when bytes are sent as they are */
+    private final DleStuffer dleStuffer;
+
+    /* Pacing settings, zero means no limit */
+    private final long byteDelay,
+            lineDelay;
+    private final int bytesPerSecond;
+
+    /** File size in bytes */
+    private long totalBytes;
+    /** Number of bytes written to the port */
+    private long sentBytes;
+    /** Time of the first write */
+    private long startTime;
+    /** Time of the last progress report */
+    private long reportTime;
+    /** Set when the user asked to stop */
+    private volatile boolean cancelled;
+
+    /**
+     * Creates the sender, the file isn't opened yet.
+     *
+     * @param transport the opened transport
+     * @param controler the controler to inform about progress
+     * @param scheduler the thread running the sending steps
+     * @param file the file to send
+     * @param byteDelay the delay after every byte in ms, 0 for none
+     * @param lineDelay the delay after every LF byte in ms, 0 for none
+     * @param bytesPerSecond the throughput target in bytes per second, 0 for the line rate or no limit without it
+     * @param lineBytesPerSecond the number of bytes the port sends in a second, 0 if the port has no line rate
+     * @param stuffDle true to send every DLE byte twice, so the link test receiver takes it as data
+     */
+    public FileSender(SerialTransport transport, Controler controler, ScheduledExecutorService scheduler,
+            File file, int byteDelay, int lineDelay, int bytesPerSecond, int lineBytesPerSecond, boolean stuffDle) {
+        this.transport = transport;
+        this.controler = controler;
+        this.scheduler = scheduler;
+        this.file = file;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.dleStuffer = stuffDle ? new DleStuffer() : null;
+        this.byteDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, byteDelay));
+        this.lineDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lineDelay));
+        if (bytesPerSecond <= 0 || (lineBytesPerSecond > 0 && lineBytesPerSecond < bytesPerSecond)) {
+            this.bytesPerSecond = Math.max(0, lineBytesPerSecond);
+        } else {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    /**
+     * Opens the file and schedules the first sending step.
+     *
+     * @throws IOException if the file can't be opened
+     */
+    @Override
+    public void start() throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+        this.totalBytes = channel.size();
+        this.sentBytes = 0;
+        buffer.clear().flip();
+        this.startTime = System.nanoTime();
+        this.reportTime = startTime;
+        scheduler.execute(this);
+    }
+
+    /**
+     * Asks the sender to stop before the next step.
+     */
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Plain sending doesn't need received bytes.
+     * @return always null
+     */
+    @Override
+    public SerialTransport.Receiver getReceiver() {
+        return null;
+    }
+
+    /**
+     * Single sending step, run on scheduler thread.
+     * Writes the next piece of file and schedules itself after the needed delay.
+     */
+    @Override
+    public void run() {
+        if (cancelled) {
+            finish(false);
+            return;
+        }
+        try {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int count = channel.read(buffer);
+                buffer.flip();
+                if (count < 0) {
+                    finish(true);
+                    return;
+                }
+            }
+
+            // choose the piece which may be written without a pause
+            int position = buffer.position();
+            int count = buffer.remaining();
+            if (byteDelay > 0) {
+                count = 1;
+            }
+            if (bytesPerSecond > 0) {
+                count = Math.min(count, Math.max(1, bytesPerSecond / RATE_STEPS_PER_SECOND));
+            }
+            if (lineDelay > 0) {
+                byte[] bytes = buffer.array();
+                for (int i = position; i < position + count; i++) {
+                    if (bytes[i] == '\n') {
+                        count = i - position + 1;
+                        break;
+                    }
+                }
+            }
+
+            if (dleStuffer != null) {
+                dleStuffer.write(transport, buffer.array(), position, count);
+            } else {
+                transport.write(buffer.array(), position, count);
+            }
+            buffer.position(position + count);
+            sentBytes += count;
+
+            // the pause needed after this piece
+            long delay = byteDelay;
+            if (lineDelay > 0 && buffer.get(position + count - 1) == '\n') {
+                delay = Math.max(delay, lineDelay);
+            }
+            long now = System.nanoTime();
+            if (bytesPerSecond > 0) {
+                long dueTime = startTime + sentBytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+                delay = Math.max(delay, dueTime - now);
+            }
+
+            if (now - reportTime >= PROGRESS_INTERVAL) {
+                reportTime = now;
+                controler.fileSendProgress(sentBytes, totalBytes, now - startTime);
+            }
+            scheduler.schedule(this, delay, TimeUnit.NANOSECONDS);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            finish(false);
+        }
+    }
+
+    /**
+     * Closes the file and informs the controler about the end of sending.
+     *
+     * @param complete true if the whole file was sent
+     */
+    private void finish(boolean complete) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+        controler.fileSendProgress(sentBytes, totalBytes, System.nanoTime() - startTime);
+        controler.fileSendFinished(complete);
+    }
+}
@@ -0,0 +1,30 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+/**
+ * File transfer running in background, plain or using a transfer protocol.
+ * The controler is informed about progress and the end of transfer.
+ *
+ * @author Michał Lytek
+ */
+public interface FileTransfer {
+
+    /**
+     * Opens the file and starts the transfer in background.
+     *
+     * @throws IOException if the file can't be opened
+     */
+    void start() throws IOException;
+
+    /**
+     * Asks the transfer to stop as soon as possible.
+     */
+    void cancel();
+
+    /**
+     * Getter to the receiver which takes over received bytes during transfer.
+     * @return the protocol receiver, null if received data should be shown as usual
+     */
+    SerialTransport.Receiver getReceiver();
+}
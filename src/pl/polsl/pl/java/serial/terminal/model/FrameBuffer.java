@@ -0,0 +1,89 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive byte buffer used to assemble received frames in place.
+ * The backing array is reused between frames, so after warming up
+ * the only allocation per frame is the decoded string itself.
+ *
+ * @author Michał Lytek
+ */
+public class FrameBuffer {
+
+    /** Initial capacity of the backing array */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Backing array with the frame bytes */
+    private byte[] buffer;
+    /** Number of valid bytes in the backing array */
+    private int length;
+
+    /**
+     * Creates an empty buffer with the default initial capacity.
+     */
+    public FrameBuffer() {
+        this.buffer = new byte[INITIAL_CAPACITY];
+        this.length = 0;
+    }
+
+    /**
+     * Appends a single byte to the end of the frame.
+     *
+     * @param value the byte to append
+     */
+    public void append(byte value) {
+        ensureCapacity(length + 1);
+        buffer[length++] = value;
+    }
+
+    /**
+     * Appends a range of bytes to the end of the frame.
+     *
+     * @param source the array to copy bytes from
+     * @param offset the index of the first byte to copy
+     * @param count the number of bytes to copy
+     */
+    public void append(byte[] source, int offset, int count) {
+        if (count <= 0) {
+            return;
+        }
+        ensureCapacity(length + count);
+        System.arraycopy(source, offset, buffer, length, count);
+        length += count;
+    }
+
+    /**
+     * Forgets the frame content, but keeps the backing array for reuse.
+     */
+    public void clear() {
+        this.length = 0;
+    }
+
+    /**
+     * Getter to the number of buffered bytes.
+     * @return the frame length
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Getter to the backing array - valid only up to {@link #length()}.
+     * @return the backing array
+     */
+    public byte[] array() {
+        return this.buffer;
+    }
+
+    /**
+     * Grows the backing array (at least twice) when it's too small.
+     *
+     * @param minCapacity the required capacity
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(minCapacity, buffer.length << 1));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timer running many short tasks, eg. periodic commands of all ports, on one thread.
+ * Tasks are kept in a wheel of buckets, one bucket per tick, so scheduling and expiring
+ * cost the same however many tasks there are, unlike a heap of a scheduled executor.
+ * A task runs in the first tick after its deadline, so the precision is one tick.
+ * Tasks must be short, the next tick waits for them.
+ * The thread starts with the first task and is a daemon;
+ * while there's no task it waits without ticking until one is scheduled.
+ *
+ * @author Michał Lytek
+ */
+public class HashedWheelTimer {
+
+    /**
+     * Scheduled task, which can be cancelled.
+     */
+    public static final class Timeout {
+        /** The task */
+        private final Runnable task;
+        /** Time to run the task, System.nanoTime based */
+        private final long deadline;
+        /** Number of whole wheel turns left before the deadline */
+        private long remainingRounds;
+        /** Next task in the same bucket */
+        private Timeout next;
+        /** Set when the task shouldn't run */
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stops the task from running, it's removed from the wheel on its tick.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        /**
+         * Getter to the deadline.
+         * @return the time to run the task, System.nanoTime based
+         */
+        public long getDeadline() {
+            return this.deadline;
+        }
+    }
+
+    /** Name of the timer thread */
+    private final String name;
+    /** Duration of one tick in ns */
+    private final long tickDuration;
+    /** Buckets of tasks, the count is a power of two */
+    private final Timeout[] wheel;
+    /** Mask of tick number giving the bucket index */
+    private final int mask;
+    /** Tasks scheduled from other threads, moved to the wheel on every tick */
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+
+    /** Timer thread, null until the first task */
+    private Thread worker;
+    /** Time of the tick 0 */
+    private volatile long startTime;
+    /** Number of the tick being processed */
+    private long tick;
+    /** Number of tasks in the wheel buckets, used by timer thread only */
+    private int wheelCount;
+    /** True while the timer thread waits for a task, so scheduling must wake it up */
+    private volatile boolean idle;
+
+    /**
+     * Creates the timer, the thread isn't started yet.
+     *
+     * @param name the name of timer thread
+     * @param tickDuration the precision of the timer
+     * @param unit the unit of tick duration
+     * @param wheelSize the number of buckets, rounded up to a power of two;
+     * deadlines within one wheel turn are found without counting rounds
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.name = name;
+        this.tickDuration = Math.max(1, unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules the task to run at the time.
+     *
+     * @param task the short task to run on timer thread
+     * @param deadline the time to run the task, System.nanoTime based; past deadlines run in the next tick
+     *
+     * @return the handle to cancel the task
+     */
+    public Timeout schedule(Runnable task, long deadline) {
+        startWorker();
+        Timeout timeout = new Timeout(task, deadline);
+        newTimeouts.add(timeout);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    /**
+     * Starts the timer thread if it isn't running yet.
+     */
+    private synchronized void startWorker() {
+        if (worker == null) {
+            this.startTime = System.nanoTime();
+            this.worker = new Thread(this::run, name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Timer thread loop - waits for every tick and runs the expired tasks of its bucket.
+     */
+    private void run() {
+        while (true) {
+            if (wheelCount == 0 && newTimeouts.isEmpty()) {
+                waitForTimeouts();
+            }
+            long tickEnd = startTime + (tick + 1) * tickDuration;
+            long now;
+            while ((now = System.nanoTime()) < tickEnd) {
+                LockSupport.parkNanos(tickEnd - now);
+            }
+            transferNewTimeouts();
+            expireBucket(now);
+            tick++;
+        }
+    }
+
+    /**
+     * Parks the timer thread until a task is scheduled. The wheel is empty,
+     * so the ticks passed while waiting are skipped.
+     */
+    private void waitForTimeouts() {
+        this.idle = true;
+        while (newTimeouts.isEmpty()) {
+            LockSupport.park(this);
+        }
+        this.idle = false;
+        this.tick = Math.max(tick, (System.nanoTime() - startTime) / tickDuration);
+    }
+
+    /**
+     * Moves the tasks scheduled since the last tick to their buckets.
+     */
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // the tick which ends after the deadline, not earlier than the current one
+            long deadlineTick = Math.max(tick, (timeout.deadline - startTime + tickDuration - 1) / tickDuration - 1);
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            int index = (int) (deadlineTick & mask);
+            timeout.next = wheel[index];
+            wheel[index] = timeout;
+            wheelCount++;
+        }
+    }
+
+    /**
+     * Runs the expired tasks of current tick bucket and drops the cancelled ones.
+     *
+     * @param now the current time
+     */
+    private void expireBucket(long now) {
+        int index = (int) (tick & mask);
+        Timeout previous = null;
+        Timeout timeout = wheel[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean remove = timeout.cancelled;
+            if (!remove && timeout.remainingRounds <= 0) {
+                remove = true;
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException ex) {
+                    System.err.println(ex);
+                }
+            } else if (!remove) {
+                timeout.remainingRounds--;
+            }
+            if (remove) {
+                if (previous == null) {
+                    wheel[index] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+                wheelCount--;
+            } else {
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+}
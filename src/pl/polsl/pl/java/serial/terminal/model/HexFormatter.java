@@ -0,0 +1,104 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Formatter of received bytes as hex text or hex dump rows with ASCII column.
+ * Every byte costs two lookups in precomputed tables and the characters
+ * are written to a reusable array, so only one string per line is created.
+ *
+ * @author Michał Lytek
+ */
+public class HexFormatter {
+
+    /** Number of bytes in single dump row */
+    public static final int BYTES_PER_ROW = 16;
+
+    /** Two hex digits of every byte value */
+    private static final char[] HEX_PAIRS = new char[256 * 2];
+    /** ASCII column sign of every byte value, '.' for not printable */
+    private static final char[] PRINTABLE = new char[256];
+
+    static {
+        char[] digits = "0123456789ABCDEF".toCharArray();
+        for (int value = 0; value < 256; value++) {
+            HEX_PAIRS[value * 2] = digits[value >>> 4];
+            HEX_PAIRS[value * 2 + 1] = digits[value & 0x0F];
+            PRINTABLE[value] = value >= 0x20 && value < 0x7F ? (char) value : '.';
+        }
+    }
+
+    /** Characters of the line being formatted, grown for long frames */
+    private char[] line = new char[128];
+
+    /**
+     * Formats the bytes as hex values separated with spaces, eg. "01 A0 FF".
+     * A space is added after the last value too, so chunks may be appended to each other.
+     *
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     *
+     * @return the hex text
+     */
+    public String formatHex(byte[] data, int offset, int length) {
+        ensureCapacity(length * 3);
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int pair = (data[i] & 0xFF) << 1;
+            line[position++] = HEX_PAIRS[pair];
+            line[position++] = HEX_PAIRS[pair + 1];
+            line[position++] = ' ';
+        }
+        return new String(line, 0, position);
+    }
+
+    /**
+     * Formats up to {@link #BYTES_PER_ROW} bytes as dump row with stream address,
+     * hex values and ASCII column, eg. "00000010  41 42 0D 0A ...  |AB..|".
+     * Shorter rows are padded, so the ASCII column stays aligned.
+     *
+     * @param address the stream offset of the first byte
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes, at most {@link #BYTES_PER_ROW}
+     *
+     * @return the dump row
+     */
+    public String formatDumpRow(long address, byte[] data, int offset, int length) {
+        ensureCapacity(8 + 2 + BYTES_PER_ROW * 3 + 1 + 1 + BYTES_PER_ROW + 1);
+        int position = 0;
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            line[position++] = HEX_PAIRS[(int) ((address >>> shift) & 0x0F) * 2 + 1];
+        }
+        line[position++] = ' ';
+        line[position++] = ' ';
+        for (int i = 0; i < BYTES_PER_ROW; i++) {
+            if (i < length) {
+                int pair = (data[offset + i] & 0xFF) << 1;
+                line[position++] = HEX_PAIRS[pair];
+                line[position++] = HEX_PAIRS[pair + 1];
+            } else {
+                line[position++] = ' ';
+                line[position++] = ' ';
+            }
+            line[position++] = ' ';
+        }
+        line[position++] = ' ';
+        line[position++] = '|';
+        for (int i = offset; i < offset + length; i++) {
+            line[position++] = PRINTABLE[data[i] & 0xFF];
+        }
+        line[position++] = '|';
+        return new String(line, 0, position);
+    }
+
+    /**
+     * Grows the line array if needed.
+     *
+     * @param capacity the needed number of characters
+     */
+    private void ensureCapacity(int capacity) {
+        if (line.length < capacity) {
+            this.line = new char[Math.max(capacity, line.length * 2)];
+        }
+    }
+}
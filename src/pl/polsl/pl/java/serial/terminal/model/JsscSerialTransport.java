@@ -0,0 +1,116 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+
+import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
+import jssc.SerialPortException;
+
+/**
+ * Transport over the physical serial port using jssc library.
+ *
+ * @author Michał Lytek
+ */
+public class JsscSerialTransport implements SerialTransport, SerialPortEventListener {
+
+    /** Instance of serial port */
+    private final SerialPort serialPort;
+    /** Receiver of incoming bytes */
+    private Receiver receiver;
+
+    /* All variables stores connection parameters in jssc format */
+    private final int baudRate,
+            signBits,
+            stopBits,
+            parity,
+            flowControlMask;
+
+    /**
+     * Creates the transport, the port isn't opened yet.
+     *
+     * @param portName the system name of serial port
+     * @param baudRate the port baudrate
+     * @param signBits the number of bits for each sign
+     * @param stopBits the number of stop bits
+     * @param parity the jssc parity setting
+     * @param flowControlMask the jssc flow control mask
+     */
+    public JsscSerialTransport(String portName, int baudRate, int signBits, int stopBits, int parity, int flowControlMask) {
+        this.serialPort = new SerialPort(portName);
+        this.baudRate = baudRate;
+        this.signBits = signBits;
+        this.stopBits = stopBits;
+        this.parity = parity;
+        this.flowControlMask = flowControlMask;
+    }
+
+    @Override
+    public void open(Receiver receiver) throws IOException {
+        this.receiver = receiver;
+        try {
+            serialPort.openPort();
+            serialPort.setParams(baudRate, signBits, stopBits, parity);
+            serialPort.setFlowControlMode(flowControlMask);
+            serialPort.addEventListener(this, SerialPort.MASK_RXCHAR | SerialPort.MASK_ERR);
+        } catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            serialPort.closePort();
+        } catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        try {
+            boolean written;
+            if (offset == 0 && length == data.length) {
+                written = serialPort.writeBytes(data);
+            } else {
+                written = serialPort.writeBytes(Arrays.copyOfRange(data, offset, offset + length));
+            }
+            if (!written) {
+                throw new IOException("Write to " + serialPort.getPortName() + " failed");
+            }
+        } catch (SerialPortException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return serialPort.getPortName();
+    }
+
+    /**
+     * Overrided method, lauched on every serial port event.
+     * It reads available bytes and pass them to the receiver, line errors are reported too.
+     *
+     * @param serialPortEvent the jssc event
+     */
+    @Override
+    public void serialEvent(SerialPortEvent serialPortEvent) {
+        // if data is available
+        if (serialPortEvent.isRXCHAR()) {
+            try {
+                byte[] receivedChars = serialPort.readBytes();
+                if (receivedChars != null) {
+                    receiver.bytesReceived(receivedChars, receivedChars.length);
+                }
+            } catch (SerialPortException ex) {
+                System.err.println(ex);
+            }
+        } else if (serialPortEvent.isERR()) {
+            receiver.lineErrorOccured(serialPortEvent.getEventValue());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies in ns with fixed relative precision, in the manner of HdrHistogram.
+ * Values are counted in log-linear buckets: every power of two range
+ * is split into 64 equal sub-buckets, so the error of reported value is below 1.6%
+ * from nanoseconds up to the longest delays, with a few kB of counters.
+ * Recording is a shift and an array increment, without allocation.
+ *
+ * @author Michał Lytek
+ */
+public class LatencyHistogram {
+
+    /** Number of bits of value kept in sub-bucket index */
+    private static final int SUB_BUCKET_BITS = 7;
+    /** Number of sub-buckets in every power of two range */
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    /** Number of counters for all non-negative long values */
+    private static final int COUNTERS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+
+    /** Number of values in every bucket */
+    private final long[] counts = new long[COUNTERS];
+    /** Number of recorded values */
+    private long totalCount;
+    /** The biggest recorded value */
+    private long maxValue;
+
+    /**
+     * Records the value, negative values are counted as 0.
+     *
+     * @param value the latency in ns
+     */
+    public void record(long value) {
+        long positive = Math.max(0, value);
+        counts[indexOf(positive)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, positive);
+    }
+
+    /**
+     * Getter to the value below or equal to which given percent of recorded values are.
+     *
+     * @param percentile the percentile, eg. 99.9
+     *
+     * @return the highest value equivalent to the percentile bucket in ns, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * totalCount));
+        long counted = 0;
+        for (int index = 0; index < COUNTERS; index++) {
+            counted += counts[index];
+            if (counted >= rank) {
+                return Math.min(highestEquivalentValue(index), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Getter to the biggest recorded value.
+     * @return the exact maximum in ns
+     */
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    /**
+     * Getter to the number of recorded values.
+     * @return the values count
+     */
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        this.totalCount = 0;
+        this.maxValue = 0;
+    }
+
+    /**
+     * Counter index of the value - power of two range and sub-bucket in it.
+     *
+     * @param value the non-negative value
+     *
+     * @return the counter index
+     */
+    private static int indexOf(long value) {
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        int subBucket = (int) (value >>> bucket);
+        return bucket * SUB_BUCKET_HALF_COUNT + subBucket;
+    }
+
+    /**
+     * The biggest value counted in the counter.
+     *
+     * @param index the counter index
+     *
+     * @return the highest value of the counter range
+     */
+    private static long highestEquivalentValue(int index) {
+        int bucket = Math.max(0, index / SUB_BUCKET_HALF_COUNT - 1);
+        long subBucket = index - bucket * SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+}
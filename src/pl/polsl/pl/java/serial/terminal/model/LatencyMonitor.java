@@ -0,0 +1,105 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Statistics of continuous link test - round trip times of probes,
+ * their percentiles, loss and jitter.
+ * Link test responses don't carry sequence numbers, so only one probe
+ * is outstanding at once: a probe not answered until the next one is sent is lost.
+ * Jitter is the smoothed difference of consecutive round trip times, as in RFC 3550.
+ * Called from scheduler thread (probes, reports) and receive thread (responses).
+ *
+ * @author Michał Lytek
+ */
+public class LatencyMonitor {
+
+    /** Histogram of round trip times in ns */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    /** Send time of the outstanding probe, negative if there's none */
+    private long probeTime = -1;
+    /** Number of sent probes */
+    private long sentProbes;
+    /** Number of probes without response */
+    private long lostProbes;
+    /** Round trip time of the previous response in ns, negative before the first one */
+    private long lastRoundTrip = -1;
+    /** Smoothed round trip time variation in ns */
+    private double jitter;
+
+    /**
+     * Registers the probe being sent. The previous probe, if not answered, is counted as lost.
+     *
+     * @param time the send time from {@link System#nanoTime()}
+     */
+    public synchronized void probeSent(long time) {
+        if (probeTime >= 0) {
+            lostProbes++;
+        }
+        this.probeTime = time;
+        sentProbes++;
+    }
+
+    /**
+     * Registers the response to the outstanding probe.
+     *
+     * @param time the receive time from {@link System#nanoTime()}
+     *
+     * @return true if a probe was answered, false if no probe was outstanding
+     */
+    public synchronized boolean responseReceived(long time) {
+        if (probeTime < 0) {
+            return false;
+        }
+        long roundTrip = time - probeTime;
+        this.probeTime = -1;
+        histogram.record(roundTrip);
+        if (lastRoundTrip >= 0) {
+            jitter += (Math.abs(roundTrip - lastRoundTrip) - jitter) / 16;
+        }
+        this.lastRoundTrip = roundTrip;
+        return true;
+    }
+
+    /**
+     * Getter to the round trip time percentile.
+     *
+     * @param percentile the percentile, eg. 99.9
+     *
+     * @return the round trip time in ns
+     */
+    public synchronized long getRoundTripAtPercentile(double percentile) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Getter to the longest round trip time.
+     * @return the round trip time in ns
+     */
+    public synchronized long getMaxRoundTrip() {
+        return histogram.getMaxValue();
+    }
+
+    /**
+     * Getter to the part of probes without response, the outstanding one isn't counted.
+     * @return the loss rate from 0 to 1
+     */
+    public synchronized double getLossRate() {
+        long finishedProbes = sentProbes - (probeTime >= 0 ? 1 : 0);
+        return finishedProbes > 0 ? (double) lostProbes / finishedProbes : 0;
+    }
+
+    /**
+     * Getter to the smoothed round trip time variation.
+     * @return the jitter in ns
+     */
+    public synchronized long getJitter() {
+        return (long) jitter;
+    }
+
+    /**
+     * Getter to the number of sent probes.
+     * @return the probes count
+     */
+    public synchronized long getSentProbes() {
+        return this.sentProbes;
+    }
+}
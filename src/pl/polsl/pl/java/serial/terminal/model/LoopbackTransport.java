@@ -0,0 +1,86 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory transport for testing and benchmarking without hardware.
+ * By default everything written comes back as received (echo),
+ * a pair of connected transports simulates the terminal and the device.
+ * Bytes are delivered in write order on the transport own thread, like from a real port.
+ *
+ * @author Michał Lytek
+ */
+public class LoopbackTransport implements SerialTransport {
+
+    /** Transport which receives written bytes, this one for echo */
+    private LoopbackTransport peer = this;
+    /** Receiver of incoming bytes */
+    private volatile Receiver receiver;
+    /** Thread delivering bytes to the receiver */
+    private ExecutorService deliveryExecutor;
+
+    /**
+     * Creates two transports connected with each other.
+     *
+     * @return the array with both ends of connection
+     */
+    public static LoopbackTransport[] createPair() {
+        LoopbackTransport first = new LoopbackTransport();
+        LoopbackTransport second = new LoopbackTransport();
+        first.peer = second;
+        second.peer = first;
+        return new LoopbackTransport[] {first, second};
+    }
+
+    @Override
+    public synchronized void open(Receiver receiver) throws IOException {
+        this.receiver = receiver;
+        this.deliveryExecutor = Executors.newSingleThreadExecutor((task) -> {
+            Thread thread = new Thread(task, "loopback-transport");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (deliveryExecutor != null) {
+            deliveryExecutor.shutdown();
+            try {
+                deliveryExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            deliveryExecutor = null;
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        peer.inject(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    /**
+     * Delivers bytes to this transport receiver, as if the device sent them.
+     *
+     * @param data the bytes to deliver, not copied
+     *
+     * @throws IOException if the transport isn't open
+     */
+    public synchronized void inject(byte[] data) throws IOException {
+        if (deliveryExecutor == null) {
+            throw new IOException("Loopback transport is closed");
+        }
+        deliveryExecutor.execute(() -> receiver.bytesReceived(data, data.length));
+    }
+
+    @Override
+    public String getName() {
+        return "loopback";
+    }
+}
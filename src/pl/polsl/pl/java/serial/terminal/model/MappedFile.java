@@ -0,0 +1,262 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable file mapped into memory in regions.
+ * Regions are mapped when they are touched for the first time,
+ * so the content lives in OS page cache instead of Java heap.
+ * The first region is small and every next one is twice as large, up to {@link #MAX_REGION_SIZE},
+ * so a store of an idle port maps and extends its file only by a few kB.
+ * Regions are unmapped when the file is closed, so it can be deleted at once, also on Windows.
+ *
+ * @author Michał Lytek
+ */
+public class MappedFile implements Closeable {
+
+    /** Size of the first mapped region, multiple of 8 so longs never cross regions */
+    private static final int MIN_REGION_SIZE = 64 * 1024;
+    /** Size of the largest mapped region, {@link #MIN_REGION_SIZE} multiplied by the power of two */
+    private static final int MAX_REGION_SIZE = 64 * 1024 * 1024;
+    /** Index of the first region of the largest size */
+    private static final int MAX_REGION_INDEX = Integer.numberOfTrailingZeros(MAX_REGION_SIZE / MIN_REGION_SIZE) + 1;
+
+    /* Way of unmapping regions - Unsafe.invokeCleaner since Java 9 or the buffer cleaner in Java 8, null if none works */
+    private static Object unsafe;
+    private static Method invokeCleaner,
+            cleaner,
+            clean;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            unsafe = unsafeField.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (ReflectiveOperationException | RuntimeException ex2) {
+                // the regions are left to garbage collector
+                System.err.println(ex2);
+            }
+        }
+    }
+
+    /** Opened file */
+    private final RandomAccessFile file;
+    /** Channel of the opened file */
+    private final FileChannel channel;
+    /** Already mapped regions */
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    /** True if the file is closed and regions are unmapped */
+    private boolean closed;
+
+    /**
+     * Opens (or creates) the file for reading and writing.
+     *
+     * @param path the file to map
+     *
+     * @throws IOException if the file can't be opened
+     */
+    public MappedFile(File path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * Writes bytes at the given position, crossing region boundaries if needed.
+     *
+     * @param position the file position
+     * @param source the bytes to write
+     * @param offset the index of the first byte to write
+     * @param length the number of bytes to write
+     *
+     * @throws IOException if the region can't be mapped
+     */
+    public void put(long position, byte[] source, int offset, int length) throws IOException {
+        while (length > 0) {
+            int index = regionIndex(position);
+            MappedByteBuffer region = region(index);
+            int regionOffset = (int) (position - regionStart(index));
+            int count = Math.min(length, region.capacity() - regionOffset);
+            region.position(regionOffset);
+            region.put(source, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Reads bytes from the given position, crossing region boundaries if needed.
+     *
+     * @param position the file position
+     * @param destination the array to read bytes to
+     * @param offset the index of the first byte to read
+     * @param length the number of bytes to read
+     *
+     * @throws IOException if the region can't be mapped
+     */
+    public void get(long position, byte[] destination, int offset, int length) throws IOException {
+        while (length > 0) {
+            int index = regionIndex(position);
+            MappedByteBuffer region = region(index);
+            int regionOffset = (int) (position - regionStart(index));
+            int count = Math.min(length, region.capacity() - regionOffset);
+            region.position(regionOffset);
+            region.get(destination, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Writes a long at the given position.
+     *
+     * @param position the file position, multiple of 8
+     * @param value the value to write
+     *
+     * @throws IOException if the region can't be mapped
+     */
+    public void putLong(long position, long value) throws IOException {
+        int index = regionIndex(position);
+        region(index).putLong((int) (position - regionStart(index)), value);
+    }
+
+    /**
+     * Reads a long from the given position.
+     *
+     * @param position the file position, multiple of 8
+     *
+     * @return the read value
+     *
+     * @throws IOException if the region can't be mapped
+     */
+    public long getLong(long position) throws IOException {
+        int index = regionIndex(position);
+        return region(index).getLong((int) (position - regionStart(index)));
+    }
+
+    /**
+     * Unmaps the regions and closes the file.
+     * The file mustn't be used by other threads anymore, reading unmapped region crashes the JVM.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        this.closed = true;
+        for (MappedByteBuffer region : regions) {
+            unmap(region);
+        }
+        regions.clear();
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Returns the region, mapping all missing regions before it.
+     *
+     * @param index the region index
+     *
+     * @return the mapped region
+     *
+     * @throws IOException if the region can't be mapped or the file is closed
+     */
+    private MappedByteBuffer region(int index) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        while (regions.size() <= index) {
+            int next = regions.size();
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, regionStart(next), regionSize(next)));
+        }
+        return regions.get(index);
+    }
+
+    /**
+     * Finds the region containing the position.
+     *
+     * @param position the file position
+     *
+     * @return the region index
+     */
+    private static int regionIndex(long position) {
+        if (position >= MAX_REGION_SIZE) {
+            return (int) (MAX_REGION_INDEX - 1 + position / MAX_REGION_SIZE);
+        }
+        if (position < MIN_REGION_SIZE) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(position / MIN_REGION_SIZE);
+    }
+
+    /**
+     * Getter to the file position where the region starts.
+     *
+     * @param index the region index
+     *
+     * @return the start position
+     */
+    private static long regionStart(int index) {
+        if (index >= MAX_REGION_INDEX) {
+            return (long) (index - MAX_REGION_INDEX + 1) * MAX_REGION_SIZE;
+        }
+        return index == 0 ? 0 : (long) MIN_REGION_SIZE << (index - 1);
+    }
+
+    /**
+     * Getter to the size of the region.
+     *
+     * @param index the region index
+     *
+     * @return the size in bytes
+     */
+    private static int regionSize(int index) {
+        if (index >= MAX_REGION_INDEX) {
+            return MAX_REGION_SIZE;
+        }
+        return index == 0 ? MIN_REGION_SIZE : MIN_REGION_SIZE << (index - 1);
+    }
+
+    /**
+     * Releases the mapping of the region at once instead of waiting for garbage collector.
+     *
+     * @param region the region which isn't used anymore
+     */
+    private static void unmap(MappedByteBuffer region) {
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invoke(unsafe, region);
+            } else if (cleaner != null) {
+                Object regionCleaner = cleaner.invoke(region);
+                if (regionCleaner != null) {
+                    clean.invoke(regionCleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            System.err.println(ex);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Table-driven CRC-16/MODBUS (reflected polynomial 0xA001, initial value 0xFFFF),
+ * sent low byte first after Modbus RTU frames. Every byte costs a single table lookup.
+ *
+ * @author Michał Lytek
+ */
+public class ModbusCrc {
+
+    /** CRC polynomial, reflected */
+    private static final int POLYNOMIAL = 0xA001;
+    /** Initial CRC value */
+    public static final int INITIAL = 0xFFFF;
+    /** CRC of every byte value */
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int value = 0; value < TABLE.length; value++) {
+            int crc = value;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[value] = crc;
+        }
+    }
+
+    /**
+     * Utility class - no instances.
+     */
+    private ModbusCrc() {
+    }
+
+    /**
+     * Updates the CRC with a range of bytes.
+     *
+     * @param crc the CRC of previous bytes, {@link #INITIAL} at start
+     * @param data the array with next bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     *
+     * @return the updated CRC
+     */
+    public static int update(int crc, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+}
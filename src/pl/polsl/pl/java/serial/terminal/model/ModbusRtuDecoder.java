@@ -0,0 +1,286 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Decoder of Modbus RTU frames: address, function, data and CRC-16/MODBUS.
+ * RTU frames are separated by silence, which isn't seen in received chunks,
+ * so a frame is found by its CRC: for the function at the current byte the lengths of request
+ * and response are tried, and the bytes are skipped one by one until one of them has a correct CRC.
+ * A frame with wrong CRC can't be told from noise, so it's counted as skipped bytes.
+ * A read request and a response of function 1-4 with 3 data bytes both have 8 bytes,
+ * so such frame is a response if the previous frame was the request of the same device and function,
+ * a request after any other frame, and a response when it's the first frame.
+ * Functions 1-6, 15, 16 and their exceptions are decoded, registers and values become number fields.
+ *
+ * @author Michał Lytek
+ */
+public class ModbusRtuDecoder implements ProtocolDecoder {
+
+    /** Protocol name */
+    private static final String PROTOCOL = "Modbus RTU";
+    /** Maximum RTU frame length */
+    private static final int MAX_FRAME_LENGTH = 256;
+    /** Length of the shortest frame - exception response */
+    private static final int MIN_FRAME_LENGTH = 5;
+    /** Highest unicast address */
+    private static final int MAX_ADDRESS = 247;
+    /** Names of supported functions by code, null for unsupported */
+    private static final String[] FUNCTION_NAMES = new String[17];
+    /* Message types by function code */
+    private static final String[] REQUEST_TYPES = new String[17],
+            RESPONSE_TYPES = new String[17],
+            EXCEPTION_TYPES = new String[17];
+
+    /* Field names of messages */
+    private static final String[] READ_REQUEST_FIELDS = {"Adres", "Funkcja", "Pierwszy rejestr", "Liczba"};
+    private static final String[] READ_REGISTERS_FIELDS = {"Adres", "Funkcja", "Bajtów", "Rejestr"};
+    private static final String[] READ_BITS_FIELDS = {"Adres", "Funkcja", "Bajtów", "Stany"};
+    private static final String[] WRITE_SINGLE_FIELDS = {"Adres", "Funkcja", "Rejestr", "Wartość"};
+    private static final String[] WRITE_MULTIPLE_FIELDS = {"Adres", "Funkcja", "Pierwszy rejestr", "Liczba", "Bajtów", "Wartość"};
+    private static final String[] WRITE_MULTIPLE_RESPONSE_FIELDS = {"Adres", "Funkcja", "Pierwszy rejestr", "Liczba"};
+    private static final String[] EXCEPTION_FIELDS = {"Adres", "Funkcja", "Kod wyjątku"};
+
+    static {
+        FUNCTION_NAMES[1] = "Odczyt cewek";
+        FUNCTION_NAMES[2] = "Odczyt wejść dyskretnych";
+        FUNCTION_NAMES[3] = "Odczyt rejestrów";
+        FUNCTION_NAMES[4] = "Odczyt rejestrów wejściowych";
+        FUNCTION_NAMES[5] = "Zapis cewki";
+        FUNCTION_NAMES[6] = "Zapis rejestru";
+        FUNCTION_NAMES[15] = "Zapis cewek";
+        FUNCTION_NAMES[16] = "Zapis rejestrów";
+        for (int function = 0; function < FUNCTION_NAMES.length; function++) {
+            if (FUNCTION_NAMES[function] != null) {
+                REQUEST_TYPES[function] = FUNCTION_NAMES[function] + " - żądanie";
+                RESPONSE_TYPES[function] = FUNCTION_NAMES[function] + " - odpowiedź";
+                EXCEPTION_TYPES[function] = FUNCTION_NAMES[function] + " - wyjątek";
+            }
+        }
+    }
+
+    /* Address and function of the previous frame, -1 before the first one */
+    private int previousAddress = -1,
+            previousFunction = -1;
+    /** True if the previous frame was a request */
+    private boolean previousRequest;
+
+    @Override
+    public String getName() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return MAX_FRAME_LENGTH;
+    }
+
+    @Override
+    public int decode(byte[] data, int offset, int length, DecodedMessage message, Sink sink) {
+        int frameLength = frameLength(data, offset, length);
+        if (frameLength > 0) {
+            decodeFrame(data, offset, frameLength, isResponse(data, offset, frameLength), message);
+            sink.messageDecoded(message);
+            return frameLength;
+        }
+        if (frameLength == 0 && length < MAX_FRAME_LENGTH) {
+            // noise may look like the start of a long frame, a complete frame after it is taken at once
+            for (int next = offset + 1; next + MIN_FRAME_LENGTH <= offset + length; next++) {
+                if (frameLength(data, next, offset + length - next) > 0) {
+                    sink.bytesSkipped(next - offset);
+                    return next - offset;
+                }
+            }
+            return 0;
+        }
+        sink.bytesSkipped(1);
+        return 1;
+    }
+
+    /**
+     * Finds the length of the frame at the offset by its CRC.
+     *
+     * @param data the receive buffer
+     * @param offset the frame start
+     * @param length the number of available bytes
+     *
+     * @return the frame length, 0 if the frame may be incomplete, -1 if there's no frame
+     */
+    private static int frameLength(byte[] data, int offset, int length) {
+        if (length < MIN_FRAME_LENGTH) {
+            return 0;
+        }
+        int address = data[offset] & 0xFF;
+        int code = data[offset + 1] & 0xFF;
+        int function = code & 0x7F;
+        if (address > MAX_ADDRESS || function >= FUNCTION_NAMES.length || FUNCTION_NAMES[function] == null) {
+            return -1;
+        }
+        if (code != function) {
+            return hasCrc(data, offset, length, MIN_FRAME_LENGTH) ? MIN_FRAME_LENGTH : -1;
+        }
+        // the request or the response of function 5, 6, 15 and 16 has 8 bytes
+        if (hasCrc(data, offset, length, 8)) {
+            return 8;
+        }
+        int otherLength;
+        if (function <= 4) {
+            otherLength = 5 + (data[offset + 2] & 0xFF);
+        } else if (function <= 6) {
+            otherLength = 8;
+        } else if (length < 7) {
+            return 0;
+        } else {
+            otherLength = 9 + (data[offset + 6] & 0xFF);
+        }
+        if (hasCrc(data, offset, length, otherLength)) {
+            return otherLength;
+        }
+        return otherLength > length || 8 > length ? 0 : -1;
+    }
+
+    /**
+     * Tells the request from the response and remembers the frame for the next one.
+     *
+     * @param data the receive buffer
+     * @param offset the frame start
+     * @param frameLength the frame length with correct CRC
+     *
+     * @return true if the frame is a response
+     */
+    private boolean isResponse(byte[] data, int offset, int frameLength) {
+        int address = data[offset] & 0xFF;
+        int code = data[offset + 1] & 0xFF;
+        int function = code & 0x7F;
+        boolean afterRequest = previousRequest && previousAddress == address && previousFunction == function;
+        boolean response;
+        if (code != function) {
+            response = true;
+        } else if (function <= 4) {
+            boolean ambiguous = frameLength == 8 && 5 + (data[offset + 2] & 0xFF) == 8;
+            response = ambiguous ? afterRequest || previousAddress < 0 : frameLength != 8;
+        } else if (function <= 6) {
+            // the response repeats the request
+            response = afterRequest;
+        } else {
+            response = frameLength == 8;
+        }
+        this.previousAddress = address;
+        this.previousFunction = function;
+        this.previousRequest = !response;
+        return response;
+    }
+
+    /**
+     * Fills the message with fields of the frame.
+     *
+     * @param data the receive buffer
+     * @param offset the frame start
+     * @param frameLength the frame length with correct CRC
+     * @param response true if the frame is a response
+     * @param message the message to fill
+     */
+    private static void decodeFrame(byte[] data, int offset, int frameLength, boolean response, DecodedMessage message) {
+        int address = data[offset] & 0xFF;
+        int code = data[offset + 1] & 0xFF;
+        int function = code & 0x7F;
+        if (code != function) {
+            message.start(PROTOCOL, EXCEPTION_TYPES[function], EXCEPTION_FIELDS, data, offset, frameLength, true);
+            message.addNumber(address);
+            message.addNumber(code);
+            message.addNumber(data[offset + 2] & 0xFF);
+            return;
+        }
+        if (function <= 4 && response) {
+            int byteCount = data[offset + 2] & 0xFF;
+            boolean registers = function >= 3;
+            message.start(PROTOCOL, RESPONSE_TYPES[function], registers ? READ_REGISTERS_FIELDS : READ_BITS_FIELDS,
+                    data, offset, frameLength, true);
+            message.addNumber(address);
+            message.addNumber(function);
+            message.addNumber(byteCount);
+            addValues(data, offset + 3, byteCount, registers, message);
+            return;
+        }
+        if (function >= 15 && frameLength != 8) {
+            int byteCount = data[offset + 6] & 0xFF;
+            message.start(PROTOCOL, REQUEST_TYPES[function], WRITE_MULTIPLE_FIELDS, data, offset, frameLength, true);
+            message.addNumber(address);
+            message.addNumber(function);
+            message.addNumber(word(data, offset + 2));
+            message.addNumber(word(data, offset + 4));
+            message.addNumber(byteCount);
+            addValues(data, offset + 7, byteCount, function == 16, message);
+            return;
+        }
+        // 8 bytes: read request, single write or its echo, or multiple write response
+        String type;
+        String[] fields;
+        if (function <= 4) {
+            type = REQUEST_TYPES[function];
+            fields = READ_REQUEST_FIELDS;
+        } else if (function <= 6) {
+            // the response repeats the request, so they have the same type
+            type = FUNCTION_NAMES[function];
+            fields = WRITE_SINGLE_FIELDS;
+        } else {
+            type = RESPONSE_TYPES[function];
+            fields = WRITE_MULTIPLE_RESPONSE_FIELDS;
+        }
+        message.start(PROTOCOL, type, fields, data, offset, frameLength, true);
+        message.addNumber(address);
+        message.addNumber(function);
+        message.addNumber(word(data, offset + 2));
+        message.addNumber(word(data, offset + 4));
+    }
+
+    /**
+     * Adds the values of registers or bytes of bits.
+     *
+     * @param data the receive buffer
+     * @param start the first byte of values
+     * @param byteCount the number of bytes of values
+     * @param registers true for 16-bit registers, false for bytes of coils or inputs
+     * @param message the message to fill
+     */
+    private static void addValues(byte[] data, int start, int byteCount, boolean registers, DecodedMessage message) {
+        if (registers) {
+            for (int i = 0; i + 1 < byteCount; i += 2) {
+                message.addNumber(word(data, start + i));
+            }
+        } else {
+            for (int i = 0; i < byteCount; i++) {
+                message.addNumber(data[start + i] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Check if the frame of given length is complete and has a correct CRC.
+     *
+     * @param data the receive buffer
+     * @param offset the frame start
+     * @param length the number of available bytes
+     * @param frameLength the checked frame length with CRC
+     *
+     * @return true if the CRC matches
+     */
+    private static boolean hasCrc(byte[] data, int offset, int length, int frameLength) {
+        if (frameLength > length || frameLength > MAX_FRAME_LENGTH) {
+            return false;
+        }
+        int crc = ModbusCrc.update(ModbusCrc.INITIAL, data, offset, frameLength - 2);
+        return (data[offset + frameLength - 2] & 0xFF) == (crc & 0xFF)
+                && (data[offset + frameLength - 1] & 0xFF) == (crc >>> 8);
+    }
+
+    /**
+     * Reads the big-endian 16-bit word.
+     *
+     * @param data the receive buffer
+     * @param index the index of the high byte
+     *
+     * @return the word
+     */
+    private static int word(byte[] data, int index) {
+        return ((data[index] & 0xFF) << 8) | (data[index + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,172 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+
+/**
+ * Base of file senders using XMODEM family protocols.
+ * The protocol runs on its own thread, reading the receiver responses
+ * from {@link ProtocolInput}, which takes over the received bytes during transfer.
+ *
+ * @author Michał Lytek
+ */
+public abstract class ModemSender implements FileTransfer, Runnable {
+
+    /* Control characters of the protocols */
+    protected static final int SOH = 0x01,
+            STX = 0x02,
+            EOT = 0x04,
+            ACK = 0x06,
+            BS = 0x08,
+            NAK = 0x15,
+            CAN = 0x18;
+
+    /** Minimum time between progress reports in nanoseconds */
+    private static final long PROGRESS_INTERVAL = TimeUnit.MILLISECONDS.toNanos(200);
+    /** Cancel sequence - CANs aborting the receiver and backspaces erasing them from terminal */
+    private static final byte[] CANCEL_SEQUENCE = {CAN, CAN, CAN, CAN, CAN, CAN, CAN, CAN,
+        BS, BS, BS, BS, BS, BS, BS, BS};
+
+    /** Instance of connection to the device */
+    private final SerialTransport transport;
+    /** Instance of controler which is informed about progress */
+    private final Controler controler;
+    /** Received bytes during the transfer */
+    protected final ProtocolInput input;
+    /** Sent file */
+    protected final File file;
+
+    /** File size in bytes */
+    protected long totalBytes;
+    /** Time of the transfer start */
+    private long startTime;
+    /** Time of the last progress report */
+    private long reportTime;
+    /** Number of file bytes confirmed by the receiver */
+    private long sentBytes;
+    /** Set when the user asked to stop */
+    private volatile boolean cancelled;
+
+    /**
+     * Creates the sender, the file isn't opened yet.
+     *
+     * @param transport the opened transport
+     * @param controler the controler to inform about progress
+     * @param file the file to send
+     */
+    protected ModemSender(SerialTransport transport, Controler controler, File file) {
+        this.transport = transport;
+        this.controler = controler;
+        this.file = file;
+        this.input = new ProtocolInput();
+    }
+
+    /**
+     * Checks the file and starts the protocol thread.
+     *
+     * @throws IOException if the file can't be read
+     */
+    @Override
+    public void start() throws IOException {
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        this.totalBytes = file.length();
+        this.startTime = System.nanoTime();
+        this.reportTime = startTime;
+        Thread thread = new Thread(this, "file-transfer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Asks the sender to stop, also when it waits for the receiver response.
+     */
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+        input.cancel();
+    }
+
+    @Override
+    public SerialTransport.Receiver getReceiver() {
+        return this.input;
+    }
+
+    /**
+     * Runs the protocol and informs the controler about the result.
+     * The receiver is cancelled if the transfer failed.
+     */
+    @Override
+    public void run() {
+        boolean complete = false;
+        try {
+            complete = transfer();
+        } catch (IOException ex) {
+            System.err.println(ex);
+            sendCancel();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            sendCancel();
+        }
+        controler.fileSendProgress(sentBytes, totalBytes, System.nanoTime() - startTime);
+        controler.fileSendFinished(complete);
+    }
+
+    /**
+     * Sends the cancel sequence, so the receiver doesn't wait for the rest of file.
+     */
+    private void sendCancel() {
+        try {
+            transport.write(CANCEL_SEQUENCE, 0, CANCEL_SEQUENCE.length);
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    /**
+     * Sends the file using the protocol.
+     * The receiver is cancelled if it throws an exception.
+     *
+     * @return true if the receiver got the whole file, false if it refused it
+     *
+     * @throws IOException if the file or port can't be used, or the transfer was cancelled
+     * @throws InterruptedException if the thread was interrupted
+     */
+    protected abstract boolean transfer() throws IOException, InterruptedException;
+
+    /**
+     * Sends bytes to the receiver.
+     *
+     * @param data the array with bytes to send
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     *
+     * @throws IOException if the transfer was cancelled or the port write failed
+     */
+    protected void write(byte[] data, int offset, int length) throws IOException {
+        if (cancelled) {
+            throw new IOException("File transfer cancelled");
+        }
+        transport.write(data, offset, length);
+    }
+
+    /**
+     * Informs the controler about the progress, not more often than every 200 ms.
+     *
+     * @param sentBytes the number of file bytes confirmed by the receiver
+     */
+    protected void reportProgress(long sentBytes) {
+        this.sentBytes = Math.min(sentBytes, totalBytes);
+        long now = System.nanoTime();
+        if (now - reportTime >= PROGRESS_INTERVAL) {
+            reportTime = now;
+            controler.fileSendProgress(this.sentBytes, totalBytes, now - startTime);
+        }
+    }
+}
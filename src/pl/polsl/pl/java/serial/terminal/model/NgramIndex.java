@@ -0,0 +1,226 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Arrays;
+
+/**
+ * Index of trigrams in blocks of stored lines, so a search reads only the blocks
+ * which may contain the searched text instead of decoding every line.
+ * Every block of {@link #BLOCK_LINES} lines has a bit signature in a memory-mapped file,
+ * with a bit set for the hash of every lower-cased trigram of its lines.
+ * A block whose signature misses any bit of the searched text surely doesn't contain it;
+ * the other blocks are candidates and their lines are checked.
+ * Signatures have a fixed size, so the index grows with the number of lines,
+ * not with the number of distinct words, and appending a line costs a bit set per char.
+ *
+ * @author Michał Lytek
+ */
+public class NgramIndex implements Closeable {
+
+    /** Number of lines in one block */
+    public static final int BLOCK_LINES = 128;
+    /** Number of bits of trigram hash */
+    private static final int HASH_BITS = 13;
+    /** Number of longs in the signature of one block */
+    private static final int SIGNATURE_LONGS = (1 << HASH_BITS) / 64;
+    /** Size of the signature of one block in bytes */
+    private static final int SIGNATURE_SIZE = SIGNATURE_LONGS * 8;
+
+    /** Mapped file with the signatures of complete blocks */
+    private final MappedFile signatures;
+    /** Signature of the block being filled, written to the file when the block is complete */
+    private final long[] currentSignature = new long[SIGNATURE_LONGS];
+    /** Number of the block being filled */
+    private long currentBlock;
+
+    /* The last two chars of the current line, lower-cased, for trigrams crossing appended parts */
+    private char previousChar,
+            lastChar;
+    /** Number of chars of the current line, up to 2 */
+    private int lineChars;
+
+    /**
+     * Creates the index in given file, the previous content is ignored.
+     *
+     * @param path the signatures file
+     *
+     * @throws IOException if the file can't be opened
+     */
+    public NgramIndex(File path) throws IOException {
+        this.signatures = new MappedFile(path);
+    }
+
+    /**
+     * Indexes the text of the line.
+     *
+     * @param line the line number, not lower than the previous one
+     * @param text the line content or its appended part
+     * @param newLine true if the text starts the line, false if it's appended to it
+     *
+     * @throws IOException if the complete block can't be written
+     */
+    public void add(long line, CharSequence text, boolean newLine) throws IOException {
+        long block = line / BLOCK_LINES;
+        if (block != currentBlock) {
+            flush();
+            Arrays.fill(currentSignature, 0);
+            this.currentBlock = block;
+        }
+        if (newLine) {
+            this.lineChars = 0;
+        }
+        long[] signature = currentSignature;
+        char first = previousChar, second = lastChar;
+        int count = lineChars;
+        for (int i = 0; i < text.length(); i++) {
+            char third = Character.toLowerCase(text.charAt(i));
+            if (count >= 2) {
+                int bit = hash(first, second, third);
+                signature[bit >>> 6] |= 1L << bit;
+            } else {
+                count++;
+            }
+            first = second;
+            second = third;
+        }
+        this.previousChar = first;
+        this.lastChar = second;
+        this.lineChars = count;
+    }
+
+    /**
+     * Computes the signature bits of the searched text.
+     *
+     * @param text the searched text
+     *
+     * @return the bits of all trigrams, empty if the text is shorter than 3 chars
+     */
+    public static int[] queryBits(String text) {
+        int[] bits = new int[Math.max(0, text.length() - 2)];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = hash(Character.toLowerCase(text.charAt(i)), Character.toLowerCase(text.charAt(i + 1)),
+                    Character.toLowerCase(text.charAt(i + 2)));
+        }
+        return bits;
+    }
+
+    /**
+     * Check if the block may contain the text.
+     *
+     * @param block the block number, not higher than the block being filled
+     * @param bits the signature bits of the searched text
+     *
+     * @return false if the block surely doesn't contain the text
+     *
+     * @throws IOException if the signature can't be read
+     */
+    public boolean mayContain(long block, int[] bits) throws IOException {
+        for (int bit : bits) {
+            long word = block == currentBlock
+                    ? currentSignature[bit >>> 6]
+                    : signatures.getLong(block * SIGNATURE_SIZE + (bit >>> 6) * 8L);
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets all lines, the file space is reused.
+     */
+    public void clear() {
+        Arrays.fill(currentSignature, 0);
+        this.currentBlock = 0;
+        this.lineChars = 0;
+    }
+
+    /**
+     * Writes the signatures of blocks up to the given one, eg. to save the index with its capture.
+     *
+     * @param output the output
+     * @param blockCount the number of blocks to write
+     *
+     * @throws IOException if the signatures can't be read or written
+     */
+    public void save(DataOutput output, long blockCount) throws IOException {
+        for (long block = 0; block < blockCount; block++) {
+            for (int word = 0; word < SIGNATURE_LONGS; word++) {
+                output.writeLong(block == currentBlock
+                        ? currentSignature[word]
+                        : signatures.getLong(block * SIGNATURE_SIZE + word * 8L));
+            }
+        }
+    }
+
+    /**
+     * Reads the signatures written by {@link #save}, replacing the content of the index.
+     * Lines appended after loading continue the last block.
+     *
+     * @param input the input
+     * @param blockCount the number of saved blocks
+     * @param lastLine the last line of saved data, ignored if there are no blocks
+     * @param lastLineTail the last chars of the last line, trigrams continue from them when it's extended
+     *
+     * @throws IOException if the signatures can't be read or written
+     */
+    public void load(DataInput input, long blockCount, long lastLine, String lastLineTail) throws IOException {
+        clear();
+        for (long block = 0; block < blockCount; block++) {
+            for (int word = 0; word < SIGNATURE_LONGS; word++) {
+                long value = input.readLong();
+                if (block == blockCount - 1) {
+                    currentSignature[word] = value;
+                } else {
+                    signatures.putLong(block * SIGNATURE_SIZE + word * 8L, value);
+                }
+            }
+        }
+        if (blockCount > 0) {
+            this.currentBlock = blockCount - 1;
+            // the tail only restores the chars before the next appended part, its bits are already set
+            add(lastLine, lastLineTail.substring(Math.max(0, lastLineTail.length() - 2)), true);
+        }
+    }
+
+    /**
+     * Closes the signatures file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        signatures.close();
+    }
+
+    /**
+     * Writes the signature of the block being filled to the file.
+     *
+     * @throws IOException if the signature can't be written
+     */
+    private void flush() throws IOException {
+        long position = currentBlock * SIGNATURE_SIZE;
+        for (int word = 0; word < SIGNATURE_LONGS; word++) {
+            signatures.putLong(position + word * 8L, currentSignature[word]);
+        }
+    }
+
+    /**
+     * Hashes the trigram into a signature bit.
+     *
+     * @param first the first char
+     * @param second the second char
+     * @param third the third char
+     *
+     * @return the bit index
+     */
+    private static int hash(char first, char second, char third) {
+        int hash = ((first * 31) + second) * 31 + third;
+        return (hash * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+}
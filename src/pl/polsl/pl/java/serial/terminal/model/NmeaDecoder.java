@@ -0,0 +1,177 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decoder of NMEA 0183 sentences, eg. {@code $GPGGA,123519,4807.038,N,...*47}.
+ * The message type is the address field, like GPGGA, and the fields are text slices
+ * of the received sentence, read as numbers by {@link DecodedMessage#getDouble}.
+ * The checksum is the XOR of chars between '$' and '*', a sentence without it is invalid.
+ * Fields of GGA, RMC, GLL and VTG sentences are named.
+ *
+ * @author Michał Lytek
+ */
+public class NmeaDecoder implements ProtocolDecoder {
+
+    /** Protocol name */
+    private static final String PROTOCOL = "NMEA 0183";
+    /** Maximum sentence length, 82 by the standard, longer ones of some receivers are accepted */
+    private static final int MAX_FRAME_LENGTH = 128;
+    /** Maximum number of remembered addresses */
+    private static final int MAX_ADDRESSES = 64;
+
+    /* Field names of known sentences, by the last three chars of address */
+    private static final String[] GGA_FIELDS = {"Czas UTC", "Szerokość", "N/S", "Długość", "E/W", "Jakość", "Satelity",
+        "HDOP", "Wysokość", "Jedn.", "Geoida", "Jedn.", "Wiek DGPS", "Stacja DGPS"};
+    private static final String[] RMC_FIELDS = {"Czas UTC", "Status", "Szerokość", "N/S", "Długość", "E/W",
+        "Prędkość [kn]", "Kurs", "Data", "Deklinacja", "E/W", "Tryb"};
+    private static final String[] GLL_FIELDS = {"Szerokość", "N/S", "Długość", "E/W", "Czas UTC", "Status", "Tryb"};
+    private static final String[] VTG_FIELDS = {"Kurs", "T", "Kurs magn.", "M", "Prędkość [kn]", "N", "Prędkość [km/h]", "K", "Tryb"};
+
+    /* Addresses seen so far and their texts, so the type costs no allocation */
+    private final byte[][] addresses = new byte[MAX_ADDRESSES][];
+    private final String[] addressTypes = new String[MAX_ADDRESSES];
+    private final String[][] addressFields = new String[MAX_ADDRESSES][];
+    private int addressCount;
+
+    @Override
+    public String getName() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return MAX_FRAME_LENGTH;
+    }
+
+    @Override
+    public int decode(byte[] data, int offset, int length, DecodedMessage message, Sink sink) {
+        int end = offset + length;
+        int start = offset;
+        while (start < end && data[start] != '$' && data[start] != '!') {
+            start++;
+        }
+        if (start > offset) {
+            sink.bytesSkipped(start - offset);
+            return start - offset;
+        }
+        int searchEnd = Math.min(end, offset + MAX_FRAME_LENGTH);
+        int lineEnd = offset + 1;
+        while (lineEnd < searchEnd && data[lineEnd] != '\n' && data[lineEnd] != '$' && data[lineEnd] != '!') {
+            lineEnd++;
+        }
+        if (lineEnd == searchEnd) {
+            if (searchEnd == end && length < MAX_FRAME_LENGTH) {
+                return 0;
+            }
+            sink.bytesSkipped(1);
+            return 1;
+        }
+        if (data[lineEnd] != '\n') {
+            // the next sentence starts before this one ends
+            sink.bytesSkipped(lineEnd - offset);
+            return lineEnd - offset;
+        }
+        int contentEnd = data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+
+        int checksum = 0;
+        int fieldsEnd = offset + 1;
+        while (fieldsEnd < contentEnd && data[fieldsEnd] != '*') {
+            checksum ^= data[fieldsEnd];
+            fieldsEnd++;
+        }
+        boolean valid = fieldsEnd + 3 == contentEnd
+                && hexValue(data[fieldsEnd + 1]) == ((checksum >> 4) & 0xF)
+                && hexValue(data[fieldsEnd + 2]) == (checksum & 0xF);
+
+        int addressEnd = offset + 1;
+        while (addressEnd < fieldsEnd && data[addressEnd] != ',') {
+            addressEnd++;
+        }
+        int address = findAddress(data, offset + 1, addressEnd - offset - 1);
+        message.start(PROTOCOL, addressTypes[address], addressFields[address], data, offset, contentEnd - offset, valid);
+        int fieldStart = addressEnd + 1;
+        while (fieldStart <= fieldsEnd && addressEnd < fieldsEnd) {
+            int fieldEnd = fieldStart;
+            while (fieldEnd < fieldsEnd && data[fieldEnd] != ',') {
+                fieldEnd++;
+            }
+            message.addText(fieldStart, fieldEnd - fieldStart);
+            fieldStart = fieldEnd + 1;
+        }
+        sink.messageDecoded(message);
+        return lineEnd + 1 - offset;
+    }
+
+    /**
+     * Finds the remembered address, remembers a new one.
+     *
+     * @param data the receive buffer
+     * @param start the address start
+     * @param length the address length
+     *
+     * @return the index of the address
+     */
+    private int findAddress(byte[] data, int start, int length) {
+        for (int i = 0; i < addressCount; i++) {
+            byte[] address = addresses[i];
+            if (address.length == length && regionMatches(address, data, start)) {
+                return i;
+            }
+        }
+        int index = addressCount < MAX_ADDRESSES ? addressCount++ : MAX_ADDRESSES - 1;
+        byte[] address = new byte[length];
+        System.arraycopy(data, start, address, 0, length);
+        addresses[index] = address;
+        addressTypes[index] = new String(address, StandardCharsets.ISO_8859_1);
+        addressFields[index] = fieldsOf(addressTypes[index]);
+        return index;
+    }
+
+    /**
+     * Finds the field names of the sentence.
+     *
+     * @param address the address, eg. GPGGA
+     *
+     * @return the names, null for unknown sentences
+     */
+    private static String[] fieldsOf(String address) {
+        if (address.endsWith("GGA")) {
+            return GGA_FIELDS;
+        } else if (address.endsWith("RMC")) {
+            return RMC_FIELDS;
+        } else if (address.endsWith("GLL")) {
+            return GLL_FIELDS;
+        } else if (address.endsWith("VTG")) {
+            return VTG_FIELDS;
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(byte[] address, byte[] data, int start) {
+        for (int i = 0; i < address.length; i++) {
+            if (address[i] != data[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the hex digit.
+     *
+     * @param b the digit char
+     *
+     * @return the value, -1 if it isn't a hex digit
+     */
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+}
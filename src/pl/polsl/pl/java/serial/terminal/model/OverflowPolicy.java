@@ -0,0 +1,17 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Behaviour of the receive queue when the GUI can't keep up with received data.
+ * 
+ * @see ReceiveQueue
+ * @author Michał Lytek
+ */
+public enum OverflowPolicy {
+    
+    /** Wait for free space, stopping reading from serial port */
+    BLOCK,
+    /** Throw away the oldest queued frame to make space for the new one */
+    DROP_OLDEST,
+    /** Throw away the new frame, keeping the queued ones */
+    DROP_NEWEST
+}
@@ -0,0 +1,229 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command sent repeatedly, at fixed period or cron schedule, by the {@link CommandScheduler}.
+ * Deadlines of a periodic command are counted from its start, not from the previous send,
+ * so late sends don't accumulate into drift. When a send is later than the whole period,
+ * the missed deadlines are skipped and counted instead of being sent in a burst.
+ * A deadline is skipped too while the previous send is still waiting for the port,
+ * so a slow port doesn't collect a queue of the same command.
+ *
+ * @author Michał Lytek
+ */
+public class PeriodicCommand implements Runnable {
+
+    /** Scheduler which sends the command and collects jitter */
+    private final CommandScheduler scheduler;
+    /** The sent text, terminator is added by the controler */
+    private final String text;
+    /** The period in ns, 0 for cron schedule */
+    private final long period;
+    /** The calendar schedule, null for fixed period */
+    private final CronExpression cron;
+
+    /** Handle of the next send, null if the command is stopped */
+    private HashedWheelTimer.Timeout timeout;
+    /** True while the last queued send isn't written yet */
+    private boolean sending;
+    /** Time of the next send, System.nanoTime based */
+    private long deadline;
+    /** Time of the next cron send in ms since the epoch */
+    private long cronTime;
+
+    /* Statistics - queued, sent, skipped and failed sends */
+    private volatile long queuedCount,
+            sentCount,
+            missedCount,
+            failedCount;
+    /** Sum of queueing delays after deadline in ns */
+    private volatile long jitterSum;
+    /** The biggest queueing delay after deadline in ns */
+    private volatile long maxJitter;
+
+    /**
+     * Creates the command sent at fixed period.
+     *
+     * @param scheduler the scheduler sending the command
+     * @param text the sent text
+     * @param periodMillis the period in ms, at least 1
+     */
+    PeriodicCommand(CommandScheduler scheduler, String text, int periodMillis) {
+        this.scheduler = scheduler;
+        this.text = text;
+        this.period = TimeUnit.MILLISECONDS.toNanos(Math.max(1, periodMillis));
+        this.cron = null;
+    }
+
+    /**
+     * Creates the command sent at cron schedule.
+     *
+     * @param scheduler the scheduler sending the command
+     * @param text the sent text
+     * @param cron the calendar schedule
+     */
+    PeriodicCommand(CommandScheduler scheduler, String text, CronExpression cron) {
+        this.scheduler = scheduler;
+        this.text = text;
+        this.period = 0;
+        this.cron = cron;
+    }
+
+    /**
+     * Schedules the first send, one period or the next cron time from now.
+     */
+    synchronized void start() {
+        if (timeout != null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (cron != null) {
+            scheduleCron(now, System.currentTimeMillis());
+        } else {
+            this.deadline = now + period;
+            this.timeout = scheduler.getTimer().schedule(this, deadline);
+        }
+    }
+
+    /**
+     * Cancels the next send.
+     */
+    synchronized void stop() {
+        if (timeout != null) {
+            timeout.cancel();
+            this.timeout = null;
+        }
+    }
+
+    /**
+     * Queues the command to the sending thread and schedules the next send, run on the timer thread.
+     * The delay after deadline is measured when the command is queued, so it's the timer jitter,
+     * not the time of waiting for the port.
+     */
+    @Override
+    public synchronized void run() {
+        if (timeout == null) {
+            return;
+        }
+        if (sending) {
+            this.missedCount++;
+        } else {
+            long jitter = Math.max(0, System.nanoTime() - deadline);
+            scheduler.recordJitter(jitter);
+            this.jitterSum += jitter;
+            this.maxJitter = Math.max(maxJitter, jitter);
+            this.queuedCount++;
+            this.sending = true;
+            scheduler.send(text).whenComplete((progress, ex) -> sent(progress));
+        }
+
+        if (cron != null) {
+            long nowMillis = System.currentTimeMillis();
+            long nextTime = cron.next(cronTime);
+            if (nextTime >= 0 && nextTime <= nowMillis) {
+                // the timer was later than the next time
+                this.missedCount++;
+            }
+            scheduleCron(System.nanoTime(), nowMillis);
+            return;
+        }
+        long next = deadline + period;
+        long now = System.nanoTime();
+        if (next <= now) {
+            long missed = (now - deadline) / period;
+            this.missedCount += missed;
+            next = deadline + (missed + 1) * period;
+        }
+        this.deadline = next;
+        this.timeout = scheduler.getTimer().schedule(this, deadline);
+    }
+
+    /**
+     * Counts the written or failed send, run on the sending thread.
+     *
+     * @param progress the progress of sending, null if the sending failed with exception
+     */
+    private synchronized void sent(SendProgress progress) {
+        this.sending = false;
+        if (progress != null && progress.isComplete()) {
+            this.sentCount++;
+        } else {
+            this.failedCount++;
+        }
+    }
+
+    /**
+     * Schedules the next cron send after the current time.
+     *
+     * @param now the current time, System.nanoTime based
+     * @param nowMillis the current time in ms since the epoch
+     */
+    private void scheduleCron(long now, long nowMillis) {
+        long nextTime = cron.next(nowMillis);
+        if (nextTime < 0) {
+            this.timeout = null;
+            return;
+        }
+        this.cronTime = nextTime;
+        this.deadline = now + TimeUnit.MILLISECONDS.toNanos(nextTime - nowMillis);
+        this.timeout = scheduler.getTimer().schedule(this, deadline);
+    }
+
+    /**
+     * Getter to the sent text.
+     * @return the command text
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Getter to the schedule description.
+     * @return the period like "100 ms" or the cron expression
+     */
+    public String getSchedule() {
+        return cron != null ? cron.toString() : TimeUnit.NANOSECONDS.toMillis(period) + " ms";
+    }
+
+    /**
+     * Getter to the number of sends.
+     * @return the number of fully sent commands
+     */
+    public long getSentCount() {
+        return this.sentCount;
+    }
+
+    /**
+     * Getter to the number of skipped deadlines.
+     * @return the number of sends skipped because the previous one was too late
+     */
+    public long getMissedCount() {
+        return this.missedCount;
+    }
+
+    /**
+     * Getter to the number of failed sends.
+     * @return the number of sends which weren't fully written
+     */
+    public long getFailedCount() {
+        return this.failedCount;
+    }
+
+    /**
+     * Getter to the average delay of queueing sends after their deadlines.
+     * @return the average delay in ns, 0 before the first send
+     */
+    public long getAverageJitter() {
+        long count = queuedCount;
+        return count > 0 ? jitterSum / count : 0;
+    }
+
+    /**
+     * Getter to the biggest delay of queueing send after its deadline.
+     * @return the maximum delay in ns
+     */
+    public long getMaxJitter() {
+        return this.maxJitter;
+    }
+}
@@ -0,0 +1,60 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Decoder of a binary or text protocol in received bytes, eg. Modbus RTU or NMEA 0183.
+ * Decoders are found by {@link java.util.ServiceLoader}, a jar on the class path adds its own
+ * by listing the class in {@code META-INF/services/pl.polsl.pl.java.serial.terminal.model.ProtocolDecoder}.
+ * A decoder gets slices of the receive buffer, not copies, and fills the reused {@link DecodedMessage}
+ * with slices and numbers, so decoding a frame doesn't need to allocate.
+ * A decoder instance is used by one {@link DecoderPipeline} at a time, on the receiving thread.
+ *
+ * @author Michał Lytek
+ */
+public interface ProtocolDecoder {
+
+    /**
+     * Receiver of decoded messages.
+     */
+    interface Sink {
+        /**
+         * Takes the decoded message, valid only during the call.
+         *
+         * @param message the message, its fields may point into the receive buffer
+         */
+        void messageDecoded(DecodedMessage message);
+
+        /**
+         * Takes the number of bytes which aren't a part of any frame, eg. noise or a frame with wrong CRC.
+         *
+         * @param count the number of skipped bytes
+         */
+        void bytesSkipped(int count);
+    }
+
+    /**
+     * Getter to the protocol name.
+     * @return the name shown in the list of decoders
+     */
+    String getName();
+
+    /**
+     * Getter to the longest frame, the decoder must decide with that many bytes.
+     * @return the maximum frame length in bytes
+     */
+    int getMaxFrameLength();
+
+    /**
+     * Decodes the frame or skips the bytes at the start of the slice.
+     * Bytes which aren't consumed are given again, followed by next received ones.
+     *
+     * @param data the receive buffer, must not be changed
+     * @param offset the index of the first byte of the slice
+     * @param length the number of bytes of the slice
+     * @param message the reused message to fill and pass to the sink
+     * @param sink the receiver of messages and skipped bytes
+     *
+     * @return the number of consumed bytes, 0 only if the slice is shorter than the maximum frame
+     * and the frame at its start isn't complete
+     */
+    int decode(byte[] data, int offset, int length, DecodedMessage message, Sink sink);
+}
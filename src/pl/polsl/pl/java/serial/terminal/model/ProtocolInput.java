@@ -0,0 +1,100 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+/**
+ * Receiver collecting bytes for a transfer protocol, which reads them
+ * one by one on its own thread, waiting for the next byte up to a timeout.
+ * Cancelling the transfer wakes up the waiting thread at once.
+ *
+ * @author Michał Lytek
+ */
+public class ProtocolInput implements SerialTransport.Receiver {
+
+    /** Initial capacity of the buffer */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /** Circular buffer of not read bytes */
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    /** Index of the first not read byte */
+    private int head;
+    /** Number of not read bytes */
+    private int count;
+    /** Set when the transfer is cancelled, reading fails then */
+    private boolean cancelled;
+
+    /**
+     * Stores received bytes and wakes up the reading thread.
+     *
+     * @param data the received bytes
+     * @param length the number of valid bytes in the array
+     */
+    @Override
+    public synchronized void bytesReceived(byte[] data, int length) {
+        if (count + length > buffer.length) {
+            byte[] grown = new byte[Math.max(count + length, buffer.length << 1)];
+            for (int i = 0; i < count; i++) {
+                grown[i] = buffer[(head + i) % buffer.length];
+            }
+            this.buffer = grown;
+            this.head = 0;
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[(head + count + i) % buffer.length] = data[i];
+        }
+        count += length;
+        notifyAll();
+    }
+
+    /**
+     * Takes the next received byte, waiting for it if needed.
+     *
+     * @param timeout the maximum waiting time in ms, 0 to not wait
+     *
+     * @return the byte value 0-255, or -1 if nothing was received in time
+     *
+     * @throws IOException if the transfer was cancelled
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public synchronized int read(long timeout) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (count == 0 && !cancelled) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return -1;
+            }
+            wait(remaining);
+        }
+        if (cancelled) {
+            throw new IOException("File transfer cancelled");
+        }
+        int value = buffer[head] & 0xFF;
+        head = (head + 1) % buffer.length;
+        count--;
+        return value;
+    }
+
+    /**
+     * Getter to the number of bytes which can be read without waiting.
+     * @return the number of buffered bytes
+     */
+    public synchronized int available() {
+        return this.count;
+    }
+
+    /**
+     * Cancels the transfer, the waiting and every next read fails.
+     */
+    public synchronized void cancel() {
+        this.cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Forgets all received bytes, eg. stale responses before resending a block.
+     */
+    public synchronized void clear() {
+        this.head = 0;
+        this.count = 0;
+    }
+}
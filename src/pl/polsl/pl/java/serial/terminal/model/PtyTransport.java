@@ -0,0 +1,134 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Transport over Linux pseudo-terminal (or any other tty device file)
+ * without the native jssc library, eg. one end of the pair created by
+ * {@code socat -d -d pty,raw,echo=0 pty,raw,echo=0}.
+ * Line settings like baudrate have no meaning for pseudo-terminal,
+ * the device is only switched to raw mode.
+ * The device is read through a file channel, because closing a stream doesn't wake
+ * the thread blocked in tty read, while closing the channel does.
+ *
+ * @author Michał Lytek
+ */
+public class PtyTransport implements SerialTransport {
+
+    /** Size of the read buffer */
+    private static final int READ_BUFFER_SIZE = 4096;
+    /** Time to wait for the reader thread to end when closing, in ms */
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    /** Path of the tty device */
+    private final String devicePath;
+    /** Channel for reading */
+    private FileChannel input;
+    /** Stream for writing */
+    private FileOutputStream output;
+    /** Thread reading from the device */
+    private Thread readerThread;
+    /** False when the transport is being closed */
+    private volatile boolean running;
+
+    /**
+     * Creates the transport, the device isn't opened yet.
+     *
+     * @param devicePath the path of the tty device, eg. /dev/pts/3
+     */
+    public PtyTransport(String devicePath) {
+        this.devicePath = devicePath;
+    }
+
+    @Override
+    public void open(Receiver receiver) throws IOException {
+        setRawMode();
+        this.input = FileChannel.open(Paths.get(devicePath), StandardOpenOption.READ);
+        this.output = new FileOutputStream(devicePath);
+        this.running = true;
+        this.readerThread = new Thread(() -> readLoop(receiver), "pty-transport-" + devicePath);
+        this.readerThread.setDaemon(true);
+        this.readerThread.start();
+    }
+
+    /**
+     * Closes the device and waits for the reader thread to end,
+     * so reconnecting doesn't leave threads and file descriptors behind.
+     *
+     * @throws IOException if the device can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        try {
+            output.close();
+        } finally {
+            // wakes the reader blocked in read
+            input.close();
+        }
+        if (Thread.currentThread() != readerThread) {
+            try {
+                readerThread.join(CLOSE_TIMEOUT);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        output.write(data, offset, length);
+        output.flush();
+    }
+
+    @Override
+    public String getName() {
+        return devicePath;
+    }
+
+    /**
+     * Reads from the device until it's closed, passing chunks to the receiver.
+     *
+     * @param receiver the receiver of incoming bytes
+     */
+    private void readLoop(Receiver receiver) {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        try {
+            int count;
+            while (running && (count = input.read(wrapped)) >= 0) {
+                if (count > 0) {
+                    receiver.bytesReceived(buffer, count);
+                }
+                wrapped.clear();
+            }
+        } catch (ClosedChannelException ex) {
+            // closed by close()
+        } catch (IOException ex) {
+            if (running) {
+                System.err.println(ex);
+            }
+        }
+    }
+
+    /**
+     * Switches the device to raw mode with stty, so the line discipline doesn't change the bytes.
+     * Failure is ignored, eg. when stty isn't available or the device is already raw.
+     */
+    private void setRawMode() {
+        try {
+            new ProcessBuilder("stty", "-F", devicePath, "raw", "-echo").inheritIO().start().waitFor();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free ring buffer between serial port reading thread (the only producer)
+ * and the GUI thread (the only consumer).
+ * When the queue is full the producer follows the configured overflow policy
+ * and counts the dropped frames.
+ * 
+ * @param <E> the type of queued elements
+ * @author Michał Lytek
+ */
+public class ReceiveQueue<E> {
+    
+    /** Producer pause while waiting for free space in blocking mode */
+    private static final long BLOCK_PARK_NANOS = 100_000;
+    
+    /** Ring buffer slots */
+    private final AtomicReferenceArray<E> elements;
+    /** Mask to convert sequence number to slot index */
+    private final int mask;
+    /** Behaviour when the queue is full */
+    private final OverflowPolicy overflowPolicy;
+    
+    /** Sequence number of the next element to poll, moved also by producer when it drops the oldest */
+    private final AtomicLong head = new AtomicLong();
+    /** Sequence number of the next element to offer, moved only by producer */
+    private final AtomicLong tail = new AtomicLong();
+    /** Number of frames thrown away due to overflow */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Creates an empty queue.
+     * 
+     * @param capacity the minimum capacity, rounded up to the power of two
+     * @param overflowPolicy the behaviour when the queue is full
+     */
+    public ReceiveQueue(int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Puts the element at the end of the queue. Must be called only from the producer thread.
+     * 
+     * @param element the element to enqueue
+     * 
+     * @return true if the element was queued, false if it was dropped
+     */
+    public boolean offer(E element) {
+        long currentTail = tail.get();
+        while (currentTail - head.get() > mask) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    droppedCount.incrementAndGet();
+                    return false;
+                case DROP_OLDEST:
+                    long currentHead = head.get();
+                    if (currentTail - currentHead > mask && head.compareAndSet(currentHead, currentHead + 1)) {
+                        droppedCount.incrementAndGet();
+                    }
+                    break;
+                default:
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    break;
+            }
+        }
+        elements.lazySet((int) currentTail & mask, element);
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Takes the element from the beginning of the queue. Must be called only from the consumer thread.
+     * 
+     * @return the oldest element or null if the queue is empty
+     */
+    public E poll() {
+        while (true) {
+            long currentHead = head.get();
+            if (currentHead >= tail.get()) {
+                return null;
+            }
+            int index = (int) currentHead & mask;
+            E element = elements.get(index);
+            // the slot is valid only when the producer haven't dropped it in the meantime
+            if (head.compareAndSet(currentHead, currentHead + 1)) {
+                // the polled element mustn't stay reachable, unless the producer has already reused the slot
+                elements.compareAndSet(index, element, null);
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Checks if there's nothing to poll.
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * Getter to the number of queued elements, may be stale when called from other threads.
+     * @return the number of elements waiting to be polled
+     */
+    public long size() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Getter to the number of frames dropped due to overflow.
+     * @return the dropped frames count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,63 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Piece of received text waiting in the receive queue to be shown in GUI.
+ * 
+ * @author Michał Lytek
+ */
+public class ReceivedFrame {
+    
+    /** Received text */
+    private final String text;
+    /** True if the text should be placed in new line */
+    private final boolean newLine;
+    /** Trigger matching the text, null if there's none */
+    private final Trigger trigger;
+
+    /**
+     * Creates the frame.
+     * 
+     * @param text the received text
+     * @param newLine true if the text should be placed in new line, false if appended to the current text
+     */
+    public ReceivedFrame(String text, boolean newLine) {
+        this(text, newLine, null);
+    }
+
+    /**
+     * Creates the frame matched by trigger.
+     * 
+     * @param text the received text
+     * @param newLine true if the text should be placed in new line, false if appended to the current text
+     * @param trigger the matching trigger with the highest priority, null if there's none
+     */
+    public ReceivedFrame(String text, boolean newLine, Trigger trigger) {
+        this.text = text;
+        this.newLine = newLine;
+        this.trigger = trigger;
+    }
+
+    /**
+     * Getter to the received text.
+     * @return the received text
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Getter to the new line flag.
+     * @return true if the text should be placed in new line
+     */
+    public boolean isNewLine() {
+        return this.newLine;
+    }
+
+    /**
+     * Getter to the matching trigger.
+     * @return the trigger, null if the text doesn't match any
+     */
+    public Trigger getTrigger() {
+        return this.trigger;
+    }
+}
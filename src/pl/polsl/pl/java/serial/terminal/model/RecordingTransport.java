@@ -0,0 +1,97 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+/**
+ * Transport wrapper which passes the traffic in both directions
+ * to the traffic recorder, when recording is on, and counts the sent bytes.
+ * Without recorder it costs a single field read per chunk.
+ * Replayed traffic isn't recorded, it's already in the replayed capture file.
+ *
+ * @author Michał Lytek
+ */
+public class RecordingTransport implements SerialTransport {
+
+    /** Wrapped transport */
+    private final SerialTransport transport;
+    /** Recorder of the traffic, null if recording is off */
+    private volatile TrafficRecorder recorder;
+    /** Counters of the connection, null if they aren't collected */
+    private TrafficStatistics statistics;
+
+    /**
+     * Wraps the transport.
+     *
+     * @param transport the not opened transport
+     */
+    public RecordingTransport(SerialTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Starts or stops passing the traffic to the recorder.
+     *
+     * @param recorder the recorder, null to stop recording, ignored for replay
+     */
+    public void setRecorder(TrafficRecorder recorder) {
+        this.recorder = transport instanceof ReplayTransport ? null : recorder;
+    }
+
+    /**
+     * Sets the counters of sent bytes, must be called before the transport is opened.
+     *
+     * @param statistics the counters, null to not count
+     */
+    public void setStatistics(TrafficStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Getter to the wrapped transport.
+     * @return the wrapped transport
+     */
+    public SerialTransport getTransport() {
+        return this.transport;
+    }
+
+    @Override
+    public void open(Receiver receiver) throws IOException {
+        transport.open(new Receiver() {
+            @Override
+            public void bytesReceived(byte[] receivedBytes, int length) {
+                TrafficRecorder currentRecorder = recorder;
+                if (currentRecorder != null) {
+                    currentRecorder.record(TrafficRecorder.RX, receivedBytes, 0, length);
+                }
+                receiver.bytesReceived(receivedBytes, length);
+            }
+
+            @Override
+            public void lineErrorOccured(int errors) {
+                receiver.lineErrorOccured(errors);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        transport.write(data, offset, length);
+        if (statistics != null) {
+            statistics.bytesSent(length);
+        }
+        TrafficRecorder currentRecorder = this.recorder;
+        if (currentRecorder != null) {
+            currentRecorder.record(TrafficRecorder.TX, data, offset, length);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return transport.getName();
+    }
+}
@@ -0,0 +1,132 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport replaying received bytes from binary capture file,
+ * so field issues can be reproduced and the receive path measured
+ * on real traffic without the device.
+ * Received chunks are delivered with original timing, N times faster
+ * or as fast as possible. Sent bytes are ignored.
+ *
+ * @author Michał Lytek
+ */
+public class ReplayTransport implements SerialTransport {
+
+    /** Longest single wait, so closing the transport isn't delayed */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** Capture file */
+    private final File file;
+    /** Speed multiplier, 0 for as fast as possible */
+    private final int speed;
+    /** Time in capture to start from in ns */
+    private final long startTime;
+
+    /** Thread delivering the records */
+    private Thread replayThread;
+    /** Set when the transport is closed */
+    private volatile boolean closed;
+    /** Set when all records were delivered */
+    private volatile boolean finished;
+
+    /**
+     * Creates the transport, the file isn't opened yet.
+     *
+     * @param file the capture file
+     * @param speed the speed multiplier - 1 for original timing, 0 for as fast as possible
+     * @param startSeconds the time in capture to start from in seconds
+     */
+    public ReplayTransport(File file, int speed, int startSeconds) {
+        this.file = file;
+        this.speed = Math.max(0, speed);
+        this.startTime = TimeUnit.SECONDS.toNanos(Math.max(0, startSeconds));
+    }
+
+    @Override
+    public synchronized void open(Receiver receiver) throws IOException {
+        CaptureReader reader = new CaptureReader(file);
+        reader.seek(startTime);
+        this.replayThread = new Thread(() -> replay(reader, receiver), "capture-replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        if (replayThread != null) {
+            try {
+                replayThread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            replayThread = null;
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Replay transport is closed");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "replay:" + file.getName();
+    }
+
+    /**
+     * Check if all records were delivered.
+     * @return true if the replay has ended
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * Replay thread loop - delivers received records in capture order, keeping their timing.
+     *
+     * @param reader the opened capture reader
+     * @param receiver the receiver of replayed bytes
+     */
+    private void replay(CaptureReader reader, Receiver receiver) {
+        long replayStart = System.nanoTime();
+        long firstRecordTime = -1;
+        try {
+            while (!closed && reader.next()) {
+                if (reader.getDirection() != TrafficRecorder.RX) {
+                    continue;
+                }
+                if (firstRecordTime < 0) {
+                    firstRecordTime = reader.getTime();
+                }
+                if (speed > 0) {
+                    long dueTime = replayStart + (reader.getTime() - firstRecordTime) / speed;
+                    long delay;
+                    while (!closed && (delay = dueTime - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(Math.min(delay, MAX_PARK_NANOS));
+                    }
+                }
+                if (closed) {
+                    break;
+                }
+                receiver.bytesReceived(reader.getData(), reader.getLength());
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+        this.finished = true;
+    }
+}
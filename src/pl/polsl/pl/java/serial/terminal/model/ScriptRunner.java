@@ -0,0 +1,304 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.CharBuffer;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+
+/**
+ * Runs the compiled {@link ExpectScript} against the connection.
+ * Received text is matched as it comes on the receive thread, only the current frame
+ * is kept, so the scrollback is never scanned again. Timeouts and sleeps run on the scheduler
+ * and lines are sent through {@link Controler#sendText}, so they get the connection terminator.
+ * The script goes on when the sending thread has written the line, so the receive thread
+ * never waits for the port.
+ * Every expect step gets its latency - the time from reaching the step,
+ * usually right after sending a line, to the match, which is the reaction time of the device.
+ *
+ * @author Michał Lytek
+ */
+public class ScriptRunner {
+
+    /** Maximum length of text kept when there's no terminator */
+    private static final int MAX_PENDING_LENGTH = 8192;
+    /** Maximum number of steps run without waiting, to stop loops without expect */
+    private static final int MAX_STEPS_WITHOUT_WAIT = 100000;
+
+    /** The compiled script */
+    private final ExpectScript script;
+    /** Instance of controler which sends the lines and is informed about progress */
+    private final Controler controler;
+    /** Thread running timeouts and sleeps */
+    private final ScheduledExecutorService scheduler;
+
+    /** Index of current step */
+    private int stepIndex;
+    /** Number of the current wait, older timeouts are ignored */
+    private long generation;
+    /** Timeout or sleep task of the current step */
+    private ScheduledFuture<?> timer;
+    /** True if the script has ended */
+    private boolean finished;
+    /** True while the line of the current step is being written */
+    private boolean sending;
+
+    /** Text of the current frame received so far, after the lines received while sending */
+    private final StringBuilder pending = new StringBuilder();
+    /** Start of the current frame in the pending text, above 0 only if lines were received while sending */
+    private int frameStart;
+    /** Length of the pending text already matched by previous expect */
+    private int consumed;
+
+    /** Time when the current expect started to wait */
+    private long waitStart;
+    /** Time when the script started */
+    private long startTime;
+    /** Number of run steps */
+    private int runSteps;
+    /** Latency of every matched expect, in the order of running */
+    private final StringBuilder report = new StringBuilder();
+
+    /**
+     * Creates the runner, the script doesn't start yet.
+     *
+     * @param script the compiled script
+     * @param controler the controler sending lines and informed about progress
+     * @param scheduler the thread running timeouts and sleeps
+     */
+    public ScriptRunner(ExpectScript script, Controler controler, ScheduledExecutorService scheduler) {
+        this.script = script;
+        this.controler = controler;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Runs the first steps of the script until it waits.
+     */
+    public synchronized void start() {
+        this.startTime = System.nanoTime();
+        this.stepIndex = 0;
+        advance();
+    }
+
+    /**
+     * Stops the script, eg. on user request or disconnect.
+     */
+    public synchronized void cancel() {
+        finish(false, "Przerwano");
+    }
+
+    /**
+     * Check if the script is still running.
+     * @return true until the script ends
+     */
+    public synchronized boolean isRunning() {
+        return !finished;
+    }
+
+    /**
+     * Matches the complete received line, the next text starts new frame.
+     *
+     * @param line the received line without terminator
+     */
+    public synchronized void lineReceived(String line) {
+        pending.setLength(frameStart);
+        pending.append(line);
+        if (sending) {
+            // the answer may come before the line is written, it's matched by the next expect
+            pending.append('\n');
+            frameStart = pending.length();
+            trimPending();
+            return;
+        }
+        match();
+        pending.setLength(0);
+        frameStart = 0;
+        consumed = 0;
+    }
+
+    /**
+     * Matches the frame being received, eg. a prompt without terminator.
+     *
+     * @param frame the text of the frame received so far
+     */
+    public synchronized void pendingFrameReceived(String frame) {
+        pending.setLength(frameStart);
+        pending.append(frame);
+        match();
+    }
+
+    /**
+     * Matches received text when there's no terminator and chars come as they are.
+     *
+     * @param chars the received text
+     */
+    public synchronized void charsReceived(String chars) {
+        pending.append(chars);
+        trimPending();
+        match();
+    }
+
+    /**
+     * Removes the oldest text when the pending text is too long.
+     */
+    private void trimPending() {
+        if (pending.length() > MAX_PENDING_LENGTH) {
+            int removed = pending.length() - MAX_PENDING_LENGTH / 2;
+            pending.delete(0, removed);
+            consumed = Math.max(0, consumed - removed);
+            frameStart = Math.max(0, frameStart - removed);
+        }
+    }
+
+    /**
+     * Matches the not consumed part of the frame against the current expect
+     * and goes to the step of matching alternative.
+     */
+    private void match() {
+        ExpectScript.Step step = script.getStep(stepIndex);
+        if (finished || step == null || step.kind != ExpectScript.EXPECT || consumed >= pending.length()) {
+            return;
+        }
+        int matched = step.engine.match(CharBuffer.wrap(pending, consumed, pending.length()));
+        if (matched < 0) {
+            return;
+        }
+        consumed = pending.length();
+        report.append(String.format("%4d. linia %d: %s - %.3f ms%n",
+                runSteps, step.lineNumber, step.command, (System.nanoTime() - waitStart) / 1e6));
+        stopTimer();
+        stepIndex = step.targets[matched];
+        advance();
+    }
+
+    /**
+     * Runs the steps from the current one until the script waits or ends.
+     */
+    private void advance() {
+        for (int count = 0; !finished; count++) {
+            if (count > MAX_STEPS_WITHOUT_WAIT) {
+                finish(false, "Pętla bez oczekiwania");
+                return;
+            }
+            ExpectScript.Step step = script.getStep(stepIndex);
+            if (step == null) {
+                finish(true, null);
+                return;
+            }
+            runSteps++;
+            controler.scriptProgress(runSteps, step.lineNumber, step.command);
+            long waitGeneration = ++generation;
+            switch (step.kind) {
+                case ExpectScript.EXPECT:
+                    this.waitStart = System.nanoTime();
+                    if (step.time > 0) {
+                        this.timer = scheduler.schedule(() -> timeout(waitGeneration), step.time, TimeUnit.MILLISECONDS);
+                    }
+                    // the text received before may already contain the match
+                    match();
+                    return;
+                case ExpectScript.SEND:
+                    // the answer to the sent line starts after it, also if it comes before the line is written
+                    consumed = pending.length();
+                    sending = true;
+                    controler.sendText(step.text).whenComplete((progress, ex) -> sent(waitGeneration, progress));
+                    return;
+                case ExpectScript.SLEEP:
+                    stepIndex++;
+                    this.timer = scheduler.schedule(() -> wakeUp(waitGeneration), step.time, TimeUnit.MILLISECONDS);
+                    return;
+                case ExpectScript.GOTO:
+                    stepIndex = step.targets[0];
+                    break;
+                case ExpectScript.FAIL:
+                    finish(false, step.text.isEmpty() ? "Błąd w linii " + step.lineNumber : step.text);
+                    return;
+                default:
+                    finish(true, null);
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Handles the end of expect waiting time, run on the scheduler.
+     *
+     * @param waitGeneration the number of wait which timed out
+     */
+    private synchronized void timeout(long waitGeneration) {
+        if (finished || waitGeneration != generation) {
+            return;
+        }
+        ExpectScript.Step step = script.getStep(stepIndex);
+        report.append(String.format("%4d. linia %d: %s - przekroczono czas %d ms%n",
+                runSteps, step.lineNumber, step.command, step.time));
+        if (step.timeoutTarget < 0) {
+            finish(false, "Przekroczono czas oczekiwania w linii " + step.lineNumber);
+            return;
+        }
+        stepIndex = step.timeoutTarget;
+        advance();
+    }
+
+    /**
+     * Goes on after the line of the current step is written, run on the sending thread.
+     *
+     * @param waitGeneration the number of wait for the line
+     * @param progress the progress of sending, null if the sending failed with exception
+     */
+    private synchronized void sent(long waitGeneration, SendProgress progress) {
+        if (finished || waitGeneration != generation) {
+            return;
+        }
+        sending = false;
+        ExpectScript.Step step = script.getStep(stepIndex);
+        if (progress == null || !progress.isComplete()) {
+            finish(false, "Nie można wysłać linii " + step.lineNumber);
+            return;
+        }
+        stepIndex++;
+        advance();
+    }
+
+    /**
+     * Handles the end of sleep, run on the scheduler.
+     *
+     * @param waitGeneration the number of wait which ended
+     */
+    private synchronized void wakeUp(long waitGeneration) {
+        if (!finished && waitGeneration == generation) {
+            advance();
+        }
+    }
+
+    /**
+     * Cancels the timeout or sleep of the current step.
+     */
+    private void stopTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            this.timer = null;
+        }
+    }
+
+    /**
+     * Ends the script and passes the report to the controler.
+     *
+     * @param isSuccesful true if the script reached its end
+     * @param reason the reason of failure, null on success
+     */
+    private void finish(boolean isSuccesful, String reason) {
+        if (finished) {
+            return;
+        }
+        this.finished = true;
+        stopTimer();
+        report.append(String.format("%s po %.3f ms, wykonano %d kroków%n",
+                isSuccesful ? "Skrypt zakończony" : "Skrypt przerwany: " + reason,
+                (System.nanoTime() - startTime) / 1e6, runSteps));
+        controler.scriptFinished(this, isSuccesful, report.toString());
+    }
+}
@@ -0,0 +1,68 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Result of sending text through serial connection - how much of it
+ * was actually written before the transfer ended or failed.
+ * 
+ * @author Michał Lytek
+ */
+public class SendProgress {
+    
+    /** Number of bytes written to the port, including terminators */
+    private final long bytesWritten;
+    /** Number of lines written to the port together with terminator */
+    private final int linesWritten;
+    /** Number of leading characters of the text which were fully sent */
+    private final int sentLength;
+    /** True if the whole text was sent */
+    private final boolean complete;
+
+    /**
+     * Creates the progress.
+     * 
+     * @param bytesWritten the number of bytes written to the port
+     * @param linesWritten the number of lines written together with terminator
+     * @param sentLength the number of leading characters of the text which were fully sent
+     * @param complete true if the whole text was sent
+     */
+    public SendProgress(long bytesWritten, int linesWritten, int sentLength, boolean complete) {
+        this.bytesWritten = bytesWritten;
+        this.linesWritten = linesWritten;
+        this.sentLength = sentLength;
+        this.complete = complete;
+    }
+
+    /**
+     * Getter to the number of bytes written to the port.
+     * @return the written bytes count
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Getter to the number of lines written together with terminator.
+     * @return the written lines count
+     */
+    public int getLinesWritten() {
+        return this.linesWritten;
+    }
+
+    /**
+     * Getter to the length of text part which was fully sent.
+     * Sending may be resumed from this index. It's the start of a line,
+     * unless the line was longer than the send buffer and only its first part was written.
+     * @return the number of leading characters which were sent
+     */
+    public int getSentLength() {
+        return this.sentLength;
+    }
+
+    /**
+     * Getter to the completion flag.
+     * @return true if the whole text was sent
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+}
@@ -0,0 +1,70 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.IOException;
+
+/**
+ * Byte stream connection to the device, eg. a serial port.
+ * Separates the receive and send logic from the jssc library,
+ * so it can be run on in-memory loopback or pseudo-terminal without hardware.
+ *
+ * @author Michał Lytek
+ */
+public interface SerialTransport {
+
+    /**
+     * Receiver of bytes coming from the transport.
+     */
+    interface Receiver {
+
+        /**
+         * Called on the transport thread for every received chunk.
+         * The array may be reused by transport after return, so it must not be kept.
+         *
+         * @param data the received bytes
+         * @param length the number of valid bytes in the array
+         */
+        void bytesReceived(byte[] data, int length);
+
+        /**
+         * Called on the transport thread when the port reports line errors.
+         * Transports without a physical line never call it.
+         *
+         * @param errors the mask of jssc error flags - frame, parity and overrun
+         */
+        default void lineErrorOccured(int errors) {
+        }
+    }
+
+    /**
+     * Opens the connection and starts delivering received bytes to the receiver.
+     *
+     * @param receiver the receiver of incoming bytes
+     *
+     * @throws IOException if the connection can't be opened
+     */
+    void open(Receiver receiver) throws IOException;
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if the connection can't be closed
+     */
+    void close() throws IOException;
+
+    /**
+     * Sends bytes to the device.
+     *
+     * @param data the array with bytes to send
+     * @param offset the index of the first byte to send
+     * @param length the number of bytes to send
+     *
+     * @throws IOException if the bytes can't be sent
+     */
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Getter to the transport name, eg. the system port name.
+     * @return the transport name
+     */
+    String getName();
+}
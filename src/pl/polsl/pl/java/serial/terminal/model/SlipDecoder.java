@@ -0,0 +1,93 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Decoder of custom frames wrapped in SLIP (RFC 1055): frames end with 0xC0,
+ * 0xC0 and 0xDB inside are sent as 0xDB 0xDC and 0xDB 0xDD.
+ * The payload is the message type byte, data and CRC-16/XMODEM of both, high byte first.
+ * Escapes are removed into a buffer of the decoder, so the fields point there, not into the receive buffer.
+ *
+ * @author Michał Lytek
+ */
+public class SlipDecoder implements ProtocolDecoder {
+
+    /** Protocol name */
+    private static final String PROTOCOL = "SLIP";
+    /** Maximum frame length with escapes */
+    private static final int MAX_FRAME_LENGTH = 1024;
+    /* SLIP special bytes */
+    private static final byte END = (byte) 0xC0,
+            ESC = (byte) 0xDB,
+            ESC_END = (byte) 0xDC,
+            ESC_ESC = (byte) 0xDD;
+    /** Field names of a frame */
+    private static final String[] FIELDS = {"Typ", "Dane", "CRC"};
+    /** Message types by type byte */
+    private static final String[] TYPES = new String[256];
+
+    static {
+        for (int type = 0; type < TYPES.length; type++) {
+            TYPES[type] = String.format("Ramka 0x%02X", type);
+        }
+    }
+
+    /** Payload of the frame without escapes, reused */
+    private final byte[] payload = new byte[MAX_FRAME_LENGTH];
+
+    @Override
+    public String getName() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public int getMaxFrameLength() {
+        return MAX_FRAME_LENGTH;
+    }
+
+    @Override
+    public int decode(byte[] data, int offset, int length, DecodedMessage message, Sink sink) {
+        int end = offset + Math.min(length, MAX_FRAME_LENGTH);
+        int frameEnd = offset;
+        while (frameEnd < end && data[frameEnd] != END) {
+            frameEnd++;
+        }
+        if (frameEnd == end) {
+            if (length < MAX_FRAME_LENGTH) {
+                return 0;
+            }
+            sink.bytesSkipped(end - offset);
+            return end - offset;
+        }
+        if (frameEnd == offset) {
+            // END before the frame flushes the line noise, it isn't an empty frame
+            return 1;
+        }
+        boolean valid = true;
+        int payloadLength = 0;
+        for (int i = offset; i < frameEnd; i++) {
+            byte b = data[i];
+            if (b == ESC && i + 1 < frameEnd) {
+                b = data[++i];
+                if (b == ESC_END) {
+                    b = END;
+                } else if (b == ESC_ESC) {
+                    b = ESC;
+                } else {
+                    valid = false;
+                }
+            } else if (b == ESC) {
+                valid = false;
+            }
+            payload[payloadLength++] = b;
+        }
+        int dataLength = Math.max(0, payloadLength - 3);
+        valid &= payloadLength >= 3 && Crc16.update(0, payload, 0, payloadLength) == 0;
+        message.start(PROTOCOL, TYPES[payload[0] & 0xFF], FIELDS, payload, 0, payloadLength, valid);
+        message.addNumber(payload[0] & 0xFF);
+        message.addBytes(1, dataLength);
+        if (payloadLength >= 3) {
+            message.addNumber(((payload[payloadLength - 2] & 0xFF) << 8) | (payload[payloadLength - 1] & 0xFF));
+        }
+        sink.messageDecoded(message);
+        return frameEnd + 1 - offset;
+    }
+}
@@ -0,0 +1,328 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser of numeric telemetry in received lines, eg. {@code t=12 temp=23.5 hum=45}
+ * or CSV {@code 12,23.5,45}. Fields are separated by spaces, tabs, commas or semicolons.
+ * A field {@code key=value} or {@code key:value} is a value of series named by the key;
+ * a bare number is a value of the series named by its column - from the CSV header line,
+ * if a line of only names came before, or #1, #2... otherwise.
+ * Numbers are parsed straight from the received bytes, a unit after the number is ignored,
+ * eg. {@code 23.5C}. Keys are found in a hash table compared with bytes,
+ * so a line costs no allocation unless it brings a new series name.
+ *
+ * @author Michał Lytek
+ */
+public class TelemetryParser {
+
+    /**
+     * Receiver of parsed values.
+     */
+    public interface Sink {
+        /**
+         * Takes the parsed value.
+         *
+         * @param series the series index, from 0 in order of appearance
+         * @param value the value
+         */
+        void value(int series, double value);
+    }
+
+    /** Maximum number of series, values of further ones are ignored */
+    public static final int MAX_SERIES = 256;
+    /** Size of the hash table of series names, power of two larger than the series count */
+    private static final int TABLE_SIZE = 512;
+    /** Maximum number of CSV header columns */
+    private static final int MAX_COLUMNS = 64;
+    /** Exact powers of ten of double */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Names of series as bytes, by series index */
+    private final byte[][] names = new byte[MAX_SERIES][];
+    /** Hash table of series indexes plus one, 0 for empty slot */
+    private final int[] table = new int[TABLE_SIZE];
+    /** Number of series */
+    private volatile int seriesCount;
+    /** Series of CSV columns from the header line, -1 if the column has no name */
+    private final int[] columnSeries = new int[MAX_COLUMNS];
+    /** Number of CSV header columns */
+    private int columnCount;
+
+    /** End of the last parsed number, set by {@link #parseNumber} */
+    private int numberEnd;
+    /** Value of the last parsed number, set by {@link #parseNumber} */
+    private double numberValue;
+
+    /**
+     * Parses the line and passes all values to the sink.
+     *
+     * @param bytes the line bytes without terminator
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param sink the receiver of values
+     *
+     * @return the number of passed values
+     */
+    public int parse(byte[] bytes, int offset, int length, Sink sink) {
+        int end = offset + length;
+        int values = 0;
+        int column = 0;
+        int nameFields = 0;
+        int fields = 0;
+        boolean delimited = false;
+        int position = offset;
+        while (position < end) {
+            byte b = bytes[position];
+            if (isSeparator(b)) {
+                delimited |= b != ' ';
+                position++;
+                continue;
+            }
+            int fieldStart = position;
+            int keyEnd = -1;
+            while (position < end && !isSeparator(bytes[position])) {
+                if (keyEnd < 0 && (bytes[position] == '=' || bytes[position] == ':')) {
+                    keyEnd = position;
+                }
+                position++;
+            }
+            fields++;
+            if (keyEnd > fieldStart) {
+                if (parseNumber(bytes, keyEnd + 1, position)) {
+                    int series = findSeries(bytes, fieldStart, keyEnd - fieldStart);
+                    if (series >= 0) {
+                        sink.value(series, numberValue);
+                        values++;
+                    }
+                }
+            } else if (parseNumber(bytes, fieldStart, position) && numberEnd == position) {
+                int series = columnSeries(column);
+                column++;
+                if (series >= 0) {
+                    sink.value(series, numberValue);
+                    values++;
+                }
+            } else if (isNameStart(b)) {
+                nameFields++;
+            }
+        }
+        // only a delimited line is a header, not a message like "device ready"
+        if (values == 0 && delimited && nameFields == fields && nameFields >= 2) {
+            readHeader(bytes, offset, end);
+        }
+        return values;
+    }
+
+    /**
+     * Getter to the number of series.
+     * @return the number of series found so far
+     */
+    public int getSeriesCount() {
+        return this.seriesCount;
+    }
+
+    /**
+     * Getter to the series name.
+     *
+     * @param series the series index
+     *
+     * @return the key, header column name or #column
+     */
+    public String getSeriesName(int series) {
+        return new String(names[series], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the number at the start of the field.
+     * Sets {@link #numberValue} and {@link #numberEnd} on success.
+     *
+     * @param bytes the line bytes
+     * @param start the field start
+     * @param end the field end
+     *
+     * @return true if the field starts with a number
+     */
+    private boolean parseNumber(byte[] bytes, int start, int end) {
+        int position = start;
+        boolean negative = false;
+        if (position < end && (bytes[position] == '-' || bytes[position] == '+')) {
+            negative = bytes[position] == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; position < end && isDigit(bytes[position]); position++) {
+            anyDigit = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (bytes[position] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+        }
+        if (position < end && bytes[position] == '.') {
+            position++;
+            for (; position < end && isDigit(bytes[position]); position++) {
+                anyDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (bytes[position] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+            }
+        }
+        if (!anyDigit) {
+            return false;
+        }
+        if (position + 1 < end && (bytes[position] == 'e' || bytes[position] == 'E')) {
+            int exponentPosition = position + 1;
+            boolean negativeExponent = false;
+            if (bytes[exponentPosition] == '-' || bytes[exponentPosition] == '+') {
+                negativeExponent = bytes[exponentPosition] == '-';
+                exponentPosition++;
+            }
+            if (exponentPosition < end && isDigit(bytes[exponentPosition])) {
+                int explicitExponent = 0;
+                for (; exponentPosition < end && isDigit(bytes[exponentPosition]); exponentPosition++) {
+                    explicitExponent = Math.min(explicitExponent * 10 + (bytes[exponentPosition] - '0'), 1000);
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+                position = exponentPosition;
+            }
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-exponent] : value / Math.pow(10, -exponent);
+        } else if (exponent > 0) {
+            value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        }
+        this.numberValue = negative ? -value : value;
+        this.numberEnd = position;
+        return true;
+    }
+
+    /**
+     * Finds the series of the key, adds it if it's new.
+     *
+     * @param bytes the line bytes
+     * @param start the key start
+     * @param length the key length
+     *
+     * @return the series index, -1 if there are too many series
+     */
+    private int findSeries(byte[] bytes, int start, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        int slot = hash & (TABLE_SIZE - 1);
+        while (table[slot] != 0) {
+            int series = table[slot] - 1;
+            if (equals(names[series], bytes, start, length)) {
+                return series;
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        int series = seriesCount;
+        if (series >= MAX_SERIES) {
+            return -1;
+        }
+        byte[] name = new byte[length];
+        System.arraycopy(bytes, start, name, 0, length);
+        names[series] = name;
+        table[slot] = series + 1;
+        this.seriesCount = series + 1;
+        return series;
+    }
+
+    /**
+     * Finds the series of the CSV column, an unnamed column is remembered for next lines.
+     *
+     * @param column the index of bare number in the line
+     *
+     * @return the series index, -1 if there are too many series
+     */
+    private int columnSeries(int column) {
+        if (column < columnCount && columnSeries[column] >= 0) {
+            return columnSeries[column];
+        }
+        byte[] name = ("#" + (column + 1)).getBytes(StandardCharsets.US_ASCII);
+        int series = findSeries(name, 0, name.length);
+        if (column < MAX_COLUMNS && series >= 0) {
+            for (int i = columnCount; i < column; i++) {
+                columnSeries[i] = -1;
+            }
+            columnSeries[column] = series;
+            this.columnCount = Math.max(columnCount, column + 1);
+        }
+        return series;
+    }
+
+    /**
+     * Reads the CSV header, its fields name the next bare numbers.
+     *
+     * @param bytes the line bytes
+     * @param start the line start
+     * @param end the line end
+     */
+    private void readHeader(byte[] bytes, int start, int end) {
+        int column = 0;
+        int position = start;
+        while (position < end && column < MAX_COLUMNS) {
+            if (isSeparator(bytes[position])) {
+                position++;
+                continue;
+            }
+            int fieldStart = position;
+            while (position < end && !isSeparator(bytes[position])) {
+                position++;
+            }
+            columnSeries[column++] = findSeries(bytes, fieldStart, position - fieldStart);
+        }
+        this.columnCount = column;
+    }
+
+    /**
+     * Compares the name with the bytes.
+     *
+     * @param name the series name
+     * @param bytes the line bytes
+     * @param start the key start
+     * @param length the key length
+     *
+     * @return true if equal
+     */
+    private static boolean equals(byte[] name, byte[] bytes, int start, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == ',' || b == ';' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isNameStart(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || b == '_' || b < 0;
+    }
+}
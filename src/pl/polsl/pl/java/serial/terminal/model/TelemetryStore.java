@@ -0,0 +1,196 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Recent numeric values of received lines, for the live plot.
+ * Lines are parsed by {@link TelemetryParser} on the receiving thread, which is the only writer;
+ * every series keeps its samples in primitive ring buffers of times and values,
+ * allocated when the series first appears, so storing a sample allocates nothing.
+ * Samples of a frame are published by writing the volatile version after them.
+ * The view reads the rings without locking: it only reads samples far enough
+ * from the one being overwritten, so a slow repaint doesn't see torn data.
+ *
+ * @author Michał Lytek
+ */
+public class TelemetryStore implements TelemetryParser.Sink {
+
+    /** Default number of samples kept for every series, 32 s at 1 kHz */
+    public static final int DEFAULT_CAPACITY = 1 << 15;
+
+    /** Parser of received lines */
+    private final TelemetryParser parser = new TelemetryParser();
+    /** Number of samples kept for every series, power of two */
+    private final int capacity;
+    /** Times of samples by series, System.nanoTime based, null before the first sample */
+    private final long[][] times = new long[TelemetryParser.MAX_SERIES][];
+    /** Values of samples by series, null before the first sample */
+    private final double[][] values = new double[TelemetryParser.MAX_SERIES][];
+    /** Number of samples ever stored by series, the next sample goes at this number masked */
+    private final long[] written = new long[TelemetryParser.MAX_SERIES];
+    /** Time of the frame being parsed */
+    private long frameTime;
+    /** Number of frames with values, written after their samples */
+    private volatile long version;
+    /** True if the view wants the samples dropped, done by the writer with the next frame */
+    private volatile boolean clearRequested;
+
+    /**
+     * Creates the store keeping {@link #DEFAULT_CAPACITY} samples of every series.
+     */
+    public TelemetryStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param capacity the number of samples kept for every series, rounded up to power of two
+     */
+    public TelemetryStore(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+    }
+
+    /**
+     * Parses the received frame and stores its values, called on the receiving thread.
+     *
+     * @param bytes the frame bytes without terminator
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param time the time of receiving, System.nanoTime based
+     */
+    public void frameReceived(byte[] bytes, int offset, int length, long time) {
+        if (clearRequested) {
+            for (int series = 0; series < written.length; series++) {
+                written[series] = 0;
+            }
+            this.clearRequested = false;
+        }
+        this.frameTime = time;
+        if (parser.parse(bytes, offset, length, this) > 0) {
+            this.version = version + 1;
+        }
+    }
+
+    /**
+     * Stores the parsed value with the time of the frame.
+     *
+     * @param series the series index
+     * @param value the value
+     */
+    @Override
+    public void value(int series, double value) {
+        long[] seriesTimes = times[series];
+        if (seriesTimes == null) {
+            seriesTimes = times[series] = new long[capacity];
+            values[series] = new double[capacity];
+        }
+        int index = (int) written[series] & (capacity - 1);
+        seriesTimes[index] = frameTime;
+        values[series][index] = value;
+        written[series]++;
+    }
+
+    /**
+     * Drops all samples, the series stay. Done when the next frame comes.
+     */
+    public void clear() {
+        this.clearRequested = true;
+    }
+
+    /**
+     * Getter to the version, changed by every frame with values, eg. to repaint only after a change.
+     * @return the number of frames with values
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter to the number of series.
+     * @return the number of series found so far
+     */
+    public int getSeriesCount() {
+        return parser.getSeriesCount();
+    }
+
+    /**
+     * Getter to the series name.
+     *
+     * @param series the series index
+     *
+     * @return the key or column name
+     */
+    public String getSeriesName(int series) {
+        return parser.getSeriesName(series);
+    }
+
+    /**
+     * Getter to the number of samples kept for every series.
+     * @return the ring size
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Computes the minimum and maximum of the series in every column of the time range.
+     *
+     * @param series the series index
+     * @param startTime the time of the left edge, System.nanoTime based
+     * @param endTime the time of the right edge
+     * @param columns the number of columns
+     * @param mins the minimums, NaN for columns without samples
+     * @param maxs the maximums, NaN for columns without samples
+     *
+     * @return false if the series has no samples, then the arrays are not changed
+     */
+    public boolean minMax(int series, long startTime, long endTime, int columns, double[] mins, double[] maxs) {
+        long version = this.version;
+        long[] seriesTimes = times[series];
+        if (version == 0 || seriesTimes == null) {
+            return false;
+        }
+        long to = written[series];
+        long from = readableFrom(to);
+        from = Downsampler.findTime(seriesTimes, capacity - 1, from, to, startTime);
+        Downsampler.minMax(seriesTimes, values[series], capacity - 1, from, to, startTime, endTime, columns, mins, maxs);
+        return true;
+    }
+
+    /**
+     * Selects the samples of the series in the time range which keep the line shape, by LTTB.
+     *
+     * @param series the series index
+     * @param startTime the time of the left edge, System.nanoTime based
+     * @param endTime the time of the right edge
+     * @param points the maximum number of selected samples, at least 3
+     * @param selectedTimes the times of selected samples
+     * @param selectedValues the values of selected samples
+     *
+     * @return the number of selected samples
+     */
+    public int lttb(int series, long startTime, long endTime, int points, long[] selectedTimes, double[] selectedValues) {
+        long version = this.version;
+        long[] seriesTimes = times[series];
+        if (version == 0 || seriesTimes == null) {
+            return 0;
+        }
+        long to = written[series];
+        long from = readableFrom(to);
+        int mask = capacity - 1;
+        from = Downsampler.findTime(seriesTimes, mask, from, to, startTime);
+        to = Downsampler.findTime(seriesTimes, mask, from, to, endTime + 1);
+        return Downsampler.lttb(seriesTimes, values[series], mask, from, to, points, selectedTimes, selectedValues);
+    }
+
+    /**
+     * Finds the oldest sample which the view may read.
+     * A quarter of the ring before the oldest sample is skipped, it may be overwritten while read.
+     *
+     * @param to the number of samples written
+     *
+     * @return the sequence number of the oldest readable sample
+     */
+    private long readableFrom(long to) {
+        return Math.max(0, to - capacity + capacity / 4);
+    }
+}
@@ -0,0 +1,129 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * Streaming matcher of many alternative terminators of any length.
+ * Terminators are compiled into Aho-Corasick automaton with full transition table,
+ * so every received byte costs a single table lookup and the matcher never
+ * goes back over already received bytes - also when a terminator
+ * is split between two reads from serial port.
+ *
+ * @author Michał Lytek
+ */
+public class TerminatorMatcher {
+
+    /** Number of possible byte values */
+    private static final int ALPHABET_SIZE = 256;
+    /** Index of the automaton root state */
+    private static final int ROOT = 0;
+
+    /** Transition table - next state for each state and byte value */
+    private final int[][] transitions;
+    /** Length of the longest terminator ending in state, 0 if there's none */
+    private final int[] matchLengths;
+    /** Current automaton state */
+    private int state;
+
+    /**
+     * Compiles the automaton for given terminators.
+     * Empty terminators are ignored.
+     *
+     * @param terminators the byte sequences which ends a frame
+     */
+    public TerminatorMatcher(byte[][] terminators) {
+        int maxStates = 1;
+        for (byte[] terminator : terminators) {
+            maxStates += terminator.length;
+        }
+
+        int[][] trie = new int[maxStates][];
+        int[] lengths = new int[maxStates];
+        trie[ROOT] = newRow();
+        int statesCount = 1;
+
+        // build the trie of all terminators
+        for (byte[] terminator : terminators) {
+            int current = ROOT;
+            for (byte character : terminator) {
+                int index = character & 0xFF;
+                if (trie[current][index] < 0) {
+                    trie[statesCount] = newRow();
+                    trie[current][index] = statesCount++;
+                }
+                current = trie[current][index];
+            }
+            if (terminator.length > 0) {
+                lengths[current] = terminator.length;
+            }
+        }
+
+        // turn the trie into automaton using failure links in breadth-first order
+        int[] failures = new int[statesCount];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int index = 0; index < ALPHABET_SIZE; index++) {
+            int next = trie[ROOT][index];
+            if (next < 0) {
+                trie[ROOT][index] = ROOT;
+            } else {
+                failures[next] = ROOT;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (lengths[current] == 0) {
+                lengths[current] = lengths[failures[current]];
+            }
+            for (int index = 0; index < ALPHABET_SIZE; index++) {
+                int next = trie[current][index];
+                if (next < 0) {
+                    trie[current][index] = trie[failures[current]][index];
+                } else {
+                    failures[next] = trie[failures[current]][index];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trie, statesCount);
+        this.matchLengths = Arrays.copyOf(lengths, statesCount);
+        this.state = ROOT;
+    }
+
+    /**
+     * Feeds the matcher with next received byte.
+     * After a match the matcher starts from scratch, so terminators never overlap.
+     *
+     * @param character the received byte
+     *
+     * @return the length of terminator which ends on this byte, 0 if there's no match
+     */
+    public int next(byte character) {
+        state = transitions[state][character & 0xFF];
+        int matchLength = matchLengths[state];
+        if (matchLength > 0) {
+            state = ROOT;
+        }
+        return matchLength;
+    }
+
+    /**
+     * Forgets the partial match, eg. after clearing the frame buffer.
+     */
+    public void reset() {
+        this.state = ROOT;
+    }
+
+    /**
+     * Creates a trie row with no transitions.
+     * @return the new row
+     */
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET_SIZE];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,82 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decoder of received bytes to text in given charset, keeping its state between chunks.
+ * A multibyte char split between two reads from the port is kept
+ * until the rest of its bytes comes, instead of being shown as two broken chars.
+ * Malformed and unmappable bytes are shown as the replacement char.
+ * The buffers are reused, so the only allocation per call is the decoded string.
+ *
+ * @author Michał Lytek
+ */
+public class TextDecoder {
+
+    /** Decoder of the charset, its state is carried over between chunks */
+    private final CharsetDecoder decoder;
+    /** Bytes to decode - the not decoded end of previous chunk and the new chunk */
+    private ByteBuffer input = ByteBuffer.allocate(256);
+    /** Decoded chars */
+    private CharBuffer output = CharBuffer.allocate(256);
+
+    /**
+     * Creates the decoder.
+     *
+     * @param charset the charset of received bytes
+     */
+    public TextDecoder(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Decodes the next chunk of the stream. Bytes of a char which isn't complete
+     * are kept for the next call, unless it's the end of input.
+     *
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param endOfInput true if the bytes end the text, eg. the whole frame
+     *
+     * @return the decoded text
+     */
+    public String decode(byte[] data, int offset, int length, boolean endOfInput) {
+        if (input.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(input.position() + length, input.capacity() * 2));
+            input.flip();
+            this.input = grown.put(input);
+        }
+        input.put(data, offset, length);
+        input.flip();
+
+        int maxChars = (int) Math.ceil(input.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+        if (output.capacity() < maxChars) {
+            this.output = CharBuffer.allocate(Math.max(maxChars, output.capacity() * 2));
+        }
+        decoder.decode(input, output, endOfInput);
+        if (endOfInput) {
+            decoder.flush(output);
+            decoder.reset();
+        }
+        input.compact();
+
+        output.flip();
+        String text = output.toString();
+        output.clear();
+        return text;
+    }
+
+    /**
+     * Forgets the not decoded bytes, eg. when the stream is interrupted.
+     */
+    public void reset() {
+        decoder.reset();
+        input.clear();
+    }
+}
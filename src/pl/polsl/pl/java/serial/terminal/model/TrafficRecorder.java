@@ -0,0 +1,150 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Recorder of the traffic in both directions to binary capture file.
+ * Every transport chunk is stored as a record with time stamp in ns
+ * since the start of recording, direction and length, followed by the bytes.
+ * The file is written in background by {@link CaptureWriter}, so recording never waits for disk.
+ * A sparse index of record time stamps and offsets is written to the file with ".idx" suffix
+ * when recording ends, so the reader can seek in O(log n).
+ *
+ * @author Michał Lytek
+ */
+public class TrafficRecorder implements Closeable {
+
+    /** Capture file signature */
+    public static final int MAGIC = 0x53434150; // "SCAP"
+    /** Capture file format version */
+    public static final short VERSION = 1;
+    /** Size of file header - signature, version, reserved field and start time */
+    public static final int FILE_HEADER_SIZE = 16;
+    /** Size of record header - time stamp, direction and length */
+    public static final int RECORD_HEADER_SIZE = 13;
+    /** Suffix of the index file name */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /** Direction of bytes received from the device */
+    public static final byte RX = 0;
+    /** Direction of bytes sent to the device */
+    public static final byte TX = 1;
+
+    /** Number of recorded bytes after which the next record is indexed */
+    static final long INDEX_INTERVAL = 64 * 1024;
+
+    /** Background writer of the file */
+    private final CaptureWriter writer;
+    /** Index file */
+    private final File indexFile;
+    /** Time of the start of recording */
+    private final long startTime;
+
+    /** Buffer for building records, grown for large chunks */
+    private ByteBuffer record = ByteBuffer.allocate(4096);
+    /** Number of bytes accepted by the writer - offset of the next record */
+    private long recordedBytes;
+    /** Offset after which the next record is indexed */
+    private long nextIndexOffset;
+
+    /* Index entries - record time stamps and offsets */
+    private long[] indexTimes = new long[64];
+    private long[] indexOffsets = new long[64];
+    private int indexSize;
+
+    /**
+     * Creates the capture file and writes its header.
+     *
+     * @param file the capture file
+     *
+     * @throws IOException if the file can't be created
+     */
+    public TrafficRecorder(File file) throws IOException {
+        this.writer = new CaptureWriter(file, false, 0, 0);
+        this.indexFile = new File(file.getPath() + INDEX_SUFFIX);
+        this.startTime = System.nanoTime();
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(System.currentTimeMillis());
+        writer.write(header.array(), 0, FILE_HEADER_SIZE);
+        this.recordedBytes = FILE_HEADER_SIZE;
+        this.nextIndexOffset = FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Records the chunk of bytes, called from receive thread or any sending thread.
+     * The lock is held only for copying the chunk to the writer ring.
+     * Records which don't fit in the ring are dropped whole.
+     *
+     * @param direction the direction - {@link #RX} or {@link #TX}
+     * @param data the array with bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     */
+    public synchronized void record(byte direction, byte[] data, int offset, int length) {
+        long time = System.nanoTime() - startTime;
+        int size = RECORD_HEADER_SIZE + length;
+        if (record.capacity() < size) {
+            this.record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+        }
+        record.clear();
+        record.putLong(time).put(direction).putInt(length).put(data, offset, length);
+        if (!writer.write(record.array(), 0, size)) {
+            return;
+        }
+        if (recordedBytes >= nextIndexOffset) {
+            addIndexEntry(time, recordedBytes);
+            nextIndexOffset = recordedBytes + INDEX_INTERVAL;
+        }
+        recordedBytes += size;
+    }
+
+    /**
+     * Getter to the number of bytes lost because the writer didn't keep up.
+     * @return the dropped bytes count
+     */
+    public long getDroppedBytes() {
+        return writer.getDroppedBytes();
+    }
+
+    /**
+     * Writes the rest of records and the index file.
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            for (int i = 0; i < indexSize; i++) {
+                index.writeLong(indexTimes[i]);
+                index.writeLong(indexOffsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the record to the index.
+     *
+     * @param time the record time stamp
+     * @param offset the record offset in file
+     */
+    private void addIndexEntry(long time, long offset) {
+        if (indexSize == indexTimes.length) {
+            indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+        indexTimes[indexSize] = time;
+        indexOffsets[indexSize] = offset;
+        indexSize++;
+    }
+}
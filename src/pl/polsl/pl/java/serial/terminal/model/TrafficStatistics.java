@@ -0,0 +1,183 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traffic counters of single connection, updated on receive, send and view threads.
+ * Striped counters are used, so the hot paths pay an uncontended add
+ * and don't share a cache line with each other. The rates are computed
+ * only when {@link #sample(long)} is called, eg. once a second on scheduler.
+ *
+ * @author Michał Lytek
+ */
+public class TrafficStatistics implements TrafficStatisticsMBean {
+
+    /** Queue between receive and view threads, its overflow counter is reused */
+    private final ReceiveQueue<?> receiveQueue;
+
+    /* Totals since connecting */
+    private final LongAdder receivedBytes = new LongAdder(),
+            receivedChunks = new LongAdder(),
+            sentBytes = new LongAdder(),
+            receivedFrames = new LongAdder(),
+            shownFrames = new LongAdder(),
+            framingErrors = new LongAdder();
+
+    /* Totals and time of the previous sample */
+    private long sampleTime = -1,
+            sampleReceivedBytes,
+            sampleReceivedChunks,
+            sampleSentBytes,
+            sampleReceivedFrames,
+            sampleErrors;
+    /** True if nothing changed before the previous sample */
+    private boolean idle;
+
+    /* Rates computed by the last sample */
+    private volatile double receivedBytesPerSecond,
+            sentBytesPerSecond,
+            receivedFramesPerSecond,
+            averageChunkSize;
+
+    /**
+     * Creates zeroed statistics.
+     *
+     * @param receiveQueue the queue of received frames of the connection
+     */
+    public TrafficStatistics(ReceiveQueue<?> receiveQueue) {
+        this.receiveQueue = receiveQueue;
+    }
+
+    /**
+     * Counts single read from the port.
+     *
+     * @param length the number of received bytes
+     */
+    public void chunkReceived(int length) {
+        receivedBytes.add(length);
+        receivedChunks.increment();
+    }
+
+    /**
+     * Counts single write to the port.
+     *
+     * @param length the number of sent bytes
+     */
+    public void bytesSent(int length) {
+        sentBytes.add(length);
+    }
+
+    /**
+     * Counts the frame ended with terminator.
+     */
+    public void frameReceived() {
+        receivedFrames.increment();
+    }
+
+    /**
+     * Counts the frames passed to the view.
+     *
+     * @param count the number of shown frames
+     */
+    public void framesShown(int count) {
+        shownFrames.add(count);
+    }
+
+    /**
+     * Counts the line errors reported by the port.
+     */
+    public void framingError() {
+        framingErrors.increment();
+    }
+
+    /**
+     * Computes the rates since the previous sample.
+     * The first sample only remembers the totals.
+     *
+     * @param time the sample time from {@link System#nanoTime()}
+     *
+     * @return false if nothing changed since the sample before the previous one,
+     * so the zero rates were already reported
+     */
+    public synchronized boolean sample(long time) {
+        long currentReceivedBytes = receivedBytes.sum();
+        long currentReceivedChunks = receivedChunks.sum();
+        long currentSentBytes = sentBytes.sum();
+        long currentReceivedFrames = receivedFrames.sum();
+        long currentErrors = framingErrors.sum() + receiveQueue.getDroppedCount();
+        boolean wasIdle = this.idle;
+        this.idle = currentReceivedChunks == sampleReceivedChunks && currentSentBytes == sampleSentBytes
+                && currentErrors == sampleErrors;
+        if (sampleTime >= 0 && time > sampleTime) {
+            double seconds = (time - sampleTime) / 1e9;
+            long chunks = currentReceivedChunks - sampleReceivedChunks;
+            long bytes = currentReceivedBytes - sampleReceivedBytes;
+            this.receivedBytesPerSecond = bytes / seconds;
+            this.sentBytesPerSecond = (currentSentBytes - sampleSentBytes) / seconds;
+            this.receivedFramesPerSecond = (currentReceivedFrames - sampleReceivedFrames) / seconds;
+            this.averageChunkSize = chunks > 0 ? (double) bytes / chunks : 0;
+        }
+        this.sampleTime = time;
+        this.sampleReceivedBytes = currentReceivedBytes;
+        this.sampleReceivedChunks = currentReceivedChunks;
+        this.sampleSentBytes = currentSentBytes;
+        this.sampleReceivedFrames = currentReceivedFrames;
+        this.sampleErrors = currentErrors;
+        return !(idle && wasIdle);
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    @Override
+    public long getReceivedFrames() {
+        return receivedFrames.sum();
+    }
+
+    @Override
+    public long getShownFrames() {
+        return shownFrames.sum();
+    }
+
+    @Override
+    public long getFramingErrors() {
+        return framingErrors.sum();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return receiveQueue.getDroppedCount();
+    }
+
+    @Override
+    public long getQueuedFrames() {
+        return receiveQueue.size();
+    }
+
+    @Override
+    public double getReceivedBytesPerSecond() {
+        return this.receivedBytesPerSecond;
+    }
+
+    @Override
+    public double getSentBytesPerSecond() {
+        return this.sentBytesPerSecond;
+    }
+
+    @Override
+    public double getReceivedFramesPerSecond() {
+        return this.receivedFramesPerSecond;
+    }
+
+    @Override
+    public double getAverageChunkSize() {
+        return this.averageChunkSize;
+    }
+}
@@ -0,0 +1,77 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Management interface of connection traffic statistics,
+ * registered in platform MBean server so they can be watched with JConsole or VisualVM.
+ * Rates are computed from the last sample, counters are totals since connecting.
+ *
+ * @author Michał Lytek
+ */
+public interface TrafficStatisticsMBean {
+
+    /**
+     * Getter to the number of bytes received from the device.
+     * @return the received bytes count
+     */
+    long getReceivedBytes();
+
+    /**
+     * Getter to the number of bytes sent to the device.
+     * @return the sent bytes count
+     */
+    long getSentBytes();
+
+    /**
+     * Getter to the number of frames ended with terminator.
+     * @return the received frames count
+     */
+    long getReceivedFrames();
+
+    /**
+     * Getter to the number of frames shown in the view.
+     * @return the shown frames count
+     */
+    long getShownFrames();
+
+    /**
+     * Getter to the number of line errors reported by the port - framing, parity and overrun.
+     * @return the line errors count
+     */
+    long getFramingErrors();
+
+    /**
+     * Getter to the number of frames dropped due to receive queue overflow.
+     * @return the dropped frames count
+     */
+    long getDroppedFrames();
+
+    /**
+     * Getter to the number of frames waiting to be shown.
+     * @return the receive queue depth
+     */
+    long getQueuedFrames();
+
+    /**
+     * Getter to the receive rate.
+     * @return the received bytes per second
+     */
+    double getReceivedBytesPerSecond();
+
+    /**
+     * Getter to the send rate.
+     * @return the sent bytes per second
+     */
+    double getSentBytesPerSecond();
+
+    /**
+     * Getter to the framing rate.
+     * @return the received frames per second
+     */
+    double getReceivedFramesPerSecond();
+
+    /**
+     * Getter to the average size of single read from the port since the last sample.
+     * @return the average chunk size in bytes
+     */
+    double getAverageChunkSize();
+}
@@ -0,0 +1,75 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+/**
+ * Pattern looked for in received lines, eg. an error signature,
+ * with the color of matching lines and the action fired on match.
+ *
+ * @author Michał Lytek
+ */
+public class Trigger {
+
+    /** Action which only colors the line */
+    public static final int ACTION_NONE = 0;
+    /** Action which beeps */
+    public static final int ACTION_BEEP = 1;
+    /** Action which stops following new lines, so the match stays on screen */
+    public static final int ACTION_PAUSE = 2;
+    /** Action which saves the last received lines to file */
+    public static final int ACTION_SNAPSHOT = 3;
+
+    /** Searched text or regular expression */
+    private final String pattern;
+    /** True if the pattern is a regular expression */
+    private final boolean regex;
+    /** Color of matching lines - index of combobox */
+    private final int color;
+    /** Action fired on match - one of ACTION constants */
+    private final int action;
+
+    /**
+     * Creates the trigger.
+     *
+     * @param pattern the searched text or regular expression
+     * @param regex true if the pattern is a regular expression, false for literal text
+     * @param color the color of matching lines - index of combobox
+     * @param action the action fired on match, eg. {@link #ACTION_BEEP}
+     */
+    public Trigger(String pattern, boolean regex, int color, int action) {
+        this.pattern = pattern;
+        this.regex = regex;
+        this.color = color;
+        this.action = action;
+    }
+
+    /**
+     * Getter to the pattern.
+     * @return the searched text or regular expression
+     */
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    /**
+     * Check if the pattern is a regular expression.
+     * @return true for regular expression, false for literal text
+     */
+    public boolean isRegex() {
+        return this.regex;
+    }
+
+    /**
+     * Getter to the color of matching lines.
+     * @return the index of color combobox
+     */
+    public int getColor() {
+        return this.color;
+    }
+
+    /**
+     * Getter to the action fired on match.
+     * @return one of ACTION constants
+     */
+    public int getAction() {
+        return this.action;
+    }
+}
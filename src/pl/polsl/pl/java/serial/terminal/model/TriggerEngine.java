@@ -0,0 +1,280 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matcher of all triggers against received lines in one pass.
+ * Literal patterns are compiled into single Aho-Corasick automaton with full transition table,
+ * so every char costs one table lookup however many patterns there are.
+ * Chars which don't occur in any pattern share one class, so the table stays small.
+ * Regular expressions are joined into one alternation, which only filters out lines without any match:
+ * the alternation finds one match at each position, so it hides expressions matching at the same place,
+ * eg. "WDT.*" hides "RESET" in "WDT RESET". If it finds a match, the other expressions are searched one by one.
+ * Back references in expressions must not be used, as group numbers change when joined.
+ * Not thread safe - lines are matched on receive thread only, counters may be read from any thread.
+ *
+ * @author Michał Lytek
+ */
+public class TriggerEngine {
+
+    /** Number of chars with class taken directly from the table */
+    private static final int DIRECT_CHARS = 128;
+
+    /** All triggers, the lower index the higher priority */
+    private final Trigger[] triggers;
+
+    /** Char class of ASCII chars, 0 for chars not used in patterns */
+    private final int[] directClasses = new int[DIRECT_CHARS];
+    /** Sorted other chars used in patterns */
+    private final char[] otherChars;
+    /** Char class of other chars, in the same order */
+    private final int[] otherClasses;
+    /** Number of char classes - a row of transition table */
+    private final int classCount;
+    /** Next state for every state and char class */
+    private final int[] transitions;
+    /** Indexes of triggers which end in the state, suffixes included, null if there's none */
+    private final int[][] outputs;
+
+    /** Matcher of joined regular expressions, null if there's none */
+    private final Matcher regexMatcher;
+    /** Matcher of every expression alone */
+    private final Matcher[] regexMatchers;
+    /** Group number of every expression in joined pattern */
+    private final int[] regexGroups;
+    /** Trigger index of every expression */
+    private final int[] regexTriggers;
+
+    /** Number of matching lines of every trigger */
+    private final AtomicLongArray matchCounts;
+    /** Number of the line in which the trigger was counted last time */
+    private final long[] countedLines;
+    /** Number of the line being matched */
+    private long lineNumber;
+
+    /**
+     * Compiles the triggers. Empty patterns are ignored.
+     *
+     * @param triggers the triggers, the lower index the higher priority
+     *
+     * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid
+     */
+    public TriggerEngine(List<Trigger> triggers) {
+        this.triggers = triggers.toArray(new Trigger[triggers.size()]);
+        this.matchCounts = new AtomicLongArray(this.triggers.length);
+        this.countedLines = new long[this.triggers.length];
+
+        // char classes of all chars used in literal patterns
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (Trigger trigger : this.triggers) {
+            if (!trigger.isRegex()) {
+                for (char character : trigger.getPattern().toCharArray()) {
+                    alphabet.add(character);
+                }
+            }
+        }
+        List<Character> others = new ArrayList<>();
+        int nextClass = 1;
+        for (char character : alphabet) {
+            if (character < DIRECT_CHARS) {
+                directClasses[character] = nextClass++;
+            } else {
+                others.add(character);
+            }
+        }
+        this.otherChars = new char[others.size()];
+        this.otherClasses = new int[others.size()];
+        for (int i = 0; i < others.size(); i++) {
+            otherChars[i] = others.get(i);
+            otherClasses[i] = nextClass++;
+        }
+        this.classCount = nextClass;
+
+        // trie of literal patterns
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        children.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int index = 0; index < this.triggers.length; index++) {
+            Trigger trigger = this.triggers[index];
+            if (trigger.isRegex() || trigger.getPattern().isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (char character : trigger.getPattern().toCharArray()) {
+                int charClass = classOf(character);
+                Integer next = children.get(state).get(charClass);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                    children.get(state).put(charClass, next);
+                }
+                state = next;
+            }
+            ends.get(state).add(index);
+        }
+
+        // full transition table built in breadth-first order, so failure states are ready first
+        int stateCount = children.size();
+        this.transitions = new int[stateCount * classCount];
+        this.outputs = new int[stateCount][];
+        int[] failures = new int[stateCount];
+        Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> stateEnds = new ArrayList<>(ends.get(state));
+            if (state != 0 && outputs[failures[state]] != null) {
+                for (int index : outputs[failures[state]]) {
+                    stateEnds.add(index);
+                }
+            }
+            if (!stateEnds.isEmpty()) {
+                outputs[state] = stateEnds.stream().mapToInt(Integer::intValue).sorted().toArray();
+            }
+            for (int charClass = 1; charClass < classCount; charClass++) {
+                Integer next = children.get(state).get(charClass);
+                int fallback = state == 0 ? 0 : transitions[failures[state] * classCount + charClass];
+                if (next == null) {
+                    transitions[state * classCount + charClass] = fallback;
+                } else {
+                    transitions[state * classCount + charClass] = next;
+                    failures[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+
+        // regular expressions joined into one alternation, each in its own group
+        StringBuilder joined = new StringBuilder();
+        List<Integer> groups = new ArrayList<>();
+        List<Integer> regexIndexes = new ArrayList<>();
+        List<Matcher> matchers = new ArrayList<>();
+        int group = 1;
+        for (int index = 0; index < this.triggers.length; index++) {
+            Trigger trigger = this.triggers[index];
+            if (!trigger.isRegex() || trigger.getPattern().isEmpty()) {
+                continue;
+            }
+            Matcher matcher = Pattern.compile(trigger.getPattern()).matcher("");
+            int innerGroups = matcher.groupCount();
+            if (joined.length() > 0) {
+                joined.append('|');
+            }
+            joined.append('(').append(trigger.getPattern()).append(')');
+            groups.add(group);
+            regexIndexes.add(index);
+            matchers.add(matcher);
+            group += 1 + innerGroups;
+        }
+        this.regexMatcher = joined.length() > 0 ? Pattern.compile(joined.toString()).matcher("") : null;
+        this.regexGroups = groups.stream().mapToInt(Integer::intValue).toArray();
+        this.regexTriggers = regexIndexes.stream().mapToInt(Integer::intValue).toArray();
+        this.regexMatchers = matchers.toArray(new Matcher[matchers.size()]);
+    }
+
+    /**
+     * Matches the line against all triggers and counts the matching ones.
+     *
+     * @param line the received line
+     *
+     * @return the index of matching trigger with the highest priority, -1 if none matches
+     */
+    public int match(CharSequence line) {
+        lineNumber++;
+        int matched = -1;
+        int state = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * classCount + classOf(line.charAt(i))];
+            int[] stateOutputs = outputs[state];
+            if (stateOutputs != null) {
+                for (int index : stateOutputs) {
+                    matched = count(index, matched);
+                }
+            }
+        }
+        if (regexMatcher != null && regexMatcher.reset(line).find()) {
+            // the expression found by the alternation matches, the others are checked alone
+            int found = 0;
+            while (regexMatcher.start(regexGroups[found]) < 0) {
+                found++;
+            }
+            for (int i = 0; i < regexMatchers.length; i++) {
+                if (i == found || regexMatchers[i].reset(line).find()) {
+                    matched = count(regexTriggers[i], matched);
+                }
+                regexMatchers[i].reset("");
+            }
+        }
+        if (regexMatcher != null) {
+            regexMatcher.reset("");
+        }
+        return matched;
+    }
+
+    /**
+     * Getter to the trigger.
+     *
+     * @param index the trigger index
+     *
+     * @return the trigger
+     */
+    public Trigger getTrigger(int index) {
+        return triggers[index];
+    }
+
+    /**
+     * Getter to the numbers of matching lines.
+     * @return the count of every trigger, in triggers order
+     */
+    public long[] getMatchCounts() {
+        long[] counts = new long[matchCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = matchCounts.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the trigger once per line and picks the one with higher priority.
+     *
+     * @param index the index of matching trigger
+     * @param matched the index of matching trigger found before, -1 if none
+     *
+     * @return the index with the higher priority
+     */
+    private int count(int index, int matched) {
+        if (countedLines[index] != lineNumber) {
+            countedLines[index] = lineNumber;
+            matchCounts.incrementAndGet(index);
+        }
+        return matched < 0 || index < matched ? index : matched;
+    }
+
+    /**
+     * Class of the char in transition table.
+     *
+     * @param character the char
+     *
+     * @return the class, 0 for chars not used in patterns
+     */
+    private int classOf(char character) {
+        if (character < DIRECT_CHARS) {
+            return directClasses[character];
+        }
+        int position = Arrays.binarySearch(otherChars, character);
+        return position >= 0 ? otherClasses[position] : 0;
+    }
+}
@@ -0,0 +1,248 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+
+/**
+ * File sender using XMODEM (128 byte blocks), XMODEM-1K (1024 byte blocks)
+ * or YMODEM batch protocol (1024 byte blocks and block 0 with file name and size).
+ * Blocks are protected with CRC-16 when the receiver starts with 'C',
+ * or with checksum when it starts with NAK.
+ *
+ * @author Michał Lytek
+ */
+public class XmodemSender extends ModemSender {
+
+    /** Sign requesting CRC-16 mode */
+    private static final int CRC_REQUEST = 'C';
+    /** Padding of the last block */
+    private static final byte CPMEOF = 0x1A;
+
+    /** Size of short block */
+    private static final int SHORT_BLOCK = 128;
+    /** Size of long block */
+    private static final int LONG_BLOCK = 1024;
+
+    /** Time to wait for the receiver to start in ms */
+    private static final long START_TIMEOUT = 60000;
+    /** Time to wait for block confirmation in ms */
+    private static final long RESPONSE_TIMEOUT = 10000;
+    /** Number of tries to send a single block */
+    private static final int MAX_RETRIES = 10;
+
+    /** True if 1024 byte blocks are sent */
+    private final boolean longBlocks;
+    /** True for YMODEM batch with file name block */
+    private final boolean batch;
+    /** True if blocks are protected with CRC-16, false for checksum */
+    private boolean crcMode;
+
+    /** Packet being sent - header, the longest block and CRC */
+    private final byte[] packet = new byte[3 + LONG_BLOCK + 2];
+
+    /**
+     * Creates the sender, the file isn't opened yet.
+     *
+     * @param transport the opened transport
+     * @param controler the controler to inform about progress
+     * @param file the file to send
+     * @param longBlocks true for 1024 byte blocks (XMODEM-1K), false for 128 byte blocks
+     * @param batch true for YMODEM batch with file name and size
+     */
+    public XmodemSender(SerialTransport transport, Controler controler, File file, boolean longBlocks, boolean batch) {
+        super(transport, controler, file);
+        this.longBlocks = longBlocks;
+        this.batch = batch;
+    }
+
+    @Override
+    protected boolean transfer() throws IOException, InterruptedException {
+        try (InputStream fileInput = new FileInputStream(file)) {
+            byte[] data = new byte[LONG_BLOCK];
+            waitForStart();
+
+            if (batch) {
+                byte[] header = createFileHeader();
+                sendBlock(0, header, header.length <= SHORT_BLOCK ? SHORT_BLOCK : LONG_BLOCK);
+                waitForStart();
+            }
+
+            long sentBytes = 0;
+            int blockNumber = 1;
+            int blockSize = longBlocks ? LONG_BLOCK : SHORT_BLOCK;
+            int count;
+            while ((count = readBlock(fileInput, data, blockSize)) > 0) {
+                // the last short piece doesn't need long block
+                int size = count <= SHORT_BLOCK ? SHORT_BLOCK : blockSize;
+                Arrays.fill(data, count, size, CPMEOF);
+                sendBlock(blockNumber++, data, size);
+                sentBytes += count;
+                reportProgress(sentBytes);
+            }
+            sendEndOfTransmission();
+
+            if (batch) {
+                // empty file name ends the batch
+                waitForStart();
+                Arrays.fill(data, (byte) 0);
+                sendBlock(0, data, SHORT_BLOCK);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Waits for the receiver to request the transfer with 'C' or NAK
+     * and chooses CRC-16 or checksum mode.
+     *
+     * @throws IOException if the receiver didn't start in time or cancelled
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void waitForStart() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        int cancels = 0;
+        while (System.currentTimeMillis() < deadline) {
+            int response = input.read(deadline - System.currentTimeMillis());
+            if (response == CRC_REQUEST || response == NAK) {
+                this.crcMode = response == CRC_REQUEST;
+                return;
+            }
+            cancels = response == CAN ? cancels + 1 : 0;
+            if (cancels >= 2) {
+                throw new IOException("Transfer cancelled by receiver");
+            }
+        }
+        throw new IOException("Receiver didn't start the transfer");
+    }
+
+    /**
+     * Sends the block and waits for its confirmation, resending it if needed.
+     *
+     * @param blockNumber the block number, only the lowest byte is sent
+     * @param data the block data
+     * @param size the block size - 128 or 1024
+     *
+     * @throws IOException if the block wasn't confirmed or the receiver cancelled
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void sendBlock(int blockNumber, byte[] data, int size) throws IOException, InterruptedException {
+        packet[0] = (byte) (size == SHORT_BLOCK ? SOH : STX);
+        packet[1] = (byte) blockNumber;
+        packet[2] = (byte) ~blockNumber;
+        System.arraycopy(data, 0, packet, 3, size);
+        int length = 3 + size;
+        if (crcMode) {
+            int crc = Crc16.update(0, data, 0, size);
+            packet[length++] = (byte) (crc >>> 8);
+            packet[length++] = (byte) crc;
+        } else {
+            int checksum = 0;
+            for (int i = 0; i < size; i++) {
+                checksum += data[i];
+            }
+            packet[length++] = (byte) checksum;
+        }
+
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            input.clear();
+            write(packet, 0, length);
+            if (waitForAck()) {
+                return;
+            }
+        }
+        throw new IOException("Block " + blockNumber + " not confirmed by receiver");
+    }
+
+    /**
+     * Sends EOT until the receiver confirms it.
+     *
+     * @throws IOException if EOT wasn't confirmed or the receiver cancelled
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void sendEndOfTransmission() throws IOException, InterruptedException {
+        byte[] endOfTransmission = {EOT};
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            input.clear();
+            write(endOfTransmission, 0, endOfTransmission.length);
+            if (waitForAck()) {
+                return;
+            }
+        }
+        throw new IOException("End of transmission not confirmed by receiver");
+    }
+
+    /**
+     * Waits for the receiver response to the last packet.
+     *
+     * @return true for ACK, false if the packet should be resent
+     *
+     * @throws IOException if the receiver cancelled the transfer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private boolean waitForAck() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + RESPONSE_TIMEOUT;
+        int cancels = 0;
+        while (System.currentTimeMillis() < deadline) {
+            int response = input.read(deadline - System.currentTimeMillis());
+            switch (response) {
+                case ACK:
+                    return true;
+                case NAK:
+                case CRC_REQUEST:
+                    return false;
+                case CAN:
+                    if (++cancels >= 2) {
+                        throw new IOException("Transfer cancelled by receiver");
+                    }
+                    break;
+                default:
+                    cancels = 0;
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates YMODEM block 0 content - file name, size and modification time.
+     *
+     * @return the header bytes
+     */
+    private byte[] createFileHeader() {
+        String header = file.getName() + '\0' + totalBytes + ' '
+                + Long.toOctalString(file.lastModified() / 1000) + " 0";
+        byte[] bytes = header.getBytes(StandardCharsets.UTF_8);
+        return Arrays.copyOf(bytes, bytes.length + 1 <= SHORT_BLOCK ? SHORT_BLOCK : LONG_BLOCK);
+    }
+
+    /**
+     * Reads the next block of file, filling the array unless the file ends.
+     *
+     * @param fileInput the file stream
+     * @param data the array for data
+     * @param size the number of bytes to read
+     *
+     * @return the number of read bytes, 0 at the end of file
+     *
+     * @throws IOException if the file can't be read
+     */
+    private static int readBlock(InputStream fileInput, byte[] data, int size) throws IOException {
+        int count = 0;
+        while (count < size) {
+            int read = fileInput.read(data, count, size - count);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        return count;
+    }
+}
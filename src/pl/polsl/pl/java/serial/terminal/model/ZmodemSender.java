@@ -0,0 +1,695 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import java.util.zip.CRC32;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+
+/**
+ * File sender using ZMODEM protocol.
+ * Data subpackets are streamed without waiting for the receiver,
+ * which is asked for acknowledge every {@link #ACK_INTERVAL} bytes,
+ * and no more than {@link #WINDOW_SIZE} bytes may be unacknowledged.
+ * Receivers with limited buffer get one buffer at a time.
+ * On error the receiver sends ZRPOS and the data is resent from that position.
+ * CRC-32 is used when the receiver supports it, CRC-16 otherwise.
+ *
+ * @author Michał Lytek
+ */
+public class ZmodemSender extends ModemSender {
+
+    /* Frame special characters */
+    private static final int ZPAD = '*',
+            ZDLE = 0x18,
+            ZBIN = 'A',
+            ZHEX = 'B',
+            ZBIN32 = 'C',
+            XON = 0x11;
+
+    /* Frame types */
+    private static final int ZRQINIT = 0,
+            ZRINIT = 1,
+            ZACK = 3,
+            ZFILE = 4,
+            ZSKIP = 5,
+            ZNAK = 6,
+            ZABORT = 7,
+            ZFIN = 8,
+            ZRPOS = 9,
+            ZDATA = 10,
+            ZEOF = 11,
+            ZFERR = 12,
+            ZCRC = 13,
+            ZCHALLENGE = 14,
+            ZCAN = 16;
+
+    /* Data subpacket ends */
+    private static final int ZCRCE = 'h',
+            ZCRCG = 'i',
+            ZCRCQ = 'j',
+            ZCRCW = 'k';
+
+    /** Receiver flag - can use 32 bit CRC */
+    private static final int CANFC32 = 0x20;
+    /** Receiver flag - expects all control characters escaped */
+    private static final int ESCCTL = 0x40;
+    /** ZFILE conversion flag - binary transfer */
+    private static final int ZCBIN = 1;
+
+    /** Result of reading header, when nothing came in time */
+    private static final int TIMEOUT = -1;
+    /** Result of reading header, when header was damaged */
+    private static final int BAD_HEADER = -2;
+
+    /** Size of data subpacket */
+    private static final int SUBPACKET_SIZE = 1024;
+    /** Number of streamed bytes after which the receiver is asked for acknowledge */
+    private static final int ACK_INTERVAL = 8 * 1024;
+    /** Maximum number of unacknowledged bytes */
+    private static final int WINDOW_SIZE = 32 * 1024;
+    /** Time to wait for a header in ms */
+    private static final long HEADER_TIMEOUT = 10000;
+    /** Maximum number of garbage bytes before a header */
+    private static final int MAX_GARBAGE = 4096;
+    /** Number of tries of every step */
+    private static final int MAX_RETRIES = 10;
+
+    /** True if the receiver supports 32 bit CRC */
+    private boolean useCrc32;
+    /** True if the receiver wants all control characters escaped */
+    private boolean escapeControls;
+    /** Receiver buffer size, 0 if it can receive while writing to disk */
+    private int receiverBuffer;
+
+    /** Data of the last received header - ZP0..ZP3 */
+    private final byte[] receivedHeader = new byte[4];
+    /** Frame being sent */
+    private final FrameBuffer frame = new FrameBuffer();
+    /** CRC-32 calculator, reused for every frame */
+    private final CRC32 crc32 = new CRC32();
+
+    /**
+     * Creates the sender, the file isn't opened yet.
+     *
+     * @param transport the opened transport
+     * @param controler the controler to inform about progress
+     * @param file the file to send
+     */
+    public ZmodemSender(SerialTransport transport, Controler controler, File file) {
+        super(transport, controler, file);
+    }
+
+    @Override
+    protected boolean transfer() throws IOException, InterruptedException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            // start the receiver on the other side, if it's a shell
+            byte[] command = "rz\r".getBytes(StandardCharsets.US_ASCII);
+            write(command, 0, command.length);
+
+            initSession();
+            long position = sendFileHeader(channel);
+            if (position < 0) {
+                // the receiver already has the file
+                finishSession();
+                return false;
+            }
+            sendFileData(channel, position);
+            finishSession();
+            return true;
+        }
+    }
+
+    /**
+     * Sends ZRQINIT until the receiver answers with its capabilities in ZRINIT.
+     *
+     * @throws IOException if the receiver didn't answer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void initSession() throws IOException, InterruptedException {
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            sendHexHeader(ZRQINIT, 0);
+            int type = readHeader();
+            while (type == ZCHALLENGE) {
+                sendHexHeader(ZACK, headerValue());
+                type = readHeader();
+            }
+            if (type == ZRINIT) {
+                int flags = receivedHeader[3] & 0xFF;
+                this.useCrc32 = (flags & CANFC32) != 0;
+                this.escapeControls = (flags & ESCCTL) != 0;
+                this.receiverBuffer = (receivedHeader[0] & 0xFF) | (receivedHeader[1] & 0xFF) << 8;
+                return;
+            }
+            checkAbort(type);
+        }
+        throw new IOException("No answer from ZMODEM receiver");
+    }
+
+    /**
+     * Sends ZFILE with file name and size until the receiver chooses the start position.
+     *
+     * @param channel the file channel
+     *
+     * @return the position requested with ZRPOS, -1 if the receiver skipped the file
+     *
+     * @throws IOException if the receiver didn't accept the file
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private long sendFileHeader(FileChannel channel) throws IOException, InterruptedException {
+        String info = file.getName() + '\0' + totalBytes + ' '
+                + Long.toOctalString(file.lastModified() / 1000) + " 0\0";
+        byte[] infoBytes = info.getBytes(StandardCharsets.UTF_8);
+
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            sendBinaryHeader(ZFILE, ZCBIN << 24);
+            sendSubpacket(infoBytes, 0, infoBytes.length, ZCRCW);
+            int type = readHeader();
+            while (type == ZCRC) {
+                // receiver checks if it already has the file
+                sendHexHeader(ZCRC, fileCrc(channel, headerValue()));
+                type = readHeader();
+            }
+            switch (type) {
+                case ZRPOS:
+                    return headerValue() & 0xFFFFFFFFL;
+                case ZSKIP:
+                    return -1;
+                default:
+                    checkAbort(type);
+                    break;
+            }
+        }
+        throw new IOException("File not accepted by ZMODEM receiver");
+    }
+
+    /**
+     * Streams the file from given position and sends ZEOF,
+     * going back whenever the receiver asks with ZRPOS.
+     *
+     * @param channel the file channel
+     * @param startPosition the position requested by the receiver
+     *
+     * @throws IOException if the receiver cancelled or errors repeat too often
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void sendFileData(FileChannel channel, long startPosition) throws IOException, InterruptedException {
+        ByteBuffer data = ByteBuffer.allocate(SUBPACKET_SIZE);
+        long position = startPosition;
+        for (int errors = 0; errors <= MAX_RETRIES; errors++) {
+            position = streamFrame(channel, data, position);
+            if (position < 0) {
+                // the receiver got the whole file
+                return;
+            }
+            input.clear();
+        }
+        throw new IOException("Too many ZMODEM errors");
+    }
+
+    /**
+     * Streams the file in single data frame from given position and sends ZEOF.
+     * It stops when the receiver asks for other position with ZRPOS
+     * or doesn't answer.
+     *
+     * @param channel the file channel
+     * @param startPosition the position to start from
+     * @param data the buffer for subpacket data
+     *
+     * @return -1 if the receiver confirmed the end of file, otherwise the position to resend from
+     *
+     * @throws IOException if the receiver cancelled the transfer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private long streamFrame(FileChannel channel, ByteBuffer data, long startPosition) throws IOException, InterruptedException {
+        long position = startPosition;
+        long acknowledged = startPosition;
+        long sinceAcknowledge = 0;
+        channel.position(position);
+        sendBinaryHeader(ZDATA, (int) position);
+
+        boolean endOfFile = false;
+        while (!endOfFile) {
+            data.clear();
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // fill the whole subpacket unless the file ends
+            }
+            int count = data.position();
+            endOfFile = data.hasRemaining();
+
+            int frameEnd;
+            if (endOfFile) {
+                frameEnd = ZCRCE;
+            } else if (receiverBuffer > 0 && sinceAcknowledge + count >= receiverBuffer) {
+                frameEnd = ZCRCW;
+            } else if (sinceAcknowledge + count >= ACK_INTERVAL) {
+                frameEnd = ZCRCQ;
+            } else {
+                frameEnd = ZCRCG;
+            }
+            sendSubpacket(data.array(), 0, count, frameEnd);
+            position += count;
+            sinceAcknowledge = frameEnd == ZCRCG ? sinceAcknowledge + count : 0;
+
+            // handle the receiver answers, waiting for them when the window is full
+            boolean mustWait = frameEnd == ZCRCW;
+            while (true) {
+                boolean blocked = mustWait || position - acknowledged > WINDOW_SIZE;
+                if (!blocked && input.available() == 0) {
+                    break;
+                }
+                int type = readHeader(blocked);
+                if (type == ZACK) {
+                    acknowledged = Math.max(acknowledged, headerValue() & 0xFFFFFFFFL);
+                    reportProgress(acknowledged);
+                    mustWait = false;
+                } else if (type == ZRPOS) {
+                    return headerValue() & 0xFFFFFFFFL;
+                } else if (type == TIMEOUT || type == BAD_HEADER) {
+                    if (blocked) {
+                        return acknowledged;
+                    }
+                    break;
+                } else if (type != ZNAK && type != ZRINIT) {
+                    checkAbort(type);
+                }
+            }
+        }
+
+        // end of file - the receiver answers with ZRINIT or asks for missing data
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            sendBinaryHeader(ZEOF, (int) position);
+            int type = readHeader();
+            while (type == ZACK) {
+                type = readHeader();
+            }
+            if (type == ZRINIT) {
+                reportProgress(position);
+                return -1;
+            } else if (type == ZRPOS) {
+                return headerValue() & 0xFFFFFFFFL;
+            }
+            checkAbort(type);
+        }
+        throw new IOException("End of file not confirmed by ZMODEM receiver");
+    }
+
+    /**
+     * Ends the session with ZFIN and "over and out".
+     *
+     * @throws IOException if the port write failed
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void finishSession() throws IOException, InterruptedException {
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            sendHexHeader(ZFIN, 0);
+            int type = readHeader();
+            if (type == ZFIN) {
+                break;
+            }
+            if (type != TIMEOUT && type != BAD_HEADER) {
+                checkAbort(type);
+            }
+        }
+        byte[] overAndOut = {'O', 'O'};
+        write(overAndOut, 0, overAndOut.length);
+    }
+
+    /**
+     * Throws an exception if the header type means the end of transfer.
+     *
+     * @param type the received header type
+     *
+     * @throws IOException if the receiver aborted the transfer
+     */
+    private static void checkAbort(int type) throws IOException {
+        if (type == ZABORT || type == ZFERR || type == ZCAN || type == ZSKIP) {
+            throw new IOException("Transfer aborted by ZMODEM receiver");
+        }
+    }
+
+    /**
+     * Calculates CRC-32 of file beginning, asked by the receiver with ZCRC.
+     *
+     * @param channel the file channel
+     * @param length the number of bytes, 0 for the whole file
+     *
+     * @return the CRC-32 value
+     *
+     * @throws IOException if the file can't be read
+     */
+    private int fileCrc(FileChannel channel, int length) throws IOException {
+        long limit = length == 0 ? totalBytes : Math.min(totalBytes, length & 0xFFFFFFFFL);
+        ByteBuffer buffer = ByteBuffer.allocate(SUBPACKET_SIZE * 8);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (position < limit) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - position));
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                break;
+            }
+            crc.update(buffer.array(), 0, count);
+            position += count;
+        }
+        return (int) crc.getValue();
+    }
+
+    /*
+    Sending frames.
+    */
+
+    /**
+     * Sends header in hex form, used for session control frames.
+     *
+     * @param type the frame type
+     * @param value the header data - position or flags, ZP0 in the lowest byte
+     *
+     * @throws IOException if the port write failed
+     */
+    private void sendHexHeader(int type, int value) throws IOException {
+        frame.clear();
+        frame.append((byte) ZPAD);
+        frame.append((byte) ZPAD);
+        frame.append((byte) ZDLE);
+        frame.append((byte) ZHEX);
+        int crc = Crc16.update(0, type);
+        appendHex(type);
+        for (int shift = 0; shift < 32; shift += 8) {
+            crc = Crc16.update(crc, value >>> shift);
+            appendHex(value >>> shift);
+        }
+        appendHex(crc >>> 8);
+        appendHex(crc);
+        frame.append((byte) '\r');
+        frame.append((byte) 0x8A);
+        if (type != ZFIN && type != ZACK) {
+            frame.append((byte) XON);
+        }
+        write(frame.array(), 0, frame.length());
+    }
+
+    /**
+     * Sends header in binary form, used before data subpackets.
+     *
+     * @param type the frame type
+     * @param value the header data - position or flags, ZP0 in the lowest byte
+     *
+     * @throws IOException if the port write failed
+     */
+    private void sendBinaryHeader(int type, int value) throws IOException {
+        frame.clear();
+        frame.append((byte) ZPAD);
+        frame.append((byte) ZDLE);
+        frame.append((byte) (useCrc32 ? ZBIN32 : ZBIN));
+        appendEscaped(type);
+        for (int shift = 0; shift < 32; shift += 8) {
+            appendEscaped(value >>> shift);
+        }
+        // CRC of unescaped bytes
+        byte[] header = {(byte) type, (byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)};
+        appendCrc(header, 0, header.length, -1);
+        write(frame.array(), 0, frame.length());
+    }
+
+    /**
+     * Sends data subpacket.
+     *
+     * @param data the array with data
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param frameEnd the subpacket end - ZCRCE, ZCRCG, ZCRCQ or ZCRCW
+     *
+     * @throws IOException if the port write failed
+     */
+    private void sendSubpacket(byte[] data, int offset, int length, int frameEnd) throws IOException {
+        frame.clear();
+        for (int i = offset; i < offset + length; i++) {
+            appendEscaped(data[i]);
+        }
+        frame.append((byte) ZDLE);
+        frame.append((byte) frameEnd);
+        appendCrc(data, offset, length, frameEnd);
+        if (frameEnd == ZCRCW) {
+            frame.append((byte) XON);
+        }
+        write(frame.array(), 0, frame.length());
+    }
+
+    /**
+     * Appends escaped CRC of the bytes and optional frame end to the frame.
+     * CRC-32 is sent from the lowest byte, CRC-16 from the highest.
+     *
+     * @param data the array with protected bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param frameEnd the subpacket end included in CRC, -1 for headers
+     */
+    private void appendCrc(byte[] data, int offset, int length, int frameEnd) {
+        if (useCrc32) {
+            crc32.reset();
+            crc32.update(data, offset, length);
+            if (frameEnd >= 0) {
+                crc32.update(frameEnd);
+            }
+            long crc = crc32.getValue();
+            for (int shift = 0; shift < 32; shift += 8) {
+                appendEscaped((int) (crc >>> shift));
+            }
+        } else {
+            int crc = Crc16.update(0, data, offset, length);
+            if (frameEnd >= 0) {
+                crc = Crc16.update(crc, frameEnd);
+            }
+            appendEscaped(crc >>> 8);
+            appendEscaped(crc);
+        }
+    }
+
+    /**
+     * Appends the byte to the frame, escaping it with ZDLE if needed.
+     * ZDLE, XON, XOFF, DLE and CR (also with the highest bit set) are always escaped.
+     *
+     * @param value the byte to append
+     */
+    private void appendEscaped(int value) {
+        value &= 0xFF;
+        boolean escape;
+        switch (value) {
+            case ZDLE:
+            case 0x10:
+            case 0x90:
+            case 0x11:
+            case 0x91:
+            case 0x13:
+            case 0x93:
+            case 0x0D:
+            case 0x8D:
+                escape = true;
+                break;
+            default:
+                escape = escapeControls && (value & 0x60) == 0;
+                break;
+        }
+        if (escape) {
+            frame.append((byte) ZDLE);
+            frame.append((byte) (value ^ 0x40));
+        } else {
+            frame.append((byte) value);
+        }
+    }
+
+    /**
+     * Appends the byte as two lowercase hex digits.
+     *
+     * @param value the byte to append
+     */
+    private void appendHex(int value) {
+        frame.append((byte) Character.forDigit((value >>> 4) & 0x0F, 16));
+        frame.append((byte) Character.forDigit(value & 0x0F, 16));
+    }
+
+    /*
+    Receiving headers.
+    */
+
+    /**
+     * Waits for the next header from the receiver.
+     *
+     * @return the frame type, {@link #TIMEOUT} or {@link #BAD_HEADER}
+     *
+     * @throws IOException if the receiver cancelled the transfer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private int readHeader() throws IOException, InterruptedException {
+        return readHeader(true);
+    }
+
+    /**
+     * Reads the next header from the receiver, skipping garbage before it.
+     *
+     * @param wait true to wait for the header, false to only look at already received bytes
+     *
+     * @return the frame type, {@link #TIMEOUT} or {@link #BAD_HEADER}
+     *
+     * @throws IOException if the receiver cancelled the transfer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private int readHeader(boolean wait) throws IOException, InterruptedException {
+        int cancels = 0;
+        for (int garbage = 0; garbage < MAX_GARBAGE; garbage++) {
+            int value = input.read(wait ? HEADER_TIMEOUT : 0);
+            if (value < 0) {
+                return TIMEOUT;
+            }
+            if (value == CAN) {
+                if (++cancels >= 5) {
+                    throw new IOException("Transfer cancelled by ZMODEM receiver");
+                }
+                continue;
+            }
+            cancels = 0;
+            if (value != ZPAD) {
+                continue;
+            }
+
+            // header started - the rest is coming, so wait for it
+            do {
+                value = input.read(HEADER_TIMEOUT);
+            } while (value == ZPAD);
+            if (value != ZDLE) {
+                continue;
+            }
+            value = input.read(HEADER_TIMEOUT);
+            switch (value) {
+                case ZHEX:
+                    return readHexHeader();
+                case ZBIN:
+                    return readBinaryHeader(false);
+                case ZBIN32:
+                    return readBinaryHeader(true);
+                default:
+                    break;
+            }
+        }
+        return BAD_HEADER;
+    }
+
+    /**
+     * Reads the rest of hex header and checks its CRC.
+     *
+     * @return the frame type or {@link #BAD_HEADER}
+     *
+     * @throws IOException if the transfer was cancelled
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private int readHexHeader() throws IOException, InterruptedException {
+        int[] bytes = new int[7];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(input.read(HEADER_TIMEOUT), 16);
+            int low = Character.digit(input.read(HEADER_TIMEOUT), 16);
+            if (high < 0 || low < 0) {
+                return BAD_HEADER;
+            }
+            bytes[i] = high << 4 | low;
+        }
+        int crc = 0;
+        for (int value : bytes) {
+            crc = Crc16.update(crc, value);
+        }
+        return crc == 0 ? storeHeader(bytes) : BAD_HEADER;
+    }
+
+    /**
+     * Reads the rest of binary header and checks its CRC.
+     *
+     * @param crc32Header true for header with 32 bit CRC
+     *
+     * @return the frame type or {@link #BAD_HEADER}
+     *
+     * @throws IOException if the receiver cancelled the transfer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private int readBinaryHeader(boolean crc32Header) throws IOException, InterruptedException {
+        int[] bytes = new int[crc32Header ? 9 : 7];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = readEscaped();
+            if (bytes[i] < 0) {
+                return BAD_HEADER;
+            }
+        }
+        if (crc32Header) {
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < 5; i++) {
+                crc.update(bytes[i]);
+            }
+            long expected = bytes[5] | bytes[6] << 8 | bytes[7] << 16 | (long) bytes[8] << 24;
+            return crc.getValue() == expected ? storeHeader(bytes) : BAD_HEADER;
+        }
+        int crc = 0;
+        for (int value : bytes) {
+            crc = Crc16.update(crc, value);
+        }
+        return crc == 0 ? storeHeader(bytes) : BAD_HEADER;
+    }
+
+    /**
+     * Reads a single byte of binary header, decoding ZDLE escapes
+     * and skipping flow control characters.
+     *
+     * @return the byte value, -1 on timeout or wrong escape
+     *
+     * @throws IOException if the receiver cancelled the transfer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private int readEscaped() throws IOException, InterruptedException {
+        int value;
+        do {
+            value = input.read(HEADER_TIMEOUT);
+        } while (value == XON || value == 0x13 || value == 0x91 || value == 0x93);
+        if (value != ZDLE) {
+            return value;
+        }
+        value = input.read(HEADER_TIMEOUT);
+        if (value == CAN) {
+            throw new IOException("Transfer cancelled by ZMODEM receiver");
+        } else if (value == 'l') {
+            return 0x7F;
+        } else if (value == 'm') {
+            return 0xFF;
+        } else if ((value & 0x60) == 0x40) {
+            return value ^ 0x40;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the data of correctly received header.
+     *
+     * @param bytes the header bytes - type and ZP0..ZP3
+     *
+     * @return the frame type
+     */
+    private int storeHeader(int[] bytes) {
+        for (int i = 0; i < receivedHeader.length; i++) {
+            receivedHeader[i] = (byte) bytes[i + 1];
+        }
+        return bytes[0];
+    }
+
+    /**
+     * Getter to the data of the last received header as number.
+     * @return the position or flags, ZP0 in the lowest byte
+     */
+    private int headerValue() {
+        return (receivedHeader[0] & 0xFF) | (receivedHeader[1] & 0xFF) << 8
+                | (receivedHeader[2] & 0xFF) << 16 | (receivedHeader[3] & 0xFF) << 24;
+    }
+}
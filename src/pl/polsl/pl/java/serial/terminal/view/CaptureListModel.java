@@ -0,0 +1,255 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.io.IOException;
+
+import java.util.TreeMap;
+
+import javax.swing.AbstractListModel;
+
+import pl.polsl.pl.java.serial.terminal.model.CaptureStore;
+
+/**
+ * List model of received lines which reads only the rows asked by the list,
+ * so only visible lines are ever decoded.
+ * It shows the last lines of the capture store within the scrollback limits.
+ * Changes are published in batches by {@link #publishChanges()}.
+ * Lines can be marked, eg. with the color of matching trigger; marks are rare,
+ * so they are kept in a map instead of a value per line.
+ * Lines removed from the list stay in the store, so they can still be found.
+ * Received text is split into rows on line feeds, like it was shown in the text area,
+ * and rows are cut at {@link #MAX_ROW_LENGTH}, so text received without terminator
+ * doesn't grow into a single row decoded anew on every repaint.
+ *
+ * @author Michał Lytek
+ */
+public class CaptureListModel extends AbstractListModel<String> {
+
+    /** Maximum length of a row in chars, longer text continues in the next row */
+    private static final int MAX_ROW_LENGTH = 4096;
+
+    /** Store with all received lines */
+    private final CaptureStore store;
+    /** Number of the first visible line in the store */
+    private long firstLine;
+    /** Size of the list published to listeners */
+    private int publishedSize;
+    /** True if the last published line was extended */
+    private boolean lastLineChanged;
+    /** Length of the last stored row in chars, -1 if the next text starts a new row */
+    private int lastRowLength = -1;
+    /** Marks of lines by line number in the store */
+    private final TreeMap<Long, Integer> marks = new TreeMap<>();
+
+    /** Maximum number of visible lines */
+    private int maxLines;
+    /** Maximum number of visible bytes */
+    private long maxBytes;
+
+    /**
+     * Creates the model of given store.
+     *
+     * @param store the store of received lines
+     * @param maxLines the maximum number of visible lines
+     * @param maxBytes the maximum number of visible bytes
+     */
+    public CaptureListModel(CaptureStore store, int maxLines, long maxBytes) {
+        this.store = store;
+        setLimits(maxLines, maxBytes);
+    }
+
+    /**
+     * Changes the scrollback limits, applied with the next publishing.
+     *
+     * @param maxLines the maximum number of visible lines, at least 1
+     * @param maxBytes the maximum number of visible bytes
+     */
+    public final void setLimits(int maxLines, long maxBytes) {
+        this.maxLines = Math.max(1, maxLines);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Getter to the maximum number of visible lines.
+     * @return the lines limit
+     */
+    public int getMaxLines() {
+        return this.maxLines;
+    }
+
+    /**
+     * Stores received text, it will be visible after publishing.
+     * Every line feed in the text starts a new row.
+     *
+     * @param text the received text
+     * @param newLine true if the text starts new line, false if it is appended to the last one
+     *
+     * @return the length of the longest row the text was stored in, in chars
+     */
+    public int append(String text, boolean newLine) {
+        int longestRow = 0;
+        boolean rowStart = newLine || lastRowLength < 0;
+        int start = 0;
+        try {
+            while (true) {
+                int lineFeed = text.indexOf('\n', start);
+                int end = lineFeed < 0 ? text.length() : lineFeed;
+                int rowEnd = Math.min(end, start + MAX_ROW_LENGTH - (rowStart ? 0 : lastRowLength));
+                if (rowEnd < end && rowEnd > start && Character.isHighSurrogate(text.charAt(rowEnd - 1))) {
+                    // don't split the surrogate pair between rows
+                    rowEnd--;
+                }
+                if (rowStart) {
+                    store.appendLine(text.substring(start, rowEnd));
+                    lastRowLength = rowEnd - start;
+                } else if (rowEnd > start) {
+                    lastLineChanged = true;
+                    store.appendToLastLine(text.substring(start, rowEnd));
+                    lastRowLength += rowEnd - start;
+                }
+                longestRow = Math.max(longestRow, lastRowLength);
+                if (rowEnd < end) {
+                    start = rowEnd;
+                } else if (lineFeed >= 0) {
+                    start = lineFeed + 1;
+                } else {
+                    break;
+                }
+                rowStart = true;
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+        return longestRow;
+    }
+
+    /**
+     * Marks the last stored line.
+     *
+     * @param mark the mark, eg. the index of color
+     */
+    public void markLastLine(int mark) {
+        long lineCount = store.getLineCount();
+        if (lineCount > 0) {
+            marks.put(lineCount - 1, mark);
+        }
+    }
+
+    /**
+     * Getter to the mark of visible line.
+     *
+     * @param index the row number
+     *
+     * @return the mark, -1 if the line isn't marked
+     */
+    public int getMarkAt(int index) {
+        Integer mark = marks.get(firstLine + index);
+        return mark != null ? mark : -1;
+    }
+
+    /**
+     * Copies the last visible lines, eg. to save them when a trigger matches.
+     * The bytes are copied in one read without decoding, so they can be written on another thread.
+     *
+     * @param count the maximum number of lines
+     *
+     * @return the UTF-8 bytes of the lines, each followed by line feed
+     *
+     * @throws IOException if the store can't be read
+     */
+    public byte[] copyLastLines(int count) throws IOException {
+        return store.copyLines(Math.max(firstLine, store.getLineCount() - count));
+    }
+
+    /**
+     * Applies scrollback limits and informs listeners about all changes since the last publishing.
+     *
+     * @return true if anything changed
+     */
+    public boolean publishChanges() {
+        long lineCount = store.getLineCount();
+        long newFirstLine = Math.max(firstLine, lineCount - maxLines);
+        try {
+            // move the first line until the visible part fits the bytes limit
+            while (newFirstLine < lineCount - 1 && store.getDataLength() - store.getLineOffset(newFirstLine) > maxBytes) {
+                newFirstLine++;
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+
+        boolean changed = false;
+        int evicted = (int) (newFirstLine - firstLine);
+        if (evicted > 0) {
+            firstLine = newFirstLine;
+            marks.headMap(firstLine).clear();
+            int removed = Math.min(evicted, publishedSize);
+            publishedSize -= removed;
+            fireIntervalRemoved(this, 0, removed - 1);
+            changed = true;
+        }
+        if (lastLineChanged && publishedSize > 0) {
+            fireContentsChanged(this, publishedSize - 1, publishedSize - 1);
+            changed = true;
+        }
+        lastLineChanged = false;
+
+        int size = (int) Math.min(Integer.MAX_VALUE, lineCount - firstLine);
+        if (size > publishedSize) {
+            int oldSize = publishedSize;
+            publishedSize = size;
+            fireIntervalAdded(this, oldSize, size - 1);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Getter to the store line shown in the first row.
+     * @return the line number in the store
+     */
+    public long getFirstLine() {
+        return this.firstLine;
+    }
+
+    /**
+     * Hides all lines in constant time, they stay in the store.
+     * The next text starts a new row, so it's visible.
+     */
+    public void clear() {
+        marks.clear();
+        int oldSize = publishedSize;
+        firstLine = store.getLineCount();
+        publishedSize = 0;
+        lastLineChanged = false;
+        lastRowLength = -1;
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+    }
+
+    /**
+     * Getter to the number of published lines.
+     * @return the number of lines
+     */
+    @Override
+    public int getSize() {
+        return this.publishedSize;
+    }
+
+    /**
+     * Reads the visible line from the store.
+     *
+     * @param index the row number
+     *
+     * @return the line content
+     */
+    @Override
+    public String getElementAt(int index) {
+        try {
+            return store.getLine(firstLine + index);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return "";
+        }
+    }
+}
@@ -3,6 +3,7 @@ package pl.polsl.pl.java.serial.terminal.view;
 import java.awt.Frame;
 
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
@@ -66,6 +67,9 @@ public class ConfigurationDialog extends javax.swing.JDialog {
         setupPortsComboBox();
         
         customTerminatorTextField.setEditable(false);
+        customTerminatorTextField.setToolTipText("<html>Alternatywne terminatory oddzielone znakiem |<br>"
+                + "oraz sekwencje \\r \\n \\t \\| \\\\, np. \\r\\n|\\n|;;END;;<br>"
+                + "Znak | w terminatorze zapisz jako \\|</html>");
         customTerminatorTextField.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void changedUpdate(DocumentEvent e) {
@@ -83,19 +87,11 @@ public class ConfigurationDialog extends javax.swing.JDialog {
             }
 
             /**
-             * Limit text field chars amount to 2.
+             * Enable saving only when custom terminator isn't empty.
              */
             public void limit() {
                 SwingUtilities.invokeLater(() -> {
-                    String fieldText = customTerminatorTextField.getText();
-                    if (fieldText.length() > 0) {
-                        saveButton.setEnabled(true);
-                        if (fieldText.length() > 2) {
-                            customTerminatorTextField.setText(fieldText.substring(0, 2));
-                        }
-                    } else {
-                        saveButton.setEnabled(false);
-                    }
+                    saveButton.setEnabled(customTerminatorTextField.getText().length() > 0);
                 });
             }
         });
@@ -125,6 +121,11 @@ public class ConfigurationDialog extends javax.swing.JDialog {
         jLabel7 = new javax.swing.JLabel();
         terminatorComboBox = new javax.swing.JComboBox<>();
         customTerminatorTextField = new javax.swing.JTextField();
+        jLabel8 = new javax.swing.JLabel();
+        overflowComboBox = new javax.swing.JComboBox<>();
+        jLabel9 = new javax.swing.JLabel();
+        charsetComboBox = new javax.swing.JComboBox<>();
+        linkTestCheckBox = new javax.swing.JCheckBox();
         saveButton = new javax.swing.JButton();
         refreshAvaiablePortsButton = new javax.swing.JButton();
 
@@ -166,6 +167,17 @@ public class ConfigurationDialog extends javax.swing.JDialog {
             }
         });
 
+        jLabel8.setText("Przepełnienie odbioru:");
+
+        overflowComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Blokuj odczyt", "Odrzucaj najstarsze", "Odrzucaj najnowsze" }));
+
+        jLabel9.setText("Kodowanie znaków:");
+
+        charsetComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "US-ASCII", "UTF-8", "windows-1250", "ISO-8859-2", "ISO-8859-1" }));
+
+        linkTestCheckBox.setText("Test łącza (DLE ENQ / DLE ACK)");
+        linkTestCheckBox.setToolTipText("Odpowiadaj na sekwencje testu łącza i usuwaj je z odebranych danych, bajt DLE danych jest przesyłany jako DLE DLE");
+
         saveButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/save.png"))); // NOI18N
         saveButton.setText("Zapisz");
         saveButton.addActionListener(new java.awt.event.ActionListener() {
@@ -195,7 +207,9 @@ public class ConfigurationDialog extends javax.swing.JDialog {
                     .addComponent(jLabel3)
                     .addComponent(jLabel5)
                     .addComponent(jLabel6)
-                    .addComponent(jLabel7))
+                    .addComponent(jLabel7)
+                    .addComponent(jLabel8)
+                    .addComponent(jLabel9))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addGroup(layout.createSequentialGroup()
@@ -205,11 +219,14 @@ public class ConfigurationDialog extends javax.swing.JDialog {
                     .addComponent(speedComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(signbitsComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(stopBitsComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(overflowComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(charsetComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(linkTestCheckBox)
                     .addComponent(flowControlComboBox, 0, 189, Short.MAX_VALUE)
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(terminatorComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                        .addComponent(customTerminatorTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 30, javax.swing.GroupLayout.PREFERRED_SIZE))
+                        .addComponent(customTerminatorTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 90, javax.swing.GroupLayout.PREFERRED_SIZE))
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(portComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -249,6 +266,16 @@ public class ConfigurationDialog extends javax.swing.JDialog {
                     .addComponent(jLabel7)
                     .addComponent(terminatorComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, 25, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(customTerminatorTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 25, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabel8)
+                    .addComponent(overflowComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, 25, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabel9)
+                    .addComponent(charsetComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, 25, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(linkTestCheckBox)
                 .addGap(18, 18, 18)
                 .addComponent(saveButton)
                 .addContainerGap())
@@ -279,6 +306,7 @@ public class ConfigurationDialog extends javax.swing.JDialog {
      * Handle saving request from button.
      * It checks if user choosed own terminator
      * and parse combobox to necessary format.
+     * Invalid own terminator is reported and the dialog stays open.
      * 
      * @param evt is ignored
      */
@@ -286,6 +314,20 @@ public class ConfigurationDialog extends javax.swing.JDialog {
         String terminator;
         if (terminatorComboBox.getSelectedIndex() == 4) {
             terminator = customTerminatorTextField.getText();
+            try {
+                Controler.parseCustomTerminators(terminator);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showOptionDialog(this,
+                        "Niepoprawny terminator!\n" + ex.getMessage(),
+                        "Błąd konfiguracji",
+                        JOptionPane.PLAIN_MESSAGE,
+                        JOptionPane.ERROR_MESSAGE,
+                        null,
+                        null,
+                        null
+                );
+                return;
+            }
         } else {
             terminator = (String) terminatorComboBox.getSelectedItem();
         }
@@ -297,7 +339,10 @@ public class ConfigurationDialog extends javax.swing.JDialog {
             parityComboBox.getSelectedIndex(),
             Integer.parseInt((String) stopBitsComboBox.getSelectedItem()),
             flowControlComboBox.getSelectedIndex(),
-            terminator
+            terminator,
+            overflowComboBox.getSelectedIndex(),
+            (String) charsetComboBox.getSelectedItem(),
+            linkTestCheckBox.isSelected()
         );
         
         dispose();
@@ -313,6 +358,7 @@ public class ConfigurationDialog extends javax.swing.JDialog {
     }//GEN-LAST:event_refreshAvaiablePortsButtonActionPerformed
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JComboBox<String> charsetComboBox;
     private javax.swing.JTextField customTerminatorTextField;
     private javax.swing.JComboBox<String> flowControlComboBox;
     private javax.swing.JLabel jLabel1;
@@ -322,6 +368,10 @@ public class ConfigurationDialog extends javax.swing.JDialog {
     private javax.swing.JLabel jLabel5;
     private javax.swing.JLabel jLabel6;
     private javax.swing.JLabel jLabel7;
+    private javax.swing.JLabel jLabel8;
+    private javax.swing.JLabel jLabel9;
+    private javax.swing.JCheckBox linkTestCheckBox;
+    private javax.swing.JComboBox<String> overflowComboBox;
     private javax.swing.JComboBox<String> parityComboBox;
     private javax.swing.JComboBox<String> portComboBox;
     private javax.swing.JButton refreshAvaiablePortsButton;
@@ -0,0 +1,266 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.io.PrintStream;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+
+/**
+ * Text user interface for headless mode, which doesn't need AWT or Swing.
+ * Received frames are written to the output stream on its own thread,
+ * messages about connection go to the standard error stream.
+ *
+ * @author Michał Lytek
+ */
+public class ConsoleView implements TerminalView {
+
+    /** Instance of controler class */
+    private Controler controler;
+    /** Stream for received frames */
+    private final PrintStream output;
+    /** Thread writing received frames, so serial port thread never waits for output */
+    private final ExecutorService outputExecutor;
+    /** True if nothing was written yet */
+    private boolean isEmpty = true;
+    /** Dropped frames count reported last time */
+    private long reportedDroppedFrames;
+    /** Capture dropped bytes count reported last time */
+    private long reportedCaptureDrops;
+    /** Line errors count reported last time */
+    private long reportedFramingErrors;
+    /** True if an automation script has failed */
+    private volatile boolean scriptFailed;
+
+    /**
+     * Creates the console view.
+     *
+     * @param output the stream for received frames - stdout or file
+     */
+    public ConsoleView(PrintStream output) {
+        this.output = output;
+        this.outputExecutor = Executors.newSingleThreadExecutor((task) -> {
+            Thread thread = new Thread(task, "console-view");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the controler to ask for connection parameters.
+     *
+     * @param controler the instance of controler
+     */
+    public void setControler(Controler controler) {
+        this.controler = controler;
+    }
+
+    /**
+     * Writes received text to the output, starting new line if needed.
+     *
+     * @param receivedLine the string to write
+     * @param insertInNewLine true if the line should be placed in new line, false if appended to the current text
+     */
+    @Override
+    public void insertReceivedText(String receivedLine, boolean insertInNewLine) {
+        if (insertInNewLine && !isEmpty) {
+            output.print('\n');
+        }
+        output.print(receivedLine);
+        isEmpty = false;
+    }
+
+    /**
+     * Reports the dropped frames count when it has changed.
+     *
+     * @param droppedFrames the dropped frames count
+     */
+    @Override
+    public void showDroppedFrames(long droppedFrames) {
+        if (droppedFrames != reportedDroppedFrames) {
+            reportedDroppedFrames = droppedFrames;
+            System.err.println("Odrzucone ramki: " + droppedFrames);
+        }
+    }
+
+    /**
+     * Prints the connection parameters.
+     */
+    @Override
+    public void showConnectionParameters() {
+        System.err.println("Port: " + controler.getConnectedPortName()
+                + ", " + controler.getConnectedPortSpeed() + " bps"
+                + ", " + controler.getConnectedPortSignFormat()
+                + ", kontrola przepływu: " + controler.getConnectedPortFlowControl()
+                + ", terminator: " + controler.getConnectedPortTerminator()
+                + ", kodowanie: " + controler.getConnectedPortCharset()
+                + (controler.isLinkTestEnabled() ? ", test łącza DLE ENQ/ACK" : ""));
+    }
+
+    /**
+     * Prints the connection test result.
+     *
+     * @param isSuccesful true if test was ok, false if there was an error or timeout
+     * @param pingResult the round trip delay time in ms - ignored if isSuccesful is false
+     */
+    @Override
+    public void showConnectionTestResults(boolean isSuccesful, int pingResult) {
+        if (isSuccesful) {
+            System.err.println("Test łącza zakończony sukcesem! Czas \"round trip delay\": " + pingResult + " ms.");
+        } else {
+            System.err.println("Test łącza zakończony niepowodzeniem!");
+        }
+    }
+
+    /**
+     * Prints the file sending progress.
+     *
+     * @param sentBytes the number of sent bytes
+     * @param totalBytes the file size
+     * @param elapsedTime the time since the start of sending in ns
+     */
+    @Override
+    public void showFileSendProgress(long sentBytes, long totalBytes, long elapsedTime) {
+        long rate = elapsedTime > 0 ? sentBytes * 1000000000L / elapsedTime : 0;
+        System.err.println("Wysłano " + sentBytes + " z " + totalBytes + " bajtów (" + rate + " B/s)");
+    }
+
+    /**
+     * Prints the end of file sending.
+     *
+     * @param isComplete true if the whole file was sent, false if it was cancelled or an error occured
+     */
+    @Override
+    public void showFileSendFinished(boolean isComplete) {
+        System.err.println(isComplete ? "Wysyłanie pliku zakończone." : "Wysyłanie pliku przerwane!");
+    }
+
+    /**
+     * Prints the capture state only when the writer lost some data,
+     * so the output isn't flooded every report.
+     *
+     * @param fileName the name of file being written
+     * @param writtenBytes the number of bytes written to capture files
+     * @param backlog the number of bytes waiting for writing
+     * @param droppedBytes the number of bytes lost because the writer didn't keep up
+     */
+    @Override
+    public void showCaptureStatus(String fileName, long writtenBytes, long backlog, long droppedBytes) {
+        if (droppedBytes != reportedCaptureDrops) {
+            reportedCaptureDrops = droppedBytes;
+            System.err.println("Zapis do " + fileName + ": utracono " + droppedBytes
+                    + " bajtów, oczekuje " + backlog + " bajtów");
+        }
+    }
+
+    /**
+     * Prints the statistics of continuous connection test.
+     *
+     * @param medianRoundTrip the median round trip time in ns
+     * @param p99RoundTrip the 99th percentile of round trip time in ns
+     * @param p999RoundTrip the 99.9th percentile of round trip time in ns
+     * @param maxRoundTrip the longest round trip time in ns
+     * @param lossRate the part of probes without response, from 0 to 1
+     * @param jitter the smoothed round trip time variation in ns
+     */
+    @Override
+    public void showLatencyStatus(long medianRoundTrip, long p99RoundTrip, long p999RoundTrip, long maxRoundTrip, double lossRate, long jitter) {
+        System.err.println(String.format("Opóźnienie: p50 %.3f, p99 %.3f, p99.9 %.3f, max %.3f ms, jitter %.3f ms, strata %.1f%%",
+                medianRoundTrip / 1e6, p99RoundTrip / 1e6, p999RoundTrip / 1e6, maxRoundTrip / 1e6, jitter / 1e6, lossRate * 100));
+    }
+
+    /**
+     * Prints the traffic statistics only when the port reported new line errors,
+     * the rates are available over JMX.
+     *
+     * @param receivedBytesPerSecond the receive rate in bytes per second
+     * @param sentBytesPerSecond the send rate in bytes per second
+     * @param framesPerSecond the number of received frames per second
+     * @param averageChunkSize the average size of single read from the port in bytes
+     * @param framingErrors the number of line errors reported by the port
+     * @param droppedFrames the number of frames dropped due to receive queue overflow
+     */
+    @Override
+    public void showTrafficStatistics(double receivedBytesPerSecond, double sentBytesPerSecond, double framesPerSecond, double averageChunkSize, long framingErrors, long droppedFrames) {
+        if (framingErrors != reportedFramingErrors) {
+            reportedFramingErrors = framingErrors;
+            System.err.println(String.format("Błędy linii: %d (RX %.1f kB/s, odczyt %.0f B)",
+                    framingErrors, receivedBytesPerSecond / 1000, averageChunkSize));
+        }
+    }
+
+    /**
+     * Prints the matching line, with bell sign for beeping trigger.
+     * There's no scrollback to pause or save, so other actions only print the line.
+     *
+     * @param trigger the matching trigger with the highest priority
+     * @param line the matching line
+     */
+    @Override
+    public void showTriggerMatch(Trigger trigger, String line) {
+        System.err.println((trigger.getAction() == Trigger.ACTION_BEEP ? "\007" : "")
+                + "Wyzwalacz \"" + trigger.getPattern() + "\": " + line);
+    }
+
+    /**
+     * Steps aren't printed, they would mix with received lines.
+     *
+     * @param stepNumber is ignored
+     * @param lineNumber is ignored
+     * @param command is ignored
+     */
+    @Override
+    public void showScriptProgress(int stepNumber, int lineNumber, String command) {
+    }
+
+    /**
+     * Prints the script report.
+     *
+     * @param isSuccesful true if the script reached its end
+     * @param report the latency of every expect step and the summary
+     */
+    @Override
+    public void showScriptFinished(boolean isSuccesful, String report) {
+        System.err.print(report);
+        if (!isSuccesful) {
+            this.scriptFailed = true;
+        }
+    }
+
+    /**
+     * Check if any automation script has failed, eg. for the exit code.
+     * @return true if a script failed or was stopped
+     */
+    public boolean isScriptFailed() {
+        return this.scriptFailed;
+    }
+
+    /**
+     * Waits until all tasks passed to the output thread so far are done.
+     */
+    public void awaitOutput() {
+        try {
+            outputExecutor.submit(() -> { }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    /**
+     * Runs the task on output thread and flushes the output after it.
+     *
+     * @param task the task to run
+     */
+    @Override
+    public void runOnViewThread(Runnable task) {
+        outputExecutor.execute(() -> {
+            task.run();
+            output.flush();
+        });
+    }
+}
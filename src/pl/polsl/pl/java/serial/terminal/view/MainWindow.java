@@ -1,24 +1,65 @@
 package pl.polsl.pl.java.serial.terminal.view;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Cursor;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GridLayout;
 import java.awt.Image;
 import java.awt.Toolkit;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
+import javax.swing.DefaultCellEditor;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
-import javax.swing.JScrollBar;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.StyledDocument;
+import javax.swing.table.DefaultTableModel;
 
 import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.main.SessionManager;
+import pl.polsl.pl.java.serial.terminal.model.CaptureStore;
+import pl.polsl.pl.java.serial.terminal.model.CommandScheduler;
+import pl.polsl.pl.java.serial.terminal.model.DecodedMessage;
+import pl.polsl.pl.java.serial.terminal.model.DecoderPipeline;
+import pl.polsl.pl.java.serial.terminal.model.ExpectScript;
+import pl.polsl.pl.java.serial.terminal.model.PeriodicCommand;
+import pl.polsl.pl.java.serial.terminal.model.ProtocolDecoder;
+import pl.polsl.pl.java.serial.terminal.model.SendProgress;
+import pl.polsl.pl.java.serial.terminal.model.TelemetryStore;
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
 
 /**
  * Main GUI class. 
@@ -27,7 +68,24 @@ import pl.polsl.pl.java.serial.terminal.main.Controler;
  *
  * @author Michał Lytek
  */
-public class MainWindow extends JFrame {
+public class MainWindow extends JFrame implements TerminalView {
+
+    /** Delay between received text area updates in ms (about 30 frames per second) */
+    private static final int RECEIVED_TEXT_FLUSH_DELAY = 33;
+    /** Names of trigger actions, in the order of ACTION constants */
+    private static final String[] TRIGGER_ACTION_NAMES = {"Brak", "Sygnał dźwiękowy", "Wstrzymaj przewijanie", "Zapisz migawkę"};
+    /** Default maximum number of lines shown in received lines list */
+    private static final int DEFAULT_SCROLLBACK_LINES = 1000000;
+    /** Maximum number of bytes shown in received lines list */
+    private static final long SCROLLBACK_BYTES = 1024L * 1024 * 1024;
+    /** Number of lines shown before and after the found line */
+    private static final int SEARCH_CONTEXT_LINES = 3;
+    /** Format of time entered to jump to */
+    private static final String SEARCH_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    /** Maximum number of decoded messages in the table */
+    private static final int DECODED_MESSAGES_ROWS = 1000;
+    /** Number of last lines measured for the list width after opening saved lines */
+    private static final int MEASURED_LINES = 10000;
 
     /** Instance of controler class */
     private Controler controler;
@@ -40,6 +98,29 @@ public class MainWindow extends JFrame {
     private Dimension receivingSize;
     /** Default minimum receiving textarea size */
     private Dimension sendingSize;
+    
+    /** Memory-mapped store of all received lines */
+    private CaptureStore captureStore;
+    /** Model of received lines list, reading only visible lines from the store */
+    private CaptureListModel receivedLinesModel;
+    /** Timer which publishes received lines to the list */
+    private Timer receivedTextFlushTimer;
+    /** Length of the longest received line in chars */
+    private int longestLineLength;
+    /** True if the user has stopped sending file */
+    private boolean fileSendCancelled;
+    
+    /** Dialog of received lines search, created when first used */
+    private JDialog searchDialog;
+    /** Store where the last line was found */
+    private CaptureStore searchStore;
+    /** Number of the last found line in the store, -1 if there's none */
+    private long searchLine = -1;
+    
+    /** Plot of numbers in received lines of the main port, created when first shown */
+    private TelemetryPlotPanel telemetryPlotPanel;
+    /** Split of the main port tab into received lines and the plot */
+    private JSplitPane telemetrySplitPane;
 
     /**
      * Creates new main GUI form.
@@ -84,17 +165,35 @@ public class MainWindow extends JFrame {
         sendingSize = sendingScrollPane.getBounds().getSize();
 
         connectionDetailsPanel.setVisible(false);
+        fileSendProgressBar.setVisible(false);
+        fileSendProgressBar.setMaximum(1000);
 
         connectMenuItem.setEnabled(false);
         disconnectMenuItem.setEnabled(false);
         testConnectionMenuItem.setEnabled(false);
+        latencyMonitorMenuItem.setEnabled(false);
+        runScriptMenuItem.setEnabled(false);
+        replayMenuItem.setEnabled(false);
 
         portStatusLabel.setText("Nie połączono");
         portNameLabel.setVisible(false);
 
-        receivingTextPane.setBackground(new Color(240, 240, 240));
-        receivingTextPane.setEditable(false);
-        receivingTextPane.setCursor(new Cursor(Cursor.TEXT_CURSOR));
+        try {
+            captureStore = CaptureStore.createTemporary();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        receivedLinesModel = new CaptureListModel(captureStore, DEFAULT_SCROLLBACK_LINES, SCROLLBACK_BYTES);
+        receivingList.setModel(receivedLinesModel);
+        receivingList.setCellRenderer(new MarkedLineRenderer());
+        receivingList.setBackground(new Color(240, 240, 240));
+        receivingList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, receivingList.getFont().getSize()));
+        // fixed cell size let the list render only visible rows without measuring the others
+        receivingList.setFixedCellHeight(receivingList.getFontMetrics(receivingList.getFont()).getHeight());
+        receivingList.setFixedCellWidth(1);
+        
+        receivedTextFlushTimer = new Timer(RECEIVED_TEXT_FLUSH_DELAY, (evt) -> flushReceivedText());
+        receivedTextFlushTimer.setRepeats(false);
         
         Font jLabel2Font = jLabel2.getFont();
         jLabel2.setFont(jLabel2Font.deriveFont((float) (jLabel2Font.getSize() * 1.2)));
@@ -115,33 +214,44 @@ public class MainWindow extends JFrame {
     /**
      * Handle demands of presenting received text on screen.
      * Checks if the text should be placed in new line or not.
+     * The text is stored at once and shown with the next list update,
+     * so many lines received in short time cost only one list repaint.
      *
      * @param receivedLine the string to insert in text area
      * @param insertInNewLine true if the line should be placed in new line, false if appended to te current text
      */
+    @Override
     public void insertReceivedText(String receivedLine, boolean insertInNewLine) {
-        StyledDocument receivingDocument = receivingTextPane.getStyledDocument();
-        try {
-            if (receivingTextPane.getText().length() == 0 || !insertInNewLine) {
-                receivingDocument.insertString(receivingDocument.getLength(), receivedLine, null);
-            } else {
-                receivingDocument.insertString(receivingDocument.getLength(), "\n" + receivedLine, null);
-            }
+        longestLineLength = ReceivedTextActions.insert(receivedLinesModel, receivedTextFlushTimer,
+                receivedLine, insertInNewLine, longestLineLength);
+    }
+    
+    /**
+     * Publish all stored received lines to the list at once
+     * and scroll it down to the end if scrolling is on.
+     */
+    private void flushReceivedText() {
+        ReceivedTextActions.flush(receivingList, receivedLinesModel, longestLineLength, autoScrollMenuItem.isSelected());
+    }
 
-        } catch (BadLocationException ex) {
-            System.err.println(ex);
-        }
-        
-        JScrollBar sb = receivingScrollPane.getVerticalScrollBar();
-        sb.setValue(sb.getMaximum());
+    /**
+     * Show the number of received frames dropped due to receive queue overflow.
+     *
+     * @param droppedFrames the dropped frames count
+     */
+    @Override
+    public void showDroppedFrames(long droppedFrames) {
+        droppedFramesLabel.setText(Long.toString(droppedFrames));
     }
 
     /**
      * Handle controler request after setting up connection parameters fields.
      * It unlock hidden panel and load label values with current connection settings.
      */
+    @Override
     public void showConnectionParameters() {
         connectMenuItem.setEnabled(true);
+        replayMenuItem.setEnabled(true);
 
         portStatusLabel.setText("Nie połączono:");
         portNameLabel.setVisible(true);
@@ -163,6 +273,7 @@ public class MainWindow extends JFrame {
      * @param isSuccesful true if test was ok, false if there was an error or timeout
      * @param pingResult the round trip delay time in ms - ignored if isSuccesful is false
      */
+    @Override
     public void showConnectionTestResults(boolean isSuccesful, int pingResult) {
         if (isSuccesful) {
             JOptionPane.showOptionDialog(this,
@@ -189,6 +300,187 @@ public class MainWindow extends JFrame {
         }
     }
     
+    /**
+     * Show the progress of sending file - percent, achieved rate and remaining time.
+     *
+     * @param sentBytes the number of sent bytes
+     * @param totalBytes the file size
+     * @param elapsedTime the time since the start of sending in ns
+     */
+    @Override
+    public void showFileSendProgress(long sentBytes, long totalBytes, long elapsedTime) {
+        int permille = totalBytes > 0 ? (int) (sentBytes * 1000 / totalBytes) : 1000;
+        double rate = elapsedTime > 0 ? sentBytes * 1e9 / elapsedTime : 0;
+        String remainingTime = "--:--";
+        if (rate > 0) {
+            long seconds = (long) ((totalBytes - sentBytes) / rate);
+            remainingTime = String.format("%d:%02d", seconds / 60, seconds % 60);
+        }
+        fileSendProgressBar.setValue(permille);
+        fileSendProgressBar.setString(String.format("%d%% - %.1f kB/s - pozostało %s",
+                permille / 10, rate / 1000, remainingTime));
+    }
+
+    /**
+     * Handle the end of sending file.
+     * It restores the sending buttons and shows error dialog message
+     * if the sending wasn't stopped by the user.
+     *
+     * @param isComplete true if the whole file was sent, false if it was cancelled or an error occured
+     */
+    @Override
+    public void showFileSendFinished(boolean isComplete) {
+        boolean isConnected = disconnectMenuItem.isEnabled();
+        sendFileButton.setText("Wyślij plik");
+        sendFileButton.setEnabled(isConnected);
+        sendButton.setEnabled(isConnected);
+        
+        if (isComplete) {
+            fileSendProgressBar.setString("Wysłano plik - " + fileSendProgressBar.getString());
+        } else {
+            fileSendProgressBar.setString("Przerwano - " + fileSendProgressBar.getString());
+            if (!fileSendCancelled) {
+                JOptionPane.showOptionDialog(this,
+                        "Nie można wysłać pliku!\n"
+                        + "Sprawdź czy połączenie nie uległo uszkodzeniu.",
+                        "Błąd wysyłania",
+                        JOptionPane.PLAIN_MESSAGE,
+                        JOptionPane.ERROR_MESSAGE,
+                        null,
+                        null,
+                        null
+                );
+            }
+        }
+    }
+    
+    /**
+     * Show the capture file name, written data size, backlog and lost data size.
+     *
+     * @param fileName the name of file being written
+     * @param writtenBytes the number of bytes written to capture files
+     * @param backlog the number of bytes waiting for writing
+     * @param droppedBytes the number of bytes lost because the writer didn't keep up
+     */
+    @Override
+    public void showCaptureStatus(String fileName, long writtenBytes, long backlog, long droppedBytes) {
+        String status = String.format("%s: %.1f kB, oczekuje %.1f kB", fileName, writtenBytes / 1000.0, backlog / 1000.0);
+        if (droppedBytes > 0) {
+            status += String.format(", utracono %.1f kB", droppedBytes / 1000.0);
+        }
+        captureStatusLabel.setText(status);
+        captureStatusLabel.setForeground(droppedBytes > 0 ? Color.RED : null);
+    }
+    
+    /**
+     * Show the round trip time percentiles, jitter and loss of continuous connection test.
+     *
+     * @param medianRoundTrip the median round trip time in ns
+     * @param p99RoundTrip the 99th percentile of round trip time in ns
+     * @param p999RoundTrip the 99.9th percentile of round trip time in ns
+     * @param maxRoundTrip the longest round trip time in ns
+     * @param lossRate the part of probes without response, from 0 to 1
+     * @param jitter the smoothed round trip time variation in ns
+     */
+    @Override
+    public void showLatencyStatus(long medianRoundTrip, long p99RoundTrip, long p999RoundTrip, long maxRoundTrip, double lossRate, long jitter) {
+        latencyLabel.setText(String.format("p50 %.3f / p99 %.3f / p99.9 %.3f / max %.3f ms, jitter %.3f ms, strata %.1f%%",
+                medianRoundTrip / 1e6, p99RoundTrip / 1e6, p999RoundTrip / 1e6, maxRoundTrip / 1e6, jitter / 1e6, lossRate * 100));
+        latencyLabel.setForeground(lossRate > 0 ? Color.RED : null);
+    }
+    
+    /**
+     * Show the receive and send rates, frames per second, average read size and error counters.
+     *
+     * @param receivedBytesPerSecond the receive rate in bytes per second
+     * @param sentBytesPerSecond the send rate in bytes per second
+     * @param framesPerSecond the number of received frames per second
+     * @param averageChunkSize the average size of single read from the port in bytes
+     * @param framingErrors the number of line errors reported by the port
+     * @param droppedFrames the number of frames dropped due to receive queue overflow
+     */
+    @Override
+    public void showTrafficStatistics(double receivedBytesPerSecond, double sentBytesPerSecond, double framesPerSecond, double averageChunkSize, long framingErrors, long droppedFrames) {
+        trafficLabel.setText(String.format("RX %.1f kB/s, TX %.1f kB/s, %.0f ramek/s, odczyt %.0f B, błędy linii %d",
+                receivedBytesPerSecond / 1000, sentBytesPerSecond / 1000, framesPerSecond, averageChunkSize, framingErrors));
+        trafficLabel.setForeground(framingErrors > 0 || droppedFrames > 0 ? Color.RED : null);
+    }
+    
+    /**
+     * Mark the matching line with trigger color and fire the trigger action.
+     *
+     * @param trigger the matching trigger
+     * @param line the matching line
+     */
+    @Override
+    public void showTriggerMatch(Trigger trigger, String line) {
+        TriggerActions.fire(trigger, receivedLinesModel, controler.getConnectedPortName(),
+                () -> autoScrollMenuItem.setSelected(false));
+    }
+    
+    /**
+     * Show the step reached by the automation script.
+     *
+     * @param stepNumber the number of run steps, this one included
+     * @param lineNumber the script line of the step
+     * @param command the script line text
+     */
+    @Override
+    public void showScriptProgress(int stepNumber, int lineNumber, String command) {
+        scriptStatusLabel.setText(String.format("krok %d, linia %d: %s", stepNumber, lineNumber, command));
+    }
+    
+    /**
+     * Show the end of automation script and its report with the latency of every expect step.
+     *
+     * @param isSuccesful true if the script reached its end, false if it failed or was stopped
+     * @param report the latency of every expect step and the summary
+     */
+    @Override
+    public void showScriptFinished(boolean isSuccesful, String report) {
+        runScriptMenuItem.setText("Uruchom skrypt");
+        scriptStatusLabel.setText(isSuccesful ? "zakończony" : "przerwany");
+        JTextArea reportTextArea = new JTextArea(report, 20, 80);
+        reportTextArea.setEditable(false);
+        reportTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, reportTextArea.getFont().getSize()));
+        JOptionPane.showMessageDialog(this, new JScrollPane(reportTextArea), "Raport skryptu",
+                isSuccesful ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Close the port of the tab and remove the tab.
+     * Shows error dialog message if the port can't be disconnected.
+     *
+     * @param panel the tab of the port
+     */
+    void closeSessionTab(PortSessionPanel panel) {
+        if (controler.getSessionManager().closeSession(panel.getControler())) {
+            portTabbedPane.remove(panel);
+            panel.dispose();
+        } else {
+            JOptionPane.showOptionDialog(this,
+                    "Nie można rozłączyć się z wybranym portem!\n"
+                    + "Sprawdź czy fizyczne połączenie nie uległo uszkodzeniu.",
+                    "Błąd rozłączenia",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }
+    
+    /**
+     * Run the task on Swing event dispatch thread.
+     *
+     * @param task the task to run
+     */
+    @Override
+    public void runOnViewThread(Runnable task) {
+        SwingUtilities.invokeLater(task);
+    }
+    
     /**
      * Recalculate window dimmension and min dimension,
      * apply new window size when it's needed due to content oversize.
@@ -235,6 +527,7 @@ public class MainWindow extends JFrame {
     // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
     private void initComponents() {
 
+        displayModeButtonGroup = new javax.swing.ButtonGroup();
         MainSplitPane = new javax.swing.JSplitPane();
         upperPanel = new javax.swing.JPanel();
         jLabel2 = new javax.swing.JLabel();
@@ -242,11 +535,16 @@ public class MainWindow extends JFrame {
         sendingTextPane = new javax.swing.JTextPane();
         sendButton = new javax.swing.JButton();
         cleanSendedButton = new javax.swing.JButton();
+        sendFileButton = new javax.swing.JButton();
+        fileSendProgressBar = new javax.swing.JProgressBar();
         bottomPanel = new javax.swing.JPanel();
         jLabel1 = new javax.swing.JLabel();
+        portTabbedPane = new javax.swing.JTabbedPane();
         receivingScrollPane = new javax.swing.JScrollPane();
-        receivingTextPane = new javax.swing.JTextPane();
+        receivingList = new javax.swing.JList<>();
         cleanReceivedButton = new javax.swing.JButton();
+        captureButton = new javax.swing.JButton();
+        captureStatusLabel = new javax.swing.JLabel();
         statusBarPanel = new javax.swing.JPanel();
         portStatusLabel = new javax.swing.JLabel();
         portNameLabel = new javax.swing.JLabel();
@@ -259,9 +557,20 @@ public class MainWindow extends JFrame {
         flowControlLabel = new javax.swing.JLabel();
         jLabel10 = new javax.swing.JLabel();
         terminatorLabel = new javax.swing.JLabel();
+        jLabel12 = new javax.swing.JLabel();
+        droppedFramesLabel = new javax.swing.JLabel();
+        jLabel3 = new javax.swing.JLabel();
+        latencyLabel = new javax.swing.JLabel();
+        jLabel5 = new javax.swing.JLabel();
+        trafficLabel = new javax.swing.JLabel();
+        jLabel7 = new javax.swing.JLabel();
+        scriptStatusLabel = new javax.swing.JLabel();
         connectionStatusIcon = new javax.swing.JLabel();
         menuBar = new javax.swing.JMenuBar();
         mainMenu = new javax.swing.JMenu();
+        saveReceivedMenuItem = new javax.swing.JMenuItem();
+        openReceivedMenuItem = new javax.swing.JMenuItem();
+        jSeparator7 = new javax.swing.JPopupMenu.Separator();
         exitMenuItem = new javax.swing.JMenuItem();
         connectionMenu = new javax.swing.JMenu();
         connectMenuItem = new javax.swing.JMenuItem();
@@ -270,6 +579,26 @@ public class MainWindow extends JFrame {
         portConfigurationMenuItem = new javax.swing.JMenuItem();
         jSeparator2 = new javax.swing.JPopupMenu.Separator();
         testConnectionMenuItem = new javax.swing.JMenuItem();
+        latencyMonitorMenuItem = new javax.swing.JMenuItem();
+        runScriptMenuItem = new javax.swing.JMenuItem();
+        periodicCommandsMenuItem = new javax.swing.JMenuItem();
+        jSeparator3 = new javax.swing.JPopupMenu.Separator();
+        recordMenuItem = new javax.swing.JMenuItem();
+        replayMenuItem = new javax.swing.JMenuItem();
+        jSeparator5 = new javax.swing.JPopupMenu.Separator();
+        openSessionMenuItem = new javax.swing.JMenuItem();
+        viewMenu = new javax.swing.JMenu();
+        scrollbackMenuItem = new javax.swing.JMenuItem();
+        jSeparator4 = new javax.swing.JPopupMenu.Separator();
+        textDisplayMenuItem = new javax.swing.JRadioButtonMenuItem();
+        hexDisplayMenuItem = new javax.swing.JRadioButtonMenuItem();
+        dumpDisplayMenuItem = new javax.swing.JRadioButtonMenuItem();
+        jSeparator6 = new javax.swing.JPopupMenu.Separator();
+        autoScrollMenuItem = new javax.swing.JCheckBoxMenuItem();
+        triggersMenuItem = new javax.swing.JMenuItem();
+        searchMenuItem = new javax.swing.JMenuItem();
+        plotMenuItem = new javax.swing.JCheckBoxMenuItem();
+        decoderMenuItem = new javax.swing.JMenuItem();
         infoMenu = new javax.swing.JMenu();
         aboutMenuItem = new javax.swing.JMenuItem();
 
@@ -304,6 +633,17 @@ public class MainWindow extends JFrame {
             }
         });
 
+        sendFileButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/send.png"))); // NOI18N
+        sendFileButton.setText("Wyślij plik");
+        sendFileButton.setEnabled(false);
+        sendFileButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                sendFileButtonActionPerformed(evt);
+            }
+        });
+
+        fileSendProgressBar.setStringPainted(true);
+
         javax.swing.GroupLayout upperPanelLayout = new javax.swing.GroupLayout(upperPanel);
         upperPanel.setLayout(upperPanelLayout);
         upperPanelLayout.setHorizontalGroup(
@@ -313,7 +653,11 @@ public class MainWindow extends JFrame {
                 .addGroup(upperPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(sendingScrollPane)
                     .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, upperPanelLayout.createSequentialGroup()
-                        .addGap(0, 494, Short.MAX_VALUE)
+                        .addGap(0, 64, Short.MAX_VALUE)
+                        .addComponent(fileSendProgressBar, javax.swing.GroupLayout.PREFERRED_SIZE, 300, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(sendFileButton)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                         .addComponent(cleanSendedButton)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                         .addComponent(sendButton))
@@ -332,7 +676,9 @@ public class MainWindow extends JFrame {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addGroup(upperPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(sendButton)
-                    .addComponent(cleanSendedButton))
+                    .addComponent(cleanSendedButton)
+                    .addComponent(sendFileButton)
+                    .addComponent(fileSendProgressBar, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addGap(6, 6, 6))
         );
 
@@ -342,9 +688,10 @@ public class MainWindow extends JFrame {
 
         jLabel1.setText("Odbieranie:");
 
-        receivingTextPane.setDisabledTextColor(new java.awt.Color(0, 0, 0));
-        receivingTextPane.setDoubleBuffered(true);
-        receivingScrollPane.setViewportView(receivingTextPane);
+        receivingList.setDoubleBuffered(true);
+        receivingScrollPane.setViewportView(receivingList);
+
+        portTabbedPane.addTab("Port główny", receivingScrollPane);
 
         cleanReceivedButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/eraser.png"))); // NOI18N
         cleanReceivedButton.setText("Wyczyść");
@@ -354,6 +701,14 @@ public class MainWindow extends JFrame {
             }
         });
 
+        captureButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/save.png"))); // NOI18N
+        captureButton.setText("Zapisuj do pliku");
+        captureButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                captureButtonActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout bottomPanelLayout = new javax.swing.GroupLayout(bottomPanel);
         bottomPanel.setLayout(bottomPanelLayout);
         bottomPanelLayout.setHorizontalGroup(
@@ -361,12 +716,16 @@ public class MainWindow extends JFrame {
             .addGroup(bottomPanelLayout.createSequentialGroup()
                 .addContainerGap()
                 .addGroup(bottomPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                    .addComponent(receivingScrollPane)
+                    .addComponent(portTabbedPane)
                     .addGroup(bottomPanelLayout.createSequentialGroup()
                         .addComponent(jLabel1)
                         .addGap(0, 0, Short.MAX_VALUE))
                     .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, bottomPanelLayout.createSequentialGroup()
-                        .addGap(0, 585, Short.MAX_VALUE)
+                        .addGap(0, 255, Short.MAX_VALUE)
+                        .addComponent(captureStatusLabel)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(captureButton)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                         .addComponent(cleanReceivedButton)))
                 .addContainerGap())
         );
@@ -376,9 +735,12 @@ public class MainWindow extends JFrame {
                 .addContainerGap()
                 .addComponent(jLabel1)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addComponent(receivingScrollPane, javax.swing.GroupLayout.DEFAULT_SIZE, 215, Short.MAX_VALUE)
+                .addComponent(portTabbedPane, javax.swing.GroupLayout.DEFAULT_SIZE, 215, Short.MAX_VALUE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
-                .addComponent(cleanReceivedButton)
+                .addGroup(bottomPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(cleanReceivedButton)
+                    .addComponent(captureButton)
+                    .addComponent(captureStatusLabel))
                 .addContainerGap())
         );
 
@@ -404,6 +766,22 @@ public class MainWindow extends JFrame {
 
         terminatorLabel.setText("LF");
 
+        jLabel12.setText("Odrzucone ramki:");
+
+        droppedFramesLabel.setText("0");
+
+        jLabel3.setText("Opóźnienie:");
+
+        latencyLabel.setText("-");
+
+        jLabel5.setText("Ruch:");
+
+        trafficLabel.setText("-");
+
+        jLabel7.setText("Skrypt:");
+
+        scriptStatusLabel.setText("-");
+
         javax.swing.GroupLayout connectionDetailsPanelLayout = new javax.swing.GroupLayout(connectionDetailsPanel);
         connectionDetailsPanel.setLayout(connectionDetailsPanelLayout);
         connectionDetailsPanelLayout.setHorizontalGroup(
@@ -425,6 +803,22 @@ public class MainWindow extends JFrame {
                 .addComponent(jLabel10)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(terminatorLabel)
+                .addGap(18, 18, 18)
+                .addComponent(jLabel12)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(droppedFramesLabel)
+                .addGap(18, 18, 18)
+                .addComponent(jLabel3)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(latencyLabel)
+                .addGap(18, 18, 18)
+                .addComponent(jLabel5)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(trafficLabel)
+                .addGap(18, 18, 18)
+                .addComponent(jLabel7)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(scriptStatusLabel)
                 .addContainerGap())
         );
         connectionDetailsPanelLayout.setVerticalGroup(
@@ -438,7 +832,15 @@ public class MainWindow extends JFrame {
                     .addComponent(jLabel8)
                     .addComponent(flowControlLabel)
                     .addComponent(jLabel10)
-                    .addComponent(terminatorLabel))
+                    .addComponent(terminatorLabel)
+                    .addComponent(jLabel12)
+                    .addComponent(droppedFramesLabel)
+                    .addComponent(jLabel3)
+                    .addComponent(latencyLabel)
+                    .addComponent(jLabel5)
+                    .addComponent(trafficLabel)
+                    .addComponent(jLabel7)
+                    .addComponent(scriptStatusLabel))
                 .addGap(0, 0, 0))
         );
 
@@ -472,6 +874,23 @@ public class MainWindow extends JFrame {
 
         mainMenu.setText("Menu");
 
+        saveReceivedMenuItem.setText("Zapisz odebrane");
+        saveReceivedMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                saveReceivedMenuItemActionPerformed(evt);
+            }
+        });
+        mainMenu.add(saveReceivedMenuItem);
+
+        openReceivedMenuItem.setText("Otwórz zapisane odebrane");
+        openReceivedMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                openReceivedMenuItemActionPerformed(evt);
+            }
+        });
+        mainMenu.add(openReceivedMenuItem);
+        mainMenu.add(jSeparator7);
+
         exitMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F4, java.awt.event.InputEvent.ALT_MASK));
         exitMenuItem.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/exit.png"))); // NOI18N
         exitMenuItem.setText("Zamknij program");
@@ -528,8 +947,140 @@ public class MainWindow extends JFrame {
         });
         connectionMenu.add(testConnectionMenuItem);
 
+        latencyMonitorMenuItem.setText("Monitoruj opóźnienie");
+        latencyMonitorMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                latencyMonitorMenuItemActionPerformed(evt);
+            }
+        });
+        connectionMenu.add(latencyMonitorMenuItem);
+
+        runScriptMenuItem.setText("Uruchom skrypt");
+        runScriptMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                runScriptMenuItemActionPerformed(evt);
+            }
+        });
+        connectionMenu.add(runScriptMenuItem);
+
+        periodicCommandsMenuItem.setText("Polecenia cykliczne");
+        periodicCommandsMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                periodicCommandsMenuItemActionPerformed(evt);
+            }
+        });
+        connectionMenu.add(periodicCommandsMenuItem);
+        connectionMenu.add(jSeparator3);
+
+        recordMenuItem.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/save.png"))); // NOI18N
+        recordMenuItem.setText("Nagrywaj ruch");
+        recordMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                recordMenuItemActionPerformed(evt);
+            }
+        });
+        connectionMenu.add(recordMenuItem);
+
+        replayMenuItem.setText("Odtwórz nagranie");
+        replayMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                replayMenuItemActionPerformed(evt);
+            }
+        });
+        connectionMenu.add(replayMenuItem);
+        connectionMenu.add(jSeparator5);
+
+        openSessionMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_N, java.awt.event.InputEvent.ALT_MASK));
+        openSessionMenuItem.setText("Otwórz kolejny port");
+        openSessionMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                openSessionMenuItemActionPerformed(evt);
+            }
+        });
+        connectionMenu.add(openSessionMenuItem);
+
         menuBar.add(connectionMenu);
 
+        viewMenu.setText("Widok");
+
+        scrollbackMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_H, java.awt.event.InputEvent.ALT_MASK));
+        scrollbackMenuItem.setText("Limit historii odbioru");
+        scrollbackMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                scrollbackMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(scrollbackMenuItem);
+        viewMenu.add(jSeparator4);
+
+        displayModeButtonGroup.add(textDisplayMenuItem);
+        textDisplayMenuItem.setSelected(true);
+        textDisplayMenuItem.setText("Tekst");
+        textDisplayMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                textDisplayMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(textDisplayMenuItem);
+
+        displayModeButtonGroup.add(hexDisplayMenuItem);
+        hexDisplayMenuItem.setText("Hex");
+        hexDisplayMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                hexDisplayMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(hexDisplayMenuItem);
+
+        displayModeButtonGroup.add(dumpDisplayMenuItem);
+        dumpDisplayMenuItem.setText("Hex + ASCII");
+        dumpDisplayMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                dumpDisplayMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(dumpDisplayMenuItem);
+        viewMenu.add(jSeparator6);
+
+        autoScrollMenuItem.setSelected(true);
+        autoScrollMenuItem.setText("Przewijaj automatycznie");
+        viewMenu.add(autoScrollMenuItem);
+
+        triggersMenuItem.setText("Wyzwalacze");
+        triggersMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                triggersMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(triggersMenuItem);
+
+        searchMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F, java.awt.event.InputEvent.CTRL_MASK));
+        searchMenuItem.setText("Szukaj");
+        searchMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                searchMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(searchMenuItem);
+
+        plotMenuItem.setText("Wykres telemetrii");
+        plotMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                plotMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(plotMenuItem);
+
+        decoderMenuItem.setText("Dekoder protokołu");
+        decoderMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                decoderMenuItemActionPerformed(evt);
+            }
+        });
+        viewMenu.add(decoderMenuItem);
+
+        menuBar.add(viewMenu);
+
         infoMenu.setText("Info");
 
         aboutMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_I, java.awt.event.InputEvent.ALT_MASK));
@@ -577,31 +1128,168 @@ public class MainWindow extends JFrame {
 
     /**
      * Handle sending button pressing.
-     * Load text from sending text area and send it to controler.
-     * If text wasn't sended ok, it shows error dialog message.
+     * Load text from sending text area and pass it to controler, which sends it in background.
+     * The text area is cleaned at once, so the window doesn't wait for the port.
      *
      * @param evt is ignored
      */
     private void sendButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_sendButtonActionPerformed
         String text = sendingTextPane.getText();
         if ((text != null) && !text.equalsIgnoreCase("")) {
-            if (controler.sendText(text)) {
-                sendingTextPane.setText(null);
-            } else {
-                JOptionPane.showOptionDialog(this,
-                        "Nie można wysłać wiadomości!\n"
-                        + "Sprawdź czy połączenie nie uległo uszkodzeniu.",
-                        "Błąd wysyłania",
-                        JOptionPane.PLAIN_MESSAGE,
-                        JOptionPane.ERROR_MESSAGE,
-                        null,
-                        null,
-                        null
-                );
-            }
+            sendingTextPane.setText(null);
+            controler.sendText(text).thenAccept((progress) -> runOnViewThread(() -> showSendResult(text, progress)));
         }
     }//GEN-LAST:event_sendButtonActionPerformed
 
+    /**
+     * Show the result of sending the text.
+     * If text wasn't sended ok, it puts the unsent part back in front of the text area,
+     * so sending can be resumed, and shows error dialog message.
+     *
+     * @param text the text passed to controler
+     * @param progress the result of sending
+     */
+    private void showSendResult(String text, SendProgress progress) {
+        if (progress.isComplete()) {
+            return;
+        }
+        sendingTextPane.setText(text.substring(progress.getSentLength()) + sendingTextPane.getText());
+        JOptionPane.showOptionDialog(this,
+                "Nie można wysłać wiadomości!\n"
+                + "Wysłano " + progress.getLinesWritten() + " linii (" + progress.getBytesWritten() + " bajtów), "
+                + "niewysłany tekst wrócił do pola wysyłania.\n"
+                + "Sprawdź czy połączenie nie uległo uszkodzeniu.",
+                "Błąd wysyłania",
+                JOptionPane.PLAIN_MESSAGE,
+                JOptionPane.ERROR_MESSAGE,
+                null,
+                null,
+                null
+        );
+    }
+
+    /**
+     * Handle sending file button pressing.
+     * It asks for the file, transfer protocol and pacing settings and starts sending in background,
+     * or stops sending if a file is already being sent.
+     *
+     * @param evt is ignored
+     */
+    private void sendFileButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_sendFileButtonActionPerformed
+        if (controler.isSendingFile()) {
+            fileSendCancelled = true;
+            controler.cancelFileSend();
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        
+        JComboBox<String> protocolComboBox = new JComboBox<>(new String[] {"Brak", "XMODEM", "XMODEM-1K", "YMODEM", "ZMODEM"});
+        JSpinner byteDelaySpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10000, 1));
+        JSpinner lineDelaySpinner = new JSpinner(new SpinnerNumberModel(0, 0, 60000, 10));
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1000000, 100));
+        // protocols have their own flow control, so pacing is only for plain sending
+        protocolComboBox.addActionListener((event) -> {
+            boolean isPlain = protocolComboBox.getSelectedIndex() == 0;
+            byteDelaySpinner.setEnabled(isPlain);
+            lineDelaySpinner.setEnabled(isPlain);
+            rateSpinner.setEnabled(isPlain);
+        });
+        JPanel pacingPanel = new JPanel(new GridLayout(0, 2, 6, 6));
+        pacingPanel.add(new JLabel("Protokół:"));
+        pacingPanel.add(protocolComboBox);
+        pacingPanel.add(new JLabel("Opóźnienie po każdym bajcie [ms]:"));
+        pacingPanel.add(byteDelaySpinner);
+        pacingPanel.add(new JLabel("Opóźnienie po każdej linii [ms]:"));
+        pacingPanel.add(lineDelaySpinner);
+        pacingPanel.add(new JLabel("Prędkość [B/s], 0 - prędkość portu lub bez limitu:"));
+        pacingPanel.add(rateSpinner);
+        if (JOptionPane.showConfirmDialog(this, pacingPanel, "Wysyłanie pliku " + file.getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        if (controler.sendFile(file, protocolComboBox.getSelectedIndex(), (Integer) byteDelaySpinner.getValue(),
+                (Integer) lineDelaySpinner.getValue(), (Integer) rateSpinner.getValue())) {
+            fileSendCancelled = false;
+            sendButton.setEnabled(false);
+            sendFileButton.setText("Przerwij");
+            fileSendProgressBar.setValue(0);
+            fileSendProgressBar.setString(file.getName());
+            fileSendProgressBar.setVisible(true);
+        } else {
+            JOptionPane.showOptionDialog(this,
+                    "Nie można wysłać pliku " + file.getName() + "!\n"
+                    + "Sprawdź czy plik istnieje i można go odczytać.",
+                    "Błąd wysyłania",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_sendFileButtonActionPerformed
+
+    /**
+     * Handle capture button pressing.
+     * It asks for the file and rotation settings and starts writing received data to it,
+     * or stops the capture if it's already on.
+     *
+     * @param evt is ignored
+     */
+    private void captureButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_captureButtonActionPerformed
+        if (controler.isCapturing()) {
+            controler.stopCapture();
+            captureButton.setText("Zapisuj do pliku");
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        
+        JComboBox<String> contentComboBox = new JComboBox<>(new String[] {"Surowe bajty", "Odebrane linie"});
+        JSpinner fileSizeSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 100000, 10));
+        JSpinner fileAgeSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 100000, 10));
+        JCheckBox compressCheckBox = new JCheckBox("Kompresja gzip");
+        JPanel capturePanel = new JPanel(new GridLayout(0, 2, 6, 6));
+        capturePanel.add(new JLabel("Zapisywane dane:"));
+        capturePanel.add(contentComboBox);
+        capturePanel.add(new JLabel("Nowy plik po [MB], 0 - bez limitu:"));
+        capturePanel.add(fileSizeSpinner);
+        capturePanel.add(new JLabel("Nowy plik po [min], 0 - bez limitu:"));
+        capturePanel.add(fileAgeSpinner);
+        capturePanel.add(compressCheckBox);
+        if (JOptionPane.showConfirmDialog(this, capturePanel, "Zapis do pliku " + file.getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        if (controler.startCapture(file, contentComboBox.getSelectedIndex(), compressCheckBox.isSelected(),
+                (Integer) fileSizeSpinner.getValue(), (Integer) fileAgeSpinner.getValue())) {
+            captureButton.setText("Zatrzymaj zapis");
+            captureStatusLabel.setText(file.getName());
+        } else {
+            JOptionPane.showOptionDialog(this,
+                    "Nie można utworzyć pliku " + file.getName() + "!\n"
+                    + "Sprawdź czy katalog istnieje i można w nim zapisywać.",
+                    "Błąd zapisu",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_captureButtonActionPerformed
+
     /**
      * Handle cleaning received text area button pressing.
      * It cleans received text area.
@@ -609,7 +1297,9 @@ public class MainWindow extends JFrame {
      * @param evt is ignored
      */
     private void cleanReceivedButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cleanReceivedButtonActionPerformed
-        receivingTextPane.setText(null);
+        receivedLinesModel.clear();
+        longestLineLength = 0;
+        receivingList.setFixedCellWidth(1);
     }//GEN-LAST:event_cleanReceivedButtonActionPerformed
 
     /**
@@ -619,6 +1309,11 @@ public class MainWindow extends JFrame {
      * @param evt is ignored
      */
     private void exitMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_exitMenuItemActionPerformed
+        for (int i = portTabbedPane.getTabCount() - 1; i > 0; i--) {
+            PortSessionPanel panel = (PortSessionPanel) portTabbedPane.getComponentAt(i);
+            controler.getSessionManager().closeSession(panel.getControler());
+            panel.dispose();
+        }
         configurationDialog.dispose();
         dispose();
     }//GEN-LAST:event_exitMenuItemActionPerformed
@@ -662,17 +1357,24 @@ public class MainWindow extends JFrame {
      * @param evt is ignored
      */
     private void disconnectMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_disconnectMenuItemActionPerformed
+        fileSendCancelled = true;
         if (controler.disconnectFromPort()) {
             connectionStatusIcon.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/red_circle.png")));
 
             disconnectMenuItem.setEnabled(false);
             connectMenuItem.setEnabled(true);
+            replayMenuItem.setEnabled(true);
             portConfigurationMenuItem.setEnabled(true);
             testConnectionMenuItem.setEnabled(false);
+            latencyMonitorMenuItem.setEnabled(false);
+            latencyMonitorMenuItem.setText("Monitoruj opóźnienie");
+            runScriptMenuItem.setEnabled(false);
+            runScriptMenuItem.setText("Uruchom skrypt");
 
             portStatusLabel.setText("Nie połączono:");
 
             sendButton.setEnabled(false);
+            sendFileButton.setEnabled(false);
         } else {
             JOptionPane.showOptionDialog(this,
                     "Nie można rozłączyć się z wybranym portem!\n"
@@ -700,16 +1402,7 @@ public class MainWindow extends JFrame {
         portStatusLabel.setText("Trwa łączenie...");
         portStatusLabel.validate();
         if (controler.connectToPort()) {
-            connectionStatusIcon.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/green_circle.png")));
-
-            connectMenuItem.setEnabled(false);
-            disconnectMenuItem.setEnabled(true);
-            portConfigurationMenuItem.setEnabled(false);
-            testConnectionMenuItem.setEnabled(true);
-
-            portStatusLabel.setText("Połączono:");
-
-            sendButton.setEnabled(true);
+            showConnectedState();
         } else {
             portStatusLabel.setText("Nie połączono");
             JOptionPane.showOptionDialog(this,
@@ -725,6 +1418,110 @@ public class MainWindow extends JFrame {
         }
     }//GEN-LAST:event_connectMenuItemActionPerformed
 
+    /**
+     * Handle recording request from menu.
+     * It asks for the binary capture file and starts recording the traffic,
+     * or stops recording if it's already on.
+     *
+     * @param evt is ignored
+     */
+    private void recordMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_recordMenuItemActionPerformed
+        if (controler.isRecording()) {
+            controler.stopRecording();
+            recordMenuItem.setText("Nagrywaj ruch");
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        if (controler.startRecording(file)) {
+            recordMenuItem.setText("Zatrzymaj nagrywanie");
+        } else {
+            JOptionPane.showOptionDialog(this,
+                    "Nie można utworzyć pliku " + file.getName() + "!\n"
+                    + "Sprawdź czy katalog istnieje i można w nim zapisywać.",
+                    "Błąd zapisu",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_recordMenuItemActionPerformed
+
+    /**
+     * Handle replay request from menu.
+     * It asks for the binary capture file, speed and start time
+     * and connects to the replay instead of the port.
+     *
+     * @param evt is ignored
+     */
+    private void replayMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_replayMenuItemActionPerformed
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        
+        int[] speeds = {1, 2, 10, 100, 0};
+        JComboBox<String> speedComboBox = new JComboBox<>(new String[] {"Oryginalna", "2x", "10x", "100x", "Maksymalna"});
+        JSpinner startSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 10));
+        JPanel replayPanel = new JPanel(new GridLayout(0, 2, 6, 6));
+        replayPanel.add(new JLabel("Prędkość:"));
+        replayPanel.add(speedComboBox);
+        replayPanel.add(new JLabel("Początek [s]:"));
+        replayPanel.add(startSpinner);
+        if (JOptionPane.showConfirmDialog(this, replayPanel, "Odtwarzanie " + file.getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        if (controler.connectToReplay(file, speeds[speedComboBox.getSelectedIndex()], (Integer) startSpinner.getValue())) {
+            showConnectedState();
+            portNameLabel.setText(file.getName());
+        } else {
+            JOptionPane.showOptionDialog(this,
+                    "Nie można odtworzyć pliku " + file.getName() + "!\n"
+                    + "Sprawdź czy to plik nagrania ruchu.",
+                    "Błąd odtwarzania",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_replayMenuItemActionPerformed
+
+    /**
+     * Disables and reenables menu items and buttons after succesful connection.
+     */
+    private void showConnectedState() {
+        connectionStatusIcon.setIcon(new javax.swing.ImageIcon(getClass().getResource("/pl/polsl/pl/java/serial/terminal/view/images/green_circle.png")));
+
+        connectMenuItem.setEnabled(false);
+        replayMenuItem.setEnabled(false);
+        disconnectMenuItem.setEnabled(true);
+        portConfigurationMenuItem.setEnabled(false);
+        testConnectionMenuItem.setEnabled(controler.isLinkTestEnabled());
+        latencyMonitorMenuItem.setEnabled(controler.isLinkTestEnabled());
+        runScriptMenuItem.setEnabled(true);
+        scriptStatusLabel.setText("-");
+        latencyLabel.setText("-");
+        trafficLabel.setText("-");
+        trafficLabel.setForeground(null);
+
+        portStatusLabel.setText("Połączono:");
+        droppedFramesLabel.setText("0");
+
+        sendButton.setEnabled(true);
+        sendFileButton.setEnabled(true);
+    }
+
     /**
      * Handle connection test request from menu.
      * It send the demand to controler.
@@ -735,43 +1532,849 @@ public class MainWindow extends JFrame {
         controler.testConnection();
     }//GEN-LAST:event_testConnectionMenuItemActionPerformed
 
+    /**
+     * Handle continuous connection test request from menu.
+     * It asks for the probe rate and starts the test, or stops the running one.
+     *
+     * @param evt is ignored
+     */
+    private void latencyMonitorMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_latencyMonitorMenuItemActionPerformed
+        if (controler.isMonitoringLatency()) {
+            controler.stopLatencyMonitor();
+            latencyMonitorMenuItem.setText("Monitoruj opóźnienie");
+            return;
+        }
+        
+        String input = JOptionPane.showInputDialog(this,
+                "Liczba sond testu łącza na sekundę:",
+                "10"
+        );
+        if (input == null) {
+            return;
+        }
+        try {
+            int probesPerSecond = Integer.parseInt(input.trim());
+            if (probesPerSecond <= 0) {
+                throw new NumberFormatException(input);
+            }
+            if (controler.startLatencyMonitor(probesPerSecond)) {
+                latencyMonitorMenuItem.setText("Zatrzymaj monitor opóźnienia");
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showOptionDialog(this,
+                    "Niepoprawna liczba sond!\n"
+                    + "Podaj liczbę całkowitą większą od zera.",
+                    "Monitor opóźnienia",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_latencyMonitorMenuItemActionPerformed
+
+    /**
+     * Handle automation script request from menu.
+     * It asks for the script file, compiles it and starts it, or stops the running one.
+     * Shows error dialog message with the line number if the script is invalid.
+     *
+     * @param evt is ignored
+     */
+    private void runScriptMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_runScriptMenuItemActionPerformed
+        if (controler.isRunningScript()) {
+            controler.stopScript();
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        String error;
+        try {
+            ExpectScript script = new ExpectScript(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            if (controler.runScript(script)) {
+                runScriptMenuItem.setText("Zatrzymaj skrypt");
+                return;
+            }
+            error = "Sprawdź czy połączenie nie uległo uszkodzeniu.";
+        } catch (IOException ex) {
+            error = "Sprawdź czy plik istnieje i można go odczytać.";
+        } catch (IllegalArgumentException ex) {
+            error = ex.getMessage();
+        }
+        JOptionPane.showOptionDialog(this,
+                "Nie można uruchomić skryptu " + file.getName() + "!\n" + error,
+                "Błąd skryptu",
+                JOptionPane.PLAIN_MESSAGE,
+                JOptionPane.ERROR_MESSAGE,
+                null,
+                null,
+                null
+        );
+    }//GEN-LAST:event_runScriptMenuItemActionPerformed
+
+    /**
+     * Handle periodic commands request from menu.
+     * It shows the table of commands of this port with their sends and delays, refreshed while open.
+     * A command is added with the period in ms or cron expression, eg. "0 *&#47;5 * * * *",
+     * it's sent while connected. Shows error dialog message if the schedule is invalid.
+     *
+     * @param evt is ignored
+     */
+    private void periodicCommandsMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_periodicCommandsMenuItemActionPerformed
+        CommandScheduler commandScheduler = controler.getCommandScheduler();
+        List<PeriodicCommand> commands = new ArrayList<>();
+        DefaultTableModel commandsModel = new DefaultTableModel(
+                new String[] {"Polecenie", "Harmonogram", "Wysłano", "Pominięto", "Błędy", "Opóźnienie śr. [ms]", "Opóźnienie maks. [ms]"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JLabel jitterLabel = new JLabel();
+        Runnable refresh = () -> {
+            commands.clear();
+            commands.addAll(commandScheduler.getCommands());
+            commandsModel.setRowCount(commands.size());
+            for (int row = 0; row < commands.size(); row++) {
+                PeriodicCommand command = commands.get(row);
+                Object[] values = {command.getText(), command.getSchedule(), command.getSentCount(),
+                    command.getMissedCount(), command.getFailedCount(),
+                    String.format("%.3f", command.getAverageJitter() / 1e6), String.format("%.3f", command.getMaxJitter() / 1e6)};
+                for (int column = 0; column < values.length; column++) {
+                    commandsModel.setValueAt(values[column], row, column);
+                }
+            }
+            jitterLabel.setText(String.format("Opóźnienie wysyłania wszystkich poleceń: p50 %.3f ms, p99 %.3f ms",
+                    commandScheduler.getJitterAtPercentile(50) / 1e6, commandScheduler.getJitterAtPercentile(99) / 1e6));
+        };
+        refresh.run();
+        JTable commandsTable = new JTable(commandsModel);
+        
+        JTextField textField = new JTextField(15);
+        JTextField scheduleField = new JTextField("1000", 12);
+        JButton addButton = new JButton("Dodaj");
+        addButton.addActionListener((event) -> {
+            String schedule = scheduleField.getText().trim();
+            try {
+                if (schedule.matches("\\d+")) {
+                    commandScheduler.addPeriodic(textField.getText(), Math.max(1, Integer.parseInt(schedule)));
+                } else {
+                    commandScheduler.addCron(textField.getText(), schedule);
+                }
+                refresh.run();
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showOptionDialog(this,
+                        "Niepoprawny harmonogram!\n" + ex.getMessage(),
+                        "Polecenia cykliczne",
+                        JOptionPane.PLAIN_MESSAGE,
+                        JOptionPane.ERROR_MESSAGE,
+                        null,
+                        null,
+                        null
+                );
+            }
+        });
+        JButton removeButton = new JButton("Usuń");
+        removeButton.addActionListener((event) -> {
+            for (int row : commandsTable.getSelectedRows()) {
+                commandScheduler.remove(commands.get(row));
+            }
+            refresh.run();
+        });
+        JPanel buttonsPanel = new JPanel();
+        buttonsPanel.add(new JLabel("Polecenie:"));
+        buttonsPanel.add(textField);
+        buttonsPanel.add(new JLabel("Okres [ms] lub cron:"));
+        buttonsPanel.add(scheduleField);
+        buttonsPanel.add(addButton);
+        buttonsPanel.add(removeButton);
+        JScrollPane commandsScrollPane = new JScrollPane(commandsTable);
+        commandsScrollPane.setPreferredSize(new Dimension(750, 200));
+        JPanel commandsPanel = new JPanel(new BorderLayout(6, 6));
+        commandsPanel.add(jitterLabel, BorderLayout.NORTH);
+        commandsPanel.add(commandsScrollPane, BorderLayout.CENTER);
+        commandsPanel.add(buttonsPanel, BorderLayout.SOUTH);
+        
+        Timer refreshTimer = new Timer(500, (event) -> refresh.run());
+        refreshTimer.start();
+        JOptionPane.showMessageDialog(this, commandsPanel, "Polecenia cykliczne", JOptionPane.PLAIN_MESSAGE);
+        refreshTimer.stop();
+    }//GEN-LAST:event_periodicCommandsMenuItemActionPerformed
+
+    /**
+     * Handle scrollback limit setting request from menu.
+     * It asks for the maximum number of lines kept in received text area.
+     *
+     * @param evt is ignored
+     */
+    private void scrollbackMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_scrollbackMenuItemActionPerformed
+        String input = JOptionPane.showInputDialog(this,
+                "Maksymalna liczba linii w polu odbioru:",
+                Integer.toString(receivedLinesModel.getMaxLines())
+        );
+        if (input == null) {
+            return;
+        }
+        try {
+            int maxLines = Integer.parseInt(input.trim());
+            if (maxLines <= 0) {
+                throw new NumberFormatException(input);
+            }
+            receivedLinesModel.setLimits(maxLines, SCROLLBACK_BYTES);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showOptionDialog(this,
+                    "Niepoprawna liczba linii!\n"
+                    + "Podaj liczbę całkowitą większą od zera.",
+                    "Limit historii odbioru",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_scrollbackMenuItemActionPerformed
+
+    /**
+     * Handle display mode change request from menu - received bytes shown as text.
+     *
+     * @param evt is ignored
+     */
+    private void textDisplayMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_textDisplayMenuItemActionPerformed
+        setDisplayMode(0);
+    }//GEN-LAST:event_textDisplayMenuItemActionPerformed
+
+    /**
+     * Handle display mode change request from menu - every frame shown as hex values.
+     *
+     * @param evt is ignored
+     */
+    private void hexDisplayMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_hexDisplayMenuItemActionPerformed
+        setDisplayMode(1);
+    }//GEN-LAST:event_hexDisplayMenuItemActionPerformed
+
+    /**
+     * Handle display mode change request from menu - the stream shown as hex dump with ASCII column.
+     *
+     * @param evt is ignored
+     */
+    private void dumpDisplayMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_dumpDisplayMenuItemActionPerformed
+        setDisplayMode(2);
+    }//GEN-LAST:event_dumpDisplayMenuItemActionPerformed
+
+    /**
+     * Handle opening the next port request from menu.
+     * It asks for the connection parameters of the port, connects to it
+     * and shows its received lines in new tab, or shows error dialog message.
+     *
+     * @param evt is ignored
+     */
+    private void openSessionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_openSessionMenuItemActionPerformed
+        SessionManager sessionManager = controler.getSessionManager();
+        PortSessionPanel[] panels = new PortSessionPanel[1];
+        Controler session = sessionManager.openSession((sessionControler) -> panels[0] = new PortSessionPanel(sessionControler, this));
+        PortSessionPanel panel = panels[0];
+        
+        ConfigurationDialog sessionDialog = new ConfigurationDialog(this, true, session);
+        sessionDialog.setLocationRelativeTo(this);
+        sessionDialog.setVisible(true);
+        if (session.getConnectedPortName() == null) {
+            sessionManager.closeSession(session);
+            panel.dispose();
+            return;
+        }
+        
+        session.setDisplayMode(getDisplayMode());
+        if (session.connectToPort()) {
+            panel.showConnectedState();
+            portTabbedPane.addTab(session.getConnectedPortName(), panel);
+            portTabbedPane.setSelectedComponent(panel);
+        } else {
+            sessionManager.closeSession(session);
+            panel.dispose();
+            JOptionPane.showOptionDialog(this,
+                    "Nie można połączyć się z wybranym portem!\n"
+                    + "Prawdopodobnie port jest już w użyciu.",
+                    "Błąd połączenia",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_openSessionMenuItemActionPerformed
+
+    /**
+     * Handle triggers setting request from menu.
+     * It shows the table of triggers with the number of matching lines of all ports
+     * and the directory of snapshot files, and sets the edited triggers,
+     * or shows error dialog message if an expression is invalid.
+     *
+     * @param evt is ignored
+     */
+    private void triggersMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_triggersMenuItemActionPerformed
+        SessionManager sessionManager = controler.getSessionManager();
+        List<Trigger> triggers = sessionManager.getTriggers();
+        long[] matchCounts = sessionManager.getTriggerMatchCounts();
+        
+        DefaultTableModel triggersModel = new DefaultTableModel(
+                new String[] {"Wzorzec", "Wyrażenie regularne", "Kolor", "Akcja", "Trafienia"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 1 ? Boolean.class : Object.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column != 4;
+            }
+        };
+        for (int i = 0; i < triggers.size(); i++) {
+            Trigger trigger = triggers.get(i);
+            triggersModel.addRow(new Object[] {trigger.getPattern(), trigger.isRegex(),
+                MarkedLineRenderer.COLOR_NAMES[trigger.getColor()], TRIGGER_ACTION_NAMES[trigger.getAction()],
+                i < matchCounts.length ? matchCounts[i] : 0L});
+        }
+        JTable triggersTable = new JTable(triggersModel);
+        triggersTable.getColumnModel().getColumn(2).setCellEditor(new DefaultCellEditor(new JComboBox<>(MarkedLineRenderer.COLOR_NAMES)));
+        triggersTable.getColumnModel().getColumn(3).setCellEditor(new DefaultCellEditor(new JComboBox<>(TRIGGER_ACTION_NAMES)));
+        
+        JButton addButton = new JButton("Dodaj");
+        addButton.addActionListener((event) -> triggersModel.addRow(new Object[] {"", false,
+            MarkedLineRenderer.COLOR_NAMES[0], TRIGGER_ACTION_NAMES[Trigger.ACTION_NONE], 0L}));
+        JButton removeButton = new JButton("Usuń");
+        removeButton.addActionListener((event) -> {
+            if (triggersTable.isEditing()) {
+                triggersTable.getCellEditor().stopCellEditing();
+            }
+            int[] rows = triggersTable.getSelectedRows();
+            for (int i = rows.length - 1; i >= 0; i--) {
+                triggersModel.removeRow(rows[i]);
+            }
+        });
+        JLabel snapshotDirectoryLabel = new JLabel(TriggerActions.getSnapshotDirectory().getPath());
+        JButton snapshotDirectoryButton = new JButton("Katalog migawek...");
+        snapshotDirectoryButton.addActionListener((event) -> {
+            JFileChooser directoryChooser = new JFileChooser(snapshotDirectoryLabel.getText());
+            directoryChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (directoryChooser.showDialog(this, "Wybierz") == JFileChooser.APPROVE_OPTION) {
+                snapshotDirectoryLabel.setText(directoryChooser.getSelectedFile().getPath());
+            }
+        });
+        JPanel buttonsPanel = new JPanel();
+        buttonsPanel.add(addButton);
+        buttonsPanel.add(removeButton);
+        buttonsPanel.add(snapshotDirectoryButton);
+        buttonsPanel.add(snapshotDirectoryLabel);
+        JScrollPane triggersScrollPane = new JScrollPane(triggersTable);
+        triggersScrollPane.setPreferredSize(new Dimension(600, 200));
+        JPanel triggersPanel = new JPanel(new BorderLayout(6, 6));
+        triggersPanel.add(new JLabel("Wyższy wiersz ma pierwszeństwo, gdy linia pasuje do kilku wzorców."), BorderLayout.NORTH);
+        triggersPanel.add(triggersScrollPane, BorderLayout.CENTER);
+        triggersPanel.add(buttonsPanel, BorderLayout.SOUTH);
+        if (JOptionPane.showConfirmDialog(this, triggersPanel, "Wyzwalacze",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        if (triggersTable.isEditing()) {
+            triggersTable.getCellEditor().stopCellEditing();
+        }
+        TriggerActions.setSnapshotDirectory(new File(snapshotDirectoryLabel.getText()));
+        
+        List<Trigger> newTriggers = new ArrayList<>();
+        List<String> colorNames = Arrays.asList(MarkedLineRenderer.COLOR_NAMES);
+        List<String> actionNames = Arrays.asList(TRIGGER_ACTION_NAMES);
+        for (int row = 0; row < triggersModel.getRowCount(); row++) {
+            String pattern = (String) triggersModel.getValueAt(row, 0);
+            if (pattern != null && !pattern.isEmpty()) {
+                newTriggers.add(new Trigger(pattern, Boolean.TRUE.equals(triggersModel.getValueAt(row, 1)),
+                        Math.max(0, colorNames.indexOf(triggersModel.getValueAt(row, 2))),
+                        Math.max(0, actionNames.indexOf(triggersModel.getValueAt(row, 3)))));
+            }
+        }
+        if (!sessionManager.setTriggers(newTriggers)) {
+            JOptionPane.showOptionDialog(this,
+                    "Niepoprawne wyrażenie regularne!\n"
+                    + "Wyzwalacze nie zostały zmienione.",
+                    "Wyzwalacze",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_triggersMenuItemActionPerformed
+
+    /**
+     * Handle search request from menu.
+     * It shows the dialog which finds text in all received lines of the selected port,
+     * also the ones removed from the list, and finds the line received at given time.
+     *
+     * @param evt is ignored
+     */
+    private void searchMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_searchMenuItemActionPerformed
+        if (searchDialog == null) {
+            searchDialog = createSearchDialog();
+        }
+        searchDialog.setVisible(true);
+    }//GEN-LAST:event_searchMenuItemActionPerformed
+
+    /**
+     * Handle telemetry plot request from menu.
+     * It shows the plot of numbers in received lines of the main port next to the received lines list,
+     * or hides it and stops parsing the lines.
+     *
+     * @param evt is ignored
+     */
+    private void plotMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_plotMenuItemActionPerformed
+        if (plotMenuItem.isSelected()) {
+            TelemetryStore store = controler.startTelemetry();
+            if (telemetryPlotPanel == null) {
+                telemetryPlotPanel = new TelemetryPlotPanel(store);
+            }
+            telemetrySplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, receivingScrollPane, telemetryPlotPanel);
+            telemetrySplitPane.setResizeWeight(0.5);
+            portTabbedPane.setComponentAt(0, telemetrySplitPane);
+            telemetryPlotPanel.start();
+        } else {
+            telemetryPlotPanel.stop();
+            controler.stopTelemetry();
+            telemetrySplitPane.removeAll();
+            portTabbedPane.setComponentAt(0, receivingScrollPane);
+        }
+    }//GEN-LAST:event_plotMenuItemActionPerformed
+
+    /**
+     * Handle protocol decoder request from menu.
+     * It shows the table of messages decoded from received bytes of the main port by the selected decoder,
+     * with the checksum result, refreshed while open. Decoding stops when the dialog is closed.
+     *
+     * @param evt is ignored
+     */
+    private void decoderMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_decoderMenuItemActionPerformed
+        List<ProtocolDecoder> decoders = DecoderPipeline.loadDecoders();
+        JComboBox<String> decoderComboBox = new JComboBox<>();
+        decoderComboBox.addItem("Brak");
+        for (ProtocolDecoder decoder : decoders) {
+            decoderComboBox.addItem(decoder.getName());
+        }
+        DefaultTableModel messagesModel = new DefaultTableModel(
+                new String[] {"Czas", "Typ", "Suma kontrolna", "Pola", "Ramka"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JLabel countersLabel = new JLabel(" ");
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        // the pipeline and the number of messages already in the table
+        DecoderPipeline[] pipeline = new DecoderPipeline[1];
+        long[] shownMessages = new long[1];
+        Runnable refresh = () -> {
+            if (pipeline[0] == null) {
+                return;
+            }
+            List<Object[]> rows = new ArrayList<>();
+            shownMessages[0] = pipeline[0].forEachSince(shownMessages[0], (DecodedMessage message) -> rows.add(new Object[] {
+                timeFormat.format(new Date(message.getTime())), message.getType(),
+                message.isValid() ? "OK" : "Błąd", message.getFieldsText(), message.getFrameHex()}));
+            for (Object[] row : rows) {
+                messagesModel.addRow(row);
+            }
+            if (messagesModel.getRowCount() > DECODED_MESSAGES_ROWS) {
+                messagesModel.getDataVector().subList(0, messagesModel.getRowCount() - DECODED_MESSAGES_ROWS).clear();
+                messagesModel.fireTableDataChanged();
+            }
+            countersLabel.setText(String.format("Komunikatów: %d, błędnych sum kontrolnych: %d, pominiętych bajtów: %d",
+                    pipeline[0].getMessageCount(), pipeline[0].getInvalidCount(), pipeline[0].getSkippedBytes()));
+        };
+        decoderComboBox.addActionListener((event) -> {
+            int index = decoderComboBox.getSelectedIndex();
+            if (index == 0) {
+                controler.stopDecoding();
+                pipeline[0] = null;
+            } else {
+                pipeline[0] = controler.startDecoding(decoders.get(index - 1));
+            }
+            shownMessages[0] = 0;
+            messagesModel.setRowCount(0);
+            countersLabel.setText(" ");
+        });
+        JTable messagesTable = new JTable(messagesModel);
+        messagesTable.getColumnModel().getColumn(3).setPreferredWidth(350);
+        messagesTable.getColumnModel().getColumn(4).setPreferredWidth(250);
+        
+        JPanel selectionPanel = new JPanel();
+        selectionPanel.add(new JLabel("Protokół:"));
+        selectionPanel.add(decoderComboBox);
+        selectionPanel.add(countersLabel);
+        JScrollPane messagesScrollPane = new JScrollPane(messagesTable);
+        messagesScrollPane.setPreferredSize(new Dimension(900, 350));
+        JPanel decoderPanel = new JPanel(new BorderLayout(6, 6));
+        decoderPanel.add(selectionPanel, BorderLayout.NORTH);
+        decoderPanel.add(messagesScrollPane, BorderLayout.CENTER);
+        
+        Timer refreshTimer = new Timer(200, (event) -> refresh.run());
+        refreshTimer.start();
+        JOptionPane.showMessageDialog(this, decoderPanel, "Dekoder protokołu", JOptionPane.PLAIN_MESSAGE);
+        refreshTimer.stop();
+        controler.stopDecoding();
+    }//GEN-LAST:event_decoderMenuItemActionPerformed
+
+    /**
+     * Handle saving received lines request from menu.
+     * It saves all received lines of the selected port as a text file with the search index next to it.
+     * Shows error dialog message if the files can't be written.
+     *
+     * @param evt is ignored
+     */
+    private void saveReceivedMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_saveReceivedMenuItemActionPerformed
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        try {
+            getSelectedCaptureStore().save(file);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            JOptionPane.showOptionDialog(this,
+                    "Nie można zapisać pliku " + file.getName() + "!\n"
+                    + "Sprawdź czy masz uprawnienia do zapisu.",
+                    "Błąd zapisu",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }//GEN-LAST:event_saveReceivedMenuItemActionPerformed
+
+    /**
+     * Handle opening saved received lines request from menu.
+     * It replaces the lines of the main port with the saved ones, next received lines are added after them.
+     * The search index saved with the file is used, so the lines aren't indexed again.
+     * Shows error dialog message if the file can't be read.
+     *
+     * @param evt is ignored
+     */
+    private void openReceivedMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_openReceivedMenuItemActionPerformed
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        CaptureStore loadedStore;
+        try {
+            loadedStore = CaptureStore.load(file);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            JOptionPane.showOptionDialog(this,
+                    "Nie można otworzyć pliku " + file.getName() + "!\n"
+                    + "Sprawdź czy plik istnieje i można go odczytać.",
+                    "Błąd odczytu",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+            return;
+        }
+        
+        CaptureStore oldStore = captureStore;
+        captureStore = loadedStore;
+        receivedLinesModel = new CaptureListModel(loadedStore, receivedLinesModel.getMaxLines(), SCROLLBACK_BYTES);
+        receivedLinesModel.publishChanges();
+        receivingList.setModel(receivedLinesModel);
+        try {
+            oldStore.close();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+        
+        longestLineLength = 0;
+        for (int row = Math.max(0, receivedLinesModel.getSize() - MEASURED_LINES); row < receivedLinesModel.getSize(); row++) {
+            longestLineLength = Math.max(longestLineLength, receivedLinesModel.getElementAt(row).length());
+        }
+        FontMetrics metrics = receivingList.getFontMetrics(receivingList.getFont());
+        receivingList.setFixedCellWidth((longestLineLength + 1) * metrics.charWidth('W'));
+        portTabbedPane.setSelectedIndex(0);
+        receivingList.ensureIndexIsVisible(receivedLinesModel.getSize() - 1);
+    }//GEN-LAST:event_openReceivedMenuItemActionPerformed
+
+    /**
+     * Creates the dialog of received lines search.
+     *
+     * @return the not modal dialog
+     */
+    private JDialog createSearchDialog() {
+        JDialog dialog = new JDialog(this, "Szukaj", false);
+        JTextField textField = new JTextField(30);
+        JTextField timeField = new JTextField(new SimpleDateFormat(SEARCH_TIME_FORMAT).format(new Date()), 16);
+        JLabel resultLabel = new JLabel(" ");
+        JTextArea contextArea = new JTextArea(SEARCH_CONTEXT_LINES * 2 + 1, 90);
+        contextArea.setEditable(false);
+        contextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, contextArea.getFont().getSize()));
+        
+        JButton previousButton = new JButton("Poprzedni");
+        previousButton.addActionListener((event) -> findReceivedText(textField.getText(), false, resultLabel, contextArea));
+        JButton nextButton = new JButton("Następny");
+        nextButton.addActionListener((event) -> findReceivedText(textField.getText(), true, resultLabel, contextArea));
+        textField.addActionListener((event) -> findReceivedText(textField.getText(), true, resultLabel, contextArea));
+        JButton timeButton = new JButton("Przejdź");
+        timeButton.addActionListener((event) -> findReceivedTime(timeField.getText(), resultLabel, contextArea));
+        timeField.addActionListener((event) -> findReceivedTime(timeField.getText(), resultLabel, contextArea));
+        
+        JPanel fieldsPanel = new JPanel(new GridLayout(2, 1));
+        JPanel textPanel = new JPanel();
+        textPanel.add(new JLabel("Tekst:"));
+        textPanel.add(textField);
+        textPanel.add(previousButton);
+        textPanel.add(nextButton);
+        fieldsPanel.add(textPanel);
+        JPanel timePanel = new JPanel();
+        timePanel.add(new JLabel("Czas (" + SEARCH_TIME_FORMAT + "):"));
+        timePanel.add(timeField);
+        timePanel.add(timeButton);
+        fieldsPanel.add(timePanel);
+        
+        JPanel searchPanel = new JPanel(new BorderLayout(6, 6));
+        searchPanel.add(fieldsPanel, BorderLayout.NORTH);
+        searchPanel.add(new JScrollPane(contextArea), BorderLayout.CENTER);
+        searchPanel.add(resultLabel, BorderLayout.SOUTH);
+        dialog.setContentPane(searchPanel);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        return dialog;
+    }
+
+    /**
+     * Finds the next or previous line with the text in the selected port, from the last found line.
+     * At the end of lines the search continues from the other end.
+     *
+     * @param text the searched text
+     * @param forward true to search towards newer lines, false towards older ones
+     * @param resultLabel the label showing the found line number and search time
+     * @param contextArea the area showing the found line with its neighbours
+     */
+    private void findReceivedText(String text, boolean forward, JLabel resultLabel, JTextArea contextArea) {
+        if (text.isEmpty()) {
+            return;
+        }
+        CaptureStore store = getSelectedCaptureStore();
+        if (store != searchStore) {
+            searchStore = store;
+            searchLine = -1;
+        }
+        long start = System.nanoTime();
+        long line;
+        try {
+            long from = searchLine < 0 ? (forward ? 0 : store.getLineCount() - 1) : searchLine + (forward ? 1 : -1);
+            line = store.find(text, from, forward);
+            if (line < 0 && searchLine >= 0) {
+                line = store.find(text, forward ? 0 : store.getLineCount() - 1, forward);
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return;
+        }
+        showFoundLine(store, line, System.nanoTime() - start, resultLabel, contextArea);
+    }
+
+    /**
+     * Finds the first line of the selected port received at or after the time.
+     *
+     * @param time the time in {@link #SEARCH_TIME_FORMAT}
+     * @param resultLabel the label showing the found line number and search time
+     * @param contextArea the area showing the found line with its neighbours
+     */
+    private void findReceivedTime(String time, JLabel resultLabel, JTextArea contextArea) {
+        long timeMillis;
+        try {
+            timeMillis = new SimpleDateFormat(SEARCH_TIME_FORMAT).parse(time.trim()).getTime();
+        } catch (ParseException ex) {
+            resultLabel.setText("Niepoprawny czas, użyj formatu " + SEARCH_TIME_FORMAT);
+            return;
+        }
+        CaptureStore store = getSelectedCaptureStore();
+        searchStore = store;
+        long start = System.nanoTime();
+        long line;
+        try {
+            line = store.findLineAtTime(timeMillis);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return;
+        }
+        showFoundLine(store, line < store.getLineCount() ? line : -1, System.nanoTime() - start, resultLabel, contextArea);
+    }
+
+    /**
+     * Shows the found line with its neighbours and receive times and selects it in the list, if it's there.
+     *
+     * @param store the searched store
+     * @param line the found line, -1 if nothing was found
+     * @param searchTime the search duration in ns
+     * @param resultLabel the label showing the found line number and search time
+     * @param contextArea the area showing the found line with its neighbours
+     */
+    private void showFoundLine(CaptureStore store, long line, long searchTime, JLabel resultLabel, JTextArea contextArea) {
+        JList<String> list = getSelectedReceivingList();
+        if (line < 0) {
+            resultLabel.setText(String.format("Nie znaleziono (%.3f ms)", searchTime / 1e6));
+            contextArea.setText("");
+            list.clearSelection();
+            return;
+        }
+        searchLine = line;
+        
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        StringBuilder context = new StringBuilder();
+        try {
+            for (long contextLine = Math.max(0, line - SEARCH_CONTEXT_LINES);
+                    contextLine <= Math.min(store.getLineCount() - 1, line + SEARCH_CONTEXT_LINES); contextLine++) {
+                context.append(contextLine == line ? "> " : "  ")
+                        .append(timeFormat.format(new Date(store.getLineTime(contextLine)))).append("  ")
+                        .append(store.getLine(contextLine)).append('\n');
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+        contextArea.setText(context.toString());
+        contextArea.setCaretPosition(0);
+        
+        CaptureListModel model = (CaptureListModel) list.getModel();
+        long row = line - model.getFirstLine();
+        boolean listed = row >= 0 && row < model.getSize();
+        if (listed) {
+            list.setSelectedIndex((int) row);
+            list.ensureIndexIsVisible((int) row);
+        } else {
+            list.clearSelection();
+        }
+        resultLabel.setText(String.format("Linia %d z %d%s (%.3f ms)", line + 1, store.getLineCount(),
+                listed ? "" : ", poza listą odebranych", searchTime / 1e6));
+    }
+
+    /**
+     * Getter to the received lines store of the port in the selected tab.
+     * @return the capture store
+     */
+    private CaptureStore getSelectedCaptureStore() {
+        Component tab = portTabbedPane.getSelectedComponent();
+        return tab instanceof PortSessionPanel ? ((PortSessionPanel) tab).getCaptureStore() : captureStore;
+    }
+
+    /**
+     * Getter to the received lines list of the port in the selected tab.
+     * @return the list
+     */
+    private JList<String> getSelectedReceivingList() {
+        Component tab = portTabbedPane.getSelectedComponent();
+        return tab instanceof PortSessionPanel ? ((PortSessionPanel) tab).getReceivingList() : receivingList;
+    }
+
+    /**
+     * Changes how the received bytes are shown in all ports.
+     *
+     * @param mode the index of mode - 0 text, 1 hex, 2 hex dump with ASCII column
+     */
+    private void setDisplayMode(int mode) {
+        for (Controler session : controler.getSessionManager().getSessions()) {
+            session.setDisplayMode(mode);
+        }
+    }
+
+    /**
+     * Getter to the display mode selected in menu.
+     * @return the index of mode - 0 text, 1 hex, 2 hex dump with ASCII column
+     */
+    private int getDisplayMode() {
+        return hexDisplayMenuItem.isSelected() ? 1 : dumpDisplayMenuItem.isSelected() ? 2 : 0;
+    }
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JSplitPane MainSplitPane;
     private javax.swing.JMenuItem aboutMenuItem;
+    private javax.swing.JCheckBoxMenuItem autoScrollMenuItem;
     private javax.swing.JPanel bottomPanel;
+    private javax.swing.JButton captureButton;
+    private javax.swing.JLabel captureStatusLabel;
     private javax.swing.JButton cleanReceivedButton;
     private javax.swing.JButton cleanSendedButton;
     private javax.swing.JMenuItem connectMenuItem;
     private javax.swing.JPanel connectionDetailsPanel;
     private javax.swing.JMenu connectionMenu;
     private javax.swing.JLabel connectionStatusIcon;
+    private javax.swing.JMenuItem decoderMenuItem;
     private javax.swing.JMenuItem disconnectMenuItem;
+    private javax.swing.ButtonGroup displayModeButtonGroup;
+    private javax.swing.JLabel droppedFramesLabel;
+    private javax.swing.JRadioButtonMenuItem dumpDisplayMenuItem;
     private javax.swing.JMenuItem exitMenuItem;
+    private javax.swing.JProgressBar fileSendProgressBar;
     private javax.swing.JLabel flowControlLabel;
+    private javax.swing.JRadioButtonMenuItem hexDisplayMenuItem;
     private javax.swing.JMenu infoMenu;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel10;
+    private javax.swing.JLabel jLabel12;
     private javax.swing.JLabel jLabel2;
+    private javax.swing.JLabel jLabel3;
     private javax.swing.JLabel jLabel4;
+    private javax.swing.JLabel jLabel5;
     private javax.swing.JLabel jLabel6;
+    private javax.swing.JLabel jLabel7;
     private javax.swing.JLabel jLabel8;
     private javax.swing.JPopupMenu.Separator jSeparator1;
     private javax.swing.JPopupMenu.Separator jSeparator2;
+    private javax.swing.JPopupMenu.Separator jSeparator3;
+    private javax.swing.JPopupMenu.Separator jSeparator4;
+    private javax.swing.JPopupMenu.Separator jSeparator5;
+    private javax.swing.JPopupMenu.Separator jSeparator6;
+    private javax.swing.JPopupMenu.Separator jSeparator7;
+    private javax.swing.JLabel latencyLabel;
+    private javax.swing.JMenuItem latencyMonitorMenuItem;
     private javax.swing.JMenu mainMenu;
     private javax.swing.JMenuBar menuBar;
+    private javax.swing.JMenuItem openReceivedMenuItem;
+    private javax.swing.JMenuItem openSessionMenuItem;
+    private javax.swing.JMenuItem periodicCommandsMenuItem;
+    private javax.swing.JCheckBoxMenuItem plotMenuItem;
     private javax.swing.JMenuItem portConfigurationMenuItem;
     private javax.swing.JLabel portNameLabel;
     private javax.swing.JLabel portSpeedLabel;
     private javax.swing.JLabel portStatusLabel;
+    private javax.swing.JTabbedPane portTabbedPane;
+    private javax.swing.JList<String> receivingList;
     private javax.swing.JScrollPane receivingScrollPane;
-    private javax.swing.JTextPane receivingTextPane;
+    private javax.swing.JMenuItem recordMenuItem;
+    private javax.swing.JMenuItem replayMenuItem;
+    private javax.swing.JMenuItem runScriptMenuItem;
+    private javax.swing.JMenuItem saveReceivedMenuItem;
+    private javax.swing.JLabel scriptStatusLabel;
+    private javax.swing.JMenuItem scrollbackMenuItem;
+    private javax.swing.JMenuItem searchMenuItem;
     private javax.swing.JButton sendButton;
+    private javax.swing.JButton sendFileButton;
     private javax.swing.JScrollPane sendingScrollPane;
     private javax.swing.JTextPane sendingTextPane;
     private javax.swing.JLabel signFormatLabel;
     private javax.swing.JPanel statusBarPanel;
     private javax.swing.JLabel terminatorLabel;
     private javax.swing.JMenuItem testConnectionMenuItem;
+    private javax.swing.JRadioButtonMenuItem textDisplayMenuItem;
+    private javax.swing.JLabel trafficLabel;
+    private javax.swing.JMenuItem triggersMenuItem;
     private javax.swing.JPanel upperPanel;
+    private javax.swing.JMenu viewMenu;
     // End of variables declaration//GEN-END:variables
 }
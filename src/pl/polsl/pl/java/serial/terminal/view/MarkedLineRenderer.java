@@ -0,0 +1,53 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.awt.Color;
+import java.awt.Component;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+
+/**
+ * Renderer of received lines which paints the lines marked by triggers
+ * with the background of trigger color. The colors are created once,
+ * so rendering a marked line costs only a map lookup.
+ *
+ * @author Michał Lytek
+ */
+public class MarkedLineRenderer extends DefaultListCellRenderer {
+
+    /** Names of trigger colors, in combobox order */
+    public static final String[] COLOR_NAMES = {"Czerwony", "Pomarańczowy", "Żółty", "Zielony", "Niebieski", "Fioletowy"};
+
+    /** Backgrounds of marked lines, in combobox order */
+    private static final Color[] COLORS = {
+        new Color(255, 200, 200),
+        new Color(255, 225, 180),
+        new Color(255, 250, 170),
+        new Color(200, 240, 200),
+        new Color(200, 220, 255),
+        new Color(230, 210, 250)
+    };
+
+    /**
+     * Configures the label for the line, marked lines get their color.
+     *
+     * @param list the list of received lines with {@link CaptureListModel}
+     * @param value the line
+     * @param index the row number
+     * @param isSelected true if the line is selected
+     * @param cellHasFocus true if the line has focus
+     *
+     * @return the configured label
+     */
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+        super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        if (!isSelected && list.getModel() instanceof CaptureListModel) {
+            int mark = ((CaptureListModel) list.getModel()).getMarkAt(index);
+            if (mark >= 0 && mark < COLORS.length) {
+                setBackground(COLORS[mark]);
+            }
+        }
+        return this;
+    }
+}
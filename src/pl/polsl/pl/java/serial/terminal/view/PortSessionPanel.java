@@ -0,0 +1,363 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Font;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.model.CaptureStore;
+import pl.polsl.pl.java.serial.terminal.model.SendProgress;
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+
+/**
+ * Tab of the next port opened in the main window.
+ * Has its own received lines list, status line and single line sending field,
+ * the menu of main window stays for the main port.
+ *
+ * @author Michał Lytek
+ */
+public class PortSessionPanel extends JPanel implements TerminalView {
+
+    /** Delay between received lines list updates in ms (about 30 frames per second) */
+    private static final int RECEIVED_TEXT_FLUSH_DELAY = 33;
+    /** Maximum number of lines shown in received lines list */
+    private static final int SCROLLBACK_LINES = 100000;
+    /** Maximum number of bytes shown in received lines list */
+    private static final long SCROLLBACK_BYTES = 256L * 1024 * 1024;
+
+    /** Controler of the port */
+    private final Controler controler;
+    /** Main window which holds the tab */
+    private final MainWindow window;
+
+    /** Memory-mapped store of all received lines */
+    private final CaptureStore captureStore;
+    /** Model of received lines list, reading only visible lines from the store */
+    private final CaptureListModel receivedLinesModel;
+    /** Timer which publishes received lines to the list */
+    private final Timer receivedTextFlushTimer;
+    /** Length of the longest received line in chars */
+    private int longestLineLength;
+
+    /* Components of the tab */
+    private final JList<String> receivingList = new JList<>();
+    private final JLabel portStatusLabel = new JLabel("Nie połączono");
+    private final JLabel trafficLabel = new JLabel("-");
+    private final JLabel droppedFramesLabel = new JLabel("0");
+    private final JTextField sendingTextField = new JTextField(40);
+    private final JButton sendButton = new JButton("Wyślij");
+    private final JCheckBox autoScrollCheckBox = new JCheckBox("Przewijaj", true);
+
+    /**
+     * Creates the tab of the port.
+     *
+     * @param controler the controler of the port
+     * @param window the main window which holds the tab
+     */
+    public PortSessionPanel(Controler controler, MainWindow window) {
+        super(new BorderLayout(6, 6));
+        this.controler = controler;
+        this.window = window;
+
+        try {
+            captureStore = CaptureStore.createTemporary();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        receivedLinesModel = new CaptureListModel(captureStore, SCROLLBACK_LINES, SCROLLBACK_BYTES);
+        receivingList.setModel(receivedLinesModel);
+        receivingList.setCellRenderer(new MarkedLineRenderer());
+        receivingList.setBackground(new Color(240, 240, 240));
+        receivingList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, receivingList.getFont().getSize()));
+        receivingList.setFixedCellHeight(receivingList.getFontMetrics(receivingList.getFont()).getHeight());
+        receivingList.setFixedCellWidth(1);
+
+        receivedTextFlushTimer = new Timer(RECEIVED_TEXT_FLUSH_DELAY, (evt) -> flushReceivedText());
+        receivedTextFlushTimer.setRepeats(false);
+
+        JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        statusPanel.add(portStatusLabel);
+        statusPanel.add(new JLabel("Ruch:"));
+        statusPanel.add(trafficLabel);
+        statusPanel.add(new JLabel("Utracone ramki:"));
+        statusPanel.add(droppedFramesLabel);
+
+        JButton cleanButton = new JButton("Wyczyść");
+        cleanButton.addActionListener((evt) -> cleanReceivedText());
+        JButton closeButton = new JButton("Zamknij port");
+        closeButton.addActionListener((evt) -> window.closeSessionTab(this));
+        sendButton.addActionListener((evt) -> sendText());
+        sendingTextField.addActionListener((evt) -> sendText());
+        sendButton.setEnabled(false);
+
+        JPanel sendingPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        sendingPanel.add(sendingTextField);
+        sendingPanel.add(sendButton);
+        sendingPanel.add(autoScrollCheckBox);
+        sendingPanel.add(cleanButton);
+        sendingPanel.add(closeButton);
+
+        add(statusPanel, BorderLayout.NORTH);
+        add(new JScrollPane(receivingList), BorderLayout.CENTER);
+        add(sendingPanel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Getter to the controler of the port.
+     * @return the controler
+     */
+    public Controler getControler() {
+        return this.controler;
+    }
+
+    /**
+     * Getter to the store of received lines, eg. to search or save it.
+     * @return the capture store
+     */
+    CaptureStore getCaptureStore() {
+        return this.captureStore;
+    }
+
+    /**
+     * Getter to the received lines list, eg. to select found line.
+     * @return the list
+     */
+    JList<String> getReceivingList() {
+        return this.receivingList;
+    }
+
+    /**
+     * Show that the port has been connected and enable sending.
+     */
+    void showConnectedState() {
+        portStatusLabel.setText("Połączono: " + controler.getConnectedPortName());
+        sendButton.setEnabled(true);
+    }
+
+    /**
+     * Stop updating the list and delete the temporary store of received lines.
+     */
+    void dispose() {
+        receivedTextFlushTimer.stop();
+        try {
+            captureStore.close();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    /**
+     * Pass the line from sending field to the controler, which sends it in background,
+     * and clean the field.
+     */
+    private void sendText() {
+        String text = sendingTextField.getText();
+        if (text.isEmpty() || !sendButton.isEnabled()) {
+            return;
+        }
+        sendingTextField.setText(null);
+        controler.sendText(text).thenAccept((progress) -> runOnViewThread(() -> showSendResult(text, progress)));
+    }
+
+    /**
+     * Show the error if the line wasn't sent, the line goes back to the empty field.
+     *
+     * @param text the line passed to controler
+     * @param progress the result of sending
+     */
+    private void showSendResult(String text, SendProgress progress) {
+        if (!progress.isComplete()) {
+            if (sendingTextField.getText().isEmpty()) {
+                sendingTextField.setText(text);
+            }
+            JOptionPane.showOptionDialog(this,
+                    "Nie można wysłać wiadomości!\n"
+                    + "Sprawdź czy połączenie nie uległo uszkodzeniu.",
+                    "Błąd wysyłania",
+                    JOptionPane.PLAIN_MESSAGE,
+                    JOptionPane.ERROR_MESSAGE,
+                    null,
+                    null,
+                    null
+            );
+        }
+    }
+
+    /**
+     * Clean the received lines list.
+     */
+    private void cleanReceivedText() {
+        receivedLinesModel.clear();
+        longestLineLength = 0;
+        receivingList.setFixedCellWidth(1);
+    }
+
+    /**
+     * Store received text, it's shown with the next list update.
+     *
+     * @param receivedLine the string to insert in the list
+     * @param insertInNewLine true if the line should be placed in new line, false if appended to te current text
+     */
+    @Override
+    public void insertReceivedText(String receivedLine, boolean insertInNewLine) {
+        longestLineLength = ReceivedTextActions.insert(receivedLinesModel, receivedTextFlushTimer,
+                receivedLine, insertInNewLine, longestLineLength);
+    }
+
+    /**
+     * Publish all stored received lines to the list at once
+     * and scroll it down to the end if scrolling is on.
+     */
+    private void flushReceivedText() {
+        ReceivedTextActions.flush(receivingList, receivedLinesModel, longestLineLength, autoScrollCheckBox.isSelected());
+    }
+
+    /**
+     * Show the number of received frames dropped due to receive queue overflow.
+     *
+     * @param droppedFrames the dropped frames count
+     */
+    @Override
+    public void showDroppedFrames(long droppedFrames) {
+        droppedFramesLabel.setText(Long.toString(droppedFrames));
+    }
+
+    /**
+     * Connection parameters are shown in the main window configuration, the tab shows only the port name.
+     */
+    @Override
+    public void showConnectionParameters() {
+        portStatusLabel.setText("Nie połączono: " + controler.getConnectedPortName());
+    }
+
+    /**
+     * Link test is started only for the main port.
+     *
+     * @param isSuccesful is ignored
+     * @param pingResult is ignored
+     */
+    @Override
+    public void showConnectionTestResults(boolean isSuccesful, int pingResult) {
+    }
+
+    /**
+     * Files are sent only to the main port.
+     *
+     * @param sentBytes is ignored
+     * @param totalBytes is ignored
+     * @param elapsedTime is ignored
+     */
+    @Override
+    public void showFileSendProgress(long sentBytes, long totalBytes, long elapsedTime) {
+    }
+
+    /**
+     * Files are sent only to the main port.
+     *
+     * @param isComplete is ignored
+     */
+    @Override
+    public void showFileSendFinished(boolean isComplete) {
+    }
+
+    /**
+     * Capture is started only for the main port.
+     *
+     * @param fileName is ignored
+     * @param writtenBytes is ignored
+     * @param backlog is ignored
+     * @param droppedBytes is ignored
+     */
+    @Override
+    public void showCaptureStatus(String fileName, long writtenBytes, long backlog, long droppedBytes) {
+    }
+
+    /**
+     * Link test is started only for the main port.
+     *
+     * @param medianRoundTrip is ignored
+     * @param p99RoundTrip is ignored
+     * @param p999RoundTrip is ignored
+     * @param maxRoundTrip is ignored
+     * @param lossRate is ignored
+     * @param jitter is ignored
+     */
+    @Override
+    public void showLatencyStatus(long medianRoundTrip, long p99RoundTrip, long p999RoundTrip, long maxRoundTrip, double lossRate, long jitter) {
+    }
+
+    /**
+     * Show the receive and send rates and error counters.
+     *
+     * @param receivedBytesPerSecond the receive rate in bytes per second
+     * @param sentBytesPerSecond the send rate in bytes per second
+     * @param framesPerSecond the number of received frames per second
+     * @param averageChunkSize the average size of single read from the port in bytes
+     * @param framingErrors the number of line errors reported by the port
+     * @param droppedFrames the number of frames dropped due to receive queue overflow
+     */
+    @Override
+    public void showTrafficStatistics(double receivedBytesPerSecond, double sentBytesPerSecond, double framesPerSecond, double averageChunkSize, long framingErrors, long droppedFrames) {
+        trafficLabel.setText(String.format("RX %.1f kB/s, TX %.1f kB/s, %.0f ramek/s, błędy linii %d",
+                receivedBytesPerSecond / 1000, sentBytesPerSecond / 1000, framesPerSecond, framingErrors));
+        trafficLabel.setForeground(framingErrors > 0 || droppedFrames > 0 ? Color.RED : null);
+    }
+
+    /**
+     * Mark the matching line and fire the trigger action, pausing stops scrolling of this tab only.
+     *
+     * @param trigger the matching trigger
+     * @param line the matching line
+     */
+    @Override
+    public void showTriggerMatch(Trigger trigger, String line) {
+        TriggerActions.fire(trigger, receivedLinesModel, controler.getConnectedPortName(),
+                () -> autoScrollCheckBox.setSelected(false));
+    }
+
+    /**
+     * Scripts are run only on the main port.
+     *
+     * @param stepNumber is ignored
+     * @param lineNumber is ignored
+     * @param command is ignored
+     */
+    @Override
+    public void showScriptProgress(int stepNumber, int lineNumber, String command) {
+    }
+
+    /**
+     * Scripts are run only on the main port.
+     *
+     * @param isSuccesful is ignored
+     * @param report is ignored
+     */
+    @Override
+    public void showScriptFinished(boolean isSuccesful, String report) {
+    }
+
+    /**
+     * Run the task on Swing event dispatch thread.
+     *
+     * @param task the task to run
+     */
+    @Override
+    public void runOnViewThread(Runnable task) {
+        SwingUtilities.invokeLater(task);
+    }
+}
@@ -0,0 +1,64 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.awt.FontMetrics;
+
+import javax.swing.JList;
+import javax.swing.Timer;
+
+/**
+ * Showing received text in the list of received lines,
+ * common for the main window and port tabs.
+ * The text is stored at once and published with the next list update,
+ * so many lines received in short time cost only one list repaint.
+ *
+ * @author Michał Lytek
+ */
+class ReceivedTextActions {
+
+    private ReceivedTextActions() {
+    }
+
+    /**
+     * Store received text and start the timer of the next list update.
+     *
+     * @param model the model of received lines
+     * @param flushTimer the timer publishing stored lines
+     * @param receivedLine the string to insert in the list
+     * @param insertInNewLine true if the line should be placed in new line, false if appended to the current text
+     * @param longestLineLength the length of the longest line so far
+     *
+     * @return the length of the longest line with the inserted text
+     */
+    static int insert(CaptureListModel model, Timer flushTimer, String receivedLine, boolean insertInNewLine, int longestLineLength) {
+        int rowLength = model.append(receivedLine, insertInNewLine);
+        if (!flushTimer.isRunning()) {
+            flushTimer.start();
+        }
+        return Math.max(longestLineLength, rowLength);
+    }
+
+    /**
+     * Publish all stored received lines to the list at once, widen the list cells
+     * for the longest line and scroll the list down to the end if scrolling is on.
+     *
+     * @param list the list of received lines
+     * @param model the model of the list
+     * @param longestLineLength the length of the longest line
+     * @param autoScroll true if the list follows new lines
+     */
+    static void flush(JList<String> list, CaptureListModel model, int longestLineLength, boolean autoScroll) {
+        if (!model.publishChanges()) {
+            return;
+        }
+
+        FontMetrics metrics = list.getFontMetrics(list.getFont());
+        int lineWidth = (longestLineLength + 1) * metrics.charWidth('W');
+        if (lineWidth > list.getFixedCellWidth()) {
+            list.setFixedCellWidth(lineWidth);
+        }
+
+        if (autoScroll) {
+            list.ensureIndexIsVisible(model.getSize() - 1);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.Timer;
+
+import pl.polsl.pl.java.serial.terminal.model.TelemetryParser;
+import pl.polsl.pl.java.serial.terminal.model.TelemetryStore;
+
+/**
+ * Live plot of numbers parsed from received lines, shown next to the received lines list.
+ * The plot is repainted about 30 times per second, only when new values came or the time window moves over them.
+ * Every series is reduced to the plot width before drawing, by min/max of pixel columns or by LTTB,
+ * into arrays reused between repaints, so the cost of repaint depends on the width, not on the sample rate.
+ * Series selected in the list are drawn, all of them if none is selected.
+ *
+ * @author Michał Lytek
+ */
+public class TelemetryPlotPanel extends JPanel {
+
+    /** Delay between plot repaints in ms (about 30 frames per second) */
+    private static final int REPAINT_DELAY = 33;
+    /** Time windows of the plot in seconds, in the order of the combobox */
+    private static final int[] WINDOW_SECONDS = {5, 10, 30};
+    /** Index of min/max reduction in the combobox */
+    private static final int MODE_MIN_MAX = 0;
+    /** Colors of series, repeated for more series */
+    private static final Color[] SERIES_COLORS = {
+        new Color(31, 119, 180), new Color(255, 127, 14), new Color(44, 160, 44), new Color(214, 39, 40),
+        new Color(148, 103, 189), new Color(140, 86, 75), new Color(227, 119, 194), new Color(127, 127, 127),
+        new Color(188, 189, 34), new Color(23, 190, 207)
+    };
+    /* Plot margins in pixels, for axis labels */
+    private static final int LEFT_MARGIN = 60,
+            BOTTOM_MARGIN = 20,
+            TOP_MARGIN = 8,
+            RIGHT_MARGIN = 8;
+    /** Number of grid lines */
+    private static final int GRID_LINES = 5;
+    /** Color of grid lines */
+    private static final Color GRID_COLOR = new Color(230, 230, 230);
+
+    /** Store of parsed numbers */
+    private final TelemetryStore store;
+    /** Timer which repaints the plot */
+    private final Timer repaintTimer;
+    /** Version of the store at the last repaint */
+    private long paintedVersion = -1;
+    /** Time of the last change of the store, System.nanoTime based */
+    private long changeTime;
+
+    /* Reduced series, by series index, reallocated when the plot gets wider */
+    private double[][] mins = new double[0][],
+            maxs = new double[0][];
+    private long[][] selectedTimes = new long[0][];
+    private double[][] selectedValues = new double[0][];
+    /** Number of reduced samples by series */
+    private final int[] reducedCounts = new int[TelemetryParser.MAX_SERIES];
+    /* Points of the drawn line, reused */
+    private int[] xPoints = new int[0],
+            yPoints = new int[0];
+
+    /* Components of the panel */
+    private final DefaultListModel<String> seriesListModel = new DefaultListModel<>();
+    private final JList<String> seriesList = new JList<>(seriesListModel);
+    private final JComboBox<String> windowComboBox = new JComboBox<>(new String[]{"5 s", "10 s", "30 s"});
+    private final JComboBox<String> modeComboBox = new JComboBox<>(new String[]{"Min/maks", "LTTB"});
+    private final JButton clearButton = new JButton("Wyczyść");
+    private final JComponent plot = new JComponent() {
+        @Override
+        protected void paintComponent(Graphics g) {
+            paintPlot(g, getWidth(), getHeight());
+        }
+    };
+
+    /**
+     * Creates the plot of the store, it isn't repainted until started.
+     *
+     * @param store the store of parsed numbers
+     */
+    public TelemetryPlotPanel(TelemetryStore store) {
+        super(new BorderLayout(4, 4));
+        this.store = store;
+
+        JPanel toolBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        toolBar.add(new JLabel("Okno:"));
+        windowComboBox.setSelectedIndex(1);
+        toolBar.add(windowComboBox);
+        toolBar.add(new JLabel("Redukcja:"));
+        toolBar.add(modeComboBox);
+        toolBar.add(clearButton);
+        add(toolBar, BorderLayout.NORTH);
+
+        plot.setOpaque(true);
+        plot.setBackground(Color.WHITE);
+        plot.setPreferredSize(new Dimension(400, 200));
+        add(plot, BorderLayout.CENTER);
+
+        seriesList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                Component renderer = super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (!isSelected) {
+                    renderer.setForeground(SERIES_COLORS[index % SERIES_COLORS.length]);
+                }
+                return renderer;
+            }
+        });
+        seriesList.addListSelectionListener(evt -> plot.repaint());
+        JScrollPane seriesScrollPane = new JScrollPane(seriesList);
+        seriesScrollPane.setPreferredSize(new Dimension(110, 200));
+        add(seriesScrollPane, BorderLayout.EAST);
+
+        windowComboBox.addActionListener(evt -> plot.repaint());
+        modeComboBox.addActionListener(evt -> plot.repaint());
+        clearButton.addActionListener(evt -> {
+            store.clear();
+            plot.repaint();
+        });
+        this.repaintTimer = new Timer(REPAINT_DELAY, evt -> refresh());
+    }
+
+    /**
+     * Starts repainting the plot, eg. when it's shown.
+     */
+    public void start() {
+        repaintTimer.start();
+    }
+
+    /**
+     * Stops repainting the plot, eg. when it's hidden.
+     */
+    public void stop() {
+        repaintTimer.stop();
+    }
+
+    /**
+     * Adds new series to the list and repaints the plot if something changed, run by the timer.
+     */
+    private void refresh() {
+        long now = System.nanoTime();
+        long version = store.getVersion();
+        if (version != paintedVersion) {
+            this.paintedVersion = version;
+            this.changeTime = now;
+            for (int series = seriesListModel.size(); series < store.getSeriesCount(); series++) {
+                seriesListModel.addElement(store.getSeriesName(series));
+            }
+        } else if (now - changeTime > getWindow()) {
+            // the last values have left the window
+            return;
+        }
+        plot.repaint();
+    }
+
+    /**
+     * Getter to the selected time window.
+     * @return the window in ns
+     */
+    private long getWindow() {
+        return TimeUnit.SECONDS.toNanos(WINDOW_SECONDS[windowComboBox.getSelectedIndex()]);
+    }
+
+    /**
+     * Paints the axes and the reduced series.
+     *
+     * @param g the graphics of the plot component
+     * @param width the component width
+     * @param height the component height
+     */
+    private void paintPlot(Graphics g, int width, int height) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        int plotWidth = width - LEFT_MARGIN - RIGHT_MARGIN;
+        int plotHeight = height - TOP_MARGIN - BOTTOM_MARGIN;
+        if (plotWidth < 3 || plotHeight < 3) {
+            return;
+        }
+        int seriesCount = seriesListModel.size();
+        ensureCapacity(seriesCount, plotWidth);
+        long window = getWindow();
+        long endTime = System.nanoTime();
+        long startTime = endTime - window;
+        boolean minMax = modeComboBox.getSelectedIndex() == MODE_MIN_MAX;
+
+        // reduce all drawn series first, the value axis fits all of them
+        double low = Double.POSITIVE_INFINITY, high = Double.NEGATIVE_INFINITY;
+        for (int series = 0; series < seriesCount; series++) {
+            reducedCounts[series] = 0;
+            if (!isDrawn(series)) {
+                continue;
+            }
+            if (minMax) {
+                if (store.minMax(series, startTime, endTime, plotWidth, mins[series], maxs[series])) {
+                    reducedCounts[series] = plotWidth;
+                    for (int column = 0; column < plotWidth; column++) {
+                        // NaN of empty columns fails both comparisons
+                        if (mins[series][column] < low) {
+                            low = mins[series][column];
+                        }
+                        if (maxs[series][column] > high) {
+                            high = maxs[series][column];
+                        }
+                    }
+                }
+            } else {
+                int count = store.lttb(series, startTime, endTime, plotWidth, selectedTimes[series], selectedValues[series]);
+                reducedCounts[series] = count;
+                for (int i = 0; i < count; i++) {
+                    low = Math.min(low, selectedValues[series][i]);
+                    high = Math.max(high, selectedValues[series][i]);
+                }
+            }
+        }
+        if (low > high) {
+            g.setColor(Color.GRAY);
+            g.drawString("Brak danych liczbowych", LEFT_MARGIN + 4, TOP_MARGIN + plotHeight / 2);
+            return;
+        }
+        if (low == high) {
+            low -= 1;
+            high += 1;
+        }
+        paintAxes(g, plotWidth, plotHeight, low, high);
+
+        double scale = (plotHeight - 1) / (high - low);
+        int bottom = TOP_MARGIN + plotHeight - 1;
+        for (int series = 0; series < seriesCount; series++) {
+            if (reducedCounts[series] == 0) {
+                continue;
+            }
+            g.setColor(SERIES_COLORS[series % SERIES_COLORS.length]);
+            int points = 0;
+            if (minMax) {
+                // a zigzag through the extremes of columns draws both the spikes and the line between columns
+                double[] seriesMins = mins[series], seriesMaxs = maxs[series];
+                boolean downwards = true;
+                for (int column = 0; column < plotWidth; column++) {
+                    if (Double.isNaN(seriesMins[column])) {
+                        continue;
+                    }
+                    int yMin = bottom - (int) ((seriesMins[column] - low) * scale);
+                    int yMax = bottom - (int) ((seriesMaxs[column] - low) * scale);
+                    xPoints[points] = LEFT_MARGIN + column;
+                    yPoints[points++] = downwards ? yMax : yMin;
+                    xPoints[points] = LEFT_MARGIN + column;
+                    yPoints[points++] = downwards ? yMin : yMax;
+                    downwards = !downwards;
+                }
+            } else {
+                long[] times = selectedTimes[series];
+                double[] values = selectedValues[series];
+                for (int i = 0; i < reducedCounts[series]; i++) {
+                    xPoints[points] = LEFT_MARGIN + (int) ((times[i] - startTime) * (plotWidth - 1) / window);
+                    yPoints[points++] = bottom - (int) ((values[i] - low) * scale);
+                }
+            }
+            g.drawPolyline(xPoints, yPoints, points);
+        }
+    }
+
+    /**
+     * Paints the grid with value and time labels.
+     *
+     * @param g the graphics of the plot component
+     * @param plotWidth the width of plot area
+     * @param plotHeight the height of plot area
+     * @param low the value at the bottom
+     * @param high the value at the top
+     */
+    private void paintAxes(Graphics g, int plotWidth, int plotHeight, double low, double high) {
+        FontMetrics metrics = g.getFontMetrics();
+        for (int line = 0; line <= GRID_LINES; line++) {
+            int y = TOP_MARGIN + (plotHeight - 1) - line * (plotHeight - 1) / GRID_LINES;
+            g.setColor(GRID_COLOR);
+            g.drawLine(LEFT_MARGIN, y, LEFT_MARGIN + plotWidth - 1, y);
+            String label = String.format("%.4g", low + (high - low) * line / GRID_LINES);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(label, LEFT_MARGIN - 4 - metrics.stringWidth(label), y + metrics.getAscent() / 2);
+        }
+        int seconds = WINDOW_SECONDS[windowComboBox.getSelectedIndex()];
+        int baseline = TOP_MARGIN + plotHeight + metrics.getAscent();
+        for (int step = 0; step <= GRID_LINES; step++) {
+            int x = LEFT_MARGIN + step * (plotWidth - 1) / GRID_LINES;
+            String label = String.format("%.1f s", seconds * (step - GRID_LINES) / (double) GRID_LINES);
+            int labelX = Math.min(x - metrics.stringWidth(label) / 2, LEFT_MARGIN + plotWidth - metrics.stringWidth(label));
+            g.drawString(label, Math.max(0, labelX), baseline);
+        }
+        g.drawRect(LEFT_MARGIN, TOP_MARGIN, plotWidth - 1, plotHeight - 1);
+    }
+
+    /**
+     * Check if the series is drawn.
+     *
+     * @param series the series index
+     *
+     * @return true if it's selected or nothing is selected
+     */
+    private boolean isDrawn(int series) {
+        return seriesList.isSelectionEmpty() || seriesList.isSelectedIndex(series);
+    }
+
+    /**
+     * Reallocates the arrays of reduced series if there are more series or the plot is wider.
+     *
+     * @param seriesCount the number of series
+     * @param plotWidth the width of plot area
+     */
+    private void ensureCapacity(int seriesCount, int plotWidth) {
+        if (seriesCount <= mins.length && (mins.length == 0 || plotWidth <= mins[0].length)) {
+            return;
+        }
+        int columns = Math.max(plotWidth, mins.length > 0 ? mins[0].length : 0);
+        this.mins = new double[seriesCount][columns];
+        this.maxs = new double[seriesCount][columns];
+        this.selectedTimes = new long[seriesCount][columns];
+        this.selectedValues = new double[seriesCount][columns];
+        this.xPoints = new int[2 * columns];
+        this.yPoints = new int[2 * columns];
+    }
+}
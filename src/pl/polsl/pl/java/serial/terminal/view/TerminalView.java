@@ -0,0 +1,122 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+
+/**
+ * Requests which the controler sends to the user interface.
+ * Implemented by the Swing GUI and by the console used in headless mode.
+ *
+ * @author Michał Lytek
+ */
+public interface TerminalView {
+
+    /**
+     * Handle demands of presenting received text.
+     *
+     * @param receivedLine the string to show
+     * @param insertInNewLine true if the line should be placed in new line, false if appended to the current text
+     */
+    void insertReceivedText(String receivedLine, boolean insertInNewLine);
+
+    /**
+     * Show the number of received frames dropped due to receive queue overflow.
+     *
+     * @param droppedFrames the dropped frames count
+     */
+    void showDroppedFrames(long droppedFrames);
+
+    /**
+     * Handle controler request after setting up connection parameters.
+     */
+    void showConnectionParameters();
+
+    /**
+     * Handle demand of showing connection test result.
+     *
+     * @param isSuccesful true if test was ok, false if there was an error or timeout
+     * @param pingResult the round trip delay time in ms - ignored if isSuccesful is false
+     */
+    void showConnectionTestResults(boolean isSuccesful, int pingResult);
+
+    /**
+     * Show the progress of sending file.
+     *
+     * @param sentBytes the number of sent bytes
+     * @param totalBytes the file size
+     * @param elapsedTime the time since the start of sending in ns
+     */
+    void showFileSendProgress(long sentBytes, long totalBytes, long elapsedTime);
+
+    /**
+     * Handle the end of sending file.
+     *
+     * @param isComplete true if the whole file was sent, false if it was cancelled or an error occured
+     */
+    void showFileSendFinished(boolean isComplete);
+
+    /**
+     * Show the state of capturing received data to file.
+     *
+     * @param fileName the name of file being written
+     * @param writtenBytes the number of bytes written to capture files
+     * @param backlog the number of bytes waiting for writing
+     * @param droppedBytes the number of bytes lost because the writer didn't keep up
+     */
+    void showCaptureStatus(String fileName, long writtenBytes, long backlog, long droppedBytes);
+
+    /**
+     * Show the statistics of continuous link test.
+     *
+     * @param medianRoundTrip the median round trip time in ns
+     * @param p99RoundTrip the 99th percentile of round trip time in ns
+     * @param p999RoundTrip the 99.9th percentile of round trip time in ns
+     * @param maxRoundTrip the longest round trip time in ns
+     * @param lossRate the part of probes without response, from 0 to 1
+     * @param jitter the smoothed round trip time variation in ns
+     */
+    void showLatencyStatus(long medianRoundTrip, long p99RoundTrip, long p999RoundTrip, long maxRoundTrip, double lossRate, long jitter);
+
+    /**
+     * Show the traffic rates and error counters of the connection.
+     *
+     * @param receivedBytesPerSecond the receive rate in bytes per second
+     * @param sentBytesPerSecond the send rate in bytes per second
+     * @param framesPerSecond the number of received frames per second
+     * @param averageChunkSize the average size of single read from the port in bytes
+     * @param framingErrors the number of line errors reported by the port
+     * @param droppedFrames the number of frames dropped due to receive queue overflow
+     */
+    void showTrafficStatistics(double receivedBytesPerSecond, double sentBytesPerSecond, double framesPerSecond, double averageChunkSize, long framingErrors, long droppedFrames);
+
+    /**
+     * Show that the last inserted line matches the trigger and fire its action.
+     *
+     * @param trigger the matching trigger with the highest priority
+     * @param line the matching line
+     */
+    void showTriggerMatch(Trigger trigger, String line);
+
+    /**
+     * Show the step reached by the automation script.
+     *
+     * @param stepNumber the number of run steps, this one included
+     * @param lineNumber the script line of the step
+     * @param command the script line text
+     */
+    void showScriptProgress(int stepNumber, int lineNumber, String command);
+
+    /**
+     * Show the end of automation script with the latency of every expect step.
+     *
+     * @param isSuccesful true if the script reached its end, false if it failed or was stopped
+     * @param report the latency of every expect step and the summary, one in a line
+     */
+    void showScriptFinished(boolean isSuccesful, String report);
+
+    /**
+     * Run the task on the thread which owns the view, eg. Swing event dispatch thread.
+     *
+     * @param task the task to run
+     */
+    void runOnViewThread(Runnable task);
+}
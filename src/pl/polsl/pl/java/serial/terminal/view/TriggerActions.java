@@ -0,0 +1,121 @@
+package pl.polsl.pl.java.serial.terminal.view;
+
+import java.awt.Toolkit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import pl.polsl.pl.java.serial.terminal.model.Trigger;
+
+/**
+ * Actions fired when a received line matches a trigger,
+ * common for the main window and port tabs.
+ * Snapshots are copied on the view thread in one read and written to the snapshot directory
+ * on a background thread; a trigger matching every line saves at most one snapshot per interval.
+ *
+ * @author Michał Lytek
+ */
+class TriggerActions {
+
+    /** Number of last received lines saved in snapshot file */
+    static final int SNAPSHOT_LINES = 1000;
+    /** Minimum time between snapshots of the same list in ms */
+    static final long SNAPSHOT_INTERVAL = 5000;
+
+    /** Directory of snapshot files, the user home directory until one is chosen */
+    private static volatile File snapshotDirectory = new File(System.getProperty("user.home"));
+    /** Time of the last snapshot of every list, used on the view thread only */
+    private static final Map<CaptureListModel, Long> lastSnapshots = new WeakHashMap<>();
+    /** Thread writing snapshot files, so the view never waits for the disk */
+    private static final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor((task) -> {
+        Thread thread = new Thread(task, "trigger-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TriggerActions() {
+    }
+
+    /**
+     * Getter to the snapshot directory.
+     * @return the directory where snapshot files are saved
+     */
+    static File getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    /**
+     * Setter to the snapshot directory.
+     * @param directory the directory where next snapshot files are saved
+     */
+    static void setSnapshotDirectory(File directory) {
+        snapshotDirectory = directory;
+    }
+
+    /**
+     * Mark the last received line with trigger color and fire the trigger action.
+     *
+     * @param trigger the matching trigger
+     * @param model the model of received lines, the matching line is the last one
+     * @param portName the name of port which received the line, used in snapshot file name
+     * @param pauseScrolling the task which stops following new lines
+     */
+    static void fire(Trigger trigger, CaptureListModel model, String portName, Runnable pauseScrolling) {
+        model.markLastLine(trigger.getColor());
+        switch (trigger.getAction()) {
+            case Trigger.ACTION_BEEP:
+                Toolkit.getDefaultToolkit().beep();
+                break;
+            case Trigger.ACTION_PAUSE:
+                pauseScrolling.run();
+                break;
+            case Trigger.ACTION_SNAPSHOT:
+                saveSnapshot(model, portName);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Copies the last lines and writes them to a new file in the snapshot directory,
+     * unless the list was saved less than {@link #SNAPSHOT_INTERVAL} ago.
+     *
+     * @param model the model of received lines
+     * @param portName the name of port which received the lines, used in file name
+     */
+    private static void saveSnapshot(CaptureListModel model, String portName) {
+        long now = System.currentTimeMillis();
+        Long last = lastSnapshots.get(model);
+        if (last != null && now - last < SNAPSHOT_INTERVAL) {
+            return;
+        }
+        lastSnapshots.put(model, now);
+
+        byte[] lines;
+        try {
+            lines = model.copyLastLines(SNAPSHOT_LINES);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return;
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(now));
+        String port = portName != null ? portName.replaceAll("[^A-Za-z0-9]", "_") : "port";
+        File file = new File(snapshotDirectory, "wyzwalacz-" + time + "-" + port + ".txt");
+        snapshotWriter.execute(() -> {
+            try (OutputStream output = new FileOutputStream(file)) {
+                output.write(lines);
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        });
+    }
+}
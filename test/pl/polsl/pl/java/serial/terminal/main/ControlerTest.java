@@ -0,0 +1,119 @@
+package pl.polsl.pl.java.serial.terminal.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.polsl.pl.java.serial.terminal.model.LoopbackTransport;
+import pl.polsl.pl.java.serial.terminal.model.SendProgress;
+import pl.polsl.pl.java.serial.terminal.view.ConsoleView;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of sending text and resuming it after a failed write.
+ *
+ * @author Michał Lytek
+ */
+public class ControlerTest {
+
+    /** System line separator, which splits the sent text */
+    private static final String SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * Echo transport which keeps the written bytes and fails the whole write
+     * that would exceed the limit, once.
+     */
+    private static class FailingTransport extends LoopbackTransport {
+        /** Bytes written successfully */
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        /** Number of bytes after which a write fails, -1 if writes don't fail */
+        long limit = -1;
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            if (limit >= 0 && written.size() + length > limit) {
+                this.limit = -1;
+                throw new IOException("Write failed");
+            }
+            written.write(data, offset, length);
+        }
+    }
+
+    private FailingTransport transport;
+    private Controler controler;
+
+    @Before
+    public void setUp() {
+        ConsoleView view = new ConsoleView(new PrintStream(new ByteArrayOutputStream()));
+        this.controler = new Controler(view);
+        view.setControler(controler);
+        controler.setupSerialPort("loopback", 115200, 8, 0, 1, 0, "CR-LF", 0, "UTF-8", false);
+        this.transport = new FailingTransport();
+        assertTrue(controler.connectToPort(transport));
+    }
+
+    @After
+    public void tearDown() {
+        controler.disconnectFromPort();
+    }
+
+    private SendProgress send(String text) throws Exception {
+        return controler.sendText(text).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends the text, resumes it after the failed write and checks that the device got every line once.
+     *
+     * @param text the sent text
+     * @param failAfter the number of bytes after which a write fails
+     */
+    private void checkResume(String text, long failAfter) throws Exception {
+        transport.limit = failAfter;
+        SendProgress progress = send(text);
+        assertFalse(progress.isComplete());
+        assertEquals(transport.written.size(), progress.getBytesWritten());
+
+        SendProgress resumed = send(text.substring(progress.getSentLength()));
+        assertTrue(resumed.isComplete());
+        byte[] expected = (text.replace(SEPARATOR, "\r\n") + "\r\n").getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, transport.written.toByteArray());
+    }
+
+    @Test
+    public void testSendsLinesWithTerminator() throws Exception {
+        SendProgress progress = send("ATZ" + SEPARATOR + "AT+GMR" + SEPARATOR + SEPARATOR);
+        assertTrue(progress.isComplete());
+        assertEquals(2, progress.getLinesWritten());
+        assertArrayEquals("ATZ\r\nAT+GMR\r\n".getBytes(StandardCharsets.US_ASCII), transport.written.toByteArray());
+    }
+
+    @Test
+    public void testResumeAfterFailedBatch() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 20000; line++) {
+            text.append(line == 0 ? "" : SEPARATOR).append("linia ").append(line).append(" zażółć");
+        }
+        checkResume(text.toString(), 100 * 1000);
+    }
+
+    @Test
+    public void testResumeInsideLongLine() throws Exception {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 300 * 1000; i++) {
+            line.append((char) ('a' + i % 26));
+        }
+        checkResume("krótka" + SEPARATOR + line + SEPARATOR + "koniec", 150 * 1000);
+    }
+}
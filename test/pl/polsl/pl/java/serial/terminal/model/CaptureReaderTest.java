@@ -0,0 +1,137 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of reading and seeking in a capture file written by {@link TrafficRecorder},
+ * with the saved index and with the index rebuilt from record headers.
+ *
+ * @author Michał Lytek
+ */
+public class CaptureReaderTest {
+
+    /** Number of recorded chunks, enough for a few index entries */
+    private static final int RECORDS = 300;
+    /** Size of every chunk */
+    private static final int RECORD_SIZE = 1000;
+
+    private File file;
+    private File indexFile;
+    /** Time stamps of the records, in file order */
+    private final List<Long> times = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        this.file = File.createTempFile("capture", ".scap");
+        this.indexFile = new File(file.getPath() + TrafficRecorder.INDEX_SUFFIX);
+        TrafficRecorder recorder = new TrafficRecorder(file);
+        for (int i = 0; i < RECORDS; i++) {
+            recorder.record(i % 3 == 0 ? TrafficRecorder.TX : TrafficRecorder.RX, chunk(i), 0, RECORD_SIZE);
+            if (i % 50 == 0) {
+                Thread.sleep(2);
+            }
+        }
+        recorder.close();
+
+        try (CaptureReader reader = new CaptureReader(file)) {
+            while (reader.next()) {
+                times.add(reader.getTime());
+            }
+        }
+        assertEquals(RECORDS, times.size());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        indexFile.delete();
+    }
+
+    private static byte[] chunk(int record) {
+        byte[] data = new byte[RECORD_SIZE];
+        Arrays.fill(data, (byte) record);
+        data[0] = (byte) (record >>> 8);
+        return data;
+    }
+
+    @Test
+    public void testReadsRecordsInOrder() throws IOException {
+        assertTrue(indexFile.isFile());
+        try (CaptureReader reader = new CaptureReader(file)) {
+            for (int i = 0; i < RECORDS; i++) {
+                assertTrue(reader.next());
+                assertEquals(i % 3 == 0 ? TrafficRecorder.TX : TrafficRecorder.RX, reader.getDirection());
+                assertEquals(RECORD_SIZE, reader.getLength());
+                assertArrayEquals(chunk(i), Arrays.copyOf(reader.getData(), RECORD_SIZE));
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testSeekWithSavedIndex() throws IOException {
+        checkSeek();
+    }
+
+    @Test
+    public void testSeekWithRebuiltIndex() throws IOException {
+        assertTrue(indexFile.delete());
+        checkSeek();
+    }
+
+    /**
+     * Seeks to the time of every 7th record and to times between records,
+     * the next record must be the first one not earlier than the time.
+     */
+    private void checkSeek() throws IOException {
+        try (CaptureReader reader = new CaptureReader(file)) {
+            for (int i = 0; i < RECORDS; i += 7) {
+                long time = times.get(i);
+                reader.seek(time);
+                assertTrue(reader.next());
+                assertEquals(time, reader.getTime());
+                assertEquals((byte) firstRecordAt(time), reader.getData()[1]);
+
+                reader.seek(time + 1);
+                int expected = firstRecordAt(time + 1);
+                if (expected < 0) {
+                    assertFalse(reader.next());
+                } else {
+                    assertTrue(reader.next());
+                    assertEquals(times.get(expected).longValue(), reader.getTime());
+                }
+            }
+            reader.seek(0);
+            assertTrue(reader.next());
+            assertEquals(times.get(0).longValue(), reader.getTime());
+        }
+    }
+
+    /**
+     * Finds the first record with time stamp not earlier than given.
+     *
+     * @return the record number, -1 if there's none
+     */
+    private int firstRecordAt(long time) {
+        for (int i = 0; i < times.size(); i++) {
+            if (times.get(i) >= time) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,48 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sink of decoder tests, keeps the type and fields of every message and counts skipped bytes.
+ *
+ * @author Michał Lytek
+ */
+class CollectingSink implements ProtocolDecoder.Sink {
+
+    /** Messages as "type: fields", with " (błąd)" for invalid ones */
+    final List<String> messages = new ArrayList<>();
+    /** Number of skipped bytes */
+    int skipped;
+
+    @Override
+    public void messageDecoded(DecodedMessage message) {
+        messages.add(message.getType() + ": " + message.getFieldsText() + (message.isValid() ? "" : " (błąd)"));
+    }
+
+    @Override
+    public void bytesSkipped(int count) {
+        skipped += count;
+    }
+
+    /**
+     * Feeds the bytes to the decoder like {@link DecoderPipeline}, the rest is given again with next chunk.
+     *
+     * @param decoder the tested decoder
+     * @param data the received bytes
+     * @param chunk the number of bytes received at once
+     */
+    void decode(ProtocolDecoder decoder, byte[] data, int chunk) {
+        DecodedMessage message = new DecodedMessage();
+        int start = 0;
+        for (int received = Math.min(chunk, data.length); ; received = Math.min(received + chunk, data.length)) {
+            int consumed;
+            while (start < received && (consumed = decoder.decode(data, start, received - start, message, this)) > 0) {
+                start += consumed;
+            }
+            if (received == data.length) {
+                return;
+            }
+        }
+    }
+}
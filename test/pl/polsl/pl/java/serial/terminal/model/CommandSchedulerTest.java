@@ -0,0 +1,84 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.view.ConsoleView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of periodic commands on a port slower than the command period:
+ * the timer must not wait for the port and the same command must not pile up in the send queue.
+ *
+ * @author Michał Lytek
+ */
+public class CommandSchedulerTest {
+
+    /** Time of writing one command to the slow port in ms */
+    private static final long WRITE_TIME = 40;
+
+    /**
+     * Echo transport which takes a long time to write.
+     */
+    private static class SlowTransport extends LoopbackTransport {
+        /** Number of writes */
+        volatile int writes;
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            try {
+                Thread.sleep(WRITE_TIME);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            writes++;
+        }
+    }
+
+    private SlowTransport transport;
+    private Controler controler;
+
+    @Before
+    public void setUp() {
+        ConsoleView view = new ConsoleView(new PrintStream(new ByteArrayOutputStream()));
+        this.controler = new Controler(view);
+        view.setControler(controler);
+        controler.setupSerialPort("loopback", 115200, 8, 0, 1, 0, "CR", 0, "US-ASCII", false);
+        this.transport = new SlowTransport();
+        assertTrue(controler.connectToPort(transport));
+    }
+
+    @After
+    public void tearDown() {
+        controler.disconnectFromPort();
+    }
+
+    @Test
+    public void testSlowPortDoesNotDelayTimer() throws InterruptedException {
+        CommandScheduler scheduler = controler.getCommandScheduler();
+        PeriodicCommand command = scheduler.addPeriodic("AT", 5);
+        Thread.sleep(500);
+        scheduler.stop();
+        Thread.sleep(2 * WRITE_TIME);
+
+        // the timer queued a command or skipped it on every deadline, without waiting for the port
+        long deadlines = command.getSentCount() + command.getFailedCount() + command.getMissedCount();
+        assertTrue("deadlines: " + deadlines, deadlines >= 50);
+        assertTrue("missed: " + command.getMissedCount(), command.getMissedCount() > command.getSentCount());
+        assertTrue("jitter: " + command.getMaxJitter(), command.getMaxJitter() < TimeUnit.MILLISECONDS.toNanos(WRITE_TIME));
+        // only one send of the command waited for the port at a time
+        assertEquals(transport.writes, command.getSentCount());
+        assertTrue("sent: " + command.getSentCount(), command.getSentCount() <= 500 / WRITE_TIME + 1);
+        assertEquals(0, command.getFailedCount());
+    }
+}
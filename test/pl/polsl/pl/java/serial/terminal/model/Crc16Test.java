@@ -0,0 +1,44 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of CRC-16/XMODEM and CRC-16/MODBUS with the check values of the CRC catalogue.
+ *
+ * @author Michał Lytek
+ */
+public class Crc16Test {
+
+    /** Standard input of CRC check values */
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testXmodemCheckValue() {
+        assertEquals(0x31C3, Crc16.update(0, CHECK_INPUT, 0, CHECK_INPUT.length));
+    }
+
+    @Test
+    public void testSingleByteUpdateMatchesRangeUpdate() {
+        int crc = 0;
+        for (byte b : CHECK_INPUT) {
+            crc = Crc16.update(crc, b);
+        }
+        assertEquals(0x31C3, crc);
+    }
+
+    @Test
+    public void testCrcOverDataAndItsCrcIsZero() {
+        int crc = Crc16.update(0, CHECK_INPUT, 0, CHECK_INPUT.length);
+        int withCrc = Crc16.update(Crc16.update(crc, crc >>> 8), crc);
+        assertEquals(0, withCrc);
+    }
+
+    @Test
+    public void testModbusCheckValue() {
+        assertEquals(0x4B37, ModbusCrc.update(ModbusCrc.INITIAL, CHECK_INPUT, 0, CHECK_INPUT.length));
+    }
+}
@@ -0,0 +1,79 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of finding the next time of cron schedules, in the default time zone.
+ *
+ * @author Michał Lytek
+ */
+public class CronExpressionTest {
+
+    private static long millis(int year, int month, int day, int hour, int minute, int second) {
+        return LocalDateTime.of(year, month, day, hour, minute, second)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void testEveryFiveMinutesOnWorkingDays() {
+        CronExpression cron = new CronExpression("0 */5 * * * 1-5");
+        // Friday 16 October 2026, the next time is on Monday
+        assertEquals(millis(2026, 10, 16, 23, 55, 0), cron.next(millis(2026, 10, 16, 23, 52, 30)));
+        assertEquals(millis(2026, 10, 19, 0, 0, 0), cron.next(millis(2026, 10, 16, 23, 55, 0)));
+    }
+
+    @Test
+    public void testFiveFieldsHaveZeroSeconds() {
+        CronExpression cron = new CronExpression("30 8 * * *");
+        assertEquals(millis(2026, 10, 17, 8, 30, 0), cron.next(millis(2026, 10, 17, 8, 0, 0)));
+        assertEquals(millis(2026, 10, 18, 8, 30, 0), cron.next(millis(2026, 10, 17, 8, 30, 0)));
+    }
+
+    @Test
+    public void testListsRangesAndSteps() {
+        CronExpression cron = new CronExpression("10-40/15,59 0 12 * * *");
+        long time = millis(2026, 1, 1, 11, 0, 0);
+        int[] seconds = {10, 25, 40, 59};
+        for (int second : seconds) {
+            time = cron.next(time);
+            assertEquals(millis(2026, 1, 1, 12, 0, second), time);
+        }
+        assertEquals(millis(2026, 1, 2, 12, 0, 10), cron.next(time));
+    }
+
+    @Test
+    public void testDayOrWeekdayWhenBothAreRestricted() {
+        // the 13th or any Friday, like in cron
+        CronExpression cron = new CronExpression("0 0 13 * 5");
+        assertEquals(millis(2026, 11, 6, 0, 0, 0), cron.next(millis(2026, 11, 1, 0, 0, 0)));
+        assertEquals(millis(2026, 11, 13, 0, 0, 0), cron.next(millis(2026, 11, 6, 0, 0, 0)));
+        assertEquals(millis(2026, 11, 20, 0, 0, 0), cron.next(millis(2026, 11, 13, 0, 0, 0)));
+    }
+
+    @Test
+    public void testSundayIsBothZeroAndSeven() {
+        long saturday = millis(2026, 10, 17, 12, 0, 0);
+        assertEquals(millis(2026, 10, 18, 0, 0, 0), new CronExpression("0 0 * * 0").next(saturday));
+        assertEquals(millis(2026, 10, 18, 0, 0, 0), new CronExpression("0 0 * * 7").next(saturday));
+    }
+
+    @Test
+    public void testImpossibleDateHasNoNextTime() {
+        assertEquals(-1, new CronExpression("0 0 30 2 *").next(millis(2026, 1, 1, 0, 0, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsWrongFieldCount() {
+        new CronExpression("* * * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsValueOutOfRange() {
+        new CronExpression("0 60 * * *");
+    }
+}
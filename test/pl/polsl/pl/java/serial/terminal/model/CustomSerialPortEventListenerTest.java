@@ -0,0 +1,214 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.view.ConsoleView;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the receive path - link test sequences, DLE stuffing
+ * and text decoding of chars split between chunks.
+ *
+ * @author Michał Lytek
+ */
+public class CustomSerialPortEventListenerTest {
+
+    private static final byte DLE = 0x10, ENQ = 0x05, ACK = 0x06;
+
+    /**
+     * Controler which keeps the received lines and counts link test responses.
+     */
+    private static class CollectingControler extends Controler {
+        final List<String> lines = new ArrayList<>();
+        final StringBuilder chars = new StringBuilder();
+        int pingResponses;
+        final CountDownLatch fileSent = new CountDownLatch(1);
+        boolean fileComplete;
+
+        CollectingControler() {
+            super(new ConsoleView(new PrintStream(new ByteArrayOutputStream())));
+        }
+
+        @Override
+        public void receivedNewLine(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public void receivedNewChars(String text) {
+            chars.append(text);
+        }
+
+        @Override
+        public void receivedPingResponse() {
+            pingResponses++;
+        }
+
+        @Override
+        public void fileSendProgress(long sentBytes, long totalBytes, long elapsedTime) {
+        }
+
+        @Override
+        public void fileSendFinished(boolean complete) {
+            this.fileComplete = complete;
+            fileSent.countDown();
+        }
+    }
+
+    /**
+     * Transport which keeps the written bytes.
+     */
+    private static class WrittenTransport extends LoopbackTransport {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            written.write(data, offset, length);
+        }
+    }
+
+    private WrittenTransport transport;
+    private CollectingControler controler;
+
+    @Before
+    public void setUp() {
+        this.transport = new WrittenTransport();
+        this.controler = new CollectingControler();
+    }
+
+    private CustomSerialPortEventListener listener(Charset charset, boolean linkTest) {
+        return new CustomSerialPortEventListener(transport, new String[]{"\n"}, charset, linkTest, controler);
+    }
+
+    private static void receive(CustomSerialPortEventListener listener, byte... chunk) {
+        listener.bytesReceived(chunk, chunk.length);
+    }
+
+    /**
+     * Receives the text in two chunks split at every byte, framed and without terminator,
+     * and checks that every char is decoded whole.
+     */
+    private static void checkSplitText(String text, Charset charset) {
+        byte[] bytes = (text + "\n").getBytes(charset);
+        for (int split = 1; split < bytes.length; split++) {
+            byte[] first = Arrays.copyOfRange(bytes, 0, split);
+            byte[] second = Arrays.copyOfRange(bytes, split, bytes.length);
+
+            CollectingControler framed = new CollectingControler();
+            CustomSerialPortEventListener listener = new CustomSerialPortEventListener(
+                    new WrittenTransport(), new String[]{"\n"}, charset, false, framed);
+            receive(listener, first);
+            receive(listener, second);
+            assertEquals("split at " + split, text, framed.lines.get(0));
+
+            CollectingControler unframed = new CollectingControler();
+            listener = new CustomSerialPortEventListener(new WrittenTransport(), new String[0], charset, false, unframed);
+            receive(listener, first);
+            receive(listener, second);
+            assertEquals("split at " + split, text + "\n", unframed.chars.toString());
+        }
+    }
+
+    @Test
+    public void testUtf8CharsSplitBetweenChunks() {
+        // two, three and four byte chars
+        checkSplitText("Zażółć gęślą jaźń – 20°C \uD83D\uDE80", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCp1250CharsSplitBetweenChunks() {
+        checkSplitText("Zażółć gęślą jaźń – 20°C", Charset.forName("windows-1250"));
+    }
+
+    @Test
+    public void testStuffedControlBytesAreData() {
+        CustomSerialPortEventListener listener = listener(StandardCharsets.ISO_8859_1, true);
+        // data a 05 06 10 b stuffed as a 05 06 10 10 b, the doubled DLE split between chunks
+        receive(listener, (byte) 'a', ENQ, ACK, DLE);
+        receive(listener, DLE, (byte) 'b', (byte) '\n');
+        assertEquals(1, controler.lines.size());
+        assertEquals("a\u0005\u0006\u0010b", controler.lines.get(0));
+        assertEquals(0, controler.pingResponses);
+        assertEquals(0, transport.written.size());
+    }
+
+    @Test
+    public void testLinkTestRequestIsAnswered() {
+        CustomSerialPortEventListener listener = listener(StandardCharsets.ISO_8859_1, true);
+        receive(listener, (byte) 'x', DLE);
+        receive(listener, ENQ, (byte) 'y', (byte) '\n');
+        assertArrayEquals(new byte[]{DLE, ACK}, transport.written.toByteArray());
+        assertEquals("xy", controler.lines.get(0));
+    }
+
+    @Test
+    public void testLinkTestResponseIsReported() {
+        CustomSerialPortEventListener listener = listener(StandardCharsets.ISO_8859_1, true);
+        receive(listener, (byte) 'x', DLE, ACK, (byte) 'y', (byte) '\n');
+        assertEquals(1, controler.pingResponses);
+        assertEquals("xy", controler.lines.get(0));
+    }
+
+    @Test
+    public void testControlBytesAreDataWithoutLinkTest() {
+        CustomSerialPortEventListener listener = listener(StandardCharsets.ISO_8859_1, false);
+        receive(listener, DLE, ENQ, DLE, DLE, (byte) '\n');
+        assertEquals("\u0010\u0005\u0010\u0010", controler.lines.get(0));
+        assertEquals(0, transport.written.size());
+    }
+
+    @Test
+    public void testSentFileSurvivesLinkTestReceiver() throws Exception {
+        byte[] content = {'a', DLE, ENQ, 'b', DLE, ACK, DLE, DLE, ENQ, ACK, '\n'};
+        File file = File.createTempFile("link-test", ".bin");
+        file.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        WrittenTransport line = new WrittenTransport();
+        try {
+            new FileSender(line, controler, scheduler, file, 1, 0, 0, 0, true).start();
+            assertTrue(controler.fileSent.await(10, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+        }
+        assertTrue(controler.fileComplete);
+
+        // the receiver gets the stuffed bytes split after every DLE
+        CustomSerialPortEventListener listener = listener(StandardCharsets.ISO_8859_1, true);
+        byte[] sent = line.written.toByteArray();
+        int start = 0;
+        for (int i = 0; i < sent.length; i++) {
+            if (sent[i] == DLE || i == sent.length - 1) {
+                listener.bytesReceived(Arrays.copyOfRange(sent, start, i + 1), i + 1 - start);
+                start = i + 1;
+            }
+        }
+        assertEquals(0, controler.pingResponses);
+        assertEquals(0, transport.written.size());
+        assertEquals(new String(content, 0, content.length - 1, StandardCharsets.ISO_8859_1), controler.lines.get(0));
+    }
+}
@@ -0,0 +1,61 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of compiling expect scripts: jumps, alternatives and errors.
+ *
+ * @author Michał Lytek
+ */
+public class ExpectScriptTest {
+
+    @Test
+    public void testAlternativesJumpToLabels() {
+        ExpectScript script = new ExpectScript("timeout 500 retry\n"
+                + "label retry\n"
+                + "expect /RESET/ => reset || /WDT.*/ => watchdog || login:\n"
+                + "send root\n"
+                + "label reset\n"
+                + "fail reset\n"
+                + "label watchdog\n"
+                + "goto retry\n");
+        assertEquals(4, script.getStepCount());
+        ExpectScript.Step expect = script.getStep(0);
+        assertEquals(ExpectScript.EXPECT, expect.kind);
+        assertEquals(500, expect.time);
+        assertEquals(0, expect.timeoutTarget);
+        assertEquals(2, expect.targets[0]);
+        assertEquals(3, expect.targets[1]);
+        assertEquals(1, expect.targets[2]);
+        assertEquals(ExpectScript.GOTO, script.getStep(3).kind);
+        assertEquals(0, script.getStep(3).targets[0]);
+        assertNull(script.getStep(4));
+    }
+
+    @Test
+    public void testFirstAlternativeWinsWhenHiddenByAnother() {
+        ExpectScript script = new ExpectScript("expect /RESET/ => a || /WDT.*/ => b\nlabel a\nend\nlabel b\nend");
+        TriggerEngine engine = script.getStep(0).engine;
+        assertEquals(0, engine.match("WDT RESET"));
+        assertEquals(1, engine.match("WDT 1"));
+        assertEquals(-1, engine.match("ok"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownLabel() {
+        new ExpectScript("expect ok => nowhere");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidExpression() {
+        new ExpectScript("expect /[a/");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownCommand() {
+        new ExpectScript("wait 100");
+    }
+}
@@ -0,0 +1,85 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of running tasks of the hashed wheel timer at their deadlines.
+ *
+ * @author Michał Lytek
+ */
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testTasksRunNotBeforeDeadline() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+        long start = System.nanoTime();
+        // deadlines further than one wheel turn need counting rounds
+        long[] delays = {0, 3, 20, 45};
+        CountDownLatch done = new CountDownLatch(delays.length);
+        AtomicLong early = new AtomicLong();
+        for (long delay : delays) {
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(delay);
+            timer.schedule(() -> {
+                if (System.nanoTime() < deadline) {
+                    early.incrementAndGet();
+                }
+                done.countDown();
+            }, deadline);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRun() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+        CountDownLatch cancelledRun = new CountDownLatch(1);
+        CountDownLatch laterRun = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.schedule(cancelledRun::countDown, deadline);
+        timer.schedule(laterRun::countDown, deadline + TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(deadline, timeout.getDeadline());
+        timeout.cancel();
+        assertTrue(laterRun.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledRun.await(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testIdleTimerWaitsUntilNextTask() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("idle-test-timer", 1, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch firstRun = new CountDownLatch(1);
+        timer.schedule(firstRun::countDown, System.nanoTime());
+        assertTrue(firstRun.await(5, TimeUnit.SECONDS));
+
+        // with no task the thread parks without a timeout instead of ticking
+        Thread worker = null;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("idle-test-timer")) {
+                worker = thread;
+            }
+        }
+        long waitEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (worker.getState() != Thread.State.WAITING && System.nanoTime() < waitEnd) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, worker.getState());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        AtomicLong runTime = new AtomicLong();
+        CountDownLatch secondRun = new CountDownLatch(1);
+        timer.schedule(() -> {
+            runTime.set(System.nanoTime());
+            secondRun.countDown();
+        }, deadline);
+        assertTrue(secondRun.await(5, TimeUnit.SECONDS));
+        assertTrue(runTime.get() >= deadline);
+    }
+}
@@ -0,0 +1,133 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of finding Modbus RTU frames by CRC and decoding their fields.
+ *
+ * @author Michał Lytek
+ */
+public class ModbusRtuDecoderTest {
+
+    /**
+     * Appends CRC-16/MODBUS to the frame, low byte first.
+     */
+    private static byte[] frame(int... bytes) {
+        byte[] frame = new byte[bytes.length + 2];
+        for (int i = 0; i < bytes.length; i++) {
+            frame[i] = (byte) bytes[i];
+        }
+        int crc = ModbusCrc.update(ModbusCrc.INITIAL, frame, 0, bytes.length);
+        frame[bytes.length] = (byte) crc;
+        frame[bytes.length + 1] = (byte) (crc >>> 8);
+        return frame;
+    }
+
+    private static byte[] concat(byte[]... frames) {
+        int length = 0;
+        for (byte[] frame : frames) {
+            length += frame.length;
+        }
+        byte[] data = new byte[length];
+        int position = 0;
+        for (byte[] frame : frames) {
+            System.arraycopy(frame, 0, data, position, frame.length);
+            position += frame.length;
+        }
+        return data;
+    }
+
+    @Test
+    public void testKnownCrcVector() {
+        // read 10 holding registers from slave 1, as sent by common masters
+        assertArrayEquals(new byte[] {0x01, 0x03, 0x00, 0x00, 0x00, 0x0A, (byte) 0xC5, (byte) 0xCD},
+                frame(0x01, 0x03, 0x00, 0x00, 0x00, 0x0A));
+    }
+
+    @Test
+    public void testKnownReadCoilsFrames() {
+        // the read coils example of the Modbus specification with its CRC
+        byte[] request = {0x11, 0x01, 0x00, 0x13, 0x00, 0x25, 0x0E, (byte) 0x84};
+        byte[] response = {0x11, 0x01, 0x05, (byte) 0xCD, 0x6B, (byte) 0xB2, 0x0E, 0x1B, 0x45, (byte) 0xE6};
+        assertArrayEquals(request, frame(0x11, 0x01, 0x00, 0x13, 0x00, 0x25));
+        assertArrayEquals(response, frame(0x11, 0x01, 0x05, 0xCD, 0x6B, 0xB2, 0x0E, 0x1B));
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new ModbusRtuDecoder(), concat(request, response), 256);
+        assertEquals("Odczyt cewek - żądanie: Adres=17, Funkcja=1, Pierwszy rejestr=19, Liczba=37", sink.messages.get(0));
+        assertEquals("Odczyt cewek - odpowiedź: Adres=17, Funkcja=1, Bajtów=5, Stany=205, Stany=107, Stany=178, "
+                + "Stany=14, Stany=27", sink.messages.get(1));
+    }
+
+    @Test
+    public void testEightByteResponseOfReadCoils() {
+        // 3 bytes of coils make the response as long as a request
+        byte[] response = frame(0x01, 0x01, 0x03, 0xCD, 0x6B, 0x05);
+        assertEquals(8, response.length);
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new ModbusRtuDecoder(), response, 256);
+        assertEquals("Odczyt cewek - odpowiedź: Adres=1, Funkcja=1, Bajtów=3, Stany=205, Stany=107, Stany=5",
+                sink.messages.get(0));
+    }
+
+    @Test
+    public void testEightByteRequestAndResponseByOrder() {
+        // the request of 19 coils from 0x0300 also looks like a response with 3 bytes
+        byte[] request = frame(0x01, 0x02, 0x03, 0x00, 0x00, 0x13);
+        byte[] response = frame(0x01, 0x02, 0x03, 0x01, 0x02, 0x03);
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new ModbusRtuDecoder(), concat(frame(0x01, 0x03, 0x02, 0x00, 0x07), request, response, request, response), 256);
+        assertEquals(5, sink.messages.size());
+        for (int i = 1; i < 5; i += 2) {
+            assertEquals("Odczyt wejść dyskretnych - żądanie: Adres=1, Funkcja=2, Pierwszy rejestr=768, Liczba=19",
+                    sink.messages.get(i));
+            assertEquals("Odczyt wejść dyskretnych - odpowiedź: Adres=1, Funkcja=2, Bajtów=3, Stany=1, Stany=2, Stany=3",
+                    sink.messages.get(i + 1));
+        }
+    }
+
+    @Test
+    public void testReadRegistersRequestAndResponse() {
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new ModbusRtuDecoder(), concat(frame(0x01, 0x03, 0x00, 0x6B, 0x00, 0x02),
+                frame(0x01, 0x03, 0x04, 0x02, 0x2B, 0x00, 0x64)), 256);
+        assertEquals(2, sink.messages.size());
+        assertEquals("Odczyt rejestrów - żądanie: Adres=1, Funkcja=3, Pierwszy rejestr=107, Liczba=2",
+                sink.messages.get(0));
+        assertEquals("Odczyt rejestrów - odpowiedź: Adres=1, Funkcja=3, Bajtów=4, Rejestr=555, Rejestr=100",
+                sink.messages.get(1));
+        assertEquals(0, sink.skipped);
+    }
+
+    @Test
+    public void testWritesAndException() {
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new ModbusRtuDecoder(), concat(frame(0x11, 0x06, 0x00, 0x01, 0x00, 0x03),
+                frame(0x11, 0x10, 0x00, 0x01, 0x00, 0x02, 0x04, 0x00, 0x0A, 0x01, 0x02),
+                frame(0x11, 0x10, 0x00, 0x01, 0x00, 0x02),
+                frame(0x11, 0x83, 0x02)), 256);
+        assertEquals(4, sink.messages.size());
+        assertEquals("Zapis rejestru: Adres=17, Funkcja=6, Rejestr=1, Wartość=3", sink.messages.get(0));
+        assertEquals("Zapis rejestrów - żądanie: Adres=17, Funkcja=16, Pierwszy rejestr=1, Liczba=2, Bajtów=4, "
+                + "Wartość=10, Wartość=258", sink.messages.get(1));
+        assertEquals("Zapis rejestrów - odpowiedź: Adres=17, Funkcja=16, Pierwszy rejestr=1, Liczba=2",
+                sink.messages.get(2));
+        assertEquals("Odczyt rejestrów - wyjątek: Adres=17, Funkcja=131, Kod wyjątku=2", sink.messages.get(3));
+    }
+
+    @Test
+    public void testNoiseAndWrongCrcAreSkippedInChunks() {
+        byte[] broken = frame(0x01, 0x03, 0x00, 0x00, 0x00, 0x01);
+        broken[7] ^= 0x55;
+        byte[] data = concat(new byte[] {(byte) 0xFF, 0x00}, broken, frame(0x01, 0x03, 0x02, 0x12, 0x34));
+        for (int chunk = 1; chunk <= data.length; chunk++) {
+            CollectingSink sink = new CollectingSink();
+            sink.decode(new ModbusRtuDecoder(), data, chunk);
+            assertEquals(1, sink.messages.size());
+            assertEquals("Odczyt rejestrów - odpowiedź: Adres=1, Funkcja=3, Bajtów=2, Rejestr=4660", sink.messages.get(0));
+            assertEquals(10, sink.skipped);
+        }
+    }
+}
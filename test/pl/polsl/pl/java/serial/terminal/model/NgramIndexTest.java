@@ -0,0 +1,77 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of block signatures of the trigram index: a block with the text must always be a candidate.
+ *
+ * @author Michał Lytek
+ */
+public class NgramIndexTest {
+
+    private File file;
+    private NgramIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("ngram", ".idx");
+        this.index = new NgramIndex(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        index.close();
+        file.delete();
+    }
+
+    @Test
+    public void testSearchIgnoresCase() throws IOException {
+        index.add(0, "Sensor ERROR 17", true);
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("error")));
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("sensor Error")));
+    }
+
+    @Test
+    public void testTrigramsCrossAppendedParts() throws IOException {
+        index.add(0, "err", true);
+        index.add(0, "or", false);
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("rro")));
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("ror")));
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("error")));
+    }
+
+    @Test
+    public void testTrigramsDontCrossLines() throws IOException {
+        index.add(0, "ab", true);
+        index.add(1, "cd", true);
+        assertFalse(index.mayContain(0, NgramIndex.queryBits("abc")));
+        assertFalse(index.mayContain(0, NgramIndex.queryBits("bcd")));
+    }
+
+    @Test
+    public void testCompleteBlocksAreKept() throws IOException {
+        for (int line = 0; line < 3 * NgramIndex.BLOCK_LINES; line++) {
+            index.add(line, line == NgramIndex.BLOCK_LINES + 5 ? "timeout on port" : "value " + line, true);
+        }
+        int[] bits = NgramIndex.queryBits("TIMEOUT");
+        assertTrue(index.mayContain(1, bits));
+        assertFalse(index.mayContain(0, bits));
+        assertFalse(index.mayContain(2, bits));
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("value 12")));
+        assertTrue(index.mayContain(2, NgramIndex.queryBits("value 3")));
+    }
+
+    @Test
+    public void testShortTextMatchesEveryBlock() throws IOException {
+        index.add(0, "x", true);
+        assertTrue(index.mayContain(0, NgramIndex.queryBits("ok")));
+    }
+}
@@ -0,0 +1,67 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of decoding NMEA 0183 sentences, whole and split into received chunks.
+ *
+ * @author Michał Lytek
+ */
+public class NmeaDecoderTest {
+
+    /** GGA sentence with its published checksum */
+    private static final String GGA = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n";
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testNamedFieldsOfGga() {
+        DecodedMessage message = new DecodedMessage();
+        CollectingSink sink = new CollectingSink();
+        byte[] data = bytes(GGA);
+        assertEquals(data.length, new NmeaDecoder().decode(data, 0, data.length, message, sink));
+        assertEquals("GPGGA", message.getType());
+        assertTrue(message.isValid());
+        assertEquals("Czas UTC", message.getFieldName(0));
+        assertEquals(4807.038, message.getDouble(1), 1e-9);
+        assertEquals(8, message.getLong(6));
+        assertEquals(Double.NaN, message.getDouble(12), 0);
+        assertEquals(14, message.getFieldCount());
+    }
+
+    @Test
+    public void testWrongChecksumIsInvalid() {
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new NmeaDecoder(), bytes(GGA.replace("*47", "*48")), 1000);
+        assertEquals(1, sink.messages.size());
+        assertTrue(sink.messages.get(0).endsWith(" (błąd)"));
+    }
+
+    @Test
+    public void testSentencesSplitIntoChunksAfterNoise() {
+        String text = "xx" + GGA + "$GPVTG,054.7,T,034.4,M,005.5,N,010.2,K*48\r\n" + GGA;
+        for (int chunk = 1; chunk < 20; chunk++) {
+            CollectingSink sink = new CollectingSink();
+            sink.decode(new NmeaDecoder(), bytes(text), chunk);
+            assertEquals(3, sink.messages.size());
+            assertEquals(2, sink.skipped);
+            assertEquals(sink.messages.get(0), sink.messages.get(2));
+            assertTrue(sink.messages.get(1).startsWith("GPVTG: Kurs=054.7, T=T,"));
+        }
+    }
+
+    @Test
+    public void testTruncatedSentenceIsSkippedAtNextStart() {
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new NmeaDecoder(), bytes("$GPGGA,1235" + GGA), 1000);
+        assertEquals(1, sink.messages.size());
+        assertEquals(11, sink.skipped);
+    }
+}
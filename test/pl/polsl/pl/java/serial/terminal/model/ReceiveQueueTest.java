@@ -0,0 +1,79 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the receive queue overflow policies.
+ *
+ * @author Michał Lytek
+ */
+public class ReceiveQueueTest {
+
+    @Test
+    public void testDropOldestKeepsNewestElements() {
+        ReceiveQueue<Integer> queue = new ReceiveQueue<>(4, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(4, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+        for (int i = 2; i < 6; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDropNewestKeepsQueuedElements() {
+        ReceiveQueue<Integer> queue = new ReceiveQueue<>(4, OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertTrue(queue.offer(5));
+        for (int expected : new int[] {1, 2, 3, 5}) {
+            assertEquals(Integer.valueOf(expected), queue.poll());
+        }
+    }
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        ReceiveQueue<Integer> queue = new ReceiveQueue<>(5, OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(8));
+    }
+
+    @Test
+    public void testDropOldestWithConcurrentConsumerKeepsOrder() throws InterruptedException {
+        ReceiveQueue<Integer> queue = new ReceiveQueue<>(8, OverflowPolicy.DROP_OLDEST);
+        int count = 200000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                queue.offer(i);
+            }
+        });
+        producer.start();
+        int last = -1;
+        long polled = 0;
+        while (producer.isAlive() || !queue.isEmpty()) {
+            Integer element = queue.poll();
+            if (element != null) {
+                assertTrue("elements must come in order", element > last);
+                last = element;
+                polled++;
+            }
+        }
+        producer.join();
+        assertEquals(count, polled + queue.getDroppedCount());
+    }
+}
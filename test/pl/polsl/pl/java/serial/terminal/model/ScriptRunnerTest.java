@@ -0,0 +1,105 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.view.ConsoleView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of running expect scripts against a device on the other end of loopback connection,
+ * which answers every received line at once.
+ *
+ * @author Michał Lytek
+ */
+public class ScriptRunnerTest {
+
+    private LoopbackTransport device;
+    private Controler controler;
+    /** Lines received by the device */
+    private final StringBuilder deviceInput = new StringBuilder();
+
+    /* Result of the finished script */
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean succesful;
+    private volatile String report;
+
+    @Before
+    public void setUp() throws IOException {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        this.device = pair[1];
+        device.open((data, length) -> {
+            deviceInput.append(new String(data, 0, length, StandardCharsets.US_ASCII));
+            int end;
+            while ((end = deviceInput.indexOf("\r\n")) >= 0) {
+                String line = deviceInput.substring(0, end);
+                deviceInput.delete(0, end + 2);
+                byte[] answer = (line.equals("AT+FAIL") ? "ERROR\r\n" : "OK " + line + "\r\n").getBytes(StandardCharsets.US_ASCII);
+                try {
+                    device.write(answer, 0, answer.length);
+                } catch (IOException ex) {
+                    System.err.println(ex);
+                }
+            }
+        });
+        ConsoleView view = new ConsoleView(new PrintStream(new ByteArrayOutputStream()));
+        this.controler = new Controler(view) {
+            @Override
+            public void scriptFinished(ScriptRunner runner, boolean isSuccesful, String report) {
+                super.scriptFinished(runner, isSuccesful, report);
+                ScriptRunnerTest.this.succesful = isSuccesful;
+                ScriptRunnerTest.this.report = report;
+                finished.countDown();
+            }
+        };
+        view.setControler(controler);
+        controler.setupSerialPort("loopback", 115200, 8, 0, 1, 0, "CR-LF", 0, "US-ASCII", false);
+        assertTrue(controler.connectToPort(pair[0]));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        controler.disconnectFromPort();
+        device.close();
+    }
+
+    @Test
+    public void testAnswersToSentLinesAreMatched() throws InterruptedException {
+        StringBuilder script = new StringBuilder("timeout 2000\n");
+        for (int i = 0; i < 50; i++) {
+            script.append("send AT+").append(i).append('\n')
+                    .append("expect OK AT+").append(i).append('\n');
+        }
+        assertTrue(controler.runScript(new ExpectScript(script.toString())));
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(report, succesful);
+        assertEquals(51, report.split("\n").length);
+    }
+
+    @Test
+    public void testAlternativeJumpsToLabel() throws InterruptedException {
+        assertTrue(controler.runScript(new ExpectScript("timeout 2000\n"
+                + "send AT+FAIL\n"
+                + "expect OK => ok || ERROR => error\n"
+                + "label ok\n"
+                + "end\n"
+                + "label error\n"
+                + "fail urządzenie zwróciło błąd\n")));
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(report, !succesful);
+        assertTrue(report, report.contains("urządzenie zwróciło błąd"));
+    }
+}
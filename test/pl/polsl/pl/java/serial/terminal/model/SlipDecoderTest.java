@@ -0,0 +1,98 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.ByteArrayOutputStream;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of decoding SLIP frames with escaped bytes and CRC-16/XMODEM.
+ *
+ * @author Michał Lytek
+ */
+public class SlipDecoderTest {
+
+    private static final int END = 0xC0, ESC = 0xDB, ESC_END = 0xDC, ESC_ESC = 0xDD;
+
+    /**
+     * Builds a frame like a device: payload with CRC, escaped, with END before and after.
+     */
+    private static byte[] frame(int... payload) {
+        int crc = 0;
+        for (int b : payload) {
+            crc = Crc16.update(crc, b);
+        }
+        int[] withCrc = Arrays.copyOf(payload, payload.length + 2);
+        withCrc[payload.length] = crc >>> 8;
+        withCrc[payload.length + 1] = crc & 0xFF;
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(END);
+        for (int b : withCrc) {
+            if (b == END) {
+                frame.write(ESC);
+                frame.write(ESC_END);
+            } else if (b == ESC) {
+                frame.write(ESC);
+                frame.write(ESC_ESC);
+            } else {
+                frame.write(b);
+            }
+        }
+        frame.write(END);
+        return frame.toByteArray();
+    }
+
+    @Test
+    public void testEscapedBytesAreRestored() {
+        DecodedMessage message = new DecodedMessage();
+        CollectingSink sink = new CollectingSink();
+        byte[] data = frame(0x12, END, 0x01, ESC, 0x02);
+        SlipDecoder decoder = new SlipDecoder();
+        assertEquals(1, decoder.decode(data, 0, data.length, message, sink));
+        assertEquals(data.length - 1, decoder.decode(data, 1, data.length - 1, message, sink));
+        assertEquals("Ramka 0x12", message.getType());
+        assertTrue(message.isValid());
+        assertEquals("C0 01 DB 02", message.getText(1));
+        assertEquals(0xC001DB02L, message.getLong(1));
+    }
+
+    @Test
+    public void testFramesSplitIntoChunks() {
+        byte[] first = frame(0x01, 0x10, 0x20);
+        byte[] second = frame(0x02, ESC, ESC, END);
+        byte[] data = new byte[first.length + second.length];
+        System.arraycopy(first, 0, data, 0, first.length);
+        System.arraycopy(second, 0, data, first.length, second.length);
+        for (int chunk = 1; chunk < data.length; chunk++) {
+            CollectingSink sink = new CollectingSink();
+            sink.decode(new SlipDecoder(), data, chunk);
+            assertEquals(2, sink.messages.size());
+            assertTrue(sink.messages.get(0).startsWith("Ramka 0x01: Typ=1, Dane=10 20, CRC="));
+            assertTrue(sink.messages.get(1).startsWith("Ramka 0x02: Typ=2, Dane=DB DB C0, CRC="));
+            assertEquals(0, sink.skipped);
+        }
+    }
+
+    @Test
+    public void testWrongCrcIsInvalid() {
+        byte[] data = frame(0x05, 0x33);
+        data[2] ^= 1;
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new SlipDecoder(), data, data.length);
+        assertEquals(1, sink.messages.size());
+        assertTrue(sink.messages.get(0).endsWith(" (błąd)"));
+    }
+
+    @Test
+    public void testWrongEscapeIsInvalid() {
+        byte[] data = {(byte) END, 0x05, (byte) ESC, 0x01, 0x00, 0x00, (byte) END};
+        CollectingSink sink = new CollectingSink();
+        sink.decode(new SlipDecoder(), data, data.length);
+        assertEquals(1, sink.messages.size());
+        assertTrue(sink.messages.get(0).endsWith(" (błąd)"));
+    }
+}
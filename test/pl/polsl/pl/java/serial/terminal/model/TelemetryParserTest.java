@@ -0,0 +1,64 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of parsing telemetry lines: key=value pairs, CSV with and without header.
+ *
+ * @author Michał Lytek
+ */
+public class TelemetryParserTest {
+
+    private final TelemetryParser parser = new TelemetryParser();
+    /** Values of the last parsed line as "series=value" */
+    private final List<String> values = new ArrayList<>();
+
+    private int parse(String line) {
+        values.clear();
+        byte[] bytes = ("xx" + line).getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, 2, bytes.length - 2, (series, value) -> values.add(parser.getSeriesName(series) + "=" + value));
+    }
+
+    @Test
+    public void testKeyValuePairs() {
+        assertEquals(3, parse("temp=23.5 hum:41 p=-1.25e3"));
+        assertEquals("[temp=23.5, hum=41.0, p=-1250.0]", values.toString());
+        assertEquals(2, parse("hum=40;temp=23.25"));
+        assertEquals("[hum=40.0, temp=23.25]", values.toString());
+        assertEquals(3, parser.getSeriesCount());
+    }
+
+    @Test
+    public void testUnitSuffixIsIgnored() {
+        assertEquals(2, parse("t=23.5C v=3.3V"));
+        assertEquals("[t=23.5, v=3.3]", values.toString());
+    }
+
+    @Test
+    public void testCsvHeaderNamesColumns() {
+        assertEquals(0, parse("time,temp,hum"));
+        assertEquals(3, parse("100,23.5,40"));
+        assertEquals("[time=100.0, temp=23.5, hum=40.0]", values.toString());
+    }
+
+    @Test
+    public void testColumnsWithoutHeaderAreNumbered() {
+        assertEquals(2, parse("1.5 2.5"));
+        assertEquals("[#1=1.5, #2=2.5]", values.toString());
+    }
+
+    @Test
+    public void testMessageIsNotHeader() {
+        assertEquals(0, parse("device ready"));
+        assertEquals(1, parse("42"));
+        assertEquals("[#1=42.0]", values.toString());
+        assertEquals(0, parse("error: sensor lost"));
+    }
+}
@@ -0,0 +1,72 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of terminator matching, also split between reads and with common prefixes.
+ *
+ * @author Michał Lytek
+ */
+public class TerminatorMatcherTest {
+
+    private static TerminatorMatcher matcher(String... terminators) {
+        byte[][] bytes = new byte[terminators.length][];
+        for (int i = 0; i < terminators.length; i++) {
+            bytes[i] = terminators[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return new TerminatorMatcher(bytes);
+    }
+
+    /**
+     * Feeds the text and returns the length matched on its last byte.
+     */
+    private static int feed(TerminatorMatcher matcher, String text) {
+        int matchLength = 0;
+        for (byte b : text.getBytes(StandardCharsets.US_ASCII)) {
+            matchLength = matcher.next(b);
+        }
+        return matchLength;
+    }
+
+    @Test
+    public void testMatchesTerminatorSplitBetweenReads() {
+        TerminatorMatcher matcher = matcher("\r\n");
+        assertEquals(0, feed(matcher, "abc\r"));
+        assertEquals(2, feed(matcher, "\n"));
+    }
+
+    @Test
+    public void testPrefersLongerTerminatorEndingOnSameByte() {
+        TerminatorMatcher matcher = matcher("\r\n", "\n");
+        assertEquals(2, feed(matcher, "ab\r\n"));
+        assertEquals(1, feed(matcher, "ab\n"));
+    }
+
+    @Test
+    public void testFindsTerminatorAfterFailedPartialMatch() {
+        TerminatorMatcher matcher = matcher("END;", "ND!");
+        assertEquals(0, feed(matcher, "xxEN"));
+        assertEquals(3, feed(matcher, "D!"));
+        assertEquals(0, feed(matcher, "EEND"));
+        assertEquals(4, feed(matcher, ";"));
+    }
+
+    @Test
+    public void testResetForgetsPartialMatch() {
+        TerminatorMatcher matcher = matcher("</msg>");
+        feed(matcher, "text</ms");
+        matcher.reset();
+        assertEquals(0, feed(matcher, "g>"));
+    }
+
+    @Test
+    public void testIgnoresEmptyTerminators() {
+        TerminatorMatcher matcher = matcher("", ";");
+        assertEquals(0, feed(matcher, "abc"));
+        assertEquals(1, feed(matcher, ";"));
+    }
+}
@@ -0,0 +1,66 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of matching literal and regular expression triggers in one pass.
+ *
+ * @author Michał Lytek
+ */
+public class TriggerEngineTest {
+
+    private static Trigger literal(String pattern) {
+        return new Trigger(pattern, false, 0, Trigger.ACTION_NONE);
+    }
+
+    private static Trigger regex(String pattern) {
+        return new Trigger(pattern, true, 0, Trigger.ACTION_NONE);
+    }
+
+    @Test
+    public void testOverlappingLiteralsAreAllCounted() {
+        TriggerEngine engine = new TriggerEngine(Arrays.asList(literal("ERROR"), literal("OR"), literal("RR")));
+        assertEquals(0, engine.match("ERROR ERROR"));
+        assertEquals(1, engine.match("FOR"));
+        assertArrayEquals(new long[] {1, 2, 1}, engine.getMatchCounts());
+    }
+
+    @Test
+    public void testExpressionMatchingInsideAnotherMatch() {
+        // the alternation finds only "WDT.*", which covers the whole line
+        TriggerEngine engine = new TriggerEngine(Arrays.asList(regex("RESET"), regex("WDT.*"), regex("\\d+")));
+        assertEquals(0, engine.match("WDT RESET"));
+        assertArrayEquals(new long[] {1, 1, 0}, engine.getMatchCounts());
+        assertEquals(0, engine.match("WDT 12 RESET"));
+        assertArrayEquals(new long[] {2, 2, 1}, engine.getMatchCounts());
+    }
+
+    @Test
+    public void testExpressionsAtSamePosition() {
+        TriggerEngine engine = new TriggerEngine(Arrays.asList(regex("temp=\\d+"), regex("temp"), literal("x")));
+        assertEquals(0, engine.match("temp=25"));
+        assertEquals(1, engine.match("temp=?"));
+        assertArrayEquals(new long[] {1, 2, 0}, engine.getMatchCounts());
+    }
+
+    @Test
+    public void testPriorityOfLiteralsAndExpressions() {
+        TriggerEngine engine = new TriggerEngine(Arrays.asList(regex("fail(ed|ure)"), literal("boot"), regex("[0-9]+ ms")));
+        assertEquals(1, engine.match("boot in 120 ms"));
+        assertEquals(0, engine.match("boot failed"));
+        assertEquals(-1, engine.match("ready"));
+        assertArrayEquals(new long[] {1, 2, 1}, engine.getMatchCounts());
+    }
+
+    @Test
+    public void testLineCountedOnce() {
+        TriggerEngine engine = new TriggerEngine(Arrays.asList(literal("ab"), regex("c")));
+        engine.match("ab ab c c");
+        assertArrayEquals(new long[] {1, 1}, engine.getMatchCounts());
+    }
+}
@@ -0,0 +1,236 @@
+package pl.polsl.pl.java.serial.terminal.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.polsl.pl.java.serial.terminal.main.Controler;
+import pl.polsl.pl.java.serial.terminal.view.ConsoleView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of ZMODEM frames sent to a scripted receiver on the other end of loopback connection:
+ * hex and binary headers and the data subpacket must have correct CRC-16 after unescaping.
+ *
+ * @author Michał Lytek
+ */
+public class ZmodemSenderTest {
+
+    /* Frame special characters and types */
+    private static final int ZPAD = '*',
+            ZDLE = 0x18,
+            ZBIN = 'A',
+            ZHEX = 'B',
+            XON = 0x11,
+            ZRQINIT = 0,
+            ZRINIT = 1,
+            ZFILE = 4,
+            ZSKIP = 5,
+            ZFIN = 8,
+            ZCRCW = 'k';
+    /** Time to wait for the sender in seconds */
+    private static final long TIMEOUT = 5;
+
+    /** Bytes written by the sender */
+    private final BlockingQueue<Integer> sent = new LinkedBlockingQueue<>();
+    private LoopbackTransport device;
+    private Controler controler;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        LoopbackTransport[] pair = LoopbackTransport.createPair();
+        this.device = pair[1];
+        device.open((data, length) -> {
+            for (int i = 0; i < length; i++) {
+                sent.add(data[i] & 0xFF);
+            }
+        });
+        ConsoleView view = new ConsoleView(new PrintStream(new ByteArrayOutputStream()));
+        this.controler = new Controler(view);
+        view.setControler(controler);
+        controler.setupSerialPort("loopback", 115200, 8, 0, 1, 0, "Brak", 0, "US-ASCII", false);
+        assertTrue(controler.connectToPort(pair[0]));
+
+        this.file = File.createTempFile("zmodem", ".bin");
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[3000]);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        controler.cancelFileSend();
+        controler.disconnectFromPort();
+        device.close();
+        file.delete();
+    }
+
+    @Test
+    public void testSessionUntilReceiverSkipsFile() throws Exception {
+        assertTrue(controler.sendFile(file, 4, 0, 0, 0));
+        assertEquals("rz\r", new String(new byte[] {(byte) next(), (byte) next(), (byte) next()}, StandardCharsets.US_ASCII));
+
+        int[] header = readHexHeader();
+        assertEquals(ZRQINIT, header[0]);
+        assertEquals('\r', next());
+        assertEquals(0x8A, next());
+        assertEquals(XON, next());
+
+        // receiver without CRC-32, so binary headers and subpackets use CRC-16
+        sendHexHeader(ZRINIT, 0);
+        header = readBinaryHeader();
+        assertEquals(ZFILE, header[0]);
+        assertEquals("binary transfer flag in ZP3", 1, header[4]);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int frameEnd = readSubpacket(data);
+        assertEquals(ZCRCW, frameEnd);
+        String info = new String(data.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(info, info.startsWith(file.getName() + "\0" + file.length() + " "));
+        assertEquals(XON, next());
+
+        sendHexHeader(ZSKIP, 0);
+        assertEquals(ZFIN, readHexHeader()[0]);
+        sendHexHeader(ZFIN, 0);
+        skipTo('O');
+        assertEquals('O', next());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (controler.isSendingFile() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(controler.isSendingFile());
+    }
+
+    /**
+     * Takes the next byte written by the sender.
+     */
+    private int next() throws InterruptedException {
+        Integer value = sent.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull("sender stopped writing", value);
+        return value;
+    }
+
+    /**
+     * Skips the bytes before the expected one, eg. XON between frames.
+     */
+    private void skipTo(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        Integer value;
+        while ((value = sent.peek()) == null || value != expected) {
+            if (value != null) {
+                sent.poll();
+            } else {
+                assertTrue("sender stopped writing", System.nanoTime() < deadline);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    /**
+     * Reads hex header and checks its CRC.
+     *
+     * @return the type and ZP0..ZP3
+     */
+    private int[] readHexHeader() throws InterruptedException {
+        skipTo(ZPAD);
+        assertEquals(ZPAD, next());
+        assertEquals(ZPAD, next());
+        assertEquals(ZDLE, next());
+        assertEquals(ZHEX, next());
+        int[] bytes = new int[7];
+        int crc = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = Character.digit(next(), 16) << 4 | Character.digit(next(), 16);
+            crc = Crc16.update(crc, bytes[i]);
+        }
+        assertEquals("hex header CRC", 0, crc);
+        return bytes;
+    }
+
+    /**
+     * Reads binary header with CRC-16 and checks its CRC.
+     *
+     * @return the type and ZP0..ZP3
+     */
+    private int[] readBinaryHeader() throws InterruptedException {
+        skipTo(ZPAD);
+        assertEquals(ZPAD, next());
+        assertEquals(ZDLE, next());
+        assertEquals(ZBIN, next());
+        int[] bytes = new int[7];
+        int crc = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = readEscaped();
+            crc = Crc16.update(crc, bytes[i]);
+        }
+        assertEquals("binary header CRC", 0, crc);
+        return bytes;
+    }
+
+    /**
+     * Reads data subpacket with CRC-16 and checks its CRC, which covers the frame end too.
+     *
+     * @param data the stream for unescaped data
+     *
+     * @return the frame end
+     */
+    private int readSubpacket(ByteArrayOutputStream data) throws InterruptedException {
+        int crc = 0;
+        while (true) {
+            int value = next();
+            if (value == ZDLE) {
+                value = next();
+                if (value >= 'h' && value <= 'k') {
+                    crc = Crc16.update(crc, value);
+                    crc = Crc16.update(crc, readEscaped());
+                    crc = Crc16.update(crc, readEscaped());
+                    assertEquals("subpacket CRC", 0, crc);
+                    return value;
+                }
+                value ^= 0x40;
+            }
+            assertTrue("unescaped ZDLE, XON or CR", value != ZDLE && value != XON && value != '\r');
+            crc = Crc16.update(crc, value);
+            data.write(value);
+        }
+    }
+
+    private int readEscaped() throws InterruptedException {
+        int value = next();
+        return value == ZDLE ? next() ^ 0x40 : value;
+    }
+
+    /**
+     * Sends hex header as the receiver.
+     */
+    private void sendHexHeader(int type, int value) throws IOException {
+        StringBuilder header = new StringBuilder("**\u0018B");
+        int[] bytes = {type, value & 0xFF, (value >>> 8) & 0xFF, (value >>> 16) & 0xFF, value >>> 24};
+        int crc = 0;
+        for (int b : bytes) {
+            crc = Crc16.update(crc, b);
+            header.append(String.format("%02x", b));
+        }
+        header.append(String.format("%02x%02x\r\n", crc >>> 8, crc & 0xFF));
+        byte[] frame = header.toString().getBytes(StandardCharsets.US_ASCII);
+        device.write(frame, 0, frame.length);
+    }
+}